@@ -0,0 +1,68 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.rest.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import jetbrains.buildServer.server.rest.model.Fields;
+import jetbrains.buildServer.server.rest.model.build.Build;
+import jetbrains.buildServer.server.rest.model.build.Builds;
+import jetbrains.buildServer.serverSide.BuildPromotion;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Construction of Build and Builds beans for a page of builds. Serialization is measured separately in {@link BuildsSerializationBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BuildBeansBenchmark {
+  @Param({"100"})
+  public int pageSize;
+
+  @Param({"$long", "$long,build($long)"})
+  public String fieldsSpec;
+
+  private List<BuildPromotion> myPage;
+  private Fields myFields;
+
+  @Setup
+  public void setUp(final BuildHistoryState state) {
+    myPage = state.server.getPromotions().subList(0, Math.min(pageSize, state.server.getPromotions().size()));
+    myFields = new Fields(fieldsSpec);
+  }
+
+  @Benchmark
+  public void build(final BuildHistoryState state, final Blackhole blackhole) {
+    final Fields buildFields = myFields.getNestedField("build", Fields.SHORT, Fields.LONG);
+    for (BuildPromotion promotion : myPage) {
+      final Build build = new Build(promotion, buildFields, state.server.getBeanContext());
+      blackhole.consume(build.getId());
+      blackhole.consume(build.getStatus());
+      blackhole.consume(build.getBuildTypeId());
+    }
+  }
+
+  @Benchmark
+  public List<Build> builds(final BuildHistoryState state) {
+    return Builds.createFromBuildPromotions(myPage, myFields, state.server.getBeanContext()).getBuilds();
+  }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.rest.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Shared benchmark state: in-memory server with a synthetic build history of {@link #historySize} finished builds.
+ */
+@State(Scope.Benchmark)
+public class BuildHistoryState {
+  @Param({"2000"})
+  public int historySize;
+
+  public ServerFixture server;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    server = new ServerFixture();
+    server.start();
+    server.createBuildHistory(historySize);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    server.stop();
+  }
+}
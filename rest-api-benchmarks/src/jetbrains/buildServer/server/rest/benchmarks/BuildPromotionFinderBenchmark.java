@@ -0,0 +1,55 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.rest.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import jetbrains.buildServer.server.rest.data.util.ItemFilter;
+import jetbrains.buildServer.serverSide.BuildPromotion;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Build locator processing over the synthetic build history: full prefilter + filter + paging, and filtering alone.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BuildPromotionFinderBenchmark {
+  @Param({
+    "buildType:(name:buildType0,affectedProject:(id:project0)),count:100",
+    "affectedProject:(id:project1),status:FAILURE,count:100",
+    "defaultFilter:false,state:finished,count:1000",
+    "number:1,buildType:(name:buildType4,affectedProject:(id:project2))"
+  })
+  public String locator;
+
+  @Benchmark
+  public Object getItems(final BuildHistoryState state) {
+    return state.server.getBuildPromotionFinder().getItems(locator).getEntries();
+  }
+
+  @Benchmark
+  public void filterOnly(final BuildHistoryState state, final Blackhole blackhole) {
+    final ItemFilter<BuildPromotion> filter = state.server.getBuildPromotionFinder().getFilter(locator);
+    for (BuildPromotion promotion : state.server.getPromotions()) {
+      blackhole.consume(filter.isIncluded(promotion));
+    }
+  }
+}
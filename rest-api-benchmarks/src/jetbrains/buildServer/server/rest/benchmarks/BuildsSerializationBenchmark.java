@@ -0,0 +1,75 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.rest.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.Marshaller;
+import jetbrains.buildServer.server.rest.jersey.JacksonObjectMapperResolver;
+import jetbrains.buildServer.server.rest.model.Fields;
+import jetbrains.buildServer.server.rest.model.build.Builds;
+import jetbrains.buildServer.serverSide.BuildPromotion;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * JSON (Jackson with JAXB annotations, as configured for the REST responses) and XML (JAXB) serialization of Builds with fields=$long.
+ * Beans are created lazily, so the measured time includes evaluation of the bean properties.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BuildsSerializationBenchmark {
+  @Param({"100"})
+  public int pageSize;
+
+  @Param({"$long", "$long,build($long)"})
+  public String fieldsSpec;
+
+  private List<BuildPromotion> myPage;
+  private Fields myFields;
+  private ObjectWriter myJsonWriter;
+  private JAXBContext myJaxbContext;
+
+  @Setup
+  public void setUp(final BuildHistoryState state) throws Exception {
+    myPage = state.server.getPromotions().subList(0, Math.min(pageSize, state.server.getPromotions().size()));
+    myFields = new Fields(fieldsSpec);
+    myJsonWriter = new JacksonObjectMapperResolver().getContext(Builds.class).writerFor(Builds.class);
+    myJaxbContext = JAXBContext.newInstance(Builds.class);
+  }
+
+  @Benchmark
+  public int jackson(final BuildHistoryState state) throws Exception {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+    myJsonWriter.writeValue(out, Builds.createFromBuildPromotions(myPage, myFields, state.server.getBeanContext()));
+    return out.size();
+  }
+
+  @Benchmark
+  public int jaxb(final BuildHistoryState state) throws Exception {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+    final Marshaller marshaller = myJaxbContext.createMarshaller();
+    marshaller.marshal(Builds.createFromBuildPromotions(myPage, myFields, state.server.getBeanContext()), out);
+    return out.size();
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.rest.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import jetbrains.buildServer.vcs.VcsRootInstance;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * The first page of the changes of a VCS root with a long history. The cost should not depend on {@link #historySize}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChangeFinderBenchmark {
+  @Param({"10000", "100000", "1000000"})
+  public int historySize;
+
+  private ServerFixture myServer;
+  private String myRootLocator;
+  private String myRareRootLocator;
+  private long myMiddleChangeId;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    myServer = new ServerFixture();
+    myServer.start();
+    final List<VcsRootInstance> roots = myServer.createChangeHistory(historySize);
+    myRootLocator = "vcsRootInstance:(id:" + roots.get(0).getId() + ")";
+    myRareRootLocator = "vcsRootInstance:(id:" + roots.get(1).getId() + ")";
+    myMiddleChangeId = myServer.getChangeFinder().getItems(myRootLocator + ",start:" + historySize / 2 + ",count:1,lookupLimit:" + historySize).getEntries().get(0).getSVcsModification().getId();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    myServer.stop();
+  }
+
+  @Benchmark
+  public Object vcsRootInstanceFirstPage() {
+    return myServer.getChangeFinder().getItems(myRootLocator + ",count:100").getEntries();
+  }
+
+  @Benchmark
+  public Object vcsRootInstanceSinceChangeFirstPage() {
+    return myServer.getChangeFinder().getItems(myRootLocator + ",sinceChange:" + myMiddleChangeId + ",count:100").getEntries();
+  }
+
+  @Benchmark
+  public Object sinceChangeFirstPage() {
+    return myServer.getChangeFinder().getItems("sinceChange:" + myMiddleChangeId + ",count:100").getEntries();
+  }
+
+  @Benchmark
+  public Object projectFirstPage() {
+    return myServer.getChangeFinder().getItems("project:(id:changes),count:100").getEntries();
+  }
+
+  /**
+   * The only change of the root is the oldest one, so the whole history is looked through, in a logarithmic number of lookups.
+   */
+  @Benchmark
+  public Object rareVcsRootInstance() {
+    return myServer.getChangeFinder().getItems(myRareRootLocator + ",count:100").getEntries();
+  }
+}
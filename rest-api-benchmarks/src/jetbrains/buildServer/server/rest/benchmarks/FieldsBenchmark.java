@@ -0,0 +1,66 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.rest.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import jetbrains.buildServer.server.rest.model.Fields;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Parsing of the "fields" request parameter and field inclusion checks done by every bean getter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FieldsBenchmark {
+  @Param({
+    "$long",
+    "count,build(id,number,status,buildTypeId,href)",
+    "build(id,number,status,statusText,buildType(id,name,projectName),changes(change(id,version,username)),tags(tag),agent(name),triggered($long))"
+  })
+  public String fieldsSpec;
+
+  private Fields myFields;
+
+  @Setup
+  public void setUp() {
+    myFields = new Fields(fieldsSpec);
+  }
+
+  @Benchmark
+  public Fields parse() {
+    return new Fields(fieldsSpec);
+  }
+
+  @Benchmark
+  public Fields parseAndGetNested() {
+    return new Fields(fieldsSpec).getNestedField("build", Fields.SHORT, Fields.LONG).getNestedField("buildType");
+  }
+
+  @Benchmark
+  public int isIncluded() {
+    final Fields build = myFields.getNestedField("build", Fields.SHORT, Fields.LONG);
+    int result = 0;
+    for (String field : new String[]{"id", "number", "status", "statusText", "buildType", "changes", "tags", "agent", "triggered", "properties"}) {
+      if (Boolean.TRUE.equals(build.isIncluded(field, true, true))) result++;
+    }
+    return result;
+  }
+}
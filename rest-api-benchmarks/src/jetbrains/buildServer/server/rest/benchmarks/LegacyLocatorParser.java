@@ -0,0 +1,171 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.rest.benchmarks;
+
+import java.util.*;
+import jetbrains.buildServer.server.rest.errors.LocatorProcessException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Frozen copy of the substring-based locator parsing which was used by {@link jetbrains.buildServer.server.rest.data.Locator} before
+ * the index-based parser was introduced. Kept only as a baseline for the benchmarks, base64 escaping and string pooling are omitted.
+ */
+final class LegacyLocatorParser {
+  private static final String DIMENSION_NAME_VALUE_DELIMITER = ":";
+  private static final String DIMENSIONS_DELIMITER = ",";
+  private static final String DIMENSION_COMPLEX_VALUE_START_DELIMITER = "(";
+  private static final String DIMENSION_COMPLEX_VALUE_END_DELIMITER = ")";
+  private static final List<String> LIST_WITH_EMPTY_STRING = Arrays.asList("");
+  private static final String ANY_LITERAL = "$any";
+
+  private LegacyLocatorParser() {
+  }
+
+  @NotNull
+  static HashMap<String, List<String>> parse(@NotNull final String locator) {
+    HashMap<String, List<String>> result = new HashMap<>();
+    String currentDimensionName;
+    String currentDimensionValue;
+    int parsedIndex = 0;
+    while (parsedIndex < locator.length()) {
+      //expecting name start at parsedIndex
+      int nameEnd = locator.length();
+
+      String nextDelimeter = null;
+      int currentIndex = parsedIndex;
+      while (currentIndex < locator.length()) {
+        if (locator.startsWith(DIMENSIONS_DELIMITER, currentIndex)) {
+          nextDelimeter = DIMENSIONS_DELIMITER;
+          nameEnd = currentIndex;
+          break;
+        }
+        if (locator.startsWith(DIMENSION_COMPLEX_VALUE_START_DELIMITER, currentIndex)) {
+          nextDelimeter = DIMENSION_COMPLEX_VALUE_START_DELIMITER;
+          nameEnd = currentIndex;
+          break;
+        }
+        if (locator.startsWith(DIMENSION_NAME_VALUE_DELIMITER, currentIndex)) {
+          nextDelimeter = DIMENSION_NAME_VALUE_DELIMITER;
+          nameEnd = currentIndex;
+          break;
+        }
+        currentIndex++;
+      }
+
+      if (nameEnd == parsedIndex) {
+        throw new LocatorProcessException(locator, parsedIndex, "Could not find dimension name, found '" + nextDelimeter + "' instead");
+      }
+
+      currentDimensionName = locator.substring(parsedIndex, nameEnd);
+      if (!isValidName(currentDimensionName)) {
+        throw new LocatorProcessException(locator, parsedIndex, "Invalid dimension name :'" + currentDimensionName + "'. Should contain only alpha-numeric symbols");
+      }
+      currentDimensionValue = "";
+      parsedIndex = nameEnd;
+      if (nextDelimeter != null) {
+        if (DIMENSIONS_DELIMITER.equals(nextDelimeter)) {
+          parsedIndex = nameEnd + nextDelimeter.length();
+        } else {
+          if (DIMENSION_NAME_VALUE_DELIMITER.equals(nextDelimeter)) {
+            parsedIndex = nameEnd + nextDelimeter.length();
+          }
+
+          if (DIMENSION_COMPLEX_VALUE_START_DELIMITER.equals(nextDelimeter)) {
+            parsedIndex = nameEnd;
+          }
+
+          //here begins the value at parsedIndex
+          final String valueAndRest = locator.substring(parsedIndex);
+          if (valueAndRest.startsWith(DIMENSION_COMPLEX_VALUE_START_DELIMITER)) {
+            //complex value detected
+            final int complexValueEnd = findNextOrEndOfStringConsideringBraces(valueAndRest, null);
+            if (complexValueEnd < 0) {
+              throw new LocatorProcessException(locator, parsedIndex + DIMENSION_COMPLEX_VALUE_START_DELIMITER.length(),
+                                                "Could not find matching '" + DIMENSION_COMPLEX_VALUE_END_DELIMITER + "'");
+            }
+            currentDimensionValue = valueAndRest.substring(DIMENSION_COMPLEX_VALUE_START_DELIMITER.length(), complexValueEnd - DIMENSION_COMPLEX_VALUE_END_DELIMITER.length());
+            parsedIndex = parsedIndex + complexValueEnd;
+            if (parsedIndex != locator.length()) {
+              if (!locator.startsWith(DIMENSIONS_DELIMITER, parsedIndex)) {
+                throw new LocatorProcessException(locator, parsedIndex, "No dimensions delimiter '" + DIMENSIONS_DELIMITER + "' after complex value");
+              } else {
+                parsedIndex += DIMENSIONS_DELIMITER.length();
+              }
+            }
+          } else {
+            int valueEnd = findNextOrEndOfStringConsideringBraces(valueAndRest, DIMENSIONS_DELIMITER);
+            if (valueEnd < 0) {
+              throw new LocatorProcessException(locator, parsedIndex, "Could not find matching '" + DIMENSION_COMPLEX_VALUE_END_DELIMITER + "'");
+            } else if (valueEnd == valueAndRest.length()) {
+              currentDimensionValue = valueAndRest;
+              parsedIndex = locator.length();
+            } else {
+              currentDimensionValue = valueAndRest.substring(0, valueEnd);
+              parsedIndex = parsedIndex + valueEnd + DIMENSIONS_DELIMITER.length();
+            }
+            if (ANY_LITERAL.equals(currentDimensionValue)) {
+              currentDimensionValue = ANY_LITERAL;
+            }
+          }
+        }
+      }
+      final List<String> currentList = result.get(currentDimensionName);
+      final List<String> newList;
+      if (currentList == null) {
+        newList = currentDimensionValue.equals("") ? LIST_WITH_EMPTY_STRING : Arrays.asList(currentDimensionValue);
+      } else {
+        newList = new ArrayList<>(currentList);
+        newList.add(currentDimensionValue);
+      }
+
+      result.put(currentDimensionName, newList);
+    }
+
+    return result;
+  }
+
+  private static int findNextOrEndOfStringConsideringBraces(@NotNull final String text, @Nullable final String stopText) {
+    int pos = 0;
+    int nesting = 0;
+    while (pos < text.length()) {
+      if (text.startsWith(DIMENSION_COMPLEX_VALUE_START_DELIMITER, pos)) {
+        nesting++;
+        pos = pos + DIMENSION_COMPLEX_VALUE_START_DELIMITER.length();
+      } else if (text.startsWith(DIMENSION_COMPLEX_VALUE_END_DELIMITER, pos)) {
+        if (nesting != 0) {
+          nesting--;
+        }
+        pos = pos + DIMENSION_COMPLEX_VALUE_END_DELIMITER.length();
+        if (nesting == 0 && stopText == null) return pos;
+      } else if (nesting == 0 && stopText != null && text.startsWith(stopText, pos)) {
+        return pos;
+      } else {
+        pos++;
+      }
+    }
+    if (nesting != 0) return -pos;
+    return pos;
+  }
+
+  private static boolean isValidName(@NotNull final String name) {
+    for (int i = 0; i < name.length(); i++) {
+      if (!Character.isLetter(name.charAt(i)) && !Character.isDigit(name.charAt(i))) return false;
+    }
+    return true;
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.rest.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Loads checked-in corpora of representative locators from "locators/&lt;name&gt;.txt" resources.
+ */
+public final class LocatorCorpus {
+  public static final String BUILDS = "builds";
+  public static final String TESTS = "tests";
+  public static final String CHANGES = "changes";
+
+  private LocatorCorpus() {
+  }
+
+  @NotNull
+  public static List<String> load(@NotNull final String name) {
+    final String resource = "locators/" + name + ".txt";
+    final InputStream stream = LocatorCorpus.class.getClassLoader().getResourceAsStream(resource);
+    if (stream == null) {
+      throw new IllegalArgumentException("Unknown locators corpus: '" + name + "'");
+    }
+    final List<String> result = new ArrayList<>();
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        line = line.trim();
+        if (!line.isEmpty() && !line.startsWith("#")) {
+          result.add(line);
+        }
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Error reading " + resource, e);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.rest.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import jetbrains.buildServer.server.rest.data.Locator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the substring-based locator parsing used previously with the current index-based parser,
+ * with and without the parsed locators cache.
+ * Each invocation parses the whole corpus, so the score is the time per corpus.
+ *
+ * Run with: java -jar rest-api-benchmarks/target/benchmarks.jar LocatorParsingBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LocatorParsingBenchmark {
+  @Param({LocatorCorpus.BUILDS, LocatorCorpus.TESTS, LocatorCorpus.CHANGES})
+  public String corpus;
+
+  private List<String> myLocators;
+
+  @Setup
+  public void setUp() {
+    myLocators = LocatorCorpus.load(corpus);
+  }
+
+  @Benchmark
+  public void legacyParser(final Blackhole blackhole) {
+    for (String locator : myLocators) {
+      blackhole.consume(LegacyLocatorParser.parse(locator));
+    }
+  }
+
+  @Benchmark
+  public void locatorNoCache(final NoParsedCache state, final Blackhole blackhole) {
+    for (String locator : myLocators) {
+      blackhole.consume(new Locator(locator));
+    }
+  }
+
+  @Benchmark
+  public void locatorCached(final ParsedCache state, final Blackhole blackhole) {
+    for (String locator : myLocators) {
+      blackhole.consume(new Locator(locator));
+    }
+  }
+
+  /**
+   * Parsing of the same text in a new request: each Locator tracks used dimensions on its own.
+   */
+  @Benchmark
+  public void locatorCachedWithUsage(final ParsedCache state, final Blackhole blackhole) {
+    for (String locator : myLocators) {
+      final Locator result = new Locator(locator);
+      for (String dimension : result.getDefinedDimensions()) {
+        blackhole.consume(result.getDimensionValue(dimension));
+      }
+      blackhole.consume(result.getUnusedDimensions());
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class NoParsedCache {
+    @Setup(Level.Iteration)
+    public void setUp() {
+      System.setProperty(Locator.PARSED_CACHE_MAX_SIZE, "0");
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class ParsedCache {
+    @Setup(Level.Iteration)
+    public void setUp() {
+      System.clearProperty(Locator.PARSED_CACHE_MAX_SIZE);
+    }
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.rest.benchmarks;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import jetbrains.buildServer.server.rest.data.problem.TestCountersData;
+import jetbrains.buildServer.server.rest.data.problem.scope.TestScope;
+import jetbrains.buildServer.server.rest.data.problem.scope.TestScopeFilterImpl;
+import jetbrains.buildServer.server.rest.data.problem.scope.TestScopeInfo;
+import jetbrains.buildServer.server.rest.data.problem.scope.TestScopesCollector;
+import jetbrains.buildServer.server.rest.data.util.tree.ScopeTree;
+import jetbrains.buildServer.serverSide.BuildPromotion;
+import jetbrains.buildServer.serverSide.STestRun;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Test scope tree construction for a single build with 100k test runs (10 suites x 10 packages x 50 classes x 20 tests).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScopeTreeBenchmark {
+  private ServerFixture myServer;
+  private TestScopesCollector myCollector;
+  private BuildPromotion myPromotion;
+  private List<STestRun> myTestRuns;
+  private List<TestScope> myClassScopes;
+  private List<TestScope> myFreshClassScopes;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    myServer = new ServerFixture();
+    myServer.start();
+    myPromotion = myServer.createBuildWithTests(10, 10, 50, 20);
+    //noinspection ConstantConditions
+    myTestRuns = myPromotion.getAssociatedBuild().getFullStatistics().getAllTests();
+    myCollector = myServer.getTestScopesCollector();
+    myClassScopes = groupByClass();
+  }
+
+  /**
+   * TestScope caches its path and counters, so every tree is built from new instances.
+   */
+  @Setup(Level.Invocation)
+  public void copyScopes() {
+    myFreshClassScopes = myClassScopes.stream().map(scope -> TestScope.withBuild(scope, scope.getTestRuns(), myPromotion)).collect(Collectors.toList());
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    myServer.stop();
+  }
+
+  @Benchmark
+  public ScopeTree<STestRun, TestCountersData> groupAndBuildTree() {
+    return new ScopeTree<>(TestScopeInfo.ROOT, new TestCountersData(), groupByClass());
+  }
+
+  @Benchmark
+  public ScopeTree<STestRun, TestCountersData> buildTree() {
+    return new ScopeTree<>(TestScopeInfo.ROOT, new TestCountersData(), myFreshClassScopes);
+  }
+
+  private List<TestScope> groupByClass() {
+    return myCollector.splitByBuildType(myCollector.groupByClass(myTestRuns.stream(), new TestScopeFilterImpl(Collections.emptyList(), "")), false, myPromotion)
+                      .collect(Collectors.toList());
+  }
+}
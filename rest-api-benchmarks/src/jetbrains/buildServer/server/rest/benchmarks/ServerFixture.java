@@ -0,0 +1,151 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.rest.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import jetbrains.buildServer.buildTriggers.vcs.BuildBuilder;
+import jetbrains.buildServer.server.rest.data.finder.BaseFinderTest;
+import jetbrains.buildServer.server.rest.data.finder.impl.ChangeFinder;
+import jetbrains.buildServer.server.rest.data.finder.impl.BuildPromotionFinder;
+import jetbrains.buildServer.server.rest.data.problem.scope.TestScopeFilterProducer;
+import jetbrains.buildServer.server.rest.data.problem.scope.TestScopesCollector;
+import jetbrains.buildServer.server.rest.util.BeanContext;
+import jetbrains.buildServer.serverSide.BuildPromotion;
+import jetbrains.buildServer.serverSide.SFinishedBuild;
+import jetbrains.buildServer.serverSide.impl.BuildTypeEx;
+import jetbrains.buildServer.serverSide.impl.MockVcsSupport;
+import jetbrains.buildServer.serverSide.impl.ProjectEx;
+import jetbrains.buildServer.vcs.VcsRootInstance;
+import org.jetbrains.annotations.NotNull;
+
+import static jetbrains.buildServer.buildTriggers.vcs.ModificationDataBuilder.modification;
+
+/**
+ * In-memory server from server-test-core with all the REST finders registered, see {@link BaseFinderTest}.
+ * Used by the benchmarks to get a synthetic build history without a real server.
+ */
+public class ServerFixture extends BaseFinderTest<BuildPromotion> {
+  public static final int PROJECTS = 3;
+  public static final int BUILD_TYPES_PER_PROJECT = 5;
+
+  private final List<BuildPromotion> myPromotions = new ArrayList<>();
+
+  public void start() throws Exception {
+    setUp();
+  }
+
+  public void stop() throws Exception {
+    tearDown();
+  }
+
+  /**
+   * Creates finished builds evenly distributed between {@link #PROJECTS} x {@link #BUILD_TYPES_PER_PROJECT} build configurations,
+   * every fifth build is failed.
+   */
+  public void createBuildHistory(final int buildsCount) {
+    final List<BuildTypeEx> buildTypes = new ArrayList<>();
+    for (int i = 0; i < PROJECTS; i++) {
+      final ProjectEx project = myFixture.createProject("project" + i, "Project " + i);
+      for (int j = 0; j < BUILD_TYPES_PER_PROJECT; j++) {
+        buildTypes.add(project.createBuildType("buildType" + j));
+      }
+    }
+
+    for (int i = 0; i < buildsCount; i++) {
+      final BuildTypeEx buildType = buildTypes.get(i % buildTypes.size());
+      final SFinishedBuild build = i % 5 == 4 ? build().in(buildType).failed().finish() : build().in(buildType).finish();
+      myPromotions.add(build.getBuildPromotion());
+    }
+  }
+
+  /**
+   * Creates a single finished build with the test runs specified, test names are "suite&lt;s&gt;: package&lt;p&gt;.Class&lt;c&gt;.test&lt;t&gt;".
+   */
+  @NotNull
+  public BuildPromotion createBuildWithTests(final int suites, final int packagesPerSuite, final int classesPerPackage, final int testsPerClass) {
+    final BuildTypeEx buildType = myFixture.createProject("tests", "Tests").createBuildType("tests");
+    BuildBuilder builder = build().in(buildType);
+    for (int s = 0; s < suites; s++) {
+      builder = builder.startSuite("suite" + s);
+      for (int p = 0; p < packagesPerSuite; p++) {
+        for (int c = 0; c < classesPerPackage; c++) {
+          for (int t = 0; t < testsPerClass; t++) {
+            builder = builder.withTest("package" + p + ".Class" + c + ".test" + t, t % 10 != 0);
+          }
+        }
+      }
+      builder = builder.endSuite();
+    }
+    return builder.finish().getBuildPromotion();
+  }
+
+  /**
+   * Creates a VCS root with a linear history of the specified number of changes and a VCS root with a single change made before them.
+   * @return the roots: the one with the long history first
+   */
+  @NotNull
+  public List<VcsRootInstance> createChangeHistory(final int changesCount) {
+    final MockVcsSupport vcs = new MockVcsSupport("vcs");
+    myFixture.getVcsManager().registerVcsSupport(vcs);
+    final ProjectEx project = myFixture.createProject("changes", "Changes");
+    final BuildTypeEx buildType = project.createBuildType("changes");
+    final BuildTypeEx rareBuildType = project.createBuildType("rareChanges");
+    final VcsRootInstance root = buildType.getVcsRootInstanceForParent(myFixture.addVcsRoot(vcs.getName(), "", buildType));
+    final VcsRootInstance rareRoot = rareBuildType.getVcsRootInstanceForParent(myFixture.addVcsRoot(vcs.getName(), "", rareBuildType));
+    assert root != null && rareRoot != null;
+
+    myFixture.addModification(modification().in(rareRoot).version("0"));
+    for (int i = 1; i <= changesCount; i++) {
+      myFixture.addModification(modification().in(root).version(String.valueOf(i)).parentVersions(String.valueOf(i - 1)));
+    }
+    final List<VcsRootInstance> result = new ArrayList<>();
+    result.add(root);
+    result.add(rareRoot);
+    return result;
+  }
+
+  @NotNull
+  public List<BuildPromotion> getPromotions() {
+    return myPromotions;
+  }
+
+  @NotNull
+  public BuildPromotionFinder getBuildPromotionFinder() {
+    return myBuildPromotionFinder;
+  }
+
+  @NotNull
+  public ChangeFinder getChangeFinder() {
+    return myChangeFinder;
+  }
+
+  @NotNull
+  public TestScopesCollector getTestScopesCollector() {
+    return new TestScopesCollector(myTestOccurrenceFinder, new TestScopeFilterProducer(myBuildTypeFinder));
+  }
+
+  @NotNull
+  public BeanContext getBeanContext() {
+    return getBeanContext(myFixture);
+  }
+
+  @NotNull
+  public <T> T getSingletonService(@NotNull final Class<T> serviceClass) {
+    return myFixture.getSingletonService(serviceClass);
+  }
+}
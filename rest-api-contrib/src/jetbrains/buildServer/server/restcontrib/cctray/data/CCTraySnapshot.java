@@ -0,0 +1,311 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.restcontrib.cctray.data;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.intellij.openapi.diagnostic.Logger;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import jetbrains.buildServer.ServiceLocator;
+import jetbrains.buildServer.server.restcontrib.cctray.model.Project;
+import jetbrains.buildServer.serverSide.*;
+import jetbrains.buildServer.users.User;
+import jetbrains.buildServer.util.EncryptUtil;
+import jetbrains.buildServer.vcs.VcsModification;
+import jetbrains.buildServer.vcs.VcsRoot;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Server-side snapshot of the CCTray feed.
+ * <p/>
+ * Keeps calculated {@link Project} entries per build configuration and drops them on the build server events which can change them
+ * (builds started/finished, queue changes, new pending changes), so that polling does not recalculate
+ * the state of all the build configurations each time.
+ * Also keeps serialized feeds per user, locator and media type to be served as is while none of the feed's build configurations has changed.
+ * Settings changes which can change the set of the build configurations in a feed outdate all the entries.
+ * <p/>
+ * As not all the changes produce events (e.g. queue estimates or user permissions), each entry is also recalculated once it gets older
+ * than {@link #MAX_AGE_SECONDS}.
+ */
+public class CCTraySnapshot implements ServerExtension {
+  private static final Logger LOG = Logger.getInstance(CCTraySnapshot.class.getName());
+
+  public static final String ENABLED = "rest.cctray.snapshot.enabled";
+  public static final String MAX_AGE_SECONDS = "rest.cctray.snapshot.maxAgeSeconds";
+  public static final String MAX_FEEDS = "rest.cctray.snapshot.maxFeeds";
+
+  @NotNull private final ServiceLocator myServiceLocator;
+  @NotNull private final ConcurrentHashMap<String, Entry<Project>> myProjects = new ConcurrentHashMap<>();
+  /**
+   * Incremented on the changes which can affect any feed, outdates all the entries.
+   */
+  @NotNull private final AtomicLong myGeneration = new AtomicLong();
+  /**
+   * Version of each build configuration state, taken from {@link #myVersionsCounter} on each change of the build configuration.
+   */
+  @NotNull private final ConcurrentHashMap<String, Long> myBuildTypeVersions = new ConcurrentHashMap<>();
+  @NotNull private final AtomicLong myVersionsCounter = new AtomicLong();
+  @NotNull private final Object myFeedsLock = new Object();
+  @Nullable private volatile FeedsHolder myFeeds;
+
+  public CCTraySnapshot(@NotNull final SBuildServer server, @NotNull final ServiceLocator serviceLocator) {
+    myServiceLocator = serviceLocator;
+    server.addListener(new SnapshotUpdater());
+  }
+
+  public static boolean isEnabled() {
+    return TeamCityProperties.getBooleanOrTrue(ENABLED);
+  }
+
+  @NotNull
+  public Project getProject(@NotNull final SBuildType buildType) {
+    final String id = buildType.getInternalId();
+    final Entry<Project> existing = myProjects.get(id);
+    if (existing != null && isUpToDate(existing)) {
+      return existing.getValue();
+    }
+
+    // versions are taken before the calculation so that a change made during it outdates the entry
+    final long generation = myGeneration.get();
+    final Map<String, Long> versions = Collections.singletonMap(id, getVersion(id));
+    final Entry<Project> result = new Entry<>(new Project(myServiceLocator, buildType), generation, versions);
+    myProjects.put(id, result);
+    return result.getValue();
+  }
+
+  /**
+   * @param user        the user the feed is calculated for, the feed is not cached when <tt>null</tt>
+   * @param feedKey     the key identifying the feed content for the user: locator, media type, etc.
+   * @param buildTypes  finds the build configurations of the feed
+   * @param feedCreator calculates serialized feed for the build configurations
+   * @return serialized feed, possibly calculated earlier
+   */
+  @NotNull
+  public Feed getFeed(@Nullable final User user,
+                      @NotNull final String feedKey,
+                      @NotNull final Supplier<List<SBuildType>> buildTypes,
+                      @NotNull final Function<List<SBuildType>, byte[]> feedCreator) {
+    final Cache<String, Entry<Feed>> feeds = user == null ? null : getFeeds();
+    if (feeds == null) {
+      return new Feed(feedCreator.apply(buildTypes.get()));
+    }
+
+    final String key = user.getId() + "\n" + feedKey;
+    final Entry<Feed> existing = feeds.getIfPresent(key);
+    if (existing != null && isUpToDate(existing)) {
+      return existing.getValue();
+    }
+
+    final long generation = myGeneration.get();
+    final List<SBuildType> feedBuildTypes = buildTypes.get();
+    final Map<String, Long> versions = new HashMap<>(feedBuildTypes.size());
+    for (SBuildType buildType : feedBuildTypes) {
+      versions.put(buildType.getInternalId(), getVersion(buildType.getInternalId()));
+    }
+    final Feed result = new Feed(feedCreator.apply(feedBuildTypes));
+    feeds.put(key, new Entry<>(result, generation, versions));
+    return result;
+  }
+
+  /**
+   * Outdates the entries which include the build configuration.
+   */
+  public void invalidate(@NotNull final SBuildType buildType) {
+    myBuildTypeVersions.put(buildType.getInternalId(), myVersionsCounter.incrementAndGet());
+    myProjects.remove(buildType.getInternalId());
+  }
+
+  /**
+   * Outdates all the entries, to be used on changes which can change the set of build configurations in the feeds.
+   */
+  public void invalidateAll() {
+    myGeneration.incrementAndGet();
+    myProjects.clear();
+  }
+
+  private long getVersion(@NotNull final String buildTypeId) {
+    final Long result = myBuildTypeVersions.get(buildTypeId);
+    return result == null ? 0 : result;
+  }
+
+  private boolean isUpToDate(@NotNull final Entry<?> entry) {
+    if (entry.myGeneration != myGeneration.get()) return false;
+    for (Map.Entry<String, Long> version : entry.myVersions.entrySet()) {
+      if (version.getValue() != getVersion(version.getKey())) return false;
+    }
+    return System.currentTimeMillis() - entry.myCreated < getMaxAge();
+  }
+
+  @Nullable
+  private Cache<String, Entry<Feed>> getFeeds() {
+    final int maxFeeds = TeamCityProperties.getInteger(MAX_FEEDS, 1000);
+    if (maxFeeds <= 0) {
+      return null;
+    }
+    FeedsHolder result = myFeeds;
+    if (result == null || result.myMaxSize != maxFeeds) {
+      synchronized (myFeedsLock) {
+        result = myFeeds;
+        if (result == null || result.myMaxSize != maxFeeds) {
+          result = new FeedsHolder(maxFeeds);
+          myFeeds = result;
+        }
+      }
+    }
+    return result.myCache;
+  }
+
+  private static long getMaxAge() {
+    return TeamCityProperties.getLong(MAX_AGE_SECONDS, 30) * 1000;
+  }
+
+  private static class FeedsHolder {
+    private final int myMaxSize;
+    @NotNull private final Cache<String, Entry<Feed>> myCache;
+
+    private FeedsHolder(final int maxSize) {
+      myMaxSize = maxSize;
+      myCache = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+    }
+  }
+
+  private static class Entry<T> {
+    @NotNull private final T myValue;
+    private final long myCreated = System.currentTimeMillis();
+    /**
+     * The entry is outdated once the generation or the version of any of its build configurations changes.
+     */
+    private final long myGeneration;
+    @NotNull private final Map<String, Long> myVersions;
+
+    private Entry(@NotNull final T value, final long generation, @NotNull final Map<String, Long> versions) {
+      myValue = value;
+      myGeneration = generation;
+      myVersions = versions;
+    }
+
+    @NotNull
+    T getValue() {
+      return myValue;
+    }
+  }
+
+  public static class Feed {
+    @NotNull private final byte[] myContent;
+    @NotNull private final String myETag;
+
+    public Feed(@NotNull final byte[] content) {
+      myContent = content;
+      myETag = EncryptUtil.md5(new String(content, StandardCharsets.UTF_8));
+    }
+
+    @NotNull
+    public byte[] getContent() {
+      return myContent;
+    }
+
+    @NotNull
+    public String getETag() {
+      return myETag;
+    }
+  }
+
+  private class SnapshotUpdater extends BuildServerAdapter {
+    @Override
+    public void buildStarted(@NotNull final SRunningBuild build) {
+      invalidate(build.getBuildType());
+    }
+
+    @Override
+    public void buildFinished(@NotNull final SRunningBuild build) {
+      invalidate(build.getBuildType());
+    }
+
+    @Override
+    public void buildInterrupted(@NotNull final SRunningBuild build) {
+      invalidate(build.getBuildType());
+    }
+
+    @Override
+    public void buildTypeAddedToQueue(@NotNull final SQueuedBuild queuedBuild) {
+      invalidate(queuedBuild.getBuildType());
+    }
+
+    @Override
+    public void buildRemovedFromQueue(@NotNull final SQueuedBuild queued, final User user, final String comment) {
+      invalidate(queued.getBuildType());
+    }
+
+    @Override
+    public void buildTypeActiveStatusChanged(@NotNull final SBuildType buildType) {
+      invalidateAll(); // paused build configurations can be excluded from the feeds
+    }
+
+    @Override
+    public void buildTypePersisted(@NotNull final SBuildType buildType) {
+      invalidateAll();
+    }
+
+    @Override
+    public void buildTypeRegistered(@NotNull final SBuildType buildType) {
+      invalidateAll();
+    }
+
+    @Override
+    public void buildTypeUnregistered(@NotNull final SBuildType buildType) {
+      invalidateAll();
+      myBuildTypeVersions.remove(buildType.getInternalId());
+    }
+
+    @Override
+    public void buildTypeMoved(@NotNull final SBuildType buildType, @NotNull final SProject original) {
+      invalidateAll();
+    }
+
+    @Override
+    public void changeAdded(@NotNull final VcsModification modification, @NotNull final VcsRoot root, @Nullable final Collection<SBuildType> buildTypes) {
+      if (buildTypes == null) {
+        invalidateAll();
+        return;
+      }
+      for (SBuildType buildType : buildTypes) {
+        invalidate(buildType);
+      }
+    }
+
+    @Override
+    public void projectPersisted(@NotNull final String projectId) {
+      invalidateAll();
+    }
+
+    @Override
+    public void serverShutdown() {
+      LOG.debug("Clearing CCTray snapshot on server shutdown");
+      invalidateAll();
+    }
+  }
+}
@@ -72,12 +72,28 @@ public class Project {
     private SBuildType myBuildType;
     protected ServiceLocator myServiceLocator;
 
+    // the values are calculated once, so that the instance is an immutable snapshot of the build configuration state
+    private String myName;
+    private String myActivity;
+    private String myLastBuildStatus;
+    private String myLastBuildLabel;
+    private String myLastBuildTime;
+    private String myNextBuildTime;
+    private String myWebUrl;
+
     public Project() {
     }
 
     public Project(ServiceLocator serviceLocator, SBuildType buildType) {
         this.myServiceLocator = serviceLocator;
         myBuildType = buildType;
+        myName = calculateName();
+        myActivity = calculateActivity();
+        myLastBuildStatus = calculateLastBuildStatus();
+        myLastBuildLabel = calculateLastBuildLabel();
+        myLastBuildTime = calculateLastBuildTime();
+        myNextBuildTime = calculateNextBuildTime();
+        myWebUrl = calculateWebUrl();
     }
 
     /**
@@ -90,7 +106,7 @@ public class Project {
     @XmlJavaTypeAdapter(CollapsedStringAdapter.class)
     @XmlSchemaType(name = "NMTOKEN")
     public String getName() {
-        return myBuildType.getFullName();
+        return myName;
     }
 
     /**
@@ -102,23 +118,7 @@ public class Project {
     @XmlAttribute(name = "activity", required = true)
     @XmlJavaTypeAdapter(CollapsedStringAdapter.class)
     public String getActivity() {
-        final List<SRunningBuild> runningBuilds = myBuildType.getRunningBuilds();
-        if (runningBuilds.size() > 0) {
-            return "Building";
-        }
-      if (TeamCityProperties.getBoolean("rest.cctray.extendedActivity")) {
-
-//        if (myBuildType.isInQueue()) {
-//            return "Waiting in queue"; // non standard, makes cctray hanging
-//        }
-        if (myBuildType.isPaused()) {
-          return "Paused"; // non standard
-        }
-        if (myBuildType.getPendingChanges().size() > 0) {
-          return "Has pending changes"; // non standard
-        }
-      }
-      return "Sleeping";
+        return myActivity;
     }
 
     /**
@@ -130,13 +130,7 @@ public class Project {
     @XmlAttribute(name = "lastBuildStatus", required = true)
     @XmlJavaTypeAdapter(CollapsedStringAdapter.class)
     public String getLastBuildStatus() {
-        if (myBuildType.getStatus().isFailed()) {
-            return "Failure";
-        }
-        if (myBuildType.getStatus().isSuccessful()) {
-            return "Success";
-        }
-        return "Unknown";
+        return myLastBuildStatus;
     }
 
     /**
@@ -149,12 +143,7 @@ public class Project {
     @XmlJavaTypeAdapter(CollapsedStringAdapter.class)
     @XmlSchemaType(name = "NMTOKEN")
     public String getLastBuildLabel() {
-        final SFinishedBuild lastBuild = myBuildType.getLastChangesFinished();
-        if (lastBuild == null) {
-            // is this OK?
-            return null;
-        }
-        return String.valueOf(lastBuild.getBuildNumber());
+        return myLastBuildLabel;
     }
 
     /**
@@ -166,12 +155,7 @@ public class Project {
     @XmlAttribute(name = "lastBuildTime", required = true)
     @XmlSchemaType(name = "dateTime")
     public String getLastBuildTime() {
-        final SFinishedBuild lastBuild = myBuildType.getLastChangesFinished();
-        if (lastBuild == null) {
-            // is this OK?
-            return null;
-        }
-        return getFormattedTime(lastBuild.getStartDate());
+        return myLastBuildTime;
     }
 
     /**
@@ -183,6 +167,62 @@ public class Project {
     @XmlAttribute(name = "nextBuildTime")
     @XmlSchemaType(name = "dateTime")
     public String getNextBuildTime() {
+        return myNextBuildTime;
+    }
+
+    private String calculateName() {
+        return myBuildType.getFullName();
+    }
+
+    private String calculateActivity() {
+        final List<SRunningBuild> runningBuilds = myBuildType.getRunningBuilds();
+        if (runningBuilds.size() > 0) {
+            return "Building";
+        }
+      if (TeamCityProperties.getBoolean("rest.cctray.extendedActivity")) {
+
+//        if (myBuildType.isInQueue()) {
+//            return "Waiting in queue"; // non standard, makes cctray hanging
+//        }
+        if (myBuildType.isPaused()) {
+          return "Paused"; // non standard
+        }
+        if (myBuildType.getPendingChanges().size() > 0) {
+          return "Has pending changes"; // non standard
+        }
+      }
+      return "Sleeping";
+    }
+
+    private String calculateLastBuildStatus() {
+        if (myBuildType.getStatus().isFailed()) {
+            return "Failure";
+        }
+        if (myBuildType.getStatus().isSuccessful()) {
+            return "Success";
+        }
+        return "Unknown";
+    }
+
+    private String calculateLastBuildLabel() {
+        final SFinishedBuild lastBuild = myBuildType.getLastChangesFinished();
+        if (lastBuild == null) {
+            // is this OK?
+            return null;
+        }
+        return String.valueOf(lastBuild.getBuildNumber());
+    }
+
+    private String calculateLastBuildTime() {
+        final SFinishedBuild lastBuild = myBuildType.getLastChangesFinished();
+        if (lastBuild == null) {
+            // is this OK?
+            return null;
+        }
+        return getFormattedTime(lastBuild.getStartDate());
+    }
+
+    private String calculateNextBuildTime() {
         final List<SQueuedBuild> queuedBuilds = myBuildType.getQueuedBuilds(null);
         for (SQueuedBuild build : queuedBuilds) {
             if (!build.isPersonal()) {
@@ -199,6 +239,11 @@ public class Project {
         return null;
     }
 
+    private String calculateWebUrl() {
+        final WebLinks webLinks = myServiceLocator.getSingletonService(WebLinks.class);
+        return webLinks.getConfigurationHomePageUrl(myBuildType);
+    }
+
     private String getFormattedTime(final Date date) {
       final String withoutTimezone = (new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS", Locale.ENGLISH)).format(date);
       final String timezone = (new SimpleDateFormat("Z", Locale.ENGLISH)).format(date);
@@ -223,7 +268,6 @@ public class Project {
      */
     @XmlAttribute(name = "webUrl", required = true)
     public String getWebUrl() {
-        final WebLinks webLinks = myServiceLocator.getSingletonService(WebLinks.class);
-        return webLinks.getConfigurationHomePageUrl(myBuildType);
+        return myWebUrl;
     }
 }
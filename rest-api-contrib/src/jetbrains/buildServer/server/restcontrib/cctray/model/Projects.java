@@ -90,6 +90,7 @@ import org.jetbrains.annotations.NotNull;
 public class Projects {
 
     private List<SBuildType> myBuildTypes;
+    private List<Project> myProjects;
     protected ServiceLocator myServiceLocator;
 
     public Projects() {
@@ -100,6 +101,13 @@ public class Projects {
         myBuildTypes = buildTypes;
     }
 
+    /**
+     * @param projects already calculated projects, e.g. taken from the snapshot
+     */
+    public Projects(@NotNull List<Project> projects) {
+        myProjects = projects;
+    }
+
     /**
      * Gets the value of the project property.
      * 
@@ -124,6 +132,9 @@ public class Projects {
      */
     @XmlElement(name = "Project", required = true)
     public List<Project> getProject() {
+        if (myProjects != null) {
+            return myProjects;
+        }
         //todo: check when empty projects collection
         return CollectionsUtil.convertCollection(myBuildTypes, new Converter<Project, SBuildType>() {
             public Project createFrom(@NotNull SBuildType source) {
@@ -16,21 +16,38 @@
 
 package jetbrains.buildServer.server.restcontrib.cctray.request;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
 import javax.inject.Singleton;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
-import javax.ws.rs.core.Context;
-import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.*;
+import javax.ws.rs.ext.ContextResolver;
+import javax.ws.rs.ext.Providers;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
 import jetbrains.buildServer.ServiceLocator;
+import jetbrains.buildServer.server.rest.APIController;
 import jetbrains.buildServer.server.rest.data.Locator;
 import jetbrains.buildServer.server.rest.data.finder.impl.BuildTypeFinder;
 import jetbrains.buildServer.server.rest.data.util.LocatorUtil;
+import jetbrains.buildServer.server.rest.errors.OperationException;
 import jetbrains.buildServer.server.rest.request.Constants;
+import jetbrains.buildServer.server.restcontrib.cctray.data.CCTraySnapshot;
 import jetbrains.buildServer.server.restcontrib.cctray.model.Projects;
+import jetbrains.buildServer.serverSide.SBuildServer;
+import jetbrains.buildServer.serverSide.SBuildType;
 import jetbrains.buildServer.serverSide.TeamCityProperties;
+import jetbrains.buildServer.serverSide.auth.SecurityContext;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * @author Yegor.Yarko
@@ -41,19 +58,118 @@ import org.jetbrains.annotations.NotNull;
 public class CCTrayRequest {
   @Context @NotNull private ServiceLocator myServiceLocator;
   @Context @NotNull private BuildTypeFinder myBuildTypeFinder;
+  @Context @NotNull private Providers myProviders;
+
+  @Nullable private volatile JAXBContext myJaxbContext;
 
   @GET
   @Produces({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON})
-  public Projects serveProjectsConvenienceCopy(@QueryParam("locator") String buildTypeLocator) {
-    return serveProjects(buildTypeLocator);
+  public Response serveProjectsConvenienceCopy(@QueryParam("locator") String buildTypeLocator, @Context HttpHeaders headers, @Context Request request) {
+    return serveProjects(buildTypeLocator, headers, request);
   }
 
+  /**
+   * Serves the feed from {@link CCTraySnapshot} when it is enabled: the serialized feed is reused while nothing has changed
+   * and "304 Not Modified" is returned for the matching "If-None-Match" request header.
+   */
   @GET
   @Path("/projects.xml")
   @Produces({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON})
-  public Projects serveProjects(@QueryParam("locator") String buildTypeLocator) {
+  public Response serveProjects(@QueryParam("locator") String buildTypeLocator, @Context HttpHeaders headers, @Context Request request) {
     String actualLocator = LocatorUtil.setDimension(buildTypeLocator, BuildTypeFinder.TEMPLATE_FLAG_DIMENSION_NAME, "false");
     actualLocator = Locator.setDimensionIfNotPresent(actualLocator, BuildTypeFinder.PAUSED, String.valueOf(TeamCityProperties.getBoolean("rest.cctray.includePausedBuildTypes")));
-    return new Projects(myServiceLocator, myBuildTypeFinder.getBuildTypes(null, actualLocator));
+
+    final CCTraySnapshot snapshot = getSnapshot();
+    if (snapshot == null) {
+      return Response.ok(new Projects(myServiceLocator, myBuildTypeFinder.getBuildTypes(null, actualLocator))).build();
+    }
+
+    final MediaType mediaType = getMediaType(headers);
+    final String locator = actualLocator;
+    final CCTraySnapshot.Feed feed = snapshot.getFeed(myServiceLocator.getSingletonService(SecurityContext.class).getAuthorityHolder().getAssociatedUser(),
+                                                      mediaType + "\n" + locator,
+                                                      () -> myBuildTypeFinder.getBuildTypes(null, locator),
+                                                      buildTypes -> serialize(getProjects(snapshot, buildTypes), mediaType));
+    final EntityTag eTag = new EntityTag(feed.getETag());
+    final Response.ResponseBuilder notModified = request.evaluatePreconditions(eTag);
+    if (notModified != null) {
+      return notModified.build();
+    }
+    return Response.ok(feed.getContent(), mediaType).tag(eTag).build();
+  }
+
+  @NotNull
+  private Projects getProjects(@NotNull final CCTraySnapshot snapshot, @NotNull final List<SBuildType> buildTypes) {
+    return new Projects(buildTypes.stream().map(snapshot::getProject).collect(Collectors.toList()));
+  }
+
+  @Nullable
+  private CCTraySnapshot getSnapshot() {
+    if (!CCTraySnapshot.isEnabled()) {
+      return null;
+    }
+    final Collection<CCTraySnapshot> snapshots = myServiceLocator.getSingletonService(SBuildServer.class).getExtensions(CCTraySnapshot.class);
+    return snapshots.isEmpty() ? null : snapshots.iterator().next();
+  }
+
+  /**
+   * Mimics Jersey choice between the produced media types: XML is preferred unless JSON is explicitly requested.
+   */
+  @NotNull
+  private static MediaType getMediaType(@NotNull final HttpHeaders headers) {
+    for (MediaType acceptable : headers.getAcceptableMediaTypes()) {
+      if (acceptable.isCompatible(MediaType.APPLICATION_XML_TYPE)) {
+        return MediaType.APPLICATION_XML_TYPE;
+      }
+      if (acceptable.isCompatible(MediaType.APPLICATION_JSON_TYPE)) {
+        return MediaType.APPLICATION_JSON_TYPE;
+      }
+    }
+    return MediaType.APPLICATION_XML_TYPE;
+  }
+
+  @NotNull
+  private byte[] serialize(@NotNull final Projects projects, @NotNull final MediaType mediaType) {
+    try {
+      if (MediaType.APPLICATION_JSON_TYPE.equals(mediaType)) {
+        return getObjectMapper().writeValueAsBytes(projects);
+      }
+      final Marshaller marshaller = getJaxbContext().createMarshaller();
+      marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, TeamCityProperties.getBoolean(APIController.REST_RESPONSE_PRETTYFORMAT));
+      final ByteArrayOutputStream result = new ByteArrayOutputStream();
+      marshaller.marshal(projects, result);
+      return result.toByteArray();
+    } catch (JAXBException | IOException e) {
+      throw new OperationException("Error serializing CCTray feed: " + e.getMessage(), e);
+    }
+  }
+
+  @NotNull
+  private JAXBContext getJaxbContext() throws JAXBException {
+    JAXBContext result = myJaxbContext;
+    if (result == null) {
+      result = JAXBContext.newInstance(Projects.class);
+      myJaxbContext = result;
+    }
+    return result;
+  }
+
+  /**
+   * @return the mapper used for all JSON responses so that the cached feed is the same as the one Jersey would write
+   */
+  @NotNull
+  private ObjectMapper getObjectMapper() {
+    final ContextResolver<ObjectMapper> resolver = myProviders.getContextResolver(ObjectMapper.class, MediaType.APPLICATION_JSON_TYPE);
+    final ObjectMapper result = resolver == null ? null : resolver.getContext(Projects.class);
+    if (result == null) {
+      throw new OperationException("No object mapper is registered for JSON responses");
+    }
+    return result;
+  }
+
+  void initForTests(@NotNull final ServiceLocator serviceLocator, @NotNull final BuildTypeFinder buildTypeFinder, @NotNull final Providers providers) {
+    myServiceLocator = serviceLocator;
+    myBuildTypeFinder = buildTypeFinder;
+    myProviders = providers;
   }
 }
\ No newline at end of file
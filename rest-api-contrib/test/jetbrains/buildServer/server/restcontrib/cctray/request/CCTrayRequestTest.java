@@ -0,0 +1,122 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.restcontrib.cctray.request;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.net.URI;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ContextResolver;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Providers;
+import jetbrains.buildServer.server.rest.data.finder.BaseFinderTest;
+import jetbrains.buildServer.server.rest.jersey.JacksonObjectMapperResolver;
+import jetbrains.buildServer.server.restcontrib.cctray.data.CCTraySnapshot;
+import jetbrains.buildServer.serverSide.SBuildType;
+import jetbrains.buildServer.serverSide.impl.BuildTypeImpl;
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class CCTrayRequestTest extends BaseFinderTest<SBuildType> {
+  private CCTrayRequest myRequest;
+
+  @Override
+  @BeforeMethod
+  public void setUp() throws Exception {
+    super.setUp();
+    myServer.registerExtension(CCTraySnapshot.class, "ccTraySnapshot", new CCTraySnapshot(myServer, myFixture));
+
+    final JacksonObjectMapperResolver resolver = new JacksonObjectMapperResolver();
+    myRequest = new CCTrayRequest();
+    myRequest.initForTests(myFixture, myBuildTypeFinder, new Providers() {
+      @Override
+      public <T> MessageBodyReader<T> getMessageBodyReader(final Class<T> type, final Type genericType, final Annotation[] annotations, final MediaType mediaType) {
+        return null;
+      }
+
+      @Override
+      public <T> MessageBodyWriter<T> getMessageBodyWriter(final Class<T> type, final Type genericType, final Annotation[] annotations, final MediaType mediaType) {
+        return null;
+      }
+
+      @Override
+      public <T extends Throwable> ExceptionMapper<T> getExceptionMapper(final Class<T> type) {
+        return null;
+      }
+
+      @Override
+      @SuppressWarnings("unchecked")
+      public <T> ContextResolver<T> getContextResolver(final Class<T> contextType, final MediaType mediaType) {
+        return ObjectMapper.class.equals(contextType) ? (ContextResolver<T>)resolver : null;
+      }
+    });
+    makeLoggedIn(createAdmin("admin"));
+  }
+
+  @Test
+  public void testFeedIsRecalculatedOnBuildFinish() {
+    final BuildTypeImpl otherBuildType = registerBuildType("other", "project");
+    final String locator = "id:" + myBuildType.getExternalId();
+
+    final Response first = serve(locator, null);
+    assertEquals(200, first.getStatus());
+    assertSame("Feed should be reused while nothing has changed", first.getEntity(), serve(locator, null).getEntity());
+
+    build().in(otherBuildType).finish();
+    final Response afterOtherBuild = serve(locator, null);
+    assertSame("Feed should not depend on the builds of other build configurations", first.getEntity(), afterOtherBuild.getEntity());
+
+    build().in(myBuildType).finish();
+    final Response afterBuild = serve(locator, null);
+    assertNotSame(first.getEntity(), afterBuild.getEntity());
+    assertFalse(first.getEntityTag().equals(afterBuild.getEntityTag()));
+  }
+
+  @Test
+  public void testNotModified() {
+    final Response first = serve(null, null);
+    assertEquals(200, first.getStatus());
+    assertNotNull(first.getEntityTag());
+
+    final Response notModified = serve(null, first.getEntityTag().toString());
+    assertEquals(304, notModified.getStatus());
+    assertNull(notModified.getEntity());
+
+    build().in(myBuildType).finish();
+    assertEquals("Outdated ETag should not match", 200, serve(null, first.getEntityTag().toString()).getStatus());
+  }
+
+  @NotNull
+  private Response serve(@Nullable final String locator, @Nullable final String ifNoneMatch) {
+    final ContainerRequest request = new ContainerRequest(URI.create("http://localhost/app/rest/"), URI.create("http://localhost/app/rest/cctray/projects.xml"),
+                                                          "GET", null, new MapPropertiesDelegate(), null);
+    request.header(HttpHeaders.ACCEPT, MediaType.APPLICATION_XML);
+    if (ifNoneMatch != null) {
+      request.header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+    }
+    return myRequest.serveProjects(locator, request, request);
+  }
+}
@@ -25,16 +25,15 @@ import graphql.schema.GraphQLSchema;
 import java.io.IOException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
-import java.util.concurrent.ExecutorService;
 import jetbrains.buildServer.server.graphql.model.agentPool.actions.*;
 import jetbrains.buildServer.server.graphql.model.buildType.incompatibility.*;
 import jetbrains.buildServer.server.graphql.resolver.*;
 import jetbrains.buildServer.server.graphql.resolver.agentPool.AgentPoolMutation;
 import jetbrains.buildServer.server.graphql.resolver.agentPool.AgentPoolResolver;
 import jetbrains.buildServer.server.graphql.resolver.agentPool.ProjectAgentPoolResolver;
+import jetbrains.buildServer.server.graphql.util.GraphQLDocumentCache;
+import jetbrains.buildServer.server.graphql.util.GraphQLResolverExecutor;
 import jetbrains.buildServer.server.graphql.util.ResolverExceptionHandler;
-import jetbrains.buildServer.serverSide.TeamCityProperties;
-import jetbrains.buildServer.util.executors.ExecutorsFactory;
 import kotlin.coroutines.CoroutineContext;
 import kotlinx.coroutines.ExecutorsKt;
 import org.apache.log4j.Level;
@@ -45,10 +44,9 @@ import org.springframework.context.annotation.Configuration;
 
 @Configuration
 public class GraphQLConfiguration {
-  private static final String GRAPHQL_RESOLVER_POOL_SIZE = "teamcity.graphql.resolvers.poolSize";
-  private static final int POOL_SIZE = TeamCityProperties.getInteger(GRAPHQL_RESOLVER_POOL_SIZE, 1);
-
-  private final ExecutorService myExecutor = ExecutorsFactory.newFixedDaemonExecutor("GraphQL resolver", POOL_SIZE);
+  @Autowired
+  @NotNull
+  private GraphQLResolverExecutor myExecutor;
 
   @Autowired
   @NotNull
@@ -108,6 +106,7 @@ public class GraphQLConfiguration {
     GraphQLSchema graphQLSchema = buildSchema(sdl);
     return GraphQL
       .newGraphQL(graphQLSchema)
+      .preparsedDocumentProvider(myDocumentCache)
       .queryExecutionStrategy(new AsyncExecutionStrategy(myExceptionHandler))
       .mutationExecutionStrategy(new AsyncSerialExecutionStrategy(myExceptionHandler))
       .subscriptionExecutionStrategy(new SubscriptionExecutionStrategy(myExceptionHandler))
@@ -118,6 +117,10 @@ public class GraphQLConfiguration {
   @NotNull
   private ResolverExceptionHandler myExceptionHandler;
 
+  @Autowired
+  @NotNull
+  private GraphQLDocumentCache myDocumentCache;
+
   private GraphQLSchema buildSchema(String sdl) {
     return SchemaParser.newParser()
                 .schemaString(sdl)
@@ -16,14 +16,25 @@
 
 package jetbrains.buildServer.server.graphql;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import graphql.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.*;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.ext.ContextResolver;
+import javax.ws.rs.ext.Providers;
+import jetbrains.buildServer.server.graphql.util.DataLoaders;
+import jetbrains.buildServer.server.graphql.util.GraphQLDocumentCache;
 import jetbrains.buildServer.server.graphql.util.GraphQLRequestBody;
+import jetbrains.buildServer.server.graphql.util.GraphQLResolverExecutor;
+import jetbrains.buildServer.server.rest.jersey.JacksonObjectMapperResolver;
 import jetbrains.buildServer.server.rest.request.Constants;
 import jetbrains.buildServer.util.NamedThreadFactory;
 import jetbrains.buildServer.web.util.SessionUser;
@@ -32,43 +43,70 @@ import org.jetbrains.annotations.NotNull;
 
 @Path(Constants.GRAPHQL_API_URL)
 public class GraphQLEndpoint {
+  // same names as used by Apollo clients for automatic persisted queries
+  private static final String PERSISTED_QUERY_NOT_FOUND = "PersistedQueryNotFound";
+  private static final String PERSISTED_QUERY_ID_INVALID = "PersistedQueryIdInvalid";
+
+  private static final ObjectMapper ourDefaultObjectMapper = new JacksonObjectMapperResolver().getContext(Map.class);
+
   @NotNull
   @Inject
   private GraphQL myGraphQL;
   @NotNull
-  private final ObjectMapper myObjectMapper = new ObjectMapper();
+  @Inject
+  private DataLoaders myDataLoaders;
+  @NotNull
+  @Inject
+  private GraphQLDocumentCache myDocumentCache;
+  @NotNull
+  @Inject
+  private GraphQLResolverExecutor myResolverExecutor;
+  @Context
+  private Providers myProviders;
 
   @GET
   @Produces({MediaType.APPLICATION_JSON})
-  public String get(@QueryParam("query") String query,
-                    @QueryParam("operationName") String operationName,
-                    @QueryParam("variables") String variables,
-                    @Context HttpServletRequest request)
+  public StreamingOutput get(@QueryParam("query") String query,
+                             @QueryParam("operationName") String operationName,
+                             @QueryParam("variables") String variables,
+                             @QueryParam("extensions") String extensions,
+                             @Context HttpServletRequest request)
     throws Exception {
-    return handle(new GraphQLRequestBody(query, operationName, variables), request);
+    return handle(new GraphQLRequestBody(query, operationName, variables, extensions), request);
   }
 
   @POST
   @Produces({MediaType.APPLICATION_JSON})
   @Consumes({MediaType.APPLICATION_JSON})
-  public String post(String json, @Context HttpServletRequest request) throws Exception {
+  public StreamingOutput post(String json, @Context HttpServletRequest request) throws Exception {
     return handle(GraphQLRequestBody.fromJson(json), request);
   }
 
   @NotNull
-  private String handle(@NotNull GraphQLRequestBody body, @NotNull HttpServletRequest request) throws Exception {
+  private StreamingOutput handle(@NotNull GraphQLRequestBody body, @NotNull HttpServletRequest request) throws Exception {
     ExecutionResult result;
-    if(body.query == null) {
-       result = ExecutionResultImpl.newExecutionResult()
-                                   .addError(GraphqlErrorException.newErrorException()
-                                                                  .message("Query can't be empty.")
-                                                                  .build())
-                                   .build();
+    String query = body.query;
+    String persistedQueryHash = body.getPersistedQueryHash();
+    if (query == null && persistedQueryHash != null) {
+      query = myDocumentCache.getQuery(persistedQueryHash);
+    }
+
+    if(query == null) {
+      result = persistedQueryHash != null ?
+               getPersistedQueryError(PERSISTED_QUERY_NOT_FOUND, persistedQueryHash) :
+               ExecutionResultImpl.newExecutionResult()
+                                  .addError(GraphqlErrorException.newErrorException()
+                                                                 .message("Query can't be empty.")
+                                                                 .build())
+                                  .build();
+    } else if (body.query != null && persistedQueryHash != null && !persistedQueryHash.equals(GraphQLDocumentCache.getHash(body.query))) {
+      result = getPersistedQueryError(PERSISTED_QUERY_ID_INVALID, persistedQueryHash);
     } else {
       ExecutionInput.Builder inputBuilder = ExecutionInput
         .newExecutionInput()
         .graphQLContext(builder -> builder.of(jetbrains.buildServer.server.graphql.util.Context.CURRENT_USER, SessionUser.getUser(request)).build())
-        .query(body.query);
+        .dataLoaderRegistry(myDataLoaders.createRegistry())
+        .query(query);
       if (body.operationName != null) {
         inputBuilder.operationName(body.operationName);
       }
@@ -76,9 +114,31 @@ public class GraphQLEndpoint {
         inputBuilder.variables(body.variables);
       }
       ExecutionInput input = inputBuilder.build();
-      result = NamedThreadFactory.executeWithNewThreadName("Processing GraphQL request", () -> myGraphQL.execute(input));
+      result = NamedThreadFactory.executeWithNewThreadName("Processing GraphQL request", () -> myResolverExecutor.runQuery(() -> myGraphQL.execute(input)));
     }
 
-    return myObjectMapper.writeValueAsString(result.toSpecification());
+    Map<String, Object> specification = result.toSpecification();
+    ObjectWriter writer = getObjectMapper().writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    return output -> writer.writeValue(output, specification);
+  }
+
+  @NotNull
+  private static ExecutionResult getPersistedQueryError(@NotNull String classification, @NotNull String persistedQueryHash) {
+    Map<String, Object> extensions = new LinkedHashMap<>();
+    extensions.put("classification", classification);
+    extensions.put("persistedQueryId", persistedQueryHash);
+    return ExecutionResultImpl.newExecutionResult()
+                              .addError(GraphqlErrorException.newErrorException()
+                                                             .message(classification)
+                                                             .extensions(extensions)
+                                                             .build())
+                              .build();
+  }
+
+  @NotNull
+  private ObjectMapper getObjectMapper() {
+    ContextResolver<ObjectMapper> resolver = myProviders == null ? null : myProviders.getContextResolver(ObjectMapper.class, MediaType.APPLICATION_JSON_TYPE);
+    ObjectMapper result = resolver == null ? null : resolver.getContext(Map.class);
+    return result != null ? result : ourDefaultObjectMapper;
   }
-}
\ No newline at end of file
+}
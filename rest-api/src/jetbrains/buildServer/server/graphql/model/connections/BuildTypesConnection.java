@@ -29,7 +29,7 @@ public class BuildTypesConnection implements ExtensibleConnection<BuildType, Bui
   private final PaginatingConnection<SBuildType, BuildType, BuildTypesConnectionEdge> myDelegate;
 
   public BuildTypesConnection(@NotNull List<SBuildType> data, @NotNull PaginationArguments paginationArguments) {
-    myDelegate = new PaginatingConnection<>(data, BuildTypesConnectionEdge::new, paginationArguments);
+    myDelegate = new PaginatingConnection<>(data, BuildTypesConnectionEdge::new, SBuildType::getExternalId, paginationArguments);
   }
 
   public int getCount() {
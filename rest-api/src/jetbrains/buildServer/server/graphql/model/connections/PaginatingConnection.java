@@ -19,37 +19,63 @@ package jetbrains.buildServer.server.graphql.model.connections;
 import com.intellij.openapi.diagnostic.Logger;
 import graphql.GraphqlErrorBuilder;
 import graphql.execution.DataFetcherResult;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.List;
+import graphql.relay.ConnectionCursor;
+import graphql.relay.DefaultConnectionCursor;
+import graphql.relay.DefaultPageInfo;
+import graphql.relay.PageInfo;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
 import java.util.function.Function;
 import jetbrains.buildServer.server.graphql.util.TeamCityGraphQLErrorType;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+/**
+ * Returns a page of edges for the given data. Edges are created only for the data in the returned page.
+ * <p/>
+ * The "after" cursor is either an offset cursor as returned in {@link #getPageInfo()}, which is resolved without scanning the data,
+ * or a key cursor as returned by the edges. Key cursors are looked up via the cursor function when one is provided,
+ * otherwise an edge is created for each item scanned.
+ */
 public class PaginatingConnection<DATA, MODEL, EDGE extends LazyEdge<DATA, MODEL>> implements ExtensibleConnection<MODEL, EDGE> {
+  private static final String OFFSET_CURSOR_PREFIX = "offset:";
+  private static final int CURSOR_NOT_FOUND = -1;
+  private static final int CURSOR_MISSING = -2;
+
   private final Logger LOG;
   @NotNull
-  private final List<DATA> myData;
+  private final Collection<DATA> myData;
   @NotNull
   private final Function<DATA, EDGE> myEdgeFactory;
+  @Nullable
+  private final Function<DATA, String> myCursorFunction;
   @NotNull
   private final PaginationArguments myPaginationArguments;
+  @Nullable
+  private List<DATA> myDataList;
+  @Nullable
+  private Page<DATA> myPage;
 
   public PaginatingConnection(@NotNull Collection<DATA> data, @NotNull Function<DATA, EDGE> edgeProducer, @NotNull PaginationArguments paginationArguments) {
-    if(data instanceof List) {
-      myData = (List<DATA>) data;
-    } else {
-      myData = new ArrayList<>(data);
-    }
+    this(data, edgeProducer, null, paginationArguments);
+  }
 
+  /**
+   * @param cursorFunction computes the same cursor as {@link LazyEdge#getCursor()} of the edge produced for the item, used to find the "after" cursor without creating edges
+   */
+  public PaginatingConnection(@NotNull Collection<DATA> data,
+                              @NotNull Function<DATA, EDGE> edgeProducer,
+                              @Nullable Function<DATA, String> cursorFunction,
+                              @NotNull PaginationArguments paginationArguments) {
+    myData = data;
     myEdgeFactory = edgeProducer;
+    myCursorFunction = cursorFunction;
     myPaginationArguments = paginationArguments;
     LOG = Logger.getInstance(getClass());
   }
 
   @NotNull
-  public List<DATA> getData() {
+  public Collection<DATA> getData() {
     return myData;
   }
 
@@ -68,41 +94,176 @@ public class PaginatingConnection<DATA, MODEL, EDGE extends LazyEdge<DATA, MODEL
                               .build();
     }
 
-    List<EDGE> result = new ArrayList<>();
+    Page<DATA> page = getPage();
+    if(page == null) {
+      LOG.warn("Cursor-based pagination fail: at least on edge does not have a cursor.");
 
-    int from = myPaginationArguments.getDirection() == PaginationArguments.Direction.FORWARD ? 0 : myData.size() - 1;
-    int direction = myPaginationArguments.getDirection() == PaginationArguments.Direction.FORWARD ? 1 : - 1;
-    if(myPaginationArguments.getAfter() != null) {
-      while(from >= 0 && from < myData.size()) {
-        EDGE edge = myEdgeFactory.apply(myData.get(from));
-        from += direction;
+      return DataFetcherResult.<List<EDGE>>newResult()
+                              .error(GraphqlErrorBuilder.newError().errorType(TeamCityGraphQLErrorType.SERVER_ERROR).build())
+                              .build();
+    }
 
-        if(edge.getCursor() == null) {
-          LOG.warn("Cursor-based pagination fail: at least on edge does not have a cursor.");
+    List<EDGE> result = new ArrayList<>(page.myItems.size());
+    for(DATA item : page.myItems) {
+      result.add(myEdgeFactory.apply(item));
+    }
 
-          return DataFetcherResult.<List<EDGE>>newResult()
-                                  .error(GraphqlErrorBuilder.newError().errorType(TeamCityGraphQLErrorType.SERVER_ERROR).build())
-                                  .build();
+    return DataFetcherResult.<List<EDGE>>newResult()
+      .data(result)
+      .localContext(myData)
+      .build();
+  }
 
-        }
-        if(edge.getCursor().equals(myPaginationArguments.getAfter())) {
-          break;
+  /**
+   * Page info is computed from the positions of the page in the data, so no edges are created for it.
+   * Start and end cursors are offset cursors which can be passed as "after" to get the next page in constant time.
+   */
+  @Nullable
+  @Override
+  public PageInfo getPageInfo() {
+    Page<DATA> page = getPage();
+    if(page == null) {
+      return null;
+    }
+
+    ConnectionCursor startCursor = null;
+    ConnectionCursor endCursor = null;
+    if(!page.myItems.isEmpty()) {
+      startCursor = new DefaultConnectionCursor(encodeOffsetCursor(toDataIndex(page.myStart)));
+      endCursor = new DefaultConnectionCursor(encodeOffsetCursor(toDataIndex(page.myStart + page.myItems.size() - 1)));
+    }
+
+    return new DefaultPageInfo(startCursor, endCursor, page.myStart > 0, page.myStart + page.myItems.size() < myData.size());
+  }
+
+  @NotNull
+  public static String encodeOffsetCursor(int index) {
+    return Base64.getEncoder().encodeToString((OFFSET_CURSOR_PREFIX + index).getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Nullable
+  static Integer decodeOffsetCursor(@NotNull String cursor) {
+    String decoded;
+    try {
+      decoded = new String(Base64.getDecoder().decode(cursor), StandardCharsets.UTF_8);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+    if(!decoded.startsWith(OFFSET_CURSOR_PREFIX)) {
+      return null;
+    }
+
+    try {
+      int index = Integer.parseInt(decoded.substring(OFFSET_CURSOR_PREFIX.length()));
+      return index >= 0 ? index : null;
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @return page of the data in the pagination direction or null if the "after" cursor can't be resolved because edges do not have cursors
+   */
+  @Nullable
+  private Page<DATA> getPage() {
+    if(myPage != null) {
+      return myPage;
+    }
+
+    int start = getStartPosition();
+    if(start == CURSOR_MISSING) {
+      return null;
+    }
+
+    int size = myData.size();
+    int maxCount = myPaginationArguments.getCount() == -1 ? size : myPaginationArguments.getCount();
+    int end = (int)Math.min((long)start + maxCount, size);
+
+    List<DATA> items = new ArrayList<>(Math.max(end - start, 0));
+    if(myPaginationArguments.getDirection() == PaginationArguments.Direction.FORWARD && !(myData instanceof List)) {
+      Iterator<DATA> it = myData.iterator();
+      for(int i = 0; i < end && it.hasNext(); i++) {
+        DATA item = it.next();
+        if(i >= start) {
+          items.add(item);
         }
       }
+    } else {
+      List<DATA> data = getDataList();
+      for(int pos = start; pos < end; pos++) {
+        items.add(data.get(toDataIndex(pos)));
+      }
     }
 
-    int pos = from;
-    int maxCount = myPaginationArguments.getCount() == -1 ? myData.size() : myPaginationArguments.getCount();
-    while(result.size() < maxCount && pos >= 0 && pos < myData.size()) {
-      EDGE e = myEdgeFactory.apply(myData.get(pos));
-      result.add(e);
+    myPage = new Page<>(start, items);
+    return myPage;
+  }
 
-      pos += direction;
+  /**
+   * @return position in the pagination direction of the first item to return
+   */
+  private int getStartPosition() {
+    String after = myPaginationArguments.getAfter();
+    if(after == null) {
+      return 0;
     }
 
-    return DataFetcherResult.<List<EDGE>>newResult()
-      .data(result)
-      .localContext(myData)
-      .build();
+    int size = myData.size();
+    Integer offset = decodeOffsetCursor(after);
+    int afterIndex;
+    if(offset != null) {
+      afterIndex = offset;
+    } else {
+      afterIndex = findCursorIndex(after);
+      if(afterIndex == CURSOR_MISSING) {
+        return CURSOR_MISSING;
+      }
+      if(afterIndex == CURSOR_NOT_FOUND) {
+        return size;
+      }
+    }
+
+    if(myPaginationArguments.getDirection() == PaginationArguments.Direction.FORWARD) {
+      return (int)Math.min((long)afterIndex + 1, size);
+    }
+    return Math.max(size - afterIndex, 0);
+  }
+
+  private int findCursorIndex(@NotNull String cursor) {
+    int index = 0;
+    for(DATA item : myData) {
+      String itemCursor = myCursorFunction != null ? myCursorFunction.apply(item) : myEdgeFactory.apply(item).getCursor();
+      if(itemCursor == null) {
+        return CURSOR_MISSING;
+      }
+      if(itemCursor.equals(cursor)) {
+        return index;
+      }
+      index++;
+    }
+    return CURSOR_NOT_FOUND;
+  }
+
+  private int toDataIndex(int position) {
+    return myPaginationArguments.getDirection() == PaginationArguments.Direction.FORWARD ? position : myData.size() - 1 - position;
+  }
+
+  @NotNull
+  private List<DATA> getDataList() {
+    if(myDataList == null) {
+      myDataList = myData instanceof List ? (List<DATA>)myData : new ArrayList<>(myData);
+    }
+    return myDataList;
+  }
+
+  private static class Page<DATA> {
+    private final int myStart;
+    @NotNull
+    private final List<DATA> myItems;
+
+    Page(int start, @NotNull List<DATA> items) {
+      myStart = start;
+      myItems = items;
+    }
   }
 }
\ No newline at end of file
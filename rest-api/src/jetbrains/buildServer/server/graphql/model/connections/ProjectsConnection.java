@@ -35,7 +35,7 @@ public class ProjectsConnection implements ExtensibleConnection<Project, Project
   private final PaginatingConnection<SProject, Project, ProjectsConnectionEdge> myDelegate;
 
   public ProjectsConnection(@NotNull Collection<SProject> data, @NotNull PaginationArguments paginationArguments) {
-    myDelegate = new PaginatingConnection<>(data, ProjectsConnectionEdge::new, paginationArguments);
+    myDelegate = new PaginatingConnection<>(data, ProjectsConnectionEdge::new, SProject::getExternalId, paginationArguments);
   }
 
   public int getCount() {
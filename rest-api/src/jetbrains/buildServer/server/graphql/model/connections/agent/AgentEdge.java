@@ -26,4 +26,14 @@ public class AgentEdge extends LazyEdge<SBuildAgent, Agent> {
   public AgentEdge(@NotNull SBuildAgent agent) {
     super(agent, Agent::new);
   }
+
+  @Override
+  public String getCursor() {
+    return getCursor(myData);
+  }
+
+  @NotNull
+  public static String getCursor(@NotNull SBuildAgent agent) {
+    return String.valueOf(agent.getId());
+  }
 }
\ No newline at end of file
@@ -30,7 +30,7 @@ public class AgentPoolAgentTypesConnection implements ExtensibleConnection<Agent
   private final PaginatingConnection<SAgentType, AgentType, AgentTypeEdge> myDelegate;
 
   public AgentPoolAgentTypesConnection(@NotNull List<SAgentType> data, @NotNull PaginationArguments paginationArguments) {
-    myDelegate = new PaginatingConnection<>(data, AgentTypeEdge::new, paginationArguments);
+    myDelegate = new PaginatingConnection<>(data, AgentTypeEdge::new, AgentTypeEdge::getCursor, paginationArguments);
   }
 
   @NotNull
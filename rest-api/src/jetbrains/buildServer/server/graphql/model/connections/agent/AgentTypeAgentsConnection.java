@@ -32,7 +32,7 @@ public class AgentTypeAgentsConnection implements ExtensibleConnection<Agent, Ag
   private final PaginatingConnection<SBuildAgent, Agent, AgentEdge> myDelegate;
 
   public AgentTypeAgentsConnection(@NotNull List<SBuildAgent> data, @NotNull PaginationArguments paginationArguments) {
-    myDelegate = new PaginatingConnection<>(data, AgentEdge::new, paginationArguments);
+    myDelegate = new PaginatingConnection<>(data, AgentEdge::new, AgentEdge::getCursor, paginationArguments);
   }
 
   @NotNull
@@ -25,4 +25,14 @@ public class AgentTypeEdge extends LazyEdge<SAgentType, AgentType> {
   public AgentTypeEdge(@NotNull SAgentType val) {
     super(val, AgentType::new);
   }
+
+  @Override
+  public String getCursor() {
+    return getCursor(myData);
+  }
+
+  @NotNull
+  public static String getCursor(@NotNull SAgentType agentType) {
+    return String.valueOf(agentType.getAgentTypeId());
+  }
 }
\ No newline at end of file
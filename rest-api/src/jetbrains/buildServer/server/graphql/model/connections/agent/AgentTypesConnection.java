@@ -30,7 +30,7 @@ public class AgentTypesConnection implements ExtensibleConnection<AgentType, Age
   private final PaginatingConnection<SAgentType, AgentType, AgentTypeEdge> myDelegate;
 
   public AgentTypesConnection(@NotNull List<SAgentType> data, @NotNull PaginationArguments paginationArguments) {
-    myDelegate = new PaginatingConnection<>(data, AgentTypeEdge::new, paginationArguments);
+    myDelegate = new PaginatingConnection<>(data, AgentTypeEdge::new, AgentTypeEdge::getCursor, paginationArguments);
   }
 
   @NotNull
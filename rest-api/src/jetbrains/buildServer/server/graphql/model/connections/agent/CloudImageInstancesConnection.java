@@ -33,7 +33,7 @@ public class CloudImageInstancesConnection implements ExtensibleConnection<Agent
   private final PaginatingConnection<SBuildAgent, jetbrains.buildServer.server.graphql.model.Agent, AgentEdge> myDelegate;
 
   public CloudImageInstancesConnection(@NotNull List<SBuildAgent> data, @NotNull PaginationArguments paginationArguments) {
-    myDelegate = new PaginatingConnection<>(data, AgentEdge::new, paginationArguments);
+    myDelegate = new PaginatingConnection<>(data, AgentEdge::new, AgentEdge::getCursor, paginationArguments);
   }
 
   public int getCount() {
@@ -25,6 +25,7 @@ import jetbrains.buildServer.server.graphql.model.connections.ExtensibleConnecti
 import jetbrains.buildServer.server.graphql.model.connections.LazyEdge;
 import jetbrains.buildServer.server.graphql.model.connections.PaginatingConnection;
 import jetbrains.buildServer.server.graphql.model.connections.PaginationArguments;
+import jetbrains.buildServer.server.graphql.model.connections.agent.AgentEdge;
 import jetbrains.buildServer.serverSide.SBuildAgent;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -38,7 +39,7 @@ public class AgentPoolAgentsConnection implements ExtensibleConnection<Agent, Ag
   private final PaginatingConnection<SBuildAgent, Agent, AgentPoolAgentsConnectionEdge> myDelegate;
 
   public AgentPoolAgentsConnection(@NotNull List<SBuildAgent> data, @NotNull PaginationArguments paginationArguments) {
-    myDelegate = new PaginatingConnection<>(data, AgentPoolAgentsConnectionEdge::new, paginationArguments);
+    myDelegate = new PaginatingConnection<>(data, AgentPoolAgentsConnectionEdge::new, AgentEdge::getCursor, paginationArguments);
   }
 
   public int getCount() {
@@ -61,5 +62,10 @@ public class AgentPoolAgentsConnection implements ExtensibleConnection<Agent, Ag
     public AgentPoolAgentsConnectionEdge(@NotNull SBuildAgent data) {
       super(data, Agent::new);
     }
+
+    @Override
+    public String getCursor() {
+      return AgentEdge.getCursor(myData);
+    }
   }
 }
\ No newline at end of file
@@ -38,7 +38,7 @@ public class AgentPoolCloudImagesConnection implements ExtensibleConnection<jetb
   private final PaginatingConnection<Pair<CloudProfile, CloudImage>, jetbrains.buildServer.server.graphql.model.CloudImage, AgentPoolCloudImagesConnectionEdge> myDelegate;
 
   public AgentPoolCloudImagesConnection(@NotNull List<Pair<CloudProfile, CloudImage>> data, @NotNull PaginationArguments paginationArguments) {
-    myDelegate = new PaginatingConnection<>(data, AgentPoolCloudImagesConnectionEdge::new, paginationArguments);
+    myDelegate = new PaginatingConnection<>(data, AgentPoolCloudImagesConnectionEdge::new, AgentPoolCloudImagesConnectionEdge::getCursor, paginationArguments);
   }
 
   @NotNull
@@ -55,5 +55,15 @@ public class AgentPoolCloudImagesConnection implements ExtensibleConnection<jetb
         pair -> pair.getSecond() // get CloudImage to be inserted into local context
       );
     }
+
+    @Override
+    public String getCursor() {
+      return getCursor(myData);
+    }
+
+    @NotNull
+    public static String getCursor(@NotNull Pair<CloudProfile, CloudImage> data) {
+      return data.getFirst().getProfileId() + ":" + data.getSecond().getId();
+    }
   }
 }
\ No newline at end of file
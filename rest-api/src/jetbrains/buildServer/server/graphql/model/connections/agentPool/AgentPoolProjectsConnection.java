@@ -32,7 +32,7 @@ public class AgentPoolProjectsConnection implements ExtensibleConnection<Project
   private Integer myExcludedCount;
 
   public AgentPoolProjectsConnection(@NotNull List<SProject> data, @Nullable Integer excludedCount, @NotNull PaginationArguments paginationArguments) {
-    myDelegate = new PaginatingConnection<>(data, AgentPoolProjectsConnectionEdge::new, paginationArguments);
+    myDelegate = new PaginatingConnection<>(data, AgentPoolProjectsConnectionEdge::new, SProject::getExternalId, paginationArguments);
     myExcludedCount = excludedCount;
   }
 
@@ -61,5 +61,10 @@ public class AgentPoolProjectsConnection implements ExtensibleConnection<Project
     public AgentPoolProjectsConnectionEdge(@NotNull SProject data) {
       super(data, Project::new);
     }
+
+    @Override
+    public String getCursor() {
+      return myData.getExternalId();
+    }
   }
 }
\ No newline at end of file
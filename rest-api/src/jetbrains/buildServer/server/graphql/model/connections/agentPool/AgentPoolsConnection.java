@@ -44,7 +44,7 @@ public class AgentPoolsConnection implements ExtensibleConnection<AbstractAgentP
                               @NotNull Function<jetbrains.buildServer.serverSide.agentPools.AgentPool, AbstractAgentPool> poolFactory,
                               @NotNull PaginationArguments paginationArguments) {
     myPoolFactory = poolFactory;
-    myDelegate = new PaginatingConnection<>(data, AgentPoolsConnectionEdge::new, paginationArguments);
+    myDelegate = new PaginatingConnection<>(data, AgentPoolsConnectionEdge::new, jetbrains.buildServer.serverSide.agentPools.AgentPool::getName, paginationArguments);
   }
 
   public int getCount() {
@@ -19,13 +19,17 @@ package jetbrains.buildServer.server.graphql.resolver;
 import graphql.kickstart.tools.GraphQLResolver;
 import graphql.schema.DataFetchingEnvironment;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import jetbrains.buildServer.server.graphql.model.buildType.incompatibility.*;
 import jetbrains.buildServer.server.graphql.model.connections.agent.AgentBuildTypeEdge;
+import jetbrains.buildServer.server.graphql.util.DataLoaders;
 import jetbrains.buildServer.server.rest.data.finder.impl.AgentFinder;
 import jetbrains.buildServer.server.rest.data.finder.impl.BuildTypeFinder;
+import jetbrains.buildServer.server.rest.errors.NotFoundException;
 import jetbrains.buildServer.serverSide.AgentCompatibility;
-import jetbrains.buildServer.serverSide.BuildAgentManager;
 import jetbrains.buildServer.serverSide.SBuildAgent;
 import jetbrains.buildServer.serverSide.SBuildType;
 import org.jetbrains.annotations.NotNull;
@@ -41,33 +45,51 @@ public class AgentBuildTypeEdgeResolver implements GraphQLResolver<AgentBuildTyp
 
   @Autowired
   @NotNull
-  private BuildAgentManager myAgentManager;
+  private DataLoaders myDataLoaders;
 
   @NotNull
-  public Boolean getAssigned(@NotNull AgentBuildTypeEdge edge, @NotNull DataFetchingEnvironment env) {
+  public CompletableFuture<Boolean> getAssigned(@NotNull AgentBuildTypeEdge edge, @NotNull DataFetchingEnvironment env) {
     SBuildAgent realAgent = env.getLocalContext();
-    SBuildType bt = myBuildTypeFinder.getItem("id:" + edge.getNode().getRawId()).getBuildType();
+    String btId = edge.getNode().getRawId();
 
-    return AgentFinder.getAssignedBuildTypes(realAgent).contains(bt.getInternalId());
+    return DataLoaders.loadBuildType(env, myBuildTypeFinder, btId).thenApply(it -> {
+      SBuildType bt = it.getBuildType();
+      if (bt == null) {
+        throw new NotFoundException("No build type is found by id '" + btId + "'. Template is found instead.");
+      }
+
+      return AgentFinder.getAssignedBuildTypes(realAgent).contains(bt.getInternalId());
+    });
   }
 
   @NotNull
-  public Boolean getCompatible(@NotNull AgentBuildTypeEdge agentBuildTypeEdge, @NotNull DataFetchingEnvironment env) {
-    SBuildAgent realAgent = env.getLocalContext();
+  public CompletableFuture<Boolean> getCompatible(@NotNull AgentBuildTypeEdge agentBuildTypeEdge, @NotNull DataFetchingEnvironment env) {
     String btId = agentBuildTypeEdge.getNode().getRawId();
-    return myAgentManager.getAgentCompatibilities(realAgent).stream()
-                         .filter(compatibility -> compatibility.getBuildType().getExternalId().equals(btId))
-                         .allMatch(AgentCompatibility::isCompatible);
+
+    return getCompatibilities(env, btId).thenApply(compatibilities -> compatibilities.stream().allMatch(AgentCompatibility::isCompatible));
   }
 
-  @Nullable
-  public List<AgentBuildTypeIncompatibility> getIncompatibilities(@NotNull AgentBuildTypeEdge agentBuildTypeEdge, @NotNull DataFetchingEnvironment env) {
-    SBuildAgent realAgent = env.getLocalContext();
+  @NotNull
+  public CompletableFuture<List<AgentBuildTypeIncompatibility>> getIncompatibilities(@NotNull AgentBuildTypeEdge agentBuildTypeEdge, @NotNull DataFetchingEnvironment env) {
     String btId = agentBuildTypeEdge.getNode().getRawId();
 
+    return getCompatibilities(env, btId).thenApply(AgentBuildTypeEdgeResolver::getIncompatibilities);
+  }
+
+  @NotNull
+  private CompletableFuture<List<AgentCompatibility>> getCompatibilities(@NotNull DataFetchingEnvironment env, @NotNull String btId) {
+    SBuildAgent realAgent = env.getLocalContext();
+    CompletableFuture<Map<String, List<AgentCompatibility>>> compatibilities =
+      DataLoaders.load(env, DataLoaders.AGENT_COMPATIBILITIES, realAgent, () -> myDataLoaders.getAgentCompatibilities(realAgent));
+
+    return compatibilities.thenApply(it -> it.getOrDefault(btId, Collections.emptyList()));
+  }
+
+  @Nullable
+  private static List<AgentBuildTypeIncompatibility> getIncompatibilities(@NotNull List<AgentCompatibility> compatibilities) {
     List<AgentBuildTypeIncompatibility> result = new ArrayList<>();
-    for (AgentCompatibility compatibility : myAgentManager.getAgentCompatibilities(realAgent)) {
-      if (compatibility.isCompatible() || !compatibility.getBuildType().getExternalId().equals(btId)) {
+    for (AgentCompatibility compatibility : compatibilities) {
+      if (compatibility.isCompatible()) {
         continue;
       }
 
@@ -33,13 +33,12 @@ import jetbrains.buildServer.server.graphql.model.connections.agent.AssociatedAg
 import jetbrains.buildServer.server.graphql.model.connections.agent.DiassociatedAgentBuildTypesConnection;
 import jetbrains.buildServer.server.graphql.model.filter.AgentBuildTypesFilter;
 import jetbrains.buildServer.server.graphql.resolver.agentPool.AbstractAgentPoolFactory;
+import jetbrains.buildServer.server.graphql.util.DataLoaders;
 import jetbrains.buildServer.server.graphql.util.ModelResolver;
 import jetbrains.buildServer.server.graphql.util.UnexpectedServerGraphQLError;
-import jetbrains.buildServer.server.rest.data.Locator;
 import jetbrains.buildServer.server.rest.data.finder.impl.AgentFinder;
 import jetbrains.buildServer.server.rest.data.finder.impl.AgentPoolFinder;
 import jetbrains.buildServer.server.rest.data.finder.impl.BuildTypeFinder;
-import jetbrains.buildServer.server.rest.data.finder.impl.ProjectFinder;
 import jetbrains.buildServer.server.rest.util.BuildTypeOrTemplate;
 import jetbrains.buildServer.serverSide.BuildAgentManager;
 import jetbrains.buildServer.serverSide.BuildTypeEx;
@@ -69,15 +68,15 @@ public class AgentResolver extends ModelResolver<Agent> {
 
   @Autowired
   @NotNull
-  private ProjectFinder myProjectFinder;
+  private AbstractAgentPoolFactory myPoolFactory;
 
   @Autowired
   @NotNull
-  private AbstractAgentPoolFactory myPoolFactory;
+  private AgentTypeFinder myAgentTypeFinder;
 
   @Autowired
   @NotNull
-  private AgentTypeFinder myAgentTypeFinder;
+  private DataLoaders myDataLoaders;
 
   @NotNull
   public AbstractAgentPool agentPool(@NotNull Agent agent, @NotNull DataFetchingEnvironment env) {
@@ -187,8 +186,7 @@ public class AgentResolver extends ModelResolver<Agent> {
 
     jetbrains.buildServer.serverSide.agentPools.AgentPool pool = myAgentPoolFinder.getAgentPool(agent);
 
-    Set<String> assignedBuildTypes = pool.getProjectIds().stream()
-                                             .map(id -> myProjectFinder.findSingleItem(Locator.locator("internalId:" + id)))
+    Set<String> assignedBuildTypes = myDataLoaders.getProjectsByInternalId().loadAll(pool.getProjectIds()).stream()
                                              .filter(Objects::nonNull)
                                              .flatMap(p -> p.getOwnBuildTypes().stream())
                                              .map(bt -> bt.getInternalId())
@@ -17,10 +17,12 @@
 package jetbrains.buildServer.server.graphql.resolver;
 
 import graphql.schema.DataFetchingEnvironment;
+import java.util.concurrent.CompletableFuture;
 import jetbrains.buildServer.Used;
 import jetbrains.buildServer.server.graphql.model.buildType.BuildType;
 import jetbrains.buildServer.server.graphql.model.connections.PaginationArguments;
 import jetbrains.buildServer.server.graphql.model.connections.ProjectsConnection;
+import jetbrains.buildServer.server.graphql.util.DataLoaders;
 import jetbrains.buildServer.server.graphql.util.ModelResolver;
 import jetbrains.buildServer.server.graphql.util.ParentsFetcher;
 import jetbrains.buildServer.server.rest.data.finder.impl.BuildTypeFinder;
@@ -41,14 +43,15 @@ public class BuildTypeResolver extends ModelResolver<BuildType> {
   }
 
   @NotNull
-  public ProjectsConnection ancestorProjects(@NotNull BuildType source, @NotNull DataFetchingEnvironment env) throws Exception {
-    SBuildType bt = myBuildTypeFinder.getItem("id:" + source.getRawId()).getBuildType();
+  public CompletableFuture<ProjectsConnection> ancestorProjects(@NotNull BuildType source, @NotNull DataFetchingEnvironment env) throws Exception {
+    return DataLoaders.loadBuildType(env, myBuildTypeFinder, source.getRawId()).thenApply(it -> {
+      SBuildType bt = it.getBuildType();
+      if(bt == null) {
+        return ProjectsConnection.empty();
+      }
 
-    if(bt == null) {
-      return ProjectsConnection.empty();
-    }
-
-    return new ProjectsConnection(ParentsFetcher.getAncestors(bt), PaginationArguments.everything());
+      return new ProjectsConnection(ParentsFetcher.getAncestors(bt), PaginationArguments.everything());
+    });
   }
 
   @Override
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.graphql.util;
+
+import graphql.schema.DataFetchingEnvironment;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import jetbrains.buildServer.server.rest.data.Locator;
+import jetbrains.buildServer.server.rest.data.finder.Finder;
+import jetbrains.buildServer.server.rest.data.finder.impl.BuildTypeFinder;
+import jetbrains.buildServer.server.rest.data.finder.impl.ProjectFinder;
+import jetbrains.buildServer.server.rest.errors.NotFoundException;
+import jetbrains.buildServer.server.rest.jersey.provider.annotated.JerseyInjectable;
+import jetbrains.buildServer.server.rest.util.BuildTypeOrTemplate;
+import jetbrains.buildServer.serverSide.AgentCompatibility;
+import jetbrains.buildServer.serverSide.BuildAgentManager;
+import jetbrains.buildServer.serverSide.SBuildAgent;
+import jetbrains.buildServer.serverSide.SProject;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import org.dataloader.DataLoader;
+import org.dataloader.DataLoaderFactory;
+import org.dataloader.DataLoaderOptions;
+import org.dataloader.DataLoaderRegistry;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates per-request data loaders, so that sibling resolvers requesting entities from the same finder are served by a single locator evaluation
+ * and the entities already loaded within the request are not looked up again.
+ */
+@JerseyInjectable
+@Component
+public class DataLoaders {
+  public static final String BUILD_TYPES = "buildTypes";
+  public static final String PROJECTS_BY_INTERNAL_ID = "projectsByInternalId";
+  public static final String AGENT_COMPATIBILITIES = "agentCompatibilities";
+
+  private static final String MAX_BATCH_SIZE = "teamcity.graphql.dataLoader.maxBatchSize";
+
+  @NotNull private final FinderBatchLoader<BuildTypeOrTemplate> myBuildTypes;
+  @NotNull private final FinderBatchLoader<SProject> myProjectsByInternalId;
+  @NotNull private final BuildAgentManager myAgentManager;
+
+  @Autowired
+  public DataLoaders(@NotNull BuildTypeFinder buildTypeFinder, @NotNull ProjectFinder projectFinder, @NotNull BuildAgentManager agentManager) {
+    this((Finder<BuildTypeOrTemplate>)buildTypeFinder, projectFinder, agentManager);
+  }
+
+  public DataLoaders(@NotNull Finder<BuildTypeOrTemplate> buildTypeFinder, @NotNull Finder<SProject> projectFinder, @NotNull BuildAgentManager agentManager) {
+    myBuildTypes = new FinderBatchLoader<>(buildTypeFinder, id -> Locator.getStringLocator("id", id), BuildTypeOrTemplate::getId);
+    myProjectsByInternalId = new FinderBatchLoader<>(projectFinder, id -> Locator.getStringLocator("internalId", id), SProject::getProjectId);
+    myAgentManager = agentManager;
+  }
+
+  /**
+   * @return new registry which should be used for a single request only as loaded values are cached in it
+   */
+  @NotNull
+  public DataLoaderRegistry createRegistry() {
+    DataLoaderOptions options = DataLoaderOptions.newOptions().setMaxBatchSize(TeamCityProperties.getInteger(MAX_BATCH_SIZE, 500));
+
+    DataLoaderRegistry registry = new DataLoaderRegistry();
+    registry.register(BUILD_TYPES, DataLoaderFactory.newDataLoader(myBuildTypes, options));
+    registry.register(PROJECTS_BY_INTERNAL_ID, DataLoaderFactory.newDataLoader(myProjectsByInternalId, options));
+    registry.register(AGENT_COMPATIBILITIES, DataLoaderFactory.newDataLoader(this::loadAgentCompatibilities, options));
+    return registry;
+  }
+
+  /**
+   * @return compatibilities of the agent grouped by the build type external id
+   */
+  @NotNull
+  public Map<String, List<AgentCompatibility>> getAgentCompatibilities(@NotNull SBuildAgent agent) {
+    Map<String, List<AgentCompatibility>> result = new HashMap<>();
+    for (AgentCompatibility compatibility : myAgentManager.getAgentCompatibilities(agent)) {
+      result.computeIfAbsent(compatibility.getBuildType().getExternalId(), id -> new ArrayList<>()).add(compatibility);
+    }
+    return result;
+  }
+
+  @NotNull
+  private CompletableFuture<List<Map<String, List<AgentCompatibility>>>> loadAgentCompatibilities(@NotNull List<SBuildAgent> agents) {
+    List<Map<String, List<AgentCompatibility>>> result = new ArrayList<>(agents.size());
+    for (SBuildAgent agent : agents) {
+      result.add(getAgentCompatibilities(agent));
+    }
+    return CompletableFuture.completedFuture(result);
+  }
+
+  @NotNull
+  public FinderBatchLoader<SProject> getProjectsByInternalId() {
+    return myProjectsByInternalId;
+  }
+
+  /**
+   * Loads the value via the request data loader with the given name or computes it right away when there is no such loader, e.g. in tests.
+   */
+  @NotNull
+  public static <K, V> CompletableFuture<V> load(@NotNull DataFetchingEnvironment env, @NotNull String loaderName, @NotNull K key, @NotNull Supplier<V> direct) {
+    DataLoader<K, V> loader = env.getDataLoader(loaderName);
+    if (loader == null) {
+      return CompletableFuture.completedFuture(direct.get());
+    }
+    return loader.load(key);
+  }
+
+  /**
+   * Loads the build type or template by its external id, the returned future fails with {@link NotFoundException} when there is no such build type.
+   */
+  @NotNull
+  public static CompletableFuture<BuildTypeOrTemplate> loadBuildType(@NotNull DataFetchingEnvironment env, @NotNull Finder<BuildTypeOrTemplate> buildTypeFinder, @NotNull String id) {
+    CompletableFuture<BuildTypeOrTemplate> buildType = load(env, BUILD_TYPES, id, () -> buildTypeFinder.getItem(Locator.getStringLocator("id", id)));
+    return buildType.thenApply(it -> {
+      if (it == null) {
+        throw new NotFoundException("No build type or template is found by id '" + id + "'.");
+      }
+      return it;
+    });
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.graphql.util;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+import jetbrains.buildServer.server.rest.data.Locator;
+import jetbrains.buildServer.server.rest.data.finder.Finder;
+import jetbrains.buildServer.server.rest.data.finder.FinderImpl;
+import jetbrains.buildServer.server.rest.errors.NotFoundException;
+import jetbrains.buildServer.server.rest.model.PagerData;
+import org.dataloader.BatchLoader;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Loads the items for several keys with a single finder locator evaluation.
+ * Each key is converted into a single item locator and the locators are combined via the "item" dimension.
+ * Values are returned in the order of the keys, null is returned for the keys without a matching item.
+ * As the finder fails the whole locator when any of the items is not found, such a batch is split into halves and retried.
+ */
+public class FinderBatchLoader<ITEM> implements BatchLoader<String, ITEM> {
+  @NotNull private final Finder<ITEM> myFinder;
+  @NotNull private final Function<String, String> myKeyLocator;
+  @NotNull private final Function<ITEM, String> myItemKey;
+
+  /**
+   * @param keyLocator produces the locator of the single item for the key
+   * @param itemKey    produces the key for the found item
+   */
+  public FinderBatchLoader(@NotNull Finder<ITEM> finder, @NotNull Function<String, String> keyLocator, @NotNull Function<ITEM, String> itemKey) {
+    myFinder = finder;
+    myKeyLocator = keyLocator;
+    myItemKey = itemKey;
+  }
+
+  @Override
+  public CompletionStage<List<ITEM>> load(@NotNull List<String> keys) {
+    return CompletableFuture.completedFuture(loadAll(keys));
+  }
+
+  @NotNull
+  public List<ITEM> loadAll(@NotNull Collection<String> keys) {
+    if (keys.isEmpty()) {
+      return Collections.emptyList();
+    }
+
+    Map<String, ITEM> found = new HashMap<>(keys.size());
+    collect(new ArrayList<>(keys), found);
+
+    List<ITEM> result = new ArrayList<>(keys.size());
+    for (String key : keys) {
+      result.add(found.get(key));
+    }
+    return result;
+  }
+
+  private void collect(@NotNull List<String> keys, @NotNull Map<String, ITEM> found) {
+    if (keys.size() == 1) {
+      putIfFound(keys.get(0), found);
+      return;
+    }
+
+    try {
+      for (ITEM item : myFinder.getItems(getLocator(keys)).getEntries()) {
+        found.putIfAbsent(myItemKey.apply(item), item);
+      }
+    } catch (NotFoundException e) {
+      // some key does not match any item, split the keys to find out which one
+      int middle = keys.size() / 2;
+      collect(keys.subList(0, middle), found);
+      collect(keys.subList(middle, keys.size()), found);
+      return;
+    }
+
+    for (String key : keys) {
+      if (!found.containsKey(key)) {
+        // the key might be matched by the locator in some other form than the one produced for the found item
+        putIfFound(key, found);
+      }
+    }
+  }
+
+  private void putIfFound(@NotNull String key, @NotNull Map<String, ITEM> found) {
+    ITEM item = findSingle(key);
+    if (item != null) {
+      found.put(key, item);
+    }
+  }
+
+  @Nullable
+  private ITEM findSingle(@NotNull String key) {
+    try {
+      return myFinder.getItem(myKeyLocator.apply(key));
+    } catch (NotFoundException e) {
+      return null;
+    }
+  }
+
+  @NotNull
+  private String getLocator(@NotNull Collection<String> keys) {
+    List<String> itemLocators = new ArrayList<>(keys.size());
+    for (String key : keys) {
+      itemLocators.add(myKeyLocator.apply(key));
+    }
+    return Locator.createEmptyLocator()
+                  .setDimension(FinderImpl.DIMENSION_ITEM, itemLocators)
+                  .setDimension(PagerData.COUNT, String.valueOf(keys.size()))
+                  .getStringRepresentation();
+  }
+}
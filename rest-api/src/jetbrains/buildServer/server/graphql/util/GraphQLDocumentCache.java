@@ -0,0 +1,91 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.graphql.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import graphql.ExecutionInput;
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+import graphql.execution.preparsed.PreparsedDocumentProvider;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Function;
+import jetbrains.buildServer.server.rest.jersey.provider.annotated.JerseyInjectable;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps parsed and validated documents of the recently executed queries keyed by the SHA-256 hash of the query text.
+ * The schema does not change at runtime, so the validation result of a query can be reused as well as the parsed document.
+ * The hashes also serve as persisted query ids: a client can send only the hash of a query which was executed before.
+ */
+@JerseyInjectable
+@Component
+public class GraphQLDocumentCache implements PreparsedDocumentProvider {
+  private static final String MAX_SIZE = "teamcity.graphql.documentCache.maxSize";
+
+  @NotNull private final Cache<String, CachedDocument> myCache;
+
+  public GraphQLDocumentCache() {
+    this(TeamCityProperties.getLong(MAX_SIZE, 500));
+  }
+
+  GraphQLDocumentCache(long maxSize) {
+    myCache = CacheBuilder.newBuilder().maximumSize(Math.max(maxSize, 0)).build();
+  }
+
+  @Override
+  public PreparsedDocumentEntry getDocument(ExecutionInput executionInput, Function<ExecutionInput, PreparsedDocumentEntry> parseAndValidateFunction) {
+    String query = executionInput.getQuery();
+    String hash = getHash(query);
+
+    CachedDocument cached = myCache.getIfPresent(hash);
+    if (cached != null) {
+      return cached.myEntry;
+    }
+
+    PreparsedDocumentEntry result = parseAndValidateFunction.apply(executionInput);
+    myCache.put(hash, new CachedDocument(query, result));
+    return result;
+  }
+
+  /**
+   * @return text of the recently executed query with the given hash or null if it is not known
+   */
+  @Nullable
+  public String getQuery(@NotNull String hash) {
+    CachedDocument cached = myCache.getIfPresent(hash);
+    return cached == null ? null : cached.myQuery;
+  }
+
+  @NotNull
+  public static String getHash(@NotNull String query) {
+    return Hashing.sha256().hashString(query, StandardCharsets.UTF_8).toString();
+  }
+
+  private static class CachedDocument {
+    @NotNull private final String myQuery;
+    @NotNull private final PreparsedDocumentEntry myEntry;
+
+    CachedDocument(@NotNull String query, @NotNull PreparsedDocumentEntry entry) {
+      myQuery = query;
+      myEntry = entry;
+    }
+  }
+}
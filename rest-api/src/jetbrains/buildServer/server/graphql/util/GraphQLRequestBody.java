@@ -24,41 +24,74 @@ import com.intellij.openapi.diagnostic.Logger;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 public class GraphQLRequestBody {
   private static final Logger LOG = Logger.getInstance(GraphQLRequestBody.class.getName());
+  private static final ObjectMapper ourObjectMapper = new ObjectMapper();
+  private static final String PERSISTED_QUERY_EXTENSION = "persistedQuery";
+  private static final String PERSISTED_QUERY_HASH = "sha256Hash";
+
   @Nullable
   public final String query;
   @Nullable
   public final Map<String, Object> variables;
   @Nullable
   public final String operationName;
+  @Nullable
+  public final Map<String, Object> extensions;
 
   public GraphQLRequestBody() {
     query = null;
     operationName = null;
     variables = new HashMap<>();
+    extensions = null;
   }
 
   public GraphQLRequestBody(@Nullable String query, @Nullable String operationName, @Nullable String variables) throws JsonProcessingException {
+    this(query, operationName, variables, null);
+  }
+
+  public GraphQLRequestBody(@Nullable String query, @Nullable String operationName, @Nullable String variables, @Nullable String extensions) throws JsonProcessingException {
     this.query = query;
     this.operationName = operationName;
+    this.variables = readMap(variables, "variables");
+    this.extensions = extensions == null ? null : readMap(extensions, "extensions");
+  }
 
-    Map<String, Object> variablesInitializer = Collections.emptyMap();
-    if(variables != null) {
-      try {
-        variablesInitializer = new ObjectMapper().readValue(variables, new TypeReference<Map<String, Object>>() { });
-      } catch (JsonMappingException e) {
-        LOG.debug(() -> "Unable to initialize variables from: '" + variables + "', must be a mapping name -> value.", e);
-      }
+  /**
+   * @return hash of the query sent as the persisted query id in the "persistedQuery" extension, see {@link GraphQLDocumentCache}
+   */
+  @Nullable
+  public String getPersistedQueryHash() {
+    if (extensions == null) {
+      return null;
+    }
+    Object persistedQuery = extensions.get(PERSISTED_QUERY_EXTENSION);
+    if (!(persistedQuery instanceof Map)) {
+      return null;
+    }
+    Object hash = ((Map<?, ?>)persistedQuery).get(PERSISTED_QUERY_HASH);
+    return hash instanceof String ? (String)hash : null;
+  }
+
+  @NotNull
+  private static Map<String, Object> readMap(@Nullable String json, @NotNull String name) throws JsonProcessingException {
+    if(json == null) {
+      return Collections.emptyMap();
+    }
+    try {
+      return ourObjectMapper.readValue(json, new TypeReference<Map<String, Object>>() { });
+    } catch (JsonMappingException e) {
+      LOG.debug(() -> "Unable to initialize " + name + " from: '" + json + "', must be a mapping name -> value.", e);
+      return Collections.emptyMap();
     }
-    this.variables = variablesInitializer;
   }
 
   public static GraphQLRequestBody fromJson(@Nullable String json) throws JsonProcessingException {
     if(json == null)
       return new GraphQLRequestBody();
-    return new ObjectMapper().readValue(json, GraphQLRequestBody.class);
+    return ourObjectMapper.readValue(json, GraphQLRequestBody.class);
   }
 }
\ No newline at end of file
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.graphql.util;
+
+import com.intellij.openapi.diagnostic.Logger;
+import java.util.ArrayDeque;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import jetbrains.buildServer.server.rest.jersey.provider.annotated.JerseyInjectable;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import jetbrains.buildServer.util.NamedDaemonThreadFactory;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+/**
+ * Executor for asynchronous GraphQL resolvers.
+ * The pool grows with the number of the queued and running tasks from the minimum size up to the maximum one and shrinks back when the queue is empty.
+ * Tasks submitted while executing a query (see {@link #runQuery(Supplier)}) are limited by the per-query concurrency budget:
+ * the tasks above the budget wait in the query's own queue, so a heavy query does not occupy the whole pool.
+ * Resolvers of a query should suspend rather than block while waiting for each other, otherwise they may wait for the budget forever.
+ * With "teamcity.graphql.resolvers.virtualThreads" enabled and supported by the JVM, each task runs in a new virtual thread instead of the pool.
+ * The executor is shut down when the plugin context is destroyed.
+ */
+@JerseyInjectable
+@Component
+public class GraphQLResolverExecutor implements Executor, DisposableBean {
+  private static final Logger LOG = Logger.getInstance(GraphQLResolverExecutor.class.getName());
+
+  private static final String POOL_SIZE = "teamcity.graphql.resolvers.poolSize"; //minimum pool size
+  private static final String MAX_POOL_SIZE = "teamcity.graphql.resolvers.maxPoolSize";
+  private static final String PER_QUERY_LIMIT = "teamcity.graphql.resolvers.perQueryLimit";
+  private static final String VIRTUAL_THREADS = "teamcity.graphql.resolvers.virtualThreads";
+
+  private static final ThreadLocal<QueryScope> ourCurrentQuery = new ThreadLocal<>();
+
+  private final int myMinPoolSize;
+  private final int myMaxPoolSize;
+  @Nullable private final ThreadPoolExecutor myPool;
+  @NotNull private final Executor myExecutor;
+
+  private final Statistics myQueueWait = new Statistics();
+  private final Statistics myExecution = new Statistics();
+  private final AtomicLong myDeferredTasks = new AtomicLong();
+
+  public GraphQLResolverExecutor() {
+    this(TeamCityProperties.getInteger(POOL_SIZE, Runtime.getRuntime().availableProcessors()),
+         TeamCityProperties.getInteger(MAX_POOL_SIZE, 4 * Runtime.getRuntime().availableProcessors()),
+         TeamCityProperties.getBoolean(VIRTUAL_THREADS));
+  }
+
+  GraphQLResolverExecutor(int minPoolSize, int maxPoolSize, boolean virtualThreads) {
+    myMinPoolSize = Math.max(1, minPoolSize);
+    myMaxPoolSize = Math.max(myMinPoolSize, maxPoolSize);
+
+    Executor virtualThreadsExecutor = virtualThreads ? createVirtualThreadsExecutor() : null;
+    if (virtualThreadsExecutor != null) {
+      myPool = null;
+      myExecutor = virtualThreadsExecutor;
+    } else {
+      myPool = new ThreadPoolExecutor(myMinPoolSize, myMaxPoolSize, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new NamedDaemonThreadFactory("GraphQL resolver"));
+      myPool.allowCoreThreadTimeOut(true);
+      myExecutor = myPool;
+    }
+  }
+
+  /**
+   * Executes the query so that the resolver tasks submitted by it are limited by the per-query concurrency budget.
+   */
+  public <T> T runQuery(@NotNull Supplier<T> query) {
+    QueryScope previous = ourCurrentQuery.get();
+    ourCurrentQuery.set(new QueryScope(Math.max(1, TeamCityProperties.getInteger(PER_QUERY_LIMIT, Runtime.getRuntime().availableProcessors()))));
+    try {
+      return query.get();
+    } finally {
+      setCurrentQuery(previous);
+    }
+  }
+
+  @Override
+  public void execute(@NotNull Runnable command) {
+    QueryScope scope = ourCurrentQuery.get();
+    Task task = new Task(command, scope);
+    if (scope == null) {
+      dispatch(task);
+    } else {
+      scope.submit(task);
+    }
+  }
+
+  @Override
+  public void destroy() {
+    if (myExecutor instanceof ExecutorService) {
+      LOG.debug("Shutting down GraphQL resolver executor");
+      ((ExecutorService)myExecutor).shutdownNow();
+    }
+  }
+
+  @NotNull
+  public String getStatistics() {
+    StringBuilder result = new StringBuilder("GraphQL resolver executor: ");
+    ThreadPoolExecutor pool = myPool;
+    if (pool == null) {
+      result.append("virtual threads");
+    } else {
+      result.append("threads ").append(pool.getPoolSize())
+            .append(" (target ").append(pool.getCorePoolSize()).append(", min ").append(myMinPoolSize).append(", max ").append(myMaxPoolSize).append(")")
+            .append(", active ").append(pool.getActiveCount())
+            .append(", queued ").append(pool.getQueue().size());
+    }
+    result.append(", tasks ").append(myExecution.myCount.get())
+          .append(", deferred by per-query limit ").append(myDeferredTasks.get())
+          .append(", queue wait ").append(myQueueWait)
+          .append(", execution ").append(myExecution);
+    return result.toString();
+  }
+
+  private void dispatch(@NotNull Task task) {
+    myExecutor.execute(task);
+
+    ThreadPoolExecutor pool = myPool;
+    if (pool != null) {
+      int wanted = Math.min(myMaxPoolSize, pool.getActiveCount() + pool.getQueue().size());
+      if (wanted > pool.getCorePoolSize()) {
+        synchronized (pool) {
+          if (wanted > pool.getCorePoolSize()) {
+            pool.setCorePoolSize(wanted);
+          }
+        }
+      }
+    }
+  }
+
+  private void shrinkIfIdle() {
+    ThreadPoolExecutor pool = myPool;
+    if (pool == null || !pool.getQueue().isEmpty()) {
+      return;
+    }
+    int wanted = Math.max(myMinPoolSize, pool.getActiveCount());
+    if (wanted < pool.getCorePoolSize()) {
+      synchronized (pool) {
+        if (wanted < pool.getCorePoolSize() && pool.getQueue().isEmpty()) {
+          pool.setCorePoolSize(wanted);
+        }
+      }
+    }
+  }
+
+  private static void setCurrentQuery(@Nullable QueryScope scope) {
+    if (scope == null) {
+      ourCurrentQuery.remove();
+    } else {
+      ourCurrentQuery.set(scope);
+    }
+  }
+
+  @Nullable
+  private static Executor createVirtualThreadsExecutor() {
+    try {
+      return (Executor)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (Exception e) {
+      LOG.warn("Virtual threads are not supported by the JVM, using the thread pool for GraphQL resolvers: " + e);
+      return null;
+    }
+  }
+
+  private final class Task implements Runnable {
+    @NotNull private final Runnable myCommand;
+    @Nullable private final QueryScope myScope;
+    private final long mySubmitted = System.nanoTime();
+
+    private Task(@NotNull Runnable command, @Nullable QueryScope scope) {
+      myCommand = command;
+      myScope = scope;
+    }
+
+    @Override
+    public void run() {
+      long started = System.nanoTime();
+      myQueueWait.add(started - mySubmitted);
+
+      QueryScope previous = ourCurrentQuery.get();
+      setCurrentQuery(myScope);
+      try {
+        myCommand.run();
+      } finally {
+        setCurrentQuery(previous);
+        myExecution.add(System.nanoTime() - started);
+        if (myScope != null) {
+          myScope.done();
+        }
+        shrinkIfIdle();
+      }
+    }
+  }
+
+  private final class QueryScope {
+    private final int myLimit;
+    private final ArrayDeque<Task> myPending = new ArrayDeque<>();
+    private int myRunning;
+
+    private QueryScope(int limit) {
+      myLimit = limit;
+    }
+
+    void submit(@NotNull Task task) {
+      synchronized (this) {
+        if (myRunning >= myLimit) {
+          myPending.add(task);
+          myDeferredTasks.incrementAndGet();
+          return;
+        }
+        myRunning++;
+      }
+      dispatch(task);
+    }
+
+    void done() {
+      Task next;
+      synchronized (this) {
+        next = myPending.poll();
+        if (next == null) {
+          myRunning--;
+          return;
+        }
+      }
+      dispatch(next);
+    }
+  }
+
+  private static final class Statistics {
+    private final AtomicLong myCount = new AtomicLong();
+    private final AtomicLong myTotalNanos = new AtomicLong();
+    private final AtomicLong myMaxNanos = new AtomicLong();
+
+    void add(long nanos) {
+      myCount.incrementAndGet();
+      myTotalNanos.addAndGet(nanos);
+      myMaxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    @Override
+    public String toString() {
+      long count = myCount.get();
+      return "avg " + (count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(myTotalNanos.get() / count)) + " us, max " + TimeUnit.NANOSECONDS.toMicros(myMaxNanos.get()) + " us";
+    }
+  }
+}
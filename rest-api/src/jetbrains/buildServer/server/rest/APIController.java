@@ -58,6 +58,7 @@ import org.glassfish.jersey.internal.inject.InjectionManager;
 import org.glassfish.jersey.spi.ExceptionMappers;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Component;
 import org.springframework.web.context.ServletContextAware;
 import org.springframework.web.servlet.ModelAndView;
@@ -73,6 +74,7 @@ public class APIController extends BaseController implements ServletContextAware
   public static final String REST_COMPATIBILITY_ALLOW_EXTERNAL_ID_AS_INTERNAL = "rest.compatibility.allowExternalIdAsInternal";
   public static final String INCLUDE_INTERNAL_ID_PROPERTY_NAME = "rest.beans.includeInternalId";
   public static final String REST_RESPONSE_PRETTYFORMAT = "rest.response.prettyformat";
+  private static final int SC_TOO_MANY_REQUESTS = 429;
   private static final String CONTEXT_REQUEST_ARGUMENTS_PREFIX = RestApiInternalRequestTag.REQUEST_ARGUMENTS_PREFIX;
   public static final String[] PATHS_WITHOUT_AUTH = new String[] {
     BuildRequest.BUILDS_ROOT_REQUEST_PATH + "/*/" + "statusIcon" + "*",
@@ -90,6 +92,7 @@ public class APIController extends BaseController implements ServletContextAware
   private final JerseyWebComponentInitializer myWebComponentInitializer;
   private final SecurityContextEx mySecurityContext;
   private final HttpAuthenticationManager myAuthManager;
+  private final AuthTokenAttemptsThrottler myAuthTokenAttemptsThrottler;
   private final ClassLoader myClassloader;
   private final RequestPathTransformInfo myRequestPathTransformInfo;
   private final PathSet myUnauthenticatedPathSet = new PathSet();
@@ -105,13 +108,15 @@ public class APIController extends BaseController implements ServletContextAware
     final ServerPluginInfo pluginDescriptor,
     final JerseyWebComponent jerseyWebComponent,
     final JerseyWebComponentInitializer jerseyWebComponentInitializer,
-    final HttpAuthenticationManager authManager
+    final HttpAuthenticationManager authManager,
+    final AuthTokenAttemptsThrottler authTokenAttemptsThrottler
   ) {
     super(server);
     myClassloader = getClass().getClassLoader();
     myWebComponent = jerseyWebComponent;
     myWebComponentInitializer = jerseyWebComponentInitializer;
     myAuthManager = authManager;
+    myAuthTokenAttemptsThrottler = authTokenAttemptsThrottler;
     mySecurityContext = securityContext;
     myRequestPathTransformInfo = requestPathTransformInfo;
     LOG = PluginUtil.getLoggerWithPluginName(APIController.class, pluginDescriptor);
@@ -208,12 +213,19 @@ public class APIController extends BaseController implements ServletContextAware
     if (TeamCityProperties.getBoolean("rest.use.authToken")) {
       String authToken = request.getParameter("authToken");
       if (StringUtil.isNotEmpty(authToken) && StringUtil.isNotEmpty(getAuthToken())) {
+        //to prevent brute-forcing, the token is not even checked while the client is over the limit of wrong attempts
+        final String remoteAddress = request.getRemoteAddr();
+        final long retryAfterSeconds = myAuthTokenAttemptsThrottler.getRetryAfterSeconds(remoteAddress);
+        if (retryAfterSeconds > 0) {
+          response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+          reportRestErrorResponse(response, SC_TOO_MANY_REQUESTS, null, "Too many wrong authToken attempts, retry in " + retryAfterSeconds + " seconds",
+                                  Level.INFO, request);
+          return null;
+        }
         if (authToken.equals(getAuthToken())) {
           runAsSystem = true;
         } else {
-          synchronized (this) {
-            Thread.sleep(10000); //to prevent brute-forcing
-          }
+          myAuthTokenAttemptsThrottler.registerFailedAttempt(remoteAddress);
           reportRestErrorResponse(response, HttpServletResponse.SC_UNAUTHORIZED, null, "Wrong authToken specified",
                                   Level.INFO, request);
           return null;
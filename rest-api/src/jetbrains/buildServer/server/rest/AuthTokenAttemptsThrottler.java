@@ -0,0 +1,151 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.rest;
+
+import com.google.common.cache.Cache;
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilder;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Limits the rate of wrong "authToken" attempts per client address.
+ * Each address may have up to "burst" wrong attempts at once, then one more attempt per interval (a token bucket kept as the time the bucket is refilled at).
+ * Requests over the limit are rejected without checking the token, so no thread waits and no shared lock is held.
+ * The number of tracked addresses is bounded, idle addresses are evicted once their bucket is refilled.
+ */
+@Component
+public class AuthTokenAttemptsThrottler {
+  public static final String INTERVAL_SECONDS = "rest.authToken.failedAttempts.intervalSeconds";
+  public static final String BURST = "rest.authToken.failedAttempts.burst";
+  public static final String MAX_TRACKED_ADDRESSES = "rest.authToken.failedAttempts.maxTrackedAddresses";
+
+  @NotNull private final LongSupplier myClock;
+  @NotNull private final AtomicLong myFailedAttempts = new AtomicLong();
+  @NotNull private final AtomicLong myBlockedAttempts = new AtomicLong();
+  @Nullable private volatile BucketsHolder myBucketsHolder;
+
+  public AuthTokenAttemptsThrottler() {
+    this(System::currentTimeMillis);
+  }
+
+  AuthTokenAttemptsThrottler(@NotNull final LongSupplier clock) {
+    myClock = clock;
+  }
+
+  /**
+   * @return number of seconds the client should wait before the next attempt, or 0 if the attempt is allowed
+   */
+  public long getRetryAfterSeconds(@NotNull final String address) {
+    final BucketsHolder holder = getBucketsHolder();
+    if (holder == null) {
+      return 0;
+    }
+    final AtomicLong refillTime = holder.myBuckets.getIfPresent(address);
+    if (refillTime == null) {
+      return 0;
+    }
+    final long waitMillis = refillTime.get() - myClock.getAsLong() - holder.getBurstToleranceMillis();
+    if (waitMillis <= 0) {
+      return 0;
+    }
+    myBlockedAttempts.incrementAndGet();
+    return TimeUnit.MILLISECONDS.toSeconds(waitMillis + TimeUnit.SECONDS.toMillis(1) - 1);
+  }
+
+  public void registerFailedAttempt(@NotNull final String address) {
+    myFailedAttempts.incrementAndGet();
+    final BucketsHolder holder = getBucketsHolder();
+    if (holder == null) {
+      return;
+    }
+    final AtomicLong refillTime;
+    try {
+      refillTime = holder.myBuckets.get(address, AtomicLong::new);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(e.getCause());
+    }
+    final long now = myClock.getAsLong();
+    refillTime.accumulateAndGet(now, (current, time) -> Math.max(current, time) + holder.myIntervalMillis);
+  }
+
+  @NotNull
+  public String getStatistics() {
+    final BucketsHolder holder = myBucketsHolder;
+    return "Wrong authToken attempts: " + myFailedAttempts.get() + ", blocked attempts: " + myBlockedAttempts.get() +
+           (holder == null ? "" : ", tracked addresses: " + holder.myBuckets.size() + " (max " + holder.myMaxSize + "), evictions: " + holder.myBuckets.stats().evictionCount());
+  }
+
+  /**
+   * @return null if throttling is disabled
+   */
+  @Nullable
+  private BucketsHolder getBucketsHolder() {
+    final long intervalMillis = TimeUnit.SECONDS.toMillis(TeamCityProperties.getLong(INTERVAL_SECONDS, 10));
+    if (intervalMillis <= 0) {
+      return null;
+    }
+    final int burst = Math.max(TeamCityProperties.getInteger(BURST, 3), 1);
+    final long maxSize = TeamCityProperties.getLong(MAX_TRACKED_ADDRESSES, 10000);
+    BucketsHolder holder = myBucketsHolder;
+    if (holder == null || holder.myIntervalMillis != intervalMillis || holder.myBurst != burst || holder.myMaxSize != maxSize) {
+      synchronized (this) {
+        holder = myBucketsHolder;
+        if (holder == null || holder.myIntervalMillis != intervalMillis || holder.myBurst != burst || holder.myMaxSize != maxSize) {
+          holder = new BucketsHolder(intervalMillis, burst, maxSize, myClock);
+          myBucketsHolder = holder;
+        }
+      }
+    }
+    return holder;
+  }
+
+  private static class BucketsHolder {
+    private final long myIntervalMillis;
+    private final int myBurst;
+    private final long myMaxSize;
+    @NotNull private final Cache<String, AtomicLong> myBuckets;
+
+    BucketsHolder(final long intervalMillis, final int burst, final long maxSize, @NotNull final LongSupplier clock) {
+      myIntervalMillis = intervalMillis;
+      myBurst = burst;
+      myMaxSize = maxSize;
+      // an attempt is allowed only while the bucket is refilled within burst * interval, so an address not seen for that long has a full bucket
+      myBuckets = CacheBuilder.newBuilder()
+                              .maximumSize(maxSize)
+                              .expireAfterAccess(intervalMillis * burst, TimeUnit.MILLISECONDS)
+                              .ticker(new Ticker() {
+                                @Override
+                                public long read() {
+                                  return TimeUnit.MILLISECONDS.toNanos(clock.getAsLong());
+                                }
+                              })
+                              .recordStats()
+                              .build();
+    }
+
+    long getBurstToleranceMillis() {
+      return myIntervalMillis * (myBurst - 1);
+    }
+  }
+}
@@ -1,160 +1,180 @@
-/*
- * Copyright 2000-2024 JetBrains s.r.o.
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- * http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- */
-
-package jetbrains.buildServer.server.rest.data;
-
-import com.intellij.openapi.diagnostic.Logger;
-import java.io.BufferedOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.util.List;
-import java.util.function.Supplier;
-import javax.ws.rs.core.StreamingOutput;
-import jetbrains.buildServer.util.FileUtil;
-import jetbrains.buildServer.util.browser.Browser;
-import jetbrains.buildServer.util.browser.BrowserException;
-import jetbrains.buildServer.util.browser.Element;
-import jetbrains.buildServer.web.artifacts.browser.ArtifactTreeElement;
-import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
-import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
-import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
-
-/**
- * @author Yegor.Yarko
- *         Date: 19.09.2014
- */
-public class ArchiveElement implements Element {
-  private static final Logger LOG = Logger.getInstance(ArchiveElement.class.getName());
-
-  private final List<ArtifactTreeElement> myArtifacts;
-  private final String myName;
-
-  public ArchiveElement(final List<ArtifactTreeElement> artifacts, final String name) {
-    myArtifacts = artifacts;
-    myName = name;
-  }
-
-  @Override
-  @NotNull
-  public String getName() {
-    return myName;
-  }
-
-  @Override
-  @NotNull
-  public String getFullName() {
-    return myName;
-  }
-
-  @Override
-  public boolean isLeaf() {
-    return true;
-  }
-
-  @Override
-  @Nullable
-  public Iterable<Element> getChildren() throws BrowserException {
-    return null;
-  }
-
-  @Override
-  public boolean isContentAvailable() {
-    return true;
-  }
-
-  public StreamingOutput getStreamingOutput(@Nullable final Long startOffset, @Nullable final Long length, final Supplier<String> detailsForLog) {
-    if (startOffset != null || length != null){
-      throw new IllegalStateException("Partial streaming is not yet supported");
-    }
-
-    return out -> {
-        final ZipArchiveOutputStream resultOutput = new ZipArchiveOutputStream(new BufferedOutputStream(out));
-        resultOutput.setEncoding(null); // TW-12815
-        int errorsCount = 0;
-        try {
-          for (ArtifactTreeElement artifact : myArtifacts) { //todo: need to read-lock artifacts???
-            if (!artifact.isLeaf()){
-              //process a directory
-              String directoryFullName = artifact.getFullName();
-              if (!directoryFullName.endsWith("/")){
-                directoryFullName += "/";
-              }
-              ZipArchiveEntry entry = new ZipArchiveEntry(directoryFullName);
-              final Long lastModified = artifact.getLastModified();
-              if (lastModified != null) entry.setTime(lastModified);
-              try {
-                resultOutput.putArchiveEntry(entry);
-                resultOutput.closeArchiveEntry();
-              } catch (IOException e) {
-                errorsCount++;
-                LOG.warnAndDebugDetails("Error packing directory, ignoring. Directory: '" + artifact.getFullName() + "'", e);
-              }
-            }
-
-            if (!artifact.isContentAvailable()) continue;
-
-            try {
-              InputStream stream = artifact.getInputStream();
-              try {
-                ZipArchiveEntry entry = new ZipArchiveEntry(artifact.getFullName());
-                final Long lastModified = artifact.getLastModified();
-                if (lastModified != null) entry.setTime(lastModified); //might need to add more, see com.intellij.util.io.ZipUtil.addFileToZip()
-                resultOutput.putArchiveEntry(entry);
-                try {
-                  FileUtil.copyStreams(stream, resultOutput);
-                } finally {
-                  resultOutput.closeArchiveEntry();
-                }
-              } finally {
-                FileUtil.close(stream);
-              }
-            } catch (IOException e) {
-              errorsCount++;
-              LOG.warnAndDebugDetails("Error packing artifact, ignoring. File: '" + artifact.getFullName() + "'", e);
-            }
-          }
-        } finally {
-          if (errorsCount > 0) {
-            LOG.warn("Encountered " + errorsCount + " errors while processing " + detailsForLog.get());
-          }
-          try {
-            resultOutput.close();
-          } catch (Exception e) {
-            LOG.warnAndDebugDetails("Error closing archived stream", e);
-        }
-      }
-    };
-  }
-
-
-  @Override
-  @NotNull
-  public InputStream getInputStream() throws IllegalStateException, IOException, BrowserException {
-    throw new IllegalStateException("Operation is not supported");
-  }
-
-  @Override
-  public long getSize() throws IllegalStateException {
-    return -1;
-  }
-
-  @Override
-  @NotNull
-  public Browser getBrowser() {
-    throw new IllegalStateException("Operation is not supported");
-  }
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.rest.data;
+
+import com.intellij.openapi.diagnostic.Logger;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.function.Supplier;
+import javax.ws.rs.core.StreamingOutput;
+import jetbrains.buildServer.server.rest.data.archive.ArchiveWorkers;
+import jetbrains.buildServer.server.rest.data.archive.ParallelZipWriter;
+import jetbrains.buildServer.server.rest.data.archive.StoredZipLayout;
+import jetbrains.buildServer.server.rest.data.archive.StoredZipLayoutCache;
+import jetbrains.buildServer.util.browser.Browser;
+import jetbrains.buildServer.util.browser.BrowserException;
+import jetbrains.buildServer.util.browser.Element;
+import jetbrains.buildServer.web.artifacts.browser.ArtifactTreeElement;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * @author Yegor.Yarko
+ *         Date: 19.09.2014
+ */
+public class ArchiveElement implements Element {
+  private static final Logger LOG = Logger.getInstance(ArchiveElement.class.getName());
+
+  private final List<ArtifactTreeElement> myArtifacts;
+  private final String myName;
+  private final boolean myStoredOnly;
+  @NotNull private final ArchiveWorkers myWorkers;
+  @Nullable private final StoredZipLayoutCache myLayoutCache;
+  @Nullable private final String myLayoutCacheScope;
+  private volatile StoredZipLayout myLayout;
+
+  /**
+   * @param storedOnly if true, the archive entries are not compressed. Such an archive has known size and supports partial streaming,
+   *                   but all the artifacts are read to compute the checksums before streaming.
+   */
+  public ArchiveElement(final List<ArtifactTreeElement> artifacts, final String name, final boolean storedOnly, @NotNull final ArchiveWorkers workers) {
+    this(artifacts, name, storedOnly, workers, null, null);
+  }
+
+  /**
+   * @param layoutCacheScope identifies the source of the artifacts (e.g. the build) to share the layout of the archive without compression between requests
+   *                         via <tt>layoutCache</tt>, null if the layout should not be shared
+   */
+  public ArchiveElement(final List<ArtifactTreeElement> artifacts, final String name, final boolean storedOnly, @NotNull final ArchiveWorkers workers,
+                        @Nullable final StoredZipLayoutCache layoutCache, @Nullable final String layoutCacheScope) {
+    myArtifacts = artifacts;
+    myName = name;
+    myStoredOnly = storedOnly;
+    myWorkers = workers;
+    myLayoutCache = layoutCache;
+    myLayoutCacheScope = layoutCacheScope;
+  }
+
+  @Override
+  @NotNull
+  public String getName() {
+    return myName;
+  }
+
+  @Override
+  @NotNull
+  public String getFullName() {
+    return myName;
+  }
+
+  @Override
+  public boolean isLeaf() {
+    return true;
+  }
+
+  @Override
+  @Nullable
+  public Iterable<Element> getChildren() throws BrowserException {
+    return null;
+  }
+
+  @Override
+  public boolean isContentAvailable() {
+    return true;
+  }
+
+  /**
+   * @return true if the archive can be streamed partially, see {@link #ArchiveElement(List, String, boolean, ArchiveWorkers)}
+   */
+  public boolean isRangeSupported() {
+    return myStoredOnly;
+  }
+
+  public StreamingOutput getStreamingOutput(@Nullable final Long startOffset, @Nullable final Long length, final Supplier<String> detailsForLog) {
+    if (myStoredOnly) {
+      return out -> {
+        final StoredZipLayout layout = getLayout(detailsForLog);
+        final long actualStartOffset = startOffset != null ? startOffset : 0;
+        final BufferedOutputStream resultOutput = new BufferedOutputStream(out);
+        layout.write(resultOutput, actualStartOffset, length != null ? length : layout.getSize() - actualStartOffset);
+        resultOutput.flush();
+      };
+    }
+
+    if (startOffset != null || length != null){
+      throw new IllegalStateException("Partial streaming is supported only for archives without compression");
+    }
+
+    return out -> {
+        final ZipArchiveOutputStream resultOutput = new ZipArchiveOutputStream(new BufferedOutputStream(out));
+        resultOutput.setEncoding(null); // TW-12815
+        int errorsCount = 0;
+        try {
+          //todo: need to read-lock artifacts???
+          errorsCount = new ParallelZipWriter(resultOutput, myWorkers).write(myArtifacts);
+        } finally {
+          if (errorsCount > 0) {
+            LOG.warn("Encountered " + errorsCount + " errors while processing " + detailsForLog.get());
+          }
+          try {
+            resultOutput.close();
+          } catch (Exception e) {
+            LOG.warnAndDebugDetails("Error closing archived stream", e);
+        }
+      }
+    };
+  }
+
+  @NotNull
+  private StoredZipLayout getLayout(@Nullable final Supplier<String> detailsForLog) {
+    StoredZipLayout result = myLayout;
+    if (result == null) {
+      synchronized (this) {
+        result = myLayout;
+        if (result == null) {
+          result = myLayoutCache != null && myLayoutCacheScope != null ? myLayoutCache.getLayout(myLayoutCacheScope, myArtifacts)
+                                                                       : StoredZipLayout.create(myArtifacts, myWorkers);
+          if (result.getErrorsCount() > 0) {
+            LOG.warn("Encountered " + result.getErrorsCount() + " errors while preparing archive '" + myName + "'" + (detailsForLog != null ? " for " + detailsForLog.get() : ""));
+          }
+          myLayout = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  @Override
+  @NotNull
+  public InputStream getInputStream() throws IllegalStateException, IOException, BrowserException {
+    throw new IllegalStateException("Operation is not supported");
+  }
+
+  @Override
+  public long getSize() throws IllegalStateException {
+    return myStoredOnly ? getLayout(null).getSize() : -1;
+  }
+
+  @Override
+  @NotNull
+  public Browser getBrowser() {
+    throw new IllegalStateException("Operation is not supported");
+  }
 }
\ No newline at end of file
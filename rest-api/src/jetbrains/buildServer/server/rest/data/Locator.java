@@ -16,6 +16,8 @@
 
 package jetbrains.buildServer.server.rest.data;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.intellij.openapi.diagnostic.Logger;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
@@ -63,6 +65,10 @@ public class Locator {
   private static final String DIMENSIONS_DELIMITER = ",";
   private static final String DIMENSION_COMPLEX_VALUE_START_DELIMITER = "(";
   private static final String DIMENSION_COMPLEX_VALUE_END_DELIMITER = ")";
+  private static final char NAME_VALUE_DELIMITER_CHAR = ':';
+  private static final char DIMENSIONS_DELIMITER_CHAR = ',';
+  private static final char COMPLEX_VALUE_START_CHAR = '(';
+  private static final char COMPLEX_VALUE_END_CHAR = ')';
   private static final List<String> LIST_WITH_EMPTY_STRING = Arrays.asList("");
   private static final String BASE64_ESCAPE_FAKE_DIMENSION = "$base64";
   public static final String LOCATOR_SINGLE_VALUE_UNUSED_NAME = "$singleValue";
@@ -73,11 +79,24 @@ public class Locator {
   public static final String BOOLEAN_FALSE = "false";
   public static final String BOOLEAN_ANY = "any";
 
+  /**
+   * Maximum number of distinct locator texts to keep parsed dimensions for, 0 to disable the cache.
+   */
+  public static final String PARSED_CACHE_MAX_SIZE = "rest.locator.parsedCache.maxSize";
+  /**
+   * Locator texts longer than this are always parsed anew and never cached.
+   */
+  public static final String PARSED_CACHE_MAX_TEXT_LENGTH = "rest.locator.parsedCache.maxTextLength";
+
 
   private final String myRawValue;
   @NotNull private final Metadata myMetadata;
   private boolean modified = false;
-  private final Map<String, List<String>> myDimensions;
+  private Map<String, List<String>> myDimensions;
+  /**
+   * true if myDimensions is shared (e.g. comes from the parsed locators cache) and should be copied before modification
+   */
+  private boolean myDimensionsShared = false;
   private final String mySingleValue;
 
   @NotNull private final Set<String> myUsedDimensions;
@@ -99,7 +118,8 @@ public class Locator {
     myRawValue = locator.myRawValue;
     modified = locator.modified;
 
-    myDimensions = new HashMap<>(locator.myDimensions);
+    myDimensions = locator.myDimensionsShared ? locator.myDimensions : new HashMap<>(locator.myDimensions);
+    myDimensionsShared = locator.myDimensionsShared;
     mySingleValue = locator.mySingleValue;
     myUsedDimensions = new HashSet<>(locator.myUsedDimensions);
     mySupportedDimensions = locator.mySupportedDimensions != null ? locator.mySupportedDimensions.clone() : null;
@@ -157,7 +177,8 @@ public class Locator {
       mySingleValue = null;
       myHiddenSupportedDimensions.add(HELP_DIMENSION);
       myIgnoreUnusedDimensions.add(HELP_DIMENSION);
-      myDimensions = parse(locator, mySupportedDimensions, myHiddenSupportedDimensions, myMetadata.extendedMode);
+      myDimensions = parseCached(locator, mySupportedDimensions, myHiddenSupportedDimensions, myMetadata.extendedMode);
+      myDimensionsShared = true;
     }
   }
 
@@ -344,6 +365,39 @@ public class Locator {
     myHiddenSupportedDimensions.addAll(Arrays.asList(hiddenDimensions));
   }
 
+  /**
+   * Parses multi-dimension locator text reusing the result of the previous parsing of the same text when available.
+   * The returned map is shared and must not be modified: use {@link #ensureDimensionsModifiable()} before changing the dimensions.
+   */
+  @NotNull
+  private static Map<String, List<String>> parseCached(@NotNull final String locator,
+                                                       @Nullable final String[] supportedDimensions,
+                                                       @NotNull final Collection<String> hiddenSupportedDimensions,
+                                                       final boolean extendedMode) {
+    final ParsedLocatorCache cache = ParsedLocatorCache.get();
+    if (cache == null || locator.length() > cache.myMaxTextLength) {
+      return parse(locator, supportedDimensions, hiddenSupportedDimensions, extendedMode);
+    }
+    final Cache<String, Map<String, List<String>>> textCache = cache.getCache(extendedMode, TeamCityProperties.getBooleanOrTrue("rest.locator.allowBase64"));
+    final Map<String, List<String>> cached = textCache.getIfPresent(locator);
+    if (cached != null) {
+      for (String name : cached.keySet()) {
+        if (!isValidName(name, supportedDimensions, hiddenSupportedDimensions, extendedMode)) {
+          //parse once again to report exactly the same error as for not cached text
+          return parse(locator, supportedDimensions, hiddenSupportedDimensions, extendedMode);
+        }
+      }
+      return cached;
+    }
+
+    final Map<String, List<String>> parsed = parse(locator, supportedDimensions, hiddenSupportedDimensions, extendedMode);
+    final Map<String, List<String>> result = new HashMap<>(parsed.size());
+    parsed.forEach((name, values) -> result.put(name, values.size() == 1 && values.get(0).isEmpty() ? LIST_WITH_EMPTY_STRING : Collections.unmodifiableList(values)));
+    final Map<String, List<String>> immutableResult = Collections.unmodifiableMap(result);
+    textCache.put(locator, immutableResult);
+    return immutableResult;
+  }
+
   @NotNull
   private static HashMap<String, List<String>> parse(@NotNull final String locator,
                                                      @Nullable final String[] supportedDimensions,
@@ -351,105 +405,80 @@ public class Locator {
                                                      final boolean extendedMode) {
     StringPool stringPool = RestContext.getThreadLocalStringPool();
     HashMap<String, List<String>> result = new HashMap<>();
-    String currentDimensionName;
-    String currentDimensionValue;
+    final int length = locator.length();
     int parsedIndex = 0;
-    while (parsedIndex < locator.length()) {
+    while (parsedIndex < length) {
       //expecting name start at parsedIndex
-      int nameEnd = locator.length();
-
-      String nextDelimeter = null;
-      int currentIndex = parsedIndex;
-      while (currentIndex < locator.length()) {
-        if (locator.startsWith(DIMENSIONS_DELIMITER, currentIndex)) {
-          nextDelimeter = DIMENSIONS_DELIMITER;
-          nameEnd = currentIndex;
-          break;
-        }
-        if (locator.startsWith(DIMENSION_COMPLEX_VALUE_START_DELIMITER, currentIndex)) {
-          nextDelimeter = DIMENSION_COMPLEX_VALUE_START_DELIMITER;
-          nameEnd = currentIndex;
-          break;
-        }
-        if (locator.startsWith(DIMENSION_NAME_VALUE_DELIMITER, currentIndex)) {
-          nextDelimeter = DIMENSION_NAME_VALUE_DELIMITER;
-          nameEnd = currentIndex;
+      int nameEnd = parsedIndex;
+      char nextDelimiter = 0;
+      while (nameEnd < length) {
+        final char c = locator.charAt(nameEnd);
+        if (c == DIMENSIONS_DELIMITER_CHAR || c == COMPLEX_VALUE_START_CHAR || c == NAME_VALUE_DELIMITER_CHAR) {
+          nextDelimiter = c;
           break;
         }
-        currentIndex++;
+        nameEnd++;
       }
 
       if (nameEnd == parsedIndex) {
-        throw new LocatorProcessException(locator, parsedIndex, "Could not find dimension name, found '" + nextDelimeter + "' instead");
+        throw new LocatorProcessException(locator, parsedIndex, "Could not find dimension name, found '" + nextDelimiter + "' instead");
       }
 
-      currentDimensionName = locator.substring(parsedIndex, nameEnd);
+      String currentDimensionName = locator.substring(parsedIndex, nameEnd);
       if (!isValidName(currentDimensionName, supportedDimensions, hiddenSupportedDimensions, extendedMode)) {
         throw new LocatorProcessException(locator, parsedIndex, "Invalid dimension name :'" + currentDimensionName + "'. Should contain only alpha-numeric symbols" +
                                                                 (supportedDimensions == null || supportedDimensions.length == 0
                                                                  ? ""
                                                                  : " or be known one: " + Arrays.toString(supportedDimensions)));
       }
-      currentDimensionValue = "";
+      String currentDimensionValue = "";
       parsedIndex = nameEnd;
-      if (nextDelimeter != null) {
-        if (DIMENSIONS_DELIMITER.equals(nextDelimeter)) {
-          parsedIndex = nameEnd + nextDelimeter.length();
-        } else {
-          if (DIMENSION_NAME_VALUE_DELIMITER.equals(nextDelimeter)) {
-            parsedIndex = nameEnd + nextDelimeter.length();
-          }
+      if (nextDelimiter == DIMENSIONS_DELIMITER_CHAR) {
+        parsedIndex = nameEnd + 1;
+      } else if (nextDelimiter != 0) {
+        if (nextDelimiter == NAME_VALUE_DELIMITER_CHAR) {
+          parsedIndex = nameEnd + 1;
+        }
 
-          if (DIMENSION_COMPLEX_VALUE_START_DELIMITER.equals(nextDelimeter)) {
-            parsedIndex = nameEnd;
+        //here begins the value at parsedIndex
+        if (parsedIndex < length && locator.charAt(parsedIndex) == COMPLEX_VALUE_START_CHAR) {
+          //complex value detected
+          final int complexValueEnd = findNextOrEndOfStringConsideringBraces(locator, parsedIndex, (char)0);
+          if (complexValueEnd < 0) {
+            throw new LocatorProcessException(locator, parsedIndex + 1, "Could not find matching '" + DIMENSION_COMPLEX_VALUE_END_DELIMITER + "'");
           }
-
-          //here begins the value at parsedIndex
-          final String valueAndRest = locator.substring(parsedIndex);
-          if (valueAndRest.startsWith(DIMENSION_COMPLEX_VALUE_START_DELIMITER)) {
-            //complex value detected
-            final int complexValueEnd = findNextOrEndOfStringConsideringBraces(valueAndRest, null);
-            if (complexValueEnd < 0) {
-              throw new LocatorProcessException(locator, parsedIndex + DIMENSION_COMPLEX_VALUE_START_DELIMITER.length(),
-                                                "Could not find matching '" + DIMENSION_COMPLEX_VALUE_END_DELIMITER + "'");
-            }
-            currentDimensionValue = valueAndRest.substring(DIMENSION_COMPLEX_VALUE_START_DELIMITER.length(), complexValueEnd - DIMENSION_COMPLEX_VALUE_END_DELIMITER.length());
-            parsedIndex = parsedIndex + complexValueEnd;
-            if (parsedIndex != locator.length()) {
-              if (!locator.startsWith(DIMENSIONS_DELIMITER, parsedIndex)) {
-                throw new LocatorProcessException(locator, parsedIndex, "No dimensions delimiter '" + DIMENSIONS_DELIMITER + "' after complex value");
-              } else {
-                parsedIndex += DIMENSIONS_DELIMITER.length();
-              }
-            }
-          } else {
-            int valueEnd = findNextOrEndOfStringConsideringBraces(valueAndRest, DIMENSIONS_DELIMITER);
-            if (valueEnd < 0) {
-              throw new LocatorProcessException(locator, parsedIndex, "Could not find matching '" + DIMENSION_COMPLEX_VALUE_END_DELIMITER + "'");
-            } else if (valueEnd == valueAndRest.length()) {
-              currentDimensionValue = valueAndRest;
-              parsedIndex = locator.length();
-            } else {
-              currentDimensionValue = valueAndRest.substring(0, valueEnd);
-              parsedIndex = parsedIndex + valueEnd + DIMENSIONS_DELIMITER.length();
-            }
-            if (ANY_LITERAL.equals(currentDimensionValue)) {
-              currentDimensionValue = ANY_LITERAL; //this was not a complex value, so setting exactly the same string to be able to determine this on retrieving
+          currentDimensionValue = locator.substring(parsedIndex + 1, complexValueEnd - 1);
+          parsedIndex = complexValueEnd;
+          if (parsedIndex != length) {
+            if (locator.charAt(parsedIndex) != DIMENSIONS_DELIMITER_CHAR) {
+              throw new LocatorProcessException(locator, parsedIndex, "No dimensions delimiter '" + DIMENSIONS_DELIMITER + "' after complex value");
             }
+            parsedIndex++;
+          }
+        } else {
+          final int valueEnd = findNextOrEndOfStringConsideringBraces(locator, parsedIndex, DIMENSIONS_DELIMITER_CHAR);
+          if (valueEnd < 0) {
+            throw new LocatorProcessException(locator, parsedIndex, "Could not find matching '" + DIMENSION_COMPLEX_VALUE_END_DELIMITER + "'");
+          }
+          currentDimensionValue = locator.substring(parsedIndex, valueEnd);
+          parsedIndex = valueEnd == length ? length : valueEnd + 1;
+          if (ANY_LITERAL.equals(currentDimensionValue)) {
+            currentDimensionValue = ANY_LITERAL; //this was not a complex value, so setting exactly the same string to be able to determine this on retrieving
           }
-          String unescapedValue = getBase64UnescapedSingleValue(currentDimensionValue, extendedMode);
-          if (unescapedValue != null) currentDimensionValue = unescapedValue;
         }
+        String unescapedValue = getBase64UnescapedSingleValue(currentDimensionValue, extendedMode);
+        if (unescapedValue != null) currentDimensionValue = unescapedValue;
       }
       currentDimensionName = stringPool.reuse(currentDimensionName);
       final List<String> currentList = result.get(currentDimensionName);
       final List<String> newList;
       if (currentList == null) {
         // Dimension with an empy string value is a frequent case in a Fields, so let's reuse a special list for that list.
-        newList = currentDimensionValue.equals("") ? LIST_WITH_EMPTY_STRING : Arrays.asList(currentDimensionValue);
+        newList = currentDimensionValue.isEmpty() ? LIST_WITH_EMPTY_STRING : Collections.singletonList(reuseValue(stringPool, currentDimensionValue));
       } else {
-        newList = new ArrayList<>(currentList);
-        newList.add(stringPool.reuse(currentDimensionValue));
+        newList = new ArrayList<>(currentList.size() + 1);
+        newList.addAll(currentList);
+        newList.add(reuseValue(stringPool, currentDimensionValue));
       }
 
       result.put(currentDimensionName, newList);
@@ -459,35 +488,40 @@ public class Locator {
   }
 
   /**
-   * Scans text skipping blocks wrapped in "()", returns on found stopText, after closing ")" if stopText is null or on reaching end of string
+   * "$any" values are not pooled as the plain value should stay the same instance as {@link #ANY_LITERAL} and the ()-escaped one should not.
+   */
+  @NotNull
+  private static String reuseValue(@NotNull final StringPool stringPool, @NotNull final String value) {
+    return ANY_LITERAL.equals(value) ? value : stringPool.reuse(value);
+  }
+
+  /**
+   * Scans text starting from the position specified skipping blocks wrapped in "()", returns on found stopChar,
+   * after closing ")" if stopChar is 0 or on reaching end of string
    *
    * @param text
-   * @param stopText
-   * @return negative value if text is not well-formed, position of a char before stopText, last char of () sequence if stopText is null or length of the text
+   * @param from     position to start scanning at
+   * @param stopChar char to stop at or 0 to stop after the first "()" block
+   * @return negative value if text is not well-formed, position of stopChar, position after the last char of () sequence if stopChar is 0 or length of the text
    */
-  private static int findNextOrEndOfStringConsideringBraces(@NotNull final String text, @Nullable final String stopText) {
-    int pos = 0;
+  private static int findNextOrEndOfStringConsideringBraces(@NotNull final String text, final int from, final char stopChar) {
+    final int length = text.length();
     int nesting = 0;
-    while (pos < text.length()) {
-      if (text.startsWith(DIMENSION_COMPLEX_VALUE_START_DELIMITER, pos)) {
+    for (int pos = from; pos < length; pos++) {
+      final char c = text.charAt(pos);
+      if (c == COMPLEX_VALUE_START_CHAR) {
         nesting++;
-        pos = pos + DIMENSION_COMPLEX_VALUE_START_DELIMITER.length();
-      } else if (text.startsWith(DIMENSION_COMPLEX_VALUE_END_DELIMITER, pos)) {
-        if (nesting == 0) {
-          //out of order ")", ignore
-        } else {
+      } else if (c == COMPLEX_VALUE_END_CHAR) {
+        if (nesting != 0) { //out of order ")" is ignored
           nesting--;
         }
-        pos = pos + DIMENSION_COMPLEX_VALUE_END_DELIMITER.length();
-        if (nesting == 0 && stopText == null) return pos;
-      } else if (nesting == 0 && stopText != null && text.startsWith(stopText, pos)) {
+        if (nesting == 0 && stopChar == 0) return pos + 1;
+      } else if (nesting == 0 && stopChar != 0 && c == stopChar) {
         return pos;
-      } else {
-        pos++;
       }
     }
-    if (nesting != 0) return -pos;
-    return pos;
+    if (nesting != 0) return -1;
+    return length;
   }
 
   private static boolean isValidName(@Nullable final String name,
@@ -959,6 +993,7 @@ public class Locator {
     if (isSingleValue()) {
       throw new IllegalArgumentException("Attempt to set dimension '" + name + "' for single value locator.");
     }
+    ensureDimensionsModifiable();
     myDimensions.put(name, values);
     markUnused(name);
     modified = true; // todo: use setDimension to replace the dimension in myRawValue
@@ -1011,11 +1046,21 @@ public class Locator {
       throw new LocatorProcessException("Attempt to remove dimension '" + name + "' for single value locator.");
     }
     boolean result = myDimensions.get(name) != null;
-    myDimensions.remove(name);
+    if (myDimensions.containsKey(name)) {
+      ensureDimensionsModifiable();
+      myDimensions.remove(name);
+    }
     modified = true; // todo: use setDimension to replace the dimension in myRawValue
     return result;
   }
 
+  private void ensureDimensionsModifiable() {
+    if (myDimensionsShared) {
+      myDimensions = new HashMap<>(myDimensions);
+      myDimensionsShared = false;
+    }
+  }
+
   /**
    * Provides the names of dimensions whose values were never retrieved and those not marked via addIgnoreUnusedDimensions
    *
@@ -1251,4 +1296,43 @@ public class Locator {
       this.surroundingBracesHaveSpecialMeaning = surroundingBracesHaveSpecialMeaning;
     }
   }
-}
\ No newline at end of file
+
+  /**
+   * Bounded cache of the parsing results keyed by the raw locator text.
+   * The cached dimensions are immutable, each Locator tracks used dimensions on its own and copies the dimensions on first modification.
+   */
+  private static final class ParsedLocatorCache {
+    private static volatile ParsedLocatorCache ourInstance;
+
+    private final long myMaxSize;
+    private final int myMaxTextLength;
+    private final List<Cache<String, Map<String, List<String>>>> myCaches = new ArrayList<>(4);
+
+    private ParsedLocatorCache(final long maxSize, final int maxTextLength) {
+      myMaxSize = maxSize;
+      myMaxTextLength = maxTextLength;
+      //separate caches for each combination of extended mode and base64 support as parsing results depend on them
+      for (int i = 0; i < 4; i++) {
+        myCaches.add(CacheBuilder.newBuilder().maximumSize(maxSize).build());
+      }
+    }
+
+    @NotNull
+    Cache<String, Map<String, List<String>>> getCache(final boolean extendedMode, final boolean allowBase64) {
+      return myCaches.get((extendedMode ? 1 : 0) + (allowBase64 ? 2 : 0));
+    }
+
+    @Nullable
+    static ParsedLocatorCache get() {
+      final long maxSize = TeamCityProperties.getLong(PARSED_CACHE_MAX_SIZE, 2000);
+      if (maxSize <= 0) return null;
+      final int maxTextLength = TeamCityProperties.getInteger(PARSED_CACHE_MAX_TEXT_LENGTH, 1000);
+      ParsedLocatorCache result = ourInstance;
+      if (result == null || result.myMaxSize != maxSize || result.myMaxTextLength != maxTextLength) {
+        result = new ParsedLocatorCache(maxSize, maxTextLength);
+        ourInstance = result;
+      }
+      return result;
+    }
+  }
+}
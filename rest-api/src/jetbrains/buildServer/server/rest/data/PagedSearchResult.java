@@ -33,6 +33,7 @@ public class PagedSearchResult<T> {
   private final boolean myLookupLimitReached;
   @Nullable private final Long myLookupLimit;
   @Nullable private final T myLastProcessedItem;
+  @Nullable private final String myContinuationToken;
 
   public PagedSearchResult(@NotNull final List<T> entries, @Nullable final Long requestedStart, @Nullable final Integer requestedCount) {
     myEntries = entries;
@@ -43,18 +44,39 @@ public class PagedSearchResult<T> {
     myLookupLimit = null;
     myLookupLimitReached = false;
     myLastProcessedItem = null;
+    myContinuationToken = null;
   }
 
   public PagedSearchResult(@NotNull final List<T> entries, @Nullable final Long requestedStart, @Nullable final Integer requestedCount,
                            @Nullable final Long actuallyProcessedCount, @Nullable final Long lookupLimit, final boolean lookupLimitReached, @Nullable final T lastProcessedItem) {
+    this(entries, requestedStart, requestedCount, actuallyProcessedCount, lookupLimit, lookupLimitReached, lastProcessedItem, null);
+  }
+
+  /**
+   * @param continuationToken opaque token to get the next page starting right after the last processed item, see {@link jetbrains.buildServer.server.rest.data.finder.ContinuationTokenSupport}
+   */
+  public PagedSearchResult(@NotNull final List<T> entries, @Nullable final Long requestedStart, @Nullable final Integer requestedCount,
+                           @Nullable final Long actuallyProcessedCount, @Nullable final Long lookupLimit, final boolean lookupLimitReached, @Nullable final T lastProcessedItem,
+                           @Nullable final String continuationToken) {
+    this(entries, entries.size(), requestedStart, requestedCount, actuallyProcessedCount, lookupLimit, lookupLimitReached, lastProcessedItem, continuationToken);
+  }
+
+  /**
+   * @param actualCount number of the found items, can differ from the entries size when the items were passed to a consumer as they were found and not collected,
+   *                    see {@link jetbrains.buildServer.server.rest.data.finder.FinderImpl#processItems(String, jetbrains.buildServer.util.ItemProcessor)}
+   */
+  public PagedSearchResult(@NotNull final List<T> entries, final int actualCount, @Nullable final Long requestedStart, @Nullable final Integer requestedCount,
+                           @Nullable final Long actuallyProcessedCount, @Nullable final Long lookupLimit, final boolean lookupLimitReached, @Nullable final T lastProcessedItem,
+                           @Nullable final String continuationToken) {
     myEntries = entries;
-    myActualCount = entries.size();
+    myActualCount = actualCount;
     myStart = requestedStart;
     myCount = requestedCount;
     myActuallyProcessedCount = actuallyProcessedCount;
     myLookupLimit = lookupLimit;
     myLookupLimitReached = lookupLimitReached;
     myLastProcessedItem = lastProcessedItem;
+    myContinuationToken = continuationToken;
   }
 
   @Nullable
@@ -95,6 +117,14 @@ public class PagedSearchResult<T> {
     return myLookupLimit;
   }
 
+  /**
+   * @return token to be used in the next page request instead of "start", null if not supported or not requested
+   */
+  @Nullable
+  public String getContinuationToken() {
+    return myContinuationToken;
+  }
+
   public boolean isNextPageAvailable(){
     return myCount != null && myActualCount >= myCount || myLookupLimit != null && myLookupLimitReached;
   }
@@ -21,6 +21,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.BooleanSupplier;
 import jetbrains.buildServer.server.rest.errors.AuthorizationFailedException;
 import jetbrains.buildServer.server.rest.jersey.provider.annotated.JerseyInjectable;
 import jetbrains.buildServer.server.rest.util.BuildTypeOrTemplate;
@@ -42,6 +43,9 @@ import org.springframework.stereotype.Component;
 @JerseyInjectable
 @Component("restPermissionChecker")
 public class PermissionChecker {
+  private static final String GLOBAL_SCOPE = "\0global";
+  private static final String GLOBAL_OR_ALL_PROJECTS_SCOPE = "\0globalOrAllProjects";
+
   @NotNull private final SecurityContextEx mySecurityContext;
   @NotNull private final ProjectManager myProjectManager;
 
@@ -61,7 +65,11 @@ public class PermissionChecker {
   }
 
   private boolean hasGlobalPermission(@NotNull final AuthorityHolder authorityHolder, @NotNull final Permission permission) {
-    if (authorityHolder.isPermissionGrantedGlobally(permission)) {
+    return isGranted(authorityHolder, GLOBAL_OR_ALL_PROJECTS_SCOPE, permission, () -> calculateHasGlobalPermission(authorityHolder, permission));
+  }
+
+  private boolean calculateHasGlobalPermission(@NotNull final AuthorityHolder authorityHolder, @NotNull final Permission permission) {
+    if (isGrantedGlobally(authorityHolder, permission)) {
       return true;
     }
     if (permission.isProjectAssociationSupported()) {
@@ -149,12 +157,12 @@ public class PermissionChecker {
                                      @Nullable final String additionalMessage) throws AuthorizationFailedException{
     final AuthorityHolder authorityHolder = mySecurityContext.getAuthorityHolder();
     if (internalProjectId == null){
-      if (authorityHolder.isPermissionGrantedGlobally(permission)){
+      if (isGrantedGlobally(authorityHolder, permission)){
         return;
       }
       throw new AuthorizationFailedException("No permission '" + permission + " is granted globally.");
     }
-    if (!authorityHolder.isPermissionGrantedForProject(internalProjectId, permission)) {
+    if (!isGrantedForProject(authorityHolder, internalProjectId, permission)) {
       throw new AuthorizationFailedException("User " + authorityHolder.getAssociatedUser() + " does not have permission " + permission +
                                              " in project with internal id: '" + internalProjectId + "'" + (!StringUtil.isEmpty(additionalMessage) ? additionalMessage : ""));
     }
@@ -188,7 +196,34 @@ public class PermissionChecker {
     if (internalProjectId == null){
       return hasGlobalPermission(authorityHolder, permission);
     }
-    return authorityHolder.isPermissionGrantedForProject(internalProjectId, permission);
+    return isGrantedForProject(authorityHolder, internalProjectId, permission);
+  }
+
+  public boolean isPermissionGrantedGlobally(@NotNull final Permission permission) {
+    return isGrantedGlobally(mySecurityContext.getAuthorityHolder(), permission);
+  }
+
+  public boolean isPermissionGrantedForProject(@NotNull final Permission permission, @NotNull final String internalProjectId) {
+    return isGrantedForProject(mySecurityContext.getAuthorityHolder(), internalProjectId, permission);
+  }
+
+  private static boolean isGrantedGlobally(@NotNull final AuthorityHolder authorityHolder, @NotNull final Permission permission) {
+    return isGranted(authorityHolder, GLOBAL_SCOPE, permission, () -> authorityHolder.isPermissionGrantedGlobally(permission));
+  }
+
+  private static boolean isGrantedForProject(@NotNull final AuthorityHolder authorityHolder, @NotNull final String internalProjectId, @NotNull final Permission permission) {
+    return isGranted(authorityHolder, internalProjectId, permission, () -> authorityHolder.isPermissionGrantedForProject(internalProjectId, permission));
+  }
+
+  /**
+   * Remembers the result for the rest of the request, if there is one
+   */
+  private static boolean isGranted(@NotNull final AuthorityHolder authorityHolder,
+                                   @NotNull final String scope,
+                                   @NotNull final Permission permission,
+                                   @NotNull final BooleanSupplier check) {
+    final PermissionsMemo memo = RestContext.getThreadLocalPermissionsMemo();
+    return memo == null ? check.getAsBoolean() : memo.isGranted(authorityHolder, scope, permission, check);
   }
 
   public boolean hasPermissionInAnyProject(@NotNull final Permission permission) {
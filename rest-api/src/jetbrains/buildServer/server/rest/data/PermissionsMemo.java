@@ -0,0 +1,88 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.rest.data;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import jetbrains.buildServer.serverSide.auth.AuthorityHolder;
+import jetbrains.buildServer.serverSide.auth.Permission;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Results of the permission checks made while processing a single request, see {@link RestContext#getThreadLocalPermissionsMemo()}.
+ * Never outlives the request, so permission changes are honored by the next request.
+ * Shared with the worker contexts of the same request, hence thread-safe.
+ */
+public class PermissionsMemo {
+  private static final AtomicLong ourPerformedChecks = new AtomicLong();
+  private static final AtomicLong ourSavedChecks = new AtomicLong();
+
+  @NotNull private final Map<Key, Boolean> myResults = new ConcurrentHashMap<>();
+
+  /**
+   * @param scope identifies what the permission is checked for, e.g. internal project id
+   * @param check performs the actual check if there is no remembered result
+   */
+  public boolean isGranted(@NotNull final AuthorityHolder authorityHolder, @NotNull final String scope, @NotNull final Permission permission, @NotNull final BooleanSupplier check) {
+    final Key key = new Key(authorityHolder, scope, permission);
+    final Boolean result = myResults.get(key);
+    if (result != null) {
+      ourSavedChecks.incrementAndGet();
+      return result;
+    }
+    ourPerformedChecks.incrementAndGet();
+    final boolean checkResult = check.getAsBoolean();
+    myResults.put(key, checkResult);
+    return checkResult;
+  }
+
+  @NotNull
+  public static String getStatistics() {
+    return "Permission checks performed: " + ourPerformedChecks.get() + ", saved: " + ourSavedChecks.get();
+  }
+
+  private static class Key {
+    /**
+     * Compared by identity: the same authority holder is used for the whole request, while equality of the holders is not defined
+     */
+    @NotNull private final AuthorityHolder myAuthorityHolder;
+    @NotNull private final String myScope;
+    @NotNull private final Permission myPermission;
+
+    private Key(@NotNull final AuthorityHolder authorityHolder, @NotNull final String scope, @NotNull final Permission permission) {
+      myAuthorityHolder = authorityHolder;
+      myScope = scope;
+      myPermission = permission;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      final Key key = (Key)o;
+      return myAuthorityHolder == key.myAuthorityHolder && myScope.equals(key.myScope) && myPermission == key.myPermission;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(System.identityHashCode(myAuthorityHolder), myScope, myPermission);
+    }
+  }
+}
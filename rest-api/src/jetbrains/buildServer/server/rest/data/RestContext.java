@@ -33,9 +33,15 @@ public class RestContext {
 
   private final Function<String, Object> myFunction;
   private final StringPool myStringPool = new SimpleStringPool();
+  private final PermissionsMemo myPermissionsMemo;
 
   public RestContext(@NotNull Function<String, Object> function) {
+    this(function, new PermissionsMemo());
+  }
+
+  private RestContext(@NotNull Function<String, Object> function, @NotNull PermissionsMemo permissionsMemo) {
     myFunction = function;
+    myPermissionsMemo = permissionsMemo;
   }
 
 
@@ -53,6 +59,15 @@ public class RestContext {
     return ctx.myStringPool;
   }
 
+  /**
+   * @return permission checks results memo of the current request or null if there is no request context
+   */
+  @Nullable
+  public static PermissionsMemo getThreadLocalPermissionsMemo() {
+    RestContext ctx = ourThreadLocalInstance.get();
+    return ctx == null ? null : ctx.myPermissionsMemo;
+  }
+
   private static void setThreadLocal(@NotNull RestContext context) {
     ourThreadLocalInstance.set(context);
   }
@@ -74,6 +89,14 @@ public class RestContext {
     }
   }
 
+  /**
+   * @return context with the same variables and permissions memo to be set in another thread while processing the same request. The string pool is not shared as it is not thread-safe.
+   */
+  @NotNull
+  public RestContext createWorkerContext() {
+    return new RestContext(myFunction, myPermissionsMemo);
+  }
+
   @Nullable
   public Object getVar(@NotNull final String name) {
     if (!isValidName(name)) {
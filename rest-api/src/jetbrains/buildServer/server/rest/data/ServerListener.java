@@ -17,8 +17,15 @@
 package jetbrains.buildServer.server.rest.data;
 
 import java.util.Date;
-import jetbrains.buildServer.serverSide.BuildServerAdapter;
-import jetbrains.buildServer.serverSide.SBuildServer;
+import java.util.List;
+import jetbrains.buildServer.server.rest.data.build.BuildPromotionsResultCache;
+import jetbrains.buildServer.server.rest.data.build.BuildStatusCache;
+import jetbrains.buildServer.server.rest.data.finder.impl.AgentCompatibilityMatrix;
+import jetbrains.buildServer.server.rest.data.problem.TestRunsIndexCache;
+import jetbrains.buildServer.serverSide.*;
+import jetbrains.buildServer.users.User;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.springframework.stereotype.Component;
 
 /**
@@ -28,8 +35,22 @@ import org.springframework.stereotype.Component;
 @Component
 public class ServerListener extends BuildServerAdapter {
   protected Date myServerStartTime;
+  @NotNull private final ProjectManager myProjectManager;
+  @NotNull private final BuildPromotionsResultCache myBuildsResultCache;
+  @NotNull private final BuildStatusCache myBuildStatusCache;
+  @NotNull private final AgentCompatibilityMatrix myAgentCompatibilityMatrix;
+  @NotNull private final TestRunsIndexCache myTestRunsIndexCache;
 
-  public ServerListener(final SBuildServer server) {
+  public ServerListener(final SBuildServer server,
+                        @NotNull final BuildPromotionsResultCache buildsResultCache,
+                        @NotNull final BuildStatusCache buildStatusCache,
+                        @NotNull final AgentCompatibilityMatrix agentCompatibilityMatrix,
+                        @NotNull final TestRunsIndexCache testRunsIndexCache) {
+    myProjectManager = server.getProjectManager();
+    myBuildsResultCache = buildsResultCache;
+    myBuildStatusCache = buildStatusCache;
+    myAgentCompatibilityMatrix = agentCompatibilityMatrix;
+    myTestRunsIndexCache = testRunsIndexCache;
     server.addListener(this);
   }
 
@@ -41,4 +62,126 @@ public class ServerListener extends BuildServerAdapter {
   public void serverStartup() {
     myServerStartTime = new Date();
   }
-}
\ No newline at end of file
+
+  @Override
+  public void buildTypeAddedToQueue(@NotNull final SQueuedBuild queuedBuild) {
+    myBuildsResultCache.invalidate(queuedBuild.getBuildType());
+  }
+
+  @Override
+  public void buildRemovedFromQueue(@NotNull final SQueuedBuild queued, final User user, final String comment) {
+    myBuildsResultCache.invalidate(queued.getBuildType());
+  }
+
+  @Override
+  public void buildQueueOrderChanged() {
+    myBuildsResultCache.invalidate(); // changes positions of the queued builds of all the build configurations
+  }
+
+  @Override
+  public void buildStarted(@NotNull final SRunningBuild build) {
+    invalidateBuildResults(build);
+    invalidateBuildStatuses(build);
+  }
+
+  @Override
+  public void buildFinished(@NotNull final SRunningBuild build) {
+    invalidateBuildResults(build);
+    invalidateBuildStatuses(build);
+  }
+
+  @Override
+  public void buildInterrupted(@NotNull final SRunningBuild build) {
+    invalidateBuildResults(build);
+    invalidateBuildStatuses(build);
+  }
+
+  @Override
+  public void buildPinned(@NotNull final SBuild build, @Nullable final User user, @Nullable final String comment) {
+    invalidateBuildResults(build);
+  }
+
+  @Override
+  public void buildUnpinned(@NotNull final SBuild build, @Nullable final User user, @Nullable final String comment) {
+    invalidateBuildResults(build);
+  }
+
+  @Override
+  public void buildTagsChanged(@NotNull final SBuild build, @NotNull final List<String> oldTags, @NotNull final List<String> newTags) {
+    invalidateBuildResults(build);
+  }
+
+  @Override
+  public void entryDeleted(@NotNull final SFinishedBuild build) {
+    invalidateBuildResults(build);
+    myTestRunsIndexCache.invalidate(build.getBuildId());
+  }
+
+  @Override
+  public void agentRegistered(@NotNull final SBuildAgent agent, final long currentlyRunningBuildId) {
+    myAgentCompatibilityMatrix.invalidate(agent);
+  }
+
+  @Override
+  public void agentUnregistered(@NotNull final SBuildAgent agent) {
+    myAgentCompatibilityMatrix.invalidate(agent);
+  }
+
+  @Override
+  public void agentRemoved(@NotNull final SBuildAgent agent) {
+    myAgentCompatibilityMatrix.invalidate(agent);
+  }
+
+  @Override
+  public void buildTypeRegistered(@NotNull final SBuildType buildType) {
+    myAgentCompatibilityMatrix.invalidate(buildType);
+  }
+
+  @Override
+  public void buildTypeUnregistered(@NotNull final SBuildType buildType) {
+    myAgentCompatibilityMatrix.invalidate(buildType);
+    myBuildStatusCache.invalidate(); // the build configuration might not belong to a project anymore
+  }
+
+  @Override
+  public void buildTypePersisted(@NotNull final SBuildType buildType) {
+    myAgentCompatibilityMatrix.invalidate(buildType);
+    myBuildStatusCache.invalidate(buildType);
+  }
+
+  @Override
+  public void buildTypeMoved(@NotNull final SBuildType buildType, @NotNull final SProject original) {
+    myAgentCompatibilityMatrix.invalidate(buildType);
+    myBuildStatusCache.invalidate(buildType);
+    myBuildStatusCache.invalidate(original);
+  }
+
+  @Override
+  public void projectPersisted(@NotNull final String projectId) {
+    myAgentCompatibilityMatrix.invalidateAll();
+    final SProject project = myProjectManager.findProjectById(projectId);
+    if (project != null) {
+      myBuildStatusCache.invalidate(project);
+    } else {
+      myBuildStatusCache.invalidate();
+    }
+  }
+
+  private void invalidateBuildResults(@NotNull final SBuild build) {
+    final SBuildType buildType = build.getBuildType();
+    if (buildType != null) {
+      myBuildsResultCache.invalidate(buildType);
+    } else {
+      myBuildsResultCache.invalidate();
+    }
+  }
+
+  private void invalidateBuildStatuses(@NotNull final SBuild build) {
+    final SBuildType buildType = build.getBuildType();
+    if (buildType != null) {
+      myBuildStatusCache.invalidate(buildType);
+    } else {
+      myBuildStatusCache.invalidate();
+    }
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.rest.data.archive;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import jetbrains.buildServer.util.FileUtil;
+import jetbrains.buildServer.util.browser.BrowserException;
+import jetbrains.buildServer.util.executors.ExecutorsFactory;
+import jetbrains.buildServer.web.artifacts.browser.ArtifactTreeElement;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+/**
+ * Shared pool and helpers for preparing archive entries (checksums, compression) outside of the request thread.
+ * The pool is created on the first use and is shut down when the plugin context is destroyed.
+ */
+@Component
+public class ArchiveWorkers implements DisposableBean {
+  static final String PARALLEL_ENABLED = "rest.build.artifacts.archive.parallel.enabled";
+  static final String POOL_SIZE = "rest.build.artifacts.archive.poolSize"; //applied on the first use only
+  static final String STORED_EXTENSIONS = "rest.build.artifacts.archive.storedExtensions";
+
+  private static final String DEFAULT_STORED_EXTENSIONS = "zip,jar,war,ear,aar,apk,ipa,nupkg,whl,egg,gem,vsix," +
+                                                          "gz,tgz,bz2,tbz2,xz,txz,lz,lzma,zst,7z,rar,cab,z," +
+                                                          "png,jpg,jpeg,gif,webp,heic,mp3,aac,ogg,flac,mp4,m4v,mkv,avi,mov,webm,woff,woff2";
+
+  @Nullable private volatile ExecutorService myExecutor;
+  private volatile boolean myDestroyed;
+
+  int getParallelism() {
+    if (!TeamCityProperties.getBooleanOrTrue(PARALLEL_ENABLED) || myDestroyed) return 1;
+    return getPoolSize();
+  }
+
+  /**
+   * Runs the task in the shared pool or, when parallel processing is disabled, right in the current thread
+   */
+  @NotNull
+  <T> Future<T> submit(@NotNull final Callable<T> task) {
+    if (getParallelism() <= 1) {
+      final FutureTask<T> result = new FutureTask<>(task);
+      result.run();
+      return result;
+    }
+    return getExecutor().submit(task);
+  }
+
+  @NotNull
+  static <T> T getResult(@NotNull final Future<T> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while preparing archive entry", e);
+    } catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof IOException) throw (IOException)cause;
+      if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+      if (cause instanceof Error) throw (Error)cause;
+      throw new IOException(cause);
+    }
+  }
+
+  static boolean isIncompressible(@NotNull final String name) {
+    final int dotIndex = name.lastIndexOf('.');
+    if (dotIndex < 0 || dotIndex == name.length() - 1) return false;
+    final String extension = name.substring(dotIndex + 1).toLowerCase(Locale.ENGLISH);
+    return getStoredExtensions().contains(extension);
+  }
+
+  @NotNull
+  static Checksum computeChecksum(@NotNull final ArtifactTreeElement artifact) throws IOException {
+    final CRC32 crc = new CRC32();
+    long length = 0;
+    final byte[] buffer = new byte[64 * 1024];
+    InputStream stream = null;
+    try {
+      stream = artifact.getInputStream();
+      int read;
+      while ((read = stream.read(buffer)) >= 0) {
+        crc.update(buffer, 0, read);
+        length += read;
+      }
+    } catch (BrowserException e) {
+      throw new IOException(e);
+    } finally {
+      FileUtil.close(stream);
+    }
+    return new Checksum(crc.getValue(), length);
+  }
+
+  static class Checksum {
+    final long crc;
+    final long length;
+
+    Checksum(final long crc, final long length) {
+      this.crc = crc;
+      this.length = length;
+    }
+  }
+
+  private static volatile String ourStoredExtensionsText;
+  private static volatile Set<String> ourStoredExtensions = Collections.emptySet();
+
+  @NotNull
+  private static Set<String> getStoredExtensions() {
+    final String text = TeamCityProperties.getProperty(STORED_EXTENSIONS, DEFAULT_STORED_EXTENSIONS);
+    if (!text.equals(ourStoredExtensionsText)) {
+      final Set<String> extensions = new HashSet<>();
+      for (String extension : text.split(",")) {
+        String trimmed = extension.trim().toLowerCase(Locale.ENGLISH);
+        if (trimmed.startsWith(".")) trimmed = trimmed.substring(1);
+        if (!trimmed.isEmpty()) extensions.add(trimmed);
+      }
+      ourStoredExtensions = extensions;
+      ourStoredExtensionsText = text;
+    }
+    return ourStoredExtensions;
+  }
+
+  private static int getPoolSize() {
+    return TeamCityProperties.getInteger(POOL_SIZE, Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+  }
+
+  @NotNull
+  private ExecutorService getExecutor() {
+    ExecutorService result = myExecutor;
+    if (result == null) {
+      synchronized (this) {
+        result = myExecutor;
+        if (result == null) {
+          if (myDestroyed) {
+            throw new RejectedExecutionException("REST API artifacts archiving pool is already shut down");
+          }
+          result = ExecutorsFactory.newFixedDaemonExecutor("REST API artifacts archiving", Math.max(1, getPoolSize()));
+          myExecutor = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public void destroy() {
+    final ExecutorService executor;
+    synchronized (this) {
+      myDestroyed = true;
+      executor = myExecutor;
+      myExecutor = null;
+    }
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.rest.data.archive;
+
+import com.intellij.openapi.diagnostic.Logger;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import jetbrains.buildServer.util.FileUtil;
+import jetbrains.buildServer.util.browser.BrowserException;
+import jetbrains.buildServer.web.artifacts.browser.ArtifactTreeElement;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Writes artifacts into a zip stream in their order while the entries which follow the one being written are prepared in {@link ArchiveWorkers} pool:
+ * <ul>
+ * <li>small entries are read and compressed in memory and written as raw entries. They are stored if compression does not make them smaller;</li>
+ * <li>large entries are read once and compressed while writing in the request thread. The entries of incompressible types
+ * (see {@link ArchiveWorkers#isIncompressible(String)}) and the ones which first buffer does not compress are written without compression (deflate level 0).</li>
+ * </ul>
+ */
+public class ParallelZipWriter {
+  private static final Logger LOG = Logger.getInstance(ParallelZipWriter.class.getName());
+
+  public static final String MAX_BUFFERED_ENTRY_SIZE = "rest.build.artifacts.archive.maxBufferedEntrySize";
+
+  private static final int HEAD_SIZE = 64 * 1024;
+  private static final double MIN_HEAD_COMPRESSION = 0.95;
+
+  @NotNull private final ZipArchiveOutputStream myOutput;
+  @NotNull private final ArchiveWorkers myWorkers;
+  private final long myMaxBufferedEntrySize;
+  private final int myWindowSize;
+  private int myErrorsCount = 0;
+
+  public ParallelZipWriter(@NotNull final ZipArchiveOutputStream output, @NotNull final ArchiveWorkers workers) {
+    myOutput = output;
+    myWorkers = workers;
+    myMaxBufferedEntrySize = TeamCityProperties.getLong(MAX_BUFFERED_ENTRY_SIZE, 4 * 1024 * 1024);
+    myWindowSize = 2 * workers.getParallelism();
+  }
+
+  /**
+   * @return number of the artifacts skipped because of errors
+   */
+  public int write(@NotNull final List<ArtifactTreeElement> artifacts) throws IOException {
+    final ArrayDeque<PendingEntry> window = new ArrayDeque<>();
+    final Iterator<ArtifactTreeElement> iterator = artifacts.iterator();
+    try {
+      while (true) {
+        while (window.size() < myWindowSize && iterator.hasNext()) {
+          window.add(new PendingEntry(iterator.next()));
+        }
+        final PendingEntry entry = window.poll();
+        if (entry == null) break;
+        writeEntry(entry);
+      }
+    } finally {
+      for (PendingEntry entry : window) {
+        entry.cancel();
+      }
+    }
+    return myErrorsCount;
+  }
+
+  private void writeEntry(@NotNull final PendingEntry pendingEntry) {
+    final ArtifactTreeElement artifact = pendingEntry.myArtifact;
+    if (!artifact.isLeaf()) {
+      //process a directory
+      String directoryFullName = artifact.getFullName();
+      if (!directoryFullName.endsWith("/")) {
+        directoryFullName += "/";
+      }
+      ZipArchiveEntry entry = new ZipArchiveEntry(directoryFullName);
+      final Long lastModified = artifact.getLastModified();
+      if (lastModified != null) entry.setTime(lastModified);
+      try {
+        myOutput.putArchiveEntry(entry);
+        myOutput.closeArchiveEntry();
+      } catch (IOException e) {
+        myErrorsCount++;
+        LOG.warnAndDebugDetails("Error packing directory, ignoring. Directory: '" + artifact.getFullName() + "'", e);
+      }
+    }
+
+    if (!artifact.isContentAvailable()) return;
+
+    try {
+      final PreparedContent content = pendingEntry.getContent();
+      if (content == null) {
+        writeDeflating(artifact);
+      } else {
+        myOutput.addRawArchiveEntry(content.myEntry, new ByteArrayInputStream(content.myData));
+      }
+    } catch (IOException e) {
+      myErrorsCount++;
+      LOG.warnAndDebugDetails("Error packing artifact, ignoring. File: '" + artifact.getFullName() + "'", e);
+    }
+  }
+
+  private void writeDeflating(@NotNull final ArtifactTreeElement artifact) throws IOException {
+    final InputStream stream = getInputStream(artifact);
+    try {
+      final byte[] head = readHead(stream);
+      final boolean compress = !ArchiveWorkers.isIncompressible(artifact.getName()) && isCompressible(head);
+      myOutput.setLevel(compress ? Deflater.DEFAULT_COMPRESSION : Deflater.NO_COMPRESSION);
+      myOutput.putArchiveEntry(createEntry(artifact)); //might need to add more, see com.intellij.util.io.ZipUtil.addFileToZip()
+      try {
+        myOutput.write(head);
+        FileUtil.copyStreams(stream, myOutput);
+      } finally {
+        myOutput.closeArchiveEntry();
+      }
+    } finally {
+      FileUtil.close(stream);
+    }
+  }
+
+  @NotNull
+  private static byte[] readHead(@NotNull final InputStream stream) throws IOException {
+    final byte[] buffer = new byte[HEAD_SIZE];
+    int length = 0;
+    int read;
+    while (length < buffer.length && (read = stream.read(buffer, length, buffer.length - length)) >= 0) {
+      length += read;
+    }
+    return length == buffer.length ? buffer : Arrays.copyOf(buffer, length);
+  }
+
+  private static boolean isCompressible(@NotNull final byte[] head) throws IOException {
+    return head.length == 0 || deflate(head, Deflater.BEST_SPEED).length < head.length * MIN_HEAD_COMPRESSION;
+  }
+
+  private boolean isToPrepare(@NotNull final ArtifactTreeElement artifact) {
+    if (!artifact.isContentAvailable()) return false;
+    final long size = artifact.getSize();
+    return size >= 0 && size <= myMaxBufferedEntrySize;
+  }
+
+  /**
+   * Is run in a worker thread
+   */
+  @NotNull
+  private PreparedContent prepare(@NotNull final ArtifactTreeElement artifact) throws IOException {
+    final ZipArchiveEntry entry = createEntry(artifact);
+    final byte[] data;
+    final InputStream stream = getInputStream(artifact);
+    try {
+      final ByteArrayOutputStream buffer = new ByteArrayOutputStream((int)artifact.getSize());
+      FileUtil.copyStreams(stream, buffer);
+      data = buffer.toByteArray();
+    } finally {
+      FileUtil.close(stream);
+    }
+    final CRC32 crc = new CRC32();
+    crc.update(data);
+    entry.setSize(data.length);
+    entry.setCrc(crc.getValue());
+
+    if (!ArchiveWorkers.isIncompressible(artifact.getName())) {
+      final byte[] compressed = deflate(data, Deflater.DEFAULT_COMPRESSION);
+      if (compressed.length < data.length) {
+        entry.setMethod(ZipArchiveEntry.DEFLATED);
+        entry.setCompressedSize(compressed.length);
+        return new PreparedContent(entry, compressed);
+      }
+    }
+    entry.setMethod(ZipArchiveEntry.STORED);
+    entry.setCompressedSize(data.length);
+    return new PreparedContent(entry, data);
+  }
+
+  @NotNull
+  private static byte[] deflate(@NotNull final byte[] data, final int level) throws IOException {
+    final Deflater deflater = new Deflater(level, true); //raw deflate data as stored in zip entries
+    try {
+      final ByteArrayOutputStream result = new ByteArrayOutputStream(data.length / 2 + 64);
+      try (DeflaterOutputStream deflaterStream = new DeflaterOutputStream(result, deflater, 64 * 1024)) {
+        deflaterStream.write(data);
+      }
+      return result.toByteArray();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  @NotNull
+  private static ZipArchiveEntry createEntry(@NotNull final ArtifactTreeElement artifact) {
+    final ZipArchiveEntry entry = new ZipArchiveEntry(artifact.getFullName());
+    final Long lastModified = artifact.getLastModified();
+    if (lastModified != null) entry.setTime(lastModified);
+    return entry;
+  }
+
+  @NotNull
+  private static InputStream getInputStream(@NotNull final ArtifactTreeElement artifact) throws IOException {
+    try {
+      return artifact.getInputStream();
+    } catch (BrowserException e) {
+      throw new IOException(e);
+    }
+  }
+
+  private static class PreparedContent {
+    @NotNull private final ZipArchiveEntry myEntry;
+    @NotNull private final byte[] myData;
+
+    private PreparedContent(@NotNull final ZipArchiveEntry entry, @NotNull final byte[] data) {
+      myEntry = entry;
+      myData = data;
+    }
+  }
+
+  private class PendingEntry {
+    @NotNull private final ArtifactTreeElement myArtifact;
+    @Nullable private final Future<PreparedContent> myContent;
+
+    private PendingEntry(@NotNull final ArtifactTreeElement artifact) {
+      myArtifact = artifact;
+      myContent = isToPrepare(artifact) ? myWorkers.submit(() -> prepare(artifact)) : null;
+    }
+
+    /**
+     * @return null if the content should be compressed while writing
+     */
+    @Nullable
+    private PreparedContent getContent() throws IOException {
+      return myContent == null ? null : ArchiveWorkers.getResult(myContent);
+    }
+
+    private void cancel() {
+      if (myContent != null) myContent.cancel(true);
+    }
+  }
+}
@@ -0,0 +1,387 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.rest.data.archive;
+
+import com.intellij.openapi.diagnostic.Logger;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.Future;
+import jetbrains.buildServer.util.FileUtil;
+import jetbrains.buildServer.util.browser.BrowserException;
+import jetbrains.buildServer.web.artifacts.browser.ArtifactTreeElement;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Zip archive with all the entries stored (not compressed). All the archive bytes except for the artifacts content are computed in advance,
+ * so the archive size is known before streaming and any range of the archive can be written without reading the artifacts outside of the range.
+ * The checksums of all the artifacts are computed when the layout is created.
+ * <br/>
+ * The archive is the same for the same artifacts, which allows to resume interrupted downloads with "Range" requests.
+ */
+public class StoredZipLayout {
+  private static final Logger LOG = Logger.getInstance(StoredZipLayout.class.getName());
+
+  private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+  private static final int ZIP64_MAGIC_SHORT = 0xFFFF;
+  private static final int VERSION_DEFAULT = 10;
+  private static final int VERSION_ZIP64 = 45;
+  private static final int FLAG_UTF8_NAMES = 1 << 11;
+  private static final int MS_DOS_DIRECTORY_ATTRIBUTE = 0x10;
+
+  @NotNull private final List<Segment> mySegments;
+  private final long mySize;
+  private final int myErrorsCount;
+
+  private StoredZipLayout(@NotNull final List<Segment> segments, final long size, final int errorsCount) {
+    mySegments = segments;
+    mySize = size;
+    myErrorsCount = errorsCount;
+  }
+
+  /**
+   * Artifacts which cannot be read while computing the checksums are not included into the archive
+   */
+  @NotNull
+  public static StoredZipLayout create(@NotNull final List<ArtifactTreeElement> artifacts, @NotNull final ArchiveWorkers workers) {
+    final List<Future<ArchiveWorkers.Checksum>> checksums = new ArrayList<>(artifacts.size());
+    for (ArtifactTreeElement artifact : artifacts) {
+      checksums.add(artifact.isContentAvailable() ? workers.submit(() -> ArchiveWorkers.computeChecksum(artifact)) : null);
+    }
+
+    final Builder builder = new Builder();
+    try {
+      for (int i = 0; i < artifacts.size(); i++) {
+        final ArtifactTreeElement artifact = artifacts.get(i);
+        if (!artifact.isLeaf()) {
+          String directoryFullName = artifact.getFullName();
+          if (!directoryFullName.endsWith("/")) {
+            directoryFullName += "/";
+          }
+          builder.addEntry(directoryFullName, artifact.getLastModified(), null, null);
+        }
+
+        final Future<ArchiveWorkers.Checksum> checksum = checksums.get(i);
+        if (checksum == null) continue;
+        try {
+          builder.addEntry(artifact.getFullName(), artifact.getLastModified(), ArchiveWorkers.getResult(checksum), artifact);
+        } catch (IOException e) {
+          builder.myErrorsCount++;
+          LOG.warnAndDebugDetails("Error reading artifact, ignoring. File: '" + artifact.getFullName() + "'", e);
+        }
+      }
+    } finally {
+      for (Future<ArchiveWorkers.Checksum> checksum : checksums) {
+        if (checksum != null) checksum.cancel(true);
+      }
+    }
+    return builder.build();
+  }
+
+  public long getSize() {
+    return mySize;
+  }
+
+  /**
+   * @return number of the artifacts skipped because of errors
+   */
+  public int getErrorsCount() {
+    return myErrorsCount;
+  }
+
+  public void write(@NotNull final OutputStream output, final long startOffset, final long length) throws IOException {
+    final long endOffset = startOffset + length;
+    if (startOffset < 0 || length < 0 || endOffset > mySize) {
+      throw new IllegalArgumentException("Range " + startOffset + "+" + length + " is out of the archive size " + mySize);
+    }
+    for (int i = findSegment(startOffset); i < mySegments.size(); i++) {
+      final Segment segment = mySegments.get(i);
+      if (segment.myOffset >= endOffset) break;
+      final long from = Math.max(startOffset, segment.myOffset) - segment.myOffset;
+      final long to = Math.min(endOffset, segment.myOffset + segment.getLength()) - segment.myOffset;
+      if (to > from) {
+        segment.write(output, from, to - from);
+      }
+    }
+  }
+
+  private int findSegment(final long offset) {
+    int low = 0;
+    int high = mySegments.size() - 1;
+    while (low < high) {
+      final int middle = (low + high + 1) >>> 1;
+      if (mySegments.get(middle).myOffset <= offset) {
+        low = middle;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return low;
+  }
+
+  private static class Builder {
+    private final List<Segment> mySegments = new ArrayList<>();
+    private final ByteArrayOutputStream myCentralDirectory = new ByteArrayOutputStream();
+    private long myOffset = 0;
+    private long myEntriesCount = 0;
+    private int myErrorsCount = 0;
+
+    private void addEntry(@NotNull final String name, @Nullable final Long lastModified,
+                          @Nullable final ArchiveWorkers.Checksum checksum, @Nullable final ArtifactTreeElement artifact) {
+      final byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+      final long dosTime = toDosTime(lastModified);
+      final long size = checksum == null ? 0 : checksum.length;
+      final long crc = checksum == null ? 0 : checksum.crc;
+      final boolean zip64Size = size >= ZIP64_MAGIC;
+      final boolean zip64Offset = myOffset >= ZIP64_MAGIC;
+
+      final RecordBuilder localHeader = new RecordBuilder();
+      localHeader.writeInt(0x04034b50);
+      localHeader.writeShort(zip64Size ? VERSION_ZIP64 : VERSION_DEFAULT);
+      localHeader.writeShort(FLAG_UTF8_NAMES);
+      localHeader.writeShort(0); //stored
+      localHeader.writeInt(dosTime);
+      localHeader.writeInt(crc);
+      localHeader.writeInt(zip64Size ? ZIP64_MAGIC : size);
+      localHeader.writeInt(zip64Size ? ZIP64_MAGIC : size);
+      localHeader.writeShort(nameBytes.length);
+      localHeader.writeShort(zip64Size ? 20 : 0);
+      localHeader.write(nameBytes);
+      if (zip64Size) {
+        localHeader.writeShort(0x0001);
+        localHeader.writeShort(16);
+        localHeader.writeLong(size);
+        localHeader.writeLong(size);
+      }
+
+      final int centralExtraLength = (zip64Size ? 16 : 0) + (zip64Offset ? 8 : 0);
+      final RecordBuilder centralHeader = new RecordBuilder();
+      centralHeader.writeInt(0x02014b50);
+      centralHeader.writeShort(VERSION_ZIP64); //made by
+      centralHeader.writeShort(zip64Size || zip64Offset ? VERSION_ZIP64 : VERSION_DEFAULT);
+      centralHeader.writeShort(FLAG_UTF8_NAMES);
+      centralHeader.writeShort(0); //stored
+      centralHeader.writeInt(dosTime);
+      centralHeader.writeInt(crc);
+      centralHeader.writeInt(zip64Size ? ZIP64_MAGIC : size);
+      centralHeader.writeInt(zip64Size ? ZIP64_MAGIC : size);
+      centralHeader.writeShort(nameBytes.length);
+      centralHeader.writeShort(centralExtraLength == 0 ? 0 : centralExtraLength + 4);
+      centralHeader.writeShort(0); //comment length
+      centralHeader.writeShort(0); //disk number
+      centralHeader.writeShort(0); //internal attributes
+      centralHeader.writeInt(artifact == null ? MS_DOS_DIRECTORY_ATTRIBUTE : 0);
+      centralHeader.writeInt(zip64Offset ? ZIP64_MAGIC : myOffset);
+      centralHeader.write(nameBytes);
+      if (centralExtraLength > 0) {
+        centralHeader.writeShort(0x0001);
+        centralHeader.writeShort(centralExtraLength);
+        if (zip64Size) {
+          centralHeader.writeLong(size);
+          centralHeader.writeLong(size);
+        }
+        if (zip64Offset) {
+          centralHeader.writeLong(myOffset);
+        }
+      }
+      centralHeader.appendTo(myCentralDirectory);
+
+      addSegment(new BytesSegment(myOffset, localHeader.toByteArray()));
+      if (artifact != null && size > 0) {
+        addSegment(new ContentSegment(myOffset, artifact, size));
+      }
+      myEntriesCount++;
+    }
+
+    private void addSegment(@NotNull final Segment segment) {
+      mySegments.add(segment);
+      myOffset += segment.getLength();
+    }
+
+    @NotNull
+    private StoredZipLayout build() {
+      final long centralDirectoryOffset = myOffset;
+      final long centralDirectorySize = myCentralDirectory.size();
+      final boolean zip64 = myEntriesCount >= ZIP64_MAGIC_SHORT || centralDirectoryOffset >= ZIP64_MAGIC || centralDirectorySize >= ZIP64_MAGIC;
+
+      final RecordBuilder end = new RecordBuilder();
+      if (zip64) {
+        final long zip64EndOffset = centralDirectoryOffset + centralDirectorySize;
+        end.writeInt(0x06064b50);
+        end.writeLong(44); //size of the rest of the record
+        end.writeShort(VERSION_ZIP64);
+        end.writeShort(VERSION_ZIP64);
+        end.writeInt(0); //disk number
+        end.writeInt(0); //disk with central directory
+        end.writeLong(myEntriesCount);
+        end.writeLong(myEntriesCount);
+        end.writeLong(centralDirectorySize);
+        end.writeLong(centralDirectoryOffset);
+
+        end.writeInt(0x07064b50);
+        end.writeInt(0); //disk with zip64 end of central directory
+        end.writeLong(zip64EndOffset);
+        end.writeInt(1); //total disks
+      }
+      end.writeInt(0x06054b50);
+      end.writeShort(0); //disk number
+      end.writeShort(0); //disk with central directory
+      end.writeShort(zip64 ? ZIP64_MAGIC_SHORT : myEntriesCount);
+      end.writeShort(zip64 ? ZIP64_MAGIC_SHORT : myEntriesCount);
+      end.writeInt(zip64 ? ZIP64_MAGIC : centralDirectorySize);
+      end.writeInt(zip64 ? ZIP64_MAGIC : centralDirectoryOffset);
+      end.writeShort(0); //comment length
+      end.appendTo(myCentralDirectory);
+
+      addSegment(new BytesSegment(myOffset, myCentralDirectory.toByteArray()));
+      return new StoredZipLayout(mySegments, myOffset, myErrorsCount);
+    }
+  }
+
+  private static long toDosTime(@Nullable final Long time) {
+    if (time == null) {
+      return (1 << 21) | (1 << 16); // 1980-01-01 00:00, the current time would make the archive different on every request
+    }
+    final Calendar calendar = Calendar.getInstance();
+    calendar.setTimeInMillis(time);
+    final int year = calendar.get(Calendar.YEAR);
+    if (year < 1980) {
+      return (1 << 21) | (1 << 16);
+    }
+    return ((long)(year - 1980) << 25) |
+           ((calendar.get(Calendar.MONTH) + 1) << 21) |
+           (calendar.get(Calendar.DAY_OF_MONTH) << 16) |
+           (calendar.get(Calendar.HOUR_OF_DAY) << 11) |
+           (calendar.get(Calendar.MINUTE) << 5) |
+           (calendar.get(Calendar.SECOND) >> 1);
+  }
+
+  /**
+   * Little-endian zip record
+   */
+  private static class RecordBuilder extends ByteArrayOutputStream {
+    void writeShort(final long value) {
+      write((int)(value & 0xFF));
+      write((int)((value >>> 8) & 0xFF));
+    }
+
+    void writeInt(final long value) {
+      writeShort(value & 0xFFFF);
+      writeShort((value >>> 16) & 0xFFFF);
+    }
+
+    void writeLong(final long value) {
+      writeInt(value & ZIP64_MAGIC);
+      writeInt(value >>> 32);
+    }
+
+    @Override
+    public void write(@NotNull final byte[] bytes) {
+      write(bytes, 0, bytes.length);
+    }
+
+    void appendTo(@NotNull final ByteArrayOutputStream output) {
+      output.write(buf, 0, count);
+    }
+  }
+
+  private static abstract class Segment {
+    protected final long myOffset;
+
+    protected Segment(final long offset) {
+      myOffset = offset;
+    }
+
+    abstract long getLength();
+
+    abstract void write(@NotNull OutputStream output, long from, long length) throws IOException;
+  }
+
+  private static class BytesSegment extends Segment {
+    @NotNull private final byte[] myBytes;
+
+    private BytesSegment(final long offset, @NotNull final byte[] bytes) {
+      super(offset);
+      myBytes = bytes;
+    }
+
+    @Override
+    long getLength() {
+      return myBytes.length;
+    }
+
+    @Override
+    void write(@NotNull final OutputStream output, final long from, final long length) throws IOException {
+      output.write(myBytes, (int)from, (int)length);
+    }
+  }
+
+  private static class ContentSegment extends Segment {
+    @NotNull private final ArtifactTreeElement myArtifact;
+    private final long myLength;
+
+    private ContentSegment(final long offset, @NotNull final ArtifactTreeElement artifact, final long length) {
+      super(offset);
+      myArtifact = artifact;
+      myLength = length;
+    }
+
+    @Override
+    long getLength() {
+      return myLength;
+    }
+
+    @Override
+    void write(@NotNull final OutputStream output, final long from, final long length) throws IOException {
+      InputStream stream = null;
+      try {
+        stream = myArtifact.getInputStream();
+        long toSkip = from;
+        while (toSkip > 0) {
+          final long skipped = stream.skip(toSkip);
+          if (skipped > 0) {
+            toSkip -= skipped;
+          } else if (stream.read() >= 0) {
+            toSkip--;
+          } else {
+            throw new IOException("Artifact content changed while archiving: '" + myArtifact.getFullName() + "'");
+          }
+        }
+        final byte[] buffer = new byte[(int)Math.min(length, 64 * 1024)];
+        long remaining = length;
+        while (remaining > 0) {
+          final int read = stream.read(buffer, 0, (int)Math.min(remaining, buffer.length));
+          if (read < 0) {
+            throw new IOException("Artifact content changed while archiving: '" + myArtifact.getFullName() + "'");
+          }
+          output.write(buffer, 0, read);
+          remaining -= read;
+        }
+      } catch (BrowserException e) {
+        throw new IOException(e);
+      } finally {
+        FileUtil.close(stream);
+      }
+    }
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.rest.data.archive;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import jetbrains.buildServer.web.artifacts.browser.ArtifactTreeElement;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+/**
+ * Layouts of the archives shared between requests, so that the checksums of the artifacts are computed once for the archive
+ * and subsequent requests (e.g. resuming an interrupted download with "Range" requests) do not read all the artifacts again.
+ * A layout is reused only for the same source of the artifacts (e.g. the same build) and the same names, sizes and modification times of all the artifacts.
+ * The cached layouts are dropped when the plugin context is destroyed.
+ */
+@Component
+public class StoredZipLayoutCache implements DisposableBean {
+  static final String MAX_SIZE = "rest.build.artifacts.archive.layoutCache.maxSize";
+  static final String TTL_SECONDS = "rest.build.artifacts.archive.layoutCache.ttlSeconds";
+
+  @NotNull private final ArchiveWorkers myWorkers;
+  @Nullable private volatile CacheHolder myCacheHolder;
+
+  public StoredZipLayoutCache(@NotNull final ArchiveWorkers workers) {
+    myWorkers = workers;
+  }
+
+  /**
+   * @param scope identifies the source of the artifacts, e.g. the build id
+   */
+  @NotNull
+  public StoredZipLayout getLayout(@NotNull final String scope, @NotNull final List<ArtifactTreeElement> artifacts) {
+    final Cache<LayoutKey, StoredZipLayout> cache = getCache();
+    if (cache == null) {
+      return StoredZipLayout.create(artifacts, myWorkers);
+    }
+    final LayoutKey key = new LayoutKey(scope, artifacts);
+    final StoredZipLayout cached = cache.getIfPresent(key);
+    if (cached != null) {
+      return cached;
+    }
+    final StoredZipLayout result = StoredZipLayout.create(artifacts, myWorkers);
+    if (result.getErrorsCount() == 0) {
+      cache.put(key, result);
+    }
+    return result;
+  }
+
+  @Override
+  public void destroy() {
+    final CacheHolder holder;
+    synchronized (this) {
+      holder = myCacheHolder;
+      myCacheHolder = null;
+    }
+    if (holder != null) {
+      holder.myCache.invalidateAll();
+    }
+  }
+
+  @Nullable
+  private Cache<LayoutKey, StoredZipLayout> getCache() {
+    final long maxSize = TeamCityProperties.getLong(MAX_SIZE, 100);
+    if (maxSize <= 0) return null;
+    final long ttlSeconds = TeamCityProperties.getLong(TTL_SECONDS, 3600);
+    CacheHolder holder = myCacheHolder;
+    if (holder == null || holder.myMaxSize != maxSize || holder.myTtlSeconds != ttlSeconds) {
+      synchronized (this) {
+        holder = myCacheHolder;
+        if (holder == null || holder.myMaxSize != maxSize || holder.myTtlSeconds != ttlSeconds) {
+          holder = new CacheHolder(maxSize, ttlSeconds);
+          myCacheHolder = holder;
+        }
+      }
+    }
+    return holder.myCache;
+  }
+
+  private static class CacheHolder {
+    private final long myMaxSize;
+    private final long myTtlSeconds;
+    @NotNull private final Cache<LayoutKey, StoredZipLayout> myCache;
+
+    private CacheHolder(final long maxSize, final long ttlSeconds) {
+      myMaxSize = maxSize;
+      myTtlSeconds = ttlSeconds;
+      myCache = CacheBuilder.newBuilder().maximumSize(maxSize).expireAfterAccess(ttlSeconds, TimeUnit.SECONDS).build();
+    }
+  }
+
+  private static class LayoutKey {
+    @NotNull private final String myScope;
+    @NotNull private final List<Object> myArtifacts;
+
+    private LayoutKey(@NotNull final String scope, @NotNull final List<ArtifactTreeElement> artifacts) {
+      myScope = scope;
+      myArtifacts = new ArrayList<>(artifacts.size() * 4);
+      for (ArtifactTreeElement artifact : artifacts) {
+        myArtifacts.add(artifact.getFullName());
+        myArtifacts.add(artifact.isLeaf());
+        myArtifacts.add(artifact.isContentAvailable() ? artifact.getSize() : -1);
+        myArtifacts.add(artifact.getLastModified());
+      }
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      final LayoutKey layoutKey = (LayoutKey)o;
+      return myScope.equals(layoutKey.myScope) && myArtifacts.equals(layoutKey.myArtifacts);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(myScope, myArtifacts);
+    }
+  }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package jetbrains.buildServer.server.rest.data.build;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import jetbrains.buildServer.server.rest.data.Locator;
+import jetbrains.buildServer.server.rest.errors.LocatorProcessException;
+import jetbrains.buildServer.serverSide.ProjectManager;
+import jetbrains.buildServer.serverSide.SBuildType;
+import jetbrains.buildServer.serverSide.SProject;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Versions of the build state per build configuration and project, used to find out whether a value computed for a build locator is outdated.
+ * <p/>
+ * A build event of a build configuration bumps the versions of the build configuration, of all its parent projects and of "any build".
+ * A value depends on the build configuration of the locator's "buildType" dimension, on the project of its "affectedProject" or "project" dimension
+ * (also when they are used in the "buildType" dimension), or on any build if the locator has none of them or they cannot be resolved to a single build configuration or project.
+ * Thus a build event outdates only the values for the locators of its build configuration and project subtree, and the values for the locators not limited to any of them.
+ */
+class BuildEventVersions {
+  private static final String ANY_BUILD = "any";
+  private static final String BUILD_TYPE = "buildType";
+  private static final String AFFECTED_PROJECT = "affectedProject";
+  private static final String PROJECT = "project";
+
+  @NotNull private final ProjectManager myProjectManager;
+  /**
+   * Incremented on the changes which can affect any value, outdates all the values.
+   */
+  @NotNull private final AtomicLong myGeneration = new AtomicLong();
+  /**
+   * Version of each build configuration, project and "any build", taken from {@link #myVersionsCounter} on each build event.
+   */
+  @NotNull private final ConcurrentHashMap<String, Long> myVersions = new ConcurrentHashMap<>();
+  @NotNull private final AtomicLong myVersionsCounter = new AtomicLong();
+
+  BuildEventVersions(@NotNull final ProjectManager projectManager) {
+    myProjectManager = projectManager;
+  }
+
+  /**
+   * To be taken before the value computation, so that a build event happened during the computation outdates the value.
+   * @param normalizedLocator build locator the value is computed for
+   */
+  @NotNull
+  Snapshot getSnapshot(@NotNull final String normalizedLocator) {
+    final long generation = myGeneration.get();
+    final String key = getDependencyKey(normalizedLocator);
+    return new Snapshot(generation, key, getVersion(key));
+  }
+
+  boolean isUpToDate(@NotNull final Snapshot snapshot) {
+    return snapshot.myGeneration == myGeneration.get() && snapshot.myVersion == getVersion(snapshot.myDependencyKey);
+  }
+
+  /**
+   * Outdates the values which can include builds of the build configuration.
+   */
+  void invalidate(@NotNull final SBuildType buildType) {
+    final long version = myVersionsCounter.incrementAndGet();
+    final Map<String, Long> versions = new HashMap<>();
+    versions.put(ANY_BUILD, version);
+    versions.put(getBuildTypeKey(buildType.getInternalId()), version);
+    for (SProject project : buildType.getProject().getProjectPath()) {
+      versions.put(getProjectKey(project.getProjectId()), version);
+    }
+    myVersions.putAll(versions);
+  }
+
+  /**
+   * Outdates the values which can include builds of the project or its subprojects.
+   */
+  void invalidate(@NotNull final SProject project) {
+    final long version = myVersionsCounter.incrementAndGet();
+    final Map<String, Long> versions = new HashMap<>();
+    versions.put(ANY_BUILD, version);
+    for (SProject parent : project.getProjectPath()) {
+      versions.put(getProjectKey(parent.getProjectId()), version);
+    }
+    myVersions.putAll(versions);
+  }
+
+  /**
+   * Outdates all the values.
+   */
+  void invalidateAll() {
+    myGeneration.incrementAndGet();
+  }
+
+  private long getVersion(@NotNull final String key) {
+    final Long result = myVersions.get(key);
+    return result == null ? 0 : result;
+  }
+
+  @NotNull
+  private String getDependencyKey(@NotNull final String normalizedLocator) {
+    final Locator locator = getLocator(normalizedLocator);
+    if (locator == null || locator.isSingleValue()) return ANY_BUILD;
+
+    final String buildTypeLocator = locator.lookupSingleDimensionValue(BUILD_TYPE);
+    final String buildTypeId = getExternalId(buildTypeLocator);
+    if (buildTypeId != null) {
+      final SBuildType buildType = myProjectManager.findBuildTypeByExternalId(buildTypeId);
+      return buildType == null ? ANY_BUILD : getBuildTypeKey(buildType.getInternalId());
+    }
+    if (buildTypeLocator != null) {
+      // e.g. aggregated status of the build configurations of a project: "buildType:(affectedProject:(id:X))"
+      final String key = getProjectDependencyKey(getLocator(buildTypeLocator));
+      if (!ANY_BUILD.equals(key)) return key;
+    }
+    return getProjectDependencyKey(locator);
+  }
+
+  @NotNull
+  private String getProjectDependencyKey(@Nullable final Locator locator) {
+    if (locator == null || locator.isSingleValue()) return ANY_BUILD;
+    String projectLocator = locator.lookupSingleDimensionValue(AFFECTED_PROJECT);
+    if (projectLocator == null) projectLocator = locator.lookupSingleDimensionValue(PROJECT);
+    final String projectId = getExternalId(projectLocator);
+    if (projectId == null) return ANY_BUILD;
+    final SProject project = myProjectManager.findProjectByExternalId(projectId);
+    return project == null ? ANY_BUILD : getProjectKey(project.getProjectId());
+  }
+
+  @Nullable
+  private static Locator getLocator(@NotNull final String locatorText) {
+    try {
+      return new Locator(locatorText);
+    } catch (LocatorProcessException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @return external id of the item for "id:X" and "X" locators, null for any other locator
+   */
+  @Nullable
+  private static String getExternalId(@Nullable final String locatorText) {
+    final Locator locator = locatorText == null ? null : getLocator(locatorText);
+    if (locator == null) return null;
+    if (locator.isSingleValue()) return locator.getSingleValue();
+    if (locator.getDefinedDimensions().size() == 1) return locator.lookupSingleDimensionValue("id");
+    return null;
+  }
+
+  @NotNull
+  private static String getBuildTypeKey(@NotNull final String buildTypeInternalId) {
+    return "buildType:" + buildTypeInternalId;
+  }
+
+  @NotNull
+  private static String getProjectKey(@NotNull final String projectInternalId) {
+    return "project:" + projectInternalId;
+  }
+
+  static class Snapshot {
+    private final long myGeneration;
+    @NotNull private final String myDependencyKey;
+    private final long myVersion;
+
+    private Snapshot(final long generation, @NotNull final String dependencyKey, final long version) {
+      myGeneration = generation;
+      myDependencyKey = dependencyKey;
+      myVersion = version;
+    }
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.rest.data.build;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Reads build log lines from a stream and passes them on in batches, so that a line-by-line stream does not result in a call per line.
+ * A batch is passed on when it reaches the lines or characters limit or when its first line is older than the delay limit.
+ * While there is no input, the batch is held only till the delay limit, so that the lines are not held while the client is idle.
+ */
+public class BuildLogLinesBatcher {
+  public static final String MAX_LINES = "rest.buildRequest.log.stream.batchMaxLines";
+  public static final String MAX_CHARS = "rest.buildRequest.log.stream.batchMaxChars";
+  public static final String MAX_DELAY_MS = "rest.buildRequest.log.stream.batchMaxDelayMs";
+  private static final long INPUT_POLL_INTERVAL_MS = 10;
+
+  @NotNull private final Consumer<List<String>> myBatchProcessor;
+  private final int myMaxLines;
+  private final long myMaxChars;
+  private final long myMaxDelayNanos;
+
+  @NotNull private List<String> myBatch = new ArrayList<>();
+  private long myBatchChars;
+  private long myBatchStartNanos;
+  private long myProcessedLines;
+  private long myAcceptedLines;
+
+  public BuildLogLinesBatcher(@NotNull final Consumer<List<String>> batchProcessor) {
+    myBatchProcessor = batchProcessor;
+    myMaxLines = Math.max(1, TeamCityProperties.getInteger(MAX_LINES, 500));
+    myMaxChars = TeamCityProperties.getLong(MAX_CHARS, 256 * 1024);
+    myMaxDelayNanos = TimeUnit.MILLISECONDS.toNanos(TeamCityProperties.getLong(MAX_DELAY_MS, 200));
+  }
+
+  /**
+   * Reads the lines till the end of the stream
+   * @return number of the lines read
+   */
+  public long process(@NotNull final BufferedReader reader) throws IOException {
+    while (true) {
+      if (!myBatch.isEmpty() && !waitForInput(reader)) {
+        flush(); //the next read can block for long
+      }
+      final String line = reader.readLine();
+      if (line == null) {
+        break;
+      }
+      add(line);
+    }
+    flush();
+    return myProcessedLines;
+  }
+
+  /**
+   * @return number of the lines passed on to the batch processor without an error
+   */
+  public long getAcceptedLines() {
+    return myAcceptedLines;
+  }
+
+  /**
+   * Waits while the current batch is younger than the delay limit
+   * @return true if there is input to read without blocking, false if the delay limit is reached
+   */
+  private boolean waitForInput(@NotNull final BufferedReader reader) throws IOException {
+    while (!reader.ready()) {
+      final long remainingNanos = myBatchStartNanos + myMaxDelayNanos - System.nanoTime();
+      if (remainingNanos <= 0) {
+        return false;
+      }
+      try {
+        Thread.sleep(Math.min(INPUT_POLL_INTERVAL_MS, TimeUnit.NANOSECONDS.toMillis(remainingNanos) + 1));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void add(@NotNull final String line) {
+    if (myBatch.isEmpty()) {
+      myBatchStartNanos = System.nanoTime();
+    }
+    myBatch.add(line);
+    myBatchChars += line.length();
+    myProcessedLines++;
+    if (myBatch.size() >= myMaxLines || myBatchChars >= myMaxChars || System.nanoTime() - myBatchStartNanos >= myMaxDelayNanos) {
+      flush();
+    }
+  }
+
+  private void flush() {
+    if (myBatch.isEmpty()) {
+      return;
+    }
+    final List<String> batch = myBatch;
+    myBatch = new ArrayList<>();
+    myBatchChars = 0;
+    myBatchProcessor.accept(batch);
+    myAcceptedLines += batch.size();
+  }
+}
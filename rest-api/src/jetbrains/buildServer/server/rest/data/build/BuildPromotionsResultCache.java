@@ -0,0 +1,215 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.rest.data.build;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.intellij.openapi.diagnostic.Logger;
+import java.util.ArrayList;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import jetbrains.buildServer.server.rest.data.Locator;
+import jetbrains.buildServer.server.rest.data.PagedSearchResult;
+import jetbrains.buildServer.server.rest.errors.LocatorProcessException;
+import jetbrains.buildServer.serverSide.BuildPromotion;
+import jetbrains.buildServer.serverSide.ProjectManager;
+import jetbrains.buildServer.serverSide.SBuildType;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import jetbrains.buildServer.serverSide.auth.AuthorityHolder;
+import jetbrains.buildServer.serverSide.auth.SecurityContext;
+import jetbrains.buildServer.users.User;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Short-lived cache of build locator results shared between requests.
+ * Results are scoped by the current user (or authority holder if there is no user), so permissions are never shared.
+ * Build state changes reported to {@link jetbrains.buildServer.server.rest.data.ServerListener} outdate only the results of the locators
+ * which can include builds of the changed build configuration (see {@link BuildEventVersions}), queue reordering outdates all the results.
+ * Experimental, disabled by default.
+ */
+@Component
+public class BuildPromotionsResultCache {
+  private static final Logger LOG = Logger.getInstance(BuildPromotionsResultCache.class.getName());
+
+  public static final String ENABLED = "rest.request.builds.resultCache.enabled";
+  public static final String MAX_SIZE = "rest.request.builds.resultCache.maxSize";
+  public static final String TTL_SECONDS = "rest.request.builds.resultCache.ttlSeconds";
+
+  @NotNull private final SecurityContext mySecurityContext;
+  @NotNull private final BuildEventVersions myVersions;
+  @NotNull private final AtomicLong myInvalidations = new AtomicLong();
+  @NotNull private final AtomicLong myOutdated = new AtomicLong();
+  @Nullable private volatile CacheHolder myCacheHolder;
+
+  public BuildPromotionsResultCache(@NotNull final SecurityContext securityContext, @NotNull final ProjectManager projectManager) {
+    mySecurityContext = securityContext;
+    myVersions = new BuildEventVersions(projectManager);
+  }
+
+  /**
+   * @param computation is invoked if the result is not cached, the result is cached only if no build events happened during the computation
+   */
+  @NotNull
+  public PagedSearchResult<BuildPromotion> getItems(@Nullable final String locatorText, @NotNull final Supplier<PagedSearchResult<BuildPromotion>> computation) {
+    if (locatorText == null || !TeamCityProperties.getBoolean(ENABLED)) {
+      return computation.get();
+    }
+    final String normalizedLocator = getNormalizedLocator(locatorText);
+    if (normalizedLocator == null) {
+      return computation.get();
+    }
+
+    final Cache<CacheKey, Entry> cache = getCache();
+    final CacheKey key = new CacheKey(getScope(mySecurityContext.getAuthorityHolder()), normalizedLocator);
+    final Entry cached = cache.getIfPresent(key);
+    if (cached != null) {
+      if (myVersions.isUpToDate(cached.mySnapshot)) {
+        return cached.myResult;
+      }
+      myOutdated.incrementAndGet();
+    }
+
+    final BuildEventVersions.Snapshot snapshot = myVersions.getSnapshot(normalizedLocator);
+    final PagedSearchResult<BuildPromotion> result = computation.get();
+    if (myVersions.isUpToDate(snapshot)) {
+      cache.put(key, new Entry(result, snapshot));
+    }
+    return result;
+  }
+
+  /**
+   * Outdates the results of the locators which can include builds of the build configuration.
+   */
+  public void invalidate(@NotNull final SBuildType buildType) {
+    myVersions.invalidate(buildType);
+  }
+
+  public void invalidate() {
+    myVersions.invalidateAll();
+    final CacheHolder holder = myCacheHolder;
+    if (holder != null && holder.myCache.size() > 0) {
+      myInvalidations.incrementAndGet();
+      holder.myCache.invalidateAll();
+    }
+  }
+
+  @NotNull
+  public String getStatistics() {
+    final CacheHolder holder = myCacheHolder;
+    if (holder == null) {
+      return "Builds result cache is not initialized" + (TeamCityProperties.getBoolean(ENABLED) ? "" : ", enable it via \"" + ENABLED + "\" internal property");
+    }
+    final CacheStats stats = holder.myCache.stats();
+    return "Builds result cache: size " + holder.myCache.size() + " (max " + holder.myMaxSize + ", ttl " + holder.myTtlSeconds + " s), " +
+           "hits " + stats.hitCount() + ", misses " + stats.missCount() + ", outdated " + myOutdated.get() + ", evictions " + stats.evictionCount() + ", invalidations " + myInvalidations.get();
+  }
+
+  @NotNull
+  private Cache<CacheKey, Entry> getCache() {
+    final long maxSize = TeamCityProperties.getLong(MAX_SIZE, 500);
+    final long ttlSeconds = TeamCityProperties.getLong(TTL_SECONDS, 10);
+    CacheHolder holder = myCacheHolder;
+    if (holder == null || holder.myMaxSize != maxSize || holder.myTtlSeconds != ttlSeconds) {
+      synchronized (this) {
+        holder = myCacheHolder;
+        if (holder == null || holder.myMaxSize != maxSize || holder.myTtlSeconds != ttlSeconds) {
+          LOG.debug("Creating builds result cache with max size " + maxSize + " and ttl " + ttlSeconds + " seconds");
+          holder = new CacheHolder(maxSize, ttlSeconds);
+          myCacheHolder = holder;
+        }
+      }
+    }
+    return holder.myCache;
+  }
+
+  /**
+   * @return locator text with sorted top-level dimensions or null if the locator should not be cached
+   */
+  @Nullable
+  static String getNormalizedLocator(@NotNull final String locatorText) {
+    final Locator locator;
+    try {
+      locator = new Locator(locatorText);
+    } catch (LocatorProcessException e) {
+      return null;
+    }
+    if (locator.isHelpRequested()) return null;
+    if (locator.isSingleValue()) return locator.getStringRepresentation();
+    if (locatorText.contains("$contextItem")) return null; //depends on the request context
+
+    for (String dimension : new ArrayList<>(locator.getDefinedDimensions())) {
+      locator.setDimension(dimension, locator.lookupDimensionValue(dimension)); //marks the locator as modified so that the dimensions are rendered sorted
+    }
+    return locator.getStringRepresentation();
+  }
+
+  @NotNull
+  private static Object getScope(@NotNull final AuthorityHolder authorityHolder) {
+    final User user = authorityHolder.getAssociatedUser();
+    return user != null ? (Object)user.getId() : authorityHolder;
+  }
+
+  private static class CacheHolder {
+    private final long myMaxSize;
+    private final long myTtlSeconds;
+    @NotNull private final Cache<CacheKey, Entry> myCache;
+
+    private CacheHolder(final long maxSize, final long ttlSeconds) {
+      myMaxSize = maxSize;
+      myTtlSeconds = ttlSeconds;
+      myCache = CacheBuilder.newBuilder().maximumSize(maxSize).expireAfterWrite(ttlSeconds, TimeUnit.SECONDS).recordStats().build();
+    }
+  }
+
+  private static class Entry {
+    @NotNull private final PagedSearchResult<BuildPromotion> myResult;
+    @NotNull private final BuildEventVersions.Snapshot mySnapshot;
+
+    private Entry(@NotNull final PagedSearchResult<BuildPromotion> result, @NotNull final BuildEventVersions.Snapshot snapshot) {
+      myResult = result;
+      mySnapshot = snapshot;
+    }
+  }
+
+  private static class CacheKey {
+    @NotNull private final Object myScope;
+    @NotNull private final String myLocator;
+
+    private CacheKey(@NotNull final Object scope, @NotNull final String locator) {
+      myScope = scope;
+      myLocator = locator;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      final CacheKey cacheKey = (CacheKey)o;
+      return myScope.equals(cacheKey.myScope) && myLocator.equals(cacheKey.myLocator);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(myScope, myLocator);
+    }
+  }
+}
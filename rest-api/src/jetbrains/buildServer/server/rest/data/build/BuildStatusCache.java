@@ -0,0 +1,215 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.rest.data.build;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import jetbrains.buildServer.serverSide.ProjectManager;
+import jetbrains.buildServer.serverSide.SBuildType;
+import jetbrains.buildServer.serverSide.SProject;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import jetbrains.buildServer.serverSide.auth.AuthorityHolder;
+import jetbrains.buildServer.serverSide.auth.SecurityContext;
+import jetbrains.buildServer.serverSide.impl.auth.SecurityContextImpl;
+import jetbrains.buildServer.users.User;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Cache of statuses computed for build locators, e.g. for the status icons which are requested by external pages all the time.
+ * Statuses are scoped by the user or shared by all the anonymous requests (which use guest user permissions),
+ * statuses computed for other authority holders (e.g. system or build authority) are not cached at all.
+ * Build state and settings changes reported to {@link jetbrains.buildServer.server.rest.data.ServerListener} outdate only the statuses of the locators
+ * which can include builds of the changed build configuration or project (see {@link BuildEventVersions}),
+ * the expiration time is a safety net for the changes which are not reported (e.g. guest user permissions).
+ */
+@Component
+public class BuildStatusCache {
+  public static final String ENABLED = "rest.request.builds.statusCache.enabled";
+  public static final String MAX_SIZE = "rest.request.builds.statusCache.maxSize";
+  public static final String TTL_SECONDS = "rest.request.builds.statusCache.ttlSeconds";
+
+  @NotNull private final SecurityContext mySecurityContext;
+  @NotNull private final BuildEventVersions myVersions;
+  @NotNull private final AtomicLong myInvalidations = new AtomicLong();
+  @NotNull private final AtomicLong myOutdated = new AtomicLong();
+  @Nullable private volatile CacheHolder myCacheHolder;
+
+  public BuildStatusCache(@NotNull final SecurityContext securityContext, @NotNull final ProjectManager projectManager) {
+    mySecurityContext = securityContext;
+    myVersions = new BuildEventVersions(projectManager);
+  }
+
+  /**
+   * @param kind        distinguishes different statuses computed for the same locator
+   * @param computation is invoked if the status is not cached, the result is cached only if no build events happened during the computation
+   * @param cacheable   allows not to cache transient results, e.g. errors
+   */
+  @NotNull
+  public <T> T get(@NotNull final String kind, @Nullable final String locatorText, @NotNull final Supplier<T> computation, @NotNull final Predicate<T> cacheable) {
+    if (locatorText == null || !TeamCityProperties.getBooleanOrTrue(ENABLED)) {
+      return computation.get();
+    }
+    final String normalizedLocator = BuildPromotionsResultCache.getNormalizedLocator(locatorText);
+    if (normalizedLocator == null) {
+      return computation.get();
+    }
+
+    final String scope = getScope(mySecurityContext.getAuthorityHolder());
+    if (scope == null) {
+      return computation.get();
+    }
+
+    final Cache<CacheKey, Entry> cache = getCache();
+    final CacheKey key = new CacheKey(kind, scope, normalizedLocator);
+    final Entry cached = cache.getIfPresent(key);
+    if (cached != null) {
+      if (myVersions.isUpToDate(cached.mySnapshot)) {
+        @SuppressWarnings("unchecked") final T result = (T)cached.myValue;
+        return result;
+      }
+      myOutdated.incrementAndGet();
+    }
+
+    final BuildEventVersions.Snapshot snapshot = myVersions.getSnapshot(normalizedLocator);
+    final T result = computation.get();
+    if (myVersions.isUpToDate(snapshot) && cacheable.test(result)) {
+      cache.put(key, new Entry(result, snapshot));
+    }
+    return result;
+  }
+
+  /**
+   * Outdates the statuses of the locators which can include builds of the build configuration.
+   */
+  public void invalidate(@NotNull final SBuildType buildType) {
+    myVersions.invalidate(buildType);
+  }
+
+  /**
+   * Outdates the statuses of the locators which can include builds of the project or its subprojects.
+   */
+  public void invalidate(@NotNull final SProject project) {
+    myVersions.invalidate(project);
+  }
+
+  public void invalidate() {
+    myVersions.invalidateAll();
+    final CacheHolder holder = myCacheHolder;
+    if (holder != null && holder.myCache.size() > 0) {
+      myInvalidations.incrementAndGet();
+      holder.myCache.invalidateAll();
+    }
+  }
+
+  @NotNull
+  public String getStatistics() {
+    final CacheHolder holder = myCacheHolder;
+    if (holder == null) {
+      return "Build status cache is not initialized" + (TeamCityProperties.getBooleanOrTrue(ENABLED) ? "" : ", it is disabled via \"" + ENABLED + "\" internal property");
+    }
+    final CacheStats stats = holder.myCache.stats();
+    return "Build status cache: size " + holder.myCache.size() + " (max " + holder.myMaxSize + ", ttl " + holder.myTtlSeconds + " s), " +
+           "hits " + stats.hitCount() + ", misses " + stats.missCount() + ", outdated " + myOutdated.get() + ", evictions " + stats.evictionCount() + ", invalidations " + myInvalidations.get();
+  }
+
+  @NotNull
+  private Cache<CacheKey, Entry> getCache() {
+    final long maxSize = TeamCityProperties.getLong(MAX_SIZE, 5000);
+    final long ttlSeconds = TeamCityProperties.getLong(TTL_SECONDS, 60);
+    CacheHolder holder = myCacheHolder;
+    if (holder == null || holder.myMaxSize != maxSize || holder.myTtlSeconds != ttlSeconds) {
+      synchronized (this) {
+        holder = myCacheHolder;
+        if (holder == null || holder.myMaxSize != maxSize || holder.myTtlSeconds != ttlSeconds) {
+          holder = new CacheHolder(maxSize, ttlSeconds);
+          myCacheHolder = holder;
+        }
+      }
+    }
+    return holder.myCache;
+  }
+
+  /**
+   * @return the key part identifying the authority holder by its kind and identity or null if the results should not be cached for the holder
+   */
+  @Nullable
+  static String getScope(@NotNull final AuthorityHolder authorityHolder) {
+    final User user = authorityHolder.getAssociatedUser();
+    if (user != null) {
+      return "user:" + user.getId();
+    }
+    if (authorityHolder.equals(SecurityContextImpl.NO_PERMISSIONS)) {
+      return "anonymous";
+    }
+    return null;
+  }
+
+  private static class CacheHolder {
+    private final long myMaxSize;
+    private final long myTtlSeconds;
+    @NotNull private final Cache<CacheKey, Entry> myCache;
+
+    private CacheHolder(final long maxSize, final long ttlSeconds) {
+      myMaxSize = maxSize;
+      myTtlSeconds = ttlSeconds;
+      myCache = CacheBuilder.newBuilder().maximumSize(maxSize).expireAfterWrite(ttlSeconds, TimeUnit.SECONDS).recordStats().build();
+    }
+  }
+
+  private static class Entry {
+    @NotNull private final Object myValue;
+    @NotNull private final BuildEventVersions.Snapshot mySnapshot;
+
+    private Entry(@NotNull final Object value, @NotNull final BuildEventVersions.Snapshot snapshot) {
+      myValue = value;
+      mySnapshot = snapshot;
+    }
+  }
+
+  private static class CacheKey {
+    @NotNull private final String myKind;
+    @NotNull private final String myScope;
+    @NotNull private final String myLocator;
+
+    private CacheKey(@NotNull final String kind, @NotNull final String scope, @NotNull final String locator) {
+      myKind = kind;
+      myScope = scope;
+      myLocator = locator;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      final CacheKey cacheKey = (CacheKey)o;
+      return myKind.equals(cacheKey.myKind) && myScope.equals(cacheKey.myScope) && myLocator.equals(cacheKey.myLocator);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(myKind, myScope, myLocator);
+    }
+  }
+}
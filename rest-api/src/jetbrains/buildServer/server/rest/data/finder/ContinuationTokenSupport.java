@@ -0,0 +1,101 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.rest.data.finder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import jetbrains.buildServer.server.rest.data.util.itemholder.ItemHolder;
+import jetbrains.buildServer.server.rest.errors.BadRequestException;
+import jetbrains.buildServer.server.rest.errors.NotFoundException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Optional extension of {@link FinderDataBinding} which allows to continue paging right after the last processed item
+ * instead of re-processing all the items before the page start.<br/>
+ * The key should identify the item within the finder's prefiltered items sequence and should be stable between requests.<br/>
+ * If the item with the key is no longer among the prefiltered items and the finder cannot tell which items go after it, the paging cannot be resumed
+ * and should be restarted without the token, see {@link #resumeAfter(ItemHolder, String)}.
+ */
+public interface ContinuationTokenSupport<ITEM> {
+  char KEY_DELIMITER = '|';
+
+  /**
+   * @return key of the item to resume processing after, or null if processing cannot be resumed after the item
+   */
+  @Nullable
+  String getContinuationKey(@NotNull ITEM item);
+
+  /**
+   * Compares the item with the one the key was issued for using the order of the prefiltered items.
+   * Allows to resume paging even when the item with the key was deleted between the requests.
+   * Should only be implemented when the prefiltered items go in the same order for any locator.
+   * @return true if the item is known to go after the item with the given key, false if it goes before it or the order is unknown
+   */
+  default boolean isAfter(@NotNull final ITEM item, @NotNull final String continuationKey) {
+    return false;
+  }
+
+  /**
+   * Positions prefiltered items right after the item with the given key or at the first item which {@link #isAfter(Object, String) goes after it}.
+   * The items skipped are not passed to the filter.
+   * Finders which can avoid retrieving the skipped items altogether (e.g. when the order of the items for the locator is known) can position the items
+   * in {@link AbstractFinder#getPrefilteredItems(jetbrains.buildServer.server.rest.data.Locator)} and mark the
+   * {@link FinderImpl#DIMENSION_CONTINUATION_TOKEN} dimension as used, this method is not called then.
+   * @throws NotFoundException on processing the items if no item to resume after is found
+   */
+  @NotNull
+  default ItemHolder<ITEM> resumeAfter(@NotNull final ItemHolder<ITEM> prefilteredItems, @NotNull final String continuationKey) {
+    return processor -> {
+      final boolean[] resumed = new boolean[1];
+      prefilteredItems.skipThrough(item -> resumed[0] = continuationKey.equals(getContinuationKey(item)),
+                                   item -> resumed[0] = isAfter(item, continuationKey))
+                      .process(processor);
+      if (!resumed[0]) {
+        // otherwise an empty result would look like the last page
+        throw new NotFoundException("The item the continuation token was issued for is no longer found and the items after it are unknown. Restart paging without the token.");
+      }
+    };
+  }
+
+  /**
+   * @return opaque token suitable for using as a locator dimension value (contains only URL-safe Base64 characters)
+   */
+  @NotNull
+  static String encode(@NotNull final String finderName, @NotNull final String continuationKey) {
+    return Base64.getUrlEncoder().withoutPadding().encodeToString((finderName + KEY_DELIMITER + continuationKey).getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * @return continuation key encoded in the token
+   * @throws BadRequestException if the token is malformed or was issued by another finder
+   */
+  @NotNull
+  static String decode(@NotNull final String finderName, @NotNull final String token) {
+    final String decoded;
+    try {
+      decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+    } catch (IllegalArgumentException e) {
+      throw new BadRequestException("Invalid continuation token '" + token + "': " + e.getMessage());
+    }
+    final int delimiterIndex = decoded.indexOf(KEY_DELIMITER);
+    if (delimiterIndex < 0 || !finderName.equals(decoded.substring(0, delimiterIndex))) {
+      throw new BadRequestException("Invalid continuation token '" + token + "': the token was not issued for this kind of items.");
+    }
+    return decoded.substring(delimiterIndex + 1);
+  }
+}
@@ -33,6 +33,7 @@ import jetbrains.buildServer.server.rest.errors.OperationException;
 import jetbrains.buildServer.server.rest.model.PagerData;
 import jetbrains.buildServer.serverSide.TeamCityProperties;
 import jetbrains.buildServer.serverSide.impl.LogUtil;
+import jetbrains.buildServer.util.ItemProcessor;
 import jetbrains.buildServer.util.NamedThreadFactory;
 import jetbrains.buildServer.util.StringUtil;
 import jetbrains.buildServer.util.TimePrinter;
@@ -49,6 +50,7 @@ public class FinderImpl<ITEM> implements Finder<ITEM> {
 
   public static final String DIMENSION_ID = "id";
   public static final String DIMENSION_LOOKUP_LIMIT = "lookupLimit";
+  public static final String DIMENSION_CONTINUATION_TOKEN = "continuationToken";
 
   public static final String LOGIC_OP_OR = "or";
   public static final String LOGIC_OP_AND = "and";
@@ -118,6 +120,19 @@ public class FinderImpl<ITEM> implements Finder<ITEM> {
     );
   }
 
+  /**
+   * Same as {@link #getItems(String)}, but passes the found items to the consumer one by one as they are found instead of collecting them,
+   * so that the memory used does not depend on the number of the items.
+   * @return the result with the paging details, the entries are not included
+   */
+  @NotNull
+  public PagedSearchResult<ITEM> processItems(@Nullable final String locatorText, @NotNull final ItemProcessor<ITEM> consumer) {
+    return NamedThreadFactory.executeWithNewThreadNameFuncThrow(
+      "Using " + getName() + " to process items for locator \"" + locatorText + "\"",
+      () -> getItemsByLocator(getLocatorOrNull(locatorText), true, consumer)
+    );
+  }
+
   @NotNull
   @Override
   public ItemFilter<ITEM> getFilter(@NotNull final String locatorText) {
@@ -165,6 +180,9 @@ public class FinderImpl<ITEM> implements Finder<ITEM> {
     result.addHiddenDimensions(AbstractFinder.DIMENSION_UNIQUE);  //experimental, should actually depend on FinderDataBinding.getContainerSet returning not null
     result.addHiddenDimensions(OPTIONS_REPORT_ERROR_ON_NOTHING_FOUND); //experimental
     result.addHiddenDimensions(CONTEXT_ITEM_DIMENSION_NAME); //experimental, internal
+    if (myDataBinding instanceof ContinuationTokenSupport) {
+      result.addHiddenDimensions(DIMENSION_CONTINUATION_TOKEN); //experimental
+    }
     for (String hiddenDimension : myDataBinding.getHiddenDimensions()) {
       result.addHiddenDimensions(hiddenDimension);
     }
@@ -181,6 +199,9 @@ public class FinderImpl<ITEM> implements Finder<ITEM> {
     knownDimensions.add(PagerData.START);
     knownDimensions.add(PagerData.COUNT);
     knownDimensions.add(DIMENSION_LOOKUP_LIMIT);
+    if (myDataBinding instanceof ContinuationTokenSupport) {
+      knownDimensions.add(DIMENSION_CONTINUATION_TOKEN);
+    }
     knownDimensions.add(OPTIONS_REPORT_ERROR_ON_NOTHING_FOUND);
     knownDimensions.add(CONTEXT_ITEM_DIMENSION_NAME); //experimental, internal
     return knownDimensions.toArray(new String[knownDimensions.size()]);
@@ -227,6 +248,14 @@ public class FinderImpl<ITEM> implements Finder<ITEM> {
 
   @NotNull
   private PagedSearchResult<ITEM> getItemsByLocator(@Nullable final Locator originalLocator, final boolean multipleItemsQuery) {
+    return getItemsByLocator(originalLocator, multipleItemsQuery, null);
+  }
+
+  /**
+   * @param consumer if not null, found items are passed to it and are not included into the result
+   */
+  @NotNull
+  private PagedSearchResult<ITEM> getItemsByLocator(@Nullable final Locator originalLocator, final boolean multipleItemsQuery, @Nullable final ItemProcessor<ITEM> consumer) {
     long startTime = System.nanoTime();
     Locator locator;
     if (originalLocator == null) {
@@ -246,7 +275,7 @@ public class FinderImpl<ITEM> implements Finder<ITEM> {
 
       //so far do not support additional filtering or other dimensions if context item is used
       locator.checkLocatorFullyProcessed();
-      return new PagedSearchResult<>(contextObjects, null, null);
+      return passToConsumer(new PagedSearchResult<>(contextObjects, null, null), consumer);
     }
 
     if (!locator.isEmpty()) {
@@ -292,7 +321,7 @@ public class FinderImpl<ITEM> implements Finder<ITEM> {
           }
         }
 
-        return new PagedSearchResult<>(Collections.singletonList(singleItem), null, null);
+        return passToConsumer(new PagedSearchResult<>(Collections.singletonList(singleItem), null, null), consumer);
       }
       locator.markAllUnused(); // nothing found - no dimensions should be marked as used then
     }
@@ -301,6 +330,13 @@ public class FinderImpl<ITEM> implements Finder<ITEM> {
     try {
       LocatorDataBinding<ITEM> locatorDataBinding = getDataBindingWithLogicOpsSupport(locator, myDataBinding);
       unfilteredItems = locatorDataBinding.getPrefilteredItems();
+      // the data binding could have already positioned the items after the token, see ContinuationTokenSupport.resumeAfter
+      final boolean resumedByDataBinding = !locator.isUnused(DIMENSION_CONTINUATION_TOKEN);
+      final String continuationKey = getContinuationKey(locator);
+      if (continuationKey != null && !resumedByDataBinding) {
+        //noinspection unchecked
+        unfilteredItems = ((ContinuationTokenSupport<ITEM>)myDataBinding).resumeAfter(unfilteredItems, continuationKey);
+      }
       DuplicateChecker<ITEM> duplicateChecker = myDataBinding.createDuplicateChecker();
       if (duplicateChecker != null) {
         //get the dimension only for supporting finders so that unused dimension is reported otherwise
@@ -319,7 +355,17 @@ public class FinderImpl<ITEM> implements Finder<ITEM> {
                                     "\nLocator details: " + locator.getLocatorDescription(locator.helpOptions().getSingleDimensionValueAsStrictBoolean("hidden", false)), e);
     }
     locator.checkLocatorFullyProcessed();
-    return getItems(pagingFilter, unfilteredItems, locator, startTime);
+    return getItems(pagingFilter, unfilteredItems, locator, startTime, consumer);
+  }
+
+  @NotNull
+  private static <T> PagedSearchResult<T> passToConsumer(@NotNull final PagedSearchResult<T> result, @Nullable final ItemProcessor<T> consumer) {
+    if (consumer == null) return result;
+    for (T item : result.getEntries()) {
+      if (!consumer.processItem(item)) break;
+    }
+    return new PagedSearchResult<>(Collections.emptyList(), result.getActualCount(), result.getStart(), result.getCount(), result.getActuallyProcessedCount(),
+                                   result.getLookupLimit(), result.getLookupLimitReached(), result.getLastProcessedItem(), result.getContinuationToken());
   }
 
   @NotNull
@@ -342,6 +388,41 @@ public class FinderImpl<ITEM> implements Finder<ITEM> {
     return Collections.singletonList((ITEM)o);  //this never produces ClassCastException as generics are lost on run-time
   }
 
+  /**
+   * @return continuation key decoded from the token in the locator or null if there is no token or the finder does not support continuation tokens
+   */
+  @Nullable
+  protected String getContinuationKey(@NotNull final Locator locator) {
+    if (!(myDataBinding instanceof ContinuationTokenSupport)) return null;
+    final String token = locator.getSingleDimensionValue(DIMENSION_CONTINUATION_TOKEN);
+    return token == null ? null : ContinuationTokenSupport.decode(getName(), token);
+  }
+
+  /**
+   * Same as {@link #getContinuationKey(Locator)}, but does not mark the dimension as used.
+   */
+  @Nullable
+  protected String lookupContinuationKey(@NotNull final Locator locator) {
+    if (!(myDataBinding instanceof ContinuationTokenSupport)) return null;
+    final String token = locator.lookupSingleDimensionValue(DIMENSION_CONTINUATION_TOKEN);
+    return token == null ? null : ContinuationTokenSupport.decode(getName(), token);
+  }
+
+  @Nullable
+  private String getNextContinuationToken(@NotNull final PagingItemFilter<ITEM> filter, final int resultSize, @NotNull final Locator locator) {
+    if (!(myDataBinding instanceof ContinuationTokenSupport)) return null;
+    if (locator.lookupSingleDimensionValue(DIMENSION_CONTINUATION_TOKEN) == null && !TeamCityProperties.getBoolean("rest.finder.continuationToken.enabled")) {
+      return null; // keep start-based paging unless the client already pages by tokens
+    }
+    final boolean nextPageAvailable = filter.getCount() != null && resultSize >= filter.getCount() || filter.isLookupLimitReached();
+    final ITEM lastProcessedItem = filter.getLastProcessedItem();
+    if (!nextPageAvailable || lastProcessedItem == null) return null;
+
+    //noinspection unchecked
+    final String key = ((ContinuationTokenSupport<ITEM>)myDataBinding).getContinuationKey(lastProcessedItem);
+    return key == null ? null : ContinuationTokenSupport.encode(getName(), key);
+  }
+
   @Nullable
   protected Long getLookupLimit(@NotNull final Locator locator) {
     Long lookupLimit = locator.getSingleDimensionValueAsLong(DIMENSION_LOOKUP_LIMIT, myDataBinding.getDefaultLookupLimit());
@@ -371,11 +452,13 @@ public class FinderImpl<ITEM> implements Finder<ITEM> {
   @NotNull
   private PagedSearchResult<ITEM> getItems(@NotNull final PagingItemFilter<ITEM> filter,
                                            @NotNull final ItemHolder<ITEM> unfilteredItems,
-                                           @NotNull final Locator locator, final long startTime) {
+                                           @NotNull final Locator locator, final long startTime,
+                                           @Nullable final ItemProcessor<ITEM> consumer) {
     final long filteringStartTime = System.nanoTime();
-    final FilterItemProcessor<ITEM> filterItemProcessor = new FilterItemProcessor<>(filter);
+    final FilterItemProcessor<ITEM> filterItemProcessor = new FilterItemProcessor<>(filter, consumer);
     unfilteredItems.process(filterItemProcessor);
     final ArrayList<ITEM> result = filterItemProcessor.getResult();
+    final int resultSize = filterItemProcessor.getMatchedItemsCount();
     final long finishTime = System.nanoTime();
     final long processingTimeMs = TimeUnit.MILLISECONDS.convert(finishTime - startTime, TimeUnit.NANOSECONDS);
     final long totalItemsProcessed = filterItemProcessor.getTotalItemsProcessed();
@@ -384,21 +467,22 @@ public class FinderImpl<ITEM> implements Finder<ITEM> {
       final String lookupLimitMessage =
         filter.isLookupLimitReached() ? " (lookupLimit of " + filter.getLookupLimit() + " reached). Last processed item: " + LogUtil.describe(filter.getLastProcessedItem()) : "";
       if (LOG.isDebugEnabled()) {
-        LOG.debug("While processing locator '" + locator + "' by finder " + getName() + ", " + result.size() + " items were matched by the filter from " +
+        LOG.debug("While processing locator '" + locator + "' by finder " + getName() + ", " + resultSize + " items were matched by the filter from " +
                   totalItemsProcessed + " processed in total" + lookupLimitMessage + ", took " + processingTimeMs + " ms (filtering " +
                   TimeUnit.MILLISECONDS.convert(finishTime - filteringStartTime, TimeUnit.NANOSECONDS) + " ms)");
       }
     }
-    if (isHeavyRequest(processingTimeMs, totalItemsProcessed, result.size())) {
+    if (isHeavyRequest(processingTimeMs, totalItemsProcessed, resultSize)) {
       LOG.info("Server performance can be affected by REST request and finder " + getName() + " with locator '" + locator + "': " +
-               totalItemsProcessed + " items were processed and " + result.size() + " items were returned, took " + TimePrinter
+               totalItemsProcessed + " items were processed and " + resultSize + " items were returned, took " + TimePrinter
                  .createMillisecondsFormatter().formatTime(processingTimeMs));
     }
-    if (result.isEmpty() && isReportErrorOnNothingFound(locator)) {
+    if (resultSize == 0 && isReportErrorOnNothingFound(locator)) {
       throw new NotFoundException("Nothing is found by " + getLocatorDetailsForMessage(locator) + ".");
     }
-    return new PagedSearchResult<>(result, filter.getStart(), filter.getCount(), totalItemsProcessed,
-                                   filter.getLookupLimit(), filter.isLookupLimitReached(), filter.getLastProcessedItem());
+    return new PagedSearchResult<>(result, resultSize, filter.getStart(), filter.getCount(), totalItemsProcessed,
+                                   filter.getLookupLimit(), filter.isLookupLimitReached(), filter.getLastProcessedItem(),
+                                   getNextContinuationToken(filter, resultSize, locator));
   }
 
   private static boolean isHeavyRequest(long processingTimeMs, long totalItemsProcessed, int resultSize) {
@@ -24,7 +24,6 @@ import jetbrains.buildServer.server.rest.data.util.MultiCheckerFilter;
 import jetbrains.buildServer.server.rest.data.util.itemholder.ItemHolder;
 import jetbrains.buildServer.server.rest.errors.OperationException;
 import jetbrains.buildServer.server.rest.model.PagerData;
-import jetbrains.buildServer.util.CollectionsUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -94,29 +93,43 @@ public class GraphFinder<T> extends AbstractFinder<T> {
     final List<T> stopItems = getItemsFromDimension(locator, DIMENSION_STOP);
     Long lookupLimit = locator.getSingleDimensionValueAsLong(DIMENSION_LOOKUP_LIMIT, getDefaultLookupLimit());
 
-    Set<T> resultTo = new LinkedHashSet<T>();
-    if (!toItems.isEmpty()) {
-      if (includeOriginal) {
-        resultTo.addAll(toItems);
+    if (!toItems.isEmpty() && !fromItems.isEmpty()) {
+      // the intersection needs one side to be collected completely, the other one is still traversed lazily
+      final Set<T> resultFrom = new LinkedHashSet<T>();
+      getLinked(fromItems, includeOriginal, getStopItems(toItems, stopItems), lookupLimit, myTraverser.getParents(), recursive).process(item -> {
+        resultFrom.add(item);
+        return true;
+      });
+      final ItemHolder<T> resultTo = getLinked(toItems, includeOriginal, getStopItems(fromItems, stopItems), lookupLimit, myTraverser.getChildren(), recursive);
+      if (resultFrom.isEmpty()) {
+        return resultTo;
       }
-      collectLinked(resultTo, toItems, CollectionsUtil.join(fromItems, stopItems), lookupLimit, myTraverser.getChildren(), recursive);
+      return processor -> {
+        final boolean[] anyFound = new boolean[1];
+        resultTo.process(item -> {
+          anyFound[0] = true;
+          return !resultFrom.contains(item) || processor.processItem(item);
+        });
+        if (!anyFound[0]) {
+          ItemHolder.of(resultFrom).process(processor);
+        }
+      };
     }
 
-    Set<T> resultFrom = new LinkedHashSet<T>();
+    if (!toItems.isEmpty()) {
+      return getLinked(toItems, includeOriginal, getStopItems(fromItems, stopItems), lookupLimit, myTraverser.getChildren(), recursive);
+    }
     if (!fromItems.isEmpty()) {
-      if (includeOriginal) {
-        resultFrom.addAll(fromItems);
-      }
-      collectLinked(resultFrom, fromItems, CollectionsUtil.join(toItems, stopItems), lookupLimit, myTraverser.getParents(), recursive);
+      return getLinked(fromItems, includeOriginal, getStopItems(toItems, stopItems), lookupLimit, myTraverser.getParents(), recursive);
     }
+    return ItemHolder.empty();
+  }
 
-    ArrayList<T> result;
-    if (!resultTo.isEmpty() && !resultFrom.isEmpty()) {
-      result = new ArrayList<T>(CollectionsUtil.intersect(resultTo, resultFrom));
-    } else {
-      result = new ArrayList<T>(!resultTo.isEmpty() ? resultTo : resultFrom);
-    }
-    return ItemHolder.of(result); //can improve performance by performing traversing in the holder, not retrieving all upfront, this will also add support for lookupLimit
+  @NotNull
+  private Set<T> getStopItems(@NotNull final List<T> otherSideItems, @NotNull final List<T> stopItems) {
+    final Set<T> result = new HashSet<T>(otherSideItems);
+    result.addAll(stopItems);
+    return result;
   }
 
   @NotNull
@@ -132,31 +145,56 @@ public class GraphFinder<T> extends AbstractFinder<T> {
     return Collections.emptyList();
   }
 
-  protected void collectLinked(@NotNull final Set<T> result,
-                             @NotNull Collection<T> toProcess,
-                             @NotNull Collection<T> stopItems,
-                             final Long lookupLimit,
-                             @NotNull LinkRetriever<T> linkRetriever,
-                             final boolean recursive) {
-    final int initialSize = result.size();
-    while (!toProcess.isEmpty()) {
-      Set<T> linkedItems = new LinkedHashSet<T>();
-      for (T item : toProcess) {
-        if (stopItems.contains(item)) {
-          result.add(item);
-        } else {
-          final List<T> linked = linkRetriever.getLinked(item);
-          result.addAll(linked);
-          linkedItems.addAll(linked);
+  /**
+   * Traverses the graph breadth-first starting from the initial items as the returned holder is processed, stops as soon as the processor returns false.
+   * Each item is returned and expanded only once. Stop items are returned, but not expanded.
+   * @param lookupLimit max number of the items found by the traversal (initial items are not counted), null for no limit
+   */
+  @NotNull
+  protected ItemHolder<T> getLinked(@NotNull final List<T> initialItems,
+                                    final boolean includeInitial,
+                                    @NotNull final Set<T> stopItems,
+                                    @Nullable final Long lookupLimit,
+                                    @NotNull final LinkRetriever<T> linkRetriever,
+                                    final boolean recursive) {
+    return processor -> {
+      final Set<T> found = new HashSet<T>();
+      if (includeInitial) {
+        for (T item : initialItems) {
+          if (found.add(item) && !processor.processItem(item)) return;
         }
       }
-      toProcess = linkedItems;
-      if (!recursive) break;
-      if (lookupLimit != null && (result.size() - initialSize >= lookupLimit)) {
-        LOG.debug("Hit lookupLimit " + lookupLimit + " while traversing graph, result is partial");
-        break;
+
+      long foundByTraversal = 0;
+      final Set<T> expanded = new HashSet<T>();
+      List<T> toProcess = initialItems;
+      while (!toProcess.isEmpty()) {
+        final List<T> linkedItems = new ArrayList<T>();
+        for (T item : toProcess) {
+          final List<T> linked;
+          if (stopItems.contains(item)) {
+            linked = Collections.singletonList(item);
+          } else if (expanded.add(item)) {
+            linked = linkRetriever.getLinked(item);
+          } else {
+            continue;
+          }
+          for (T linkedItem : linked) {
+            if (!found.add(linkedItem)) continue;
+            if (!processor.processItem(linkedItem)) return;
+            if (lookupLimit != null && ++foundByTraversal >= lookupLimit) {
+              LOG.debug("Hit lookupLimit " + lookupLimit + " while traversing graph, result is partial");
+              return;
+            }
+            if (!stopItems.contains(linkedItem)) {
+              linkedItems.add(linkedItem);
+            }
+          }
+        }
+        if (!recursive) break;
+        toProcess = linkedItems;
       }
-    }
+    };
   }
 
   public interface Traverser<S> {
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.rest.data.finder.impl;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import jetbrains.buildServer.serverSide.BuildAgentManagerEx;
+import jetbrains.buildServer.serverSide.SBuildAgent;
+import jetbrains.buildServer.serverSide.SBuildType;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Agent to build configuration compatibility as calculated by {@link AgentFinder#canActuallyRun(SBuildAgent, SBuildType)},
+ * kept as a bit set of compatible agent ids per build configuration.
+ * <p/>
+ * A build configuration row is calculated on first use by a filter for many agents and dropped when the build configuration changes.
+ * Single agent lookups use the already calculated rows only and do not calculate a row.
+ * When an agent changes, only the agent is recalculated until the rows calculated before the change are dropped.
+ * Agent pools and agent run policies are not reported by events, so they are not stored in the rows: the run policy is checked on each lookup
+ * and the agent is recalculated if its pool association with the build configuration project differs from the one the row was calculated with.
+ * Rows are also recalculated once they get older than {@link #MAX_AGE_SECONDS}.
+ * <p/>
+ * The changes are reported by {@link jetbrains.buildServer.server.rest.data.ServerListener}.
+ */
+@Component
+public class AgentCompatibilityMatrix {
+  public static final String ENABLED = "rest.request.agents.compatibilityMatrix.enabled";
+  public static final String MAX_AGE_SECONDS = "rest.request.agents.compatibilityMatrix.maxAgeSeconds";
+
+  @NotNull private final BuildAgentManagerEx myAgentManager;
+  @NotNull private final ConcurrentHashMap<String, Row> myRows = new ConcurrentHashMap<>();
+  /**
+   * Incremented on each agent change, so that the rows and the agent changes can be ordered.
+   */
+  @NotNull private final AtomicLong myGeneration = new AtomicLong();
+  /**
+   * Incremented when rows are dropped. A row calculated while rows were dropped is not stored as it might be calculated from the outdated state.
+   */
+  @NotNull private final AtomicLong myRowInvalidations = new AtomicLong();
+  /**
+   * Agent id -> the generation of the last change of the agent. The agent's bits are not trusted in the rows calculated before the change.
+   */
+  @NotNull private final ConcurrentHashMap<Integer, Long> myAgentChanges = new ConcurrentHashMap<>();
+
+  public AgentCompatibilityMatrix(@NotNull final BuildAgentManagerEx agentManager) {
+    myAgentManager = agentManager;
+  }
+
+  public static boolean isEnabled() {
+    return TeamCityProperties.getBooleanOrTrue(ENABLED);
+  }
+
+  /**
+   * Uses the row of the build configuration if it is already calculated, otherwise calculates the compatibility of the agent only
+   */
+  public boolean isCompatible(@NotNull final SBuildAgent agent, @NotNull final SBuildType buildType) {
+    final Row row = getExistingRow(buildType);
+    if (row == null) {
+      return AgentFinder.canActuallyRun(agent, buildType);
+    }
+    return row.isCompatible(agent, buildType);
+  }
+
+  /**
+   * @return filter matching the agents compatible with at least one of the build configurations
+   */
+  @NotNull
+  public Predicate<SBuildAgent> getCompatibleWithAny(@NotNull final List<SBuildType> buildTypes) {
+    return getFilter(buildTypes, false);
+  }
+
+  /**
+   * @return filter matching the agents compatible with all the build configurations
+   */
+  @NotNull
+  public Predicate<SBuildAgent> getCompatibleWithAll(@NotNull final List<SBuildType> buildTypes) {
+    return getFilter(buildTypes, true);
+  }
+
+  public void invalidate(@NotNull final SBuildType buildType) {
+    myRowInvalidations.incrementAndGet();
+    myRows.remove(buildType.getInternalId());
+  }
+
+  public void invalidate(@NotNull final SBuildAgent agent) {
+    myAgentChanges.put(agent.getId(), myGeneration.incrementAndGet());
+  }
+
+  public void invalidateAll() {
+    myRowInvalidations.incrementAndGet();
+    myRows.clear();
+    myAgentChanges.clear();
+  }
+
+  @NotNull
+  private Predicate<SBuildAgent> getFilter(@NotNull final List<SBuildType> buildTypes, final boolean all) {
+    final List<Row> rows = new ArrayList<>(buildTypes.size());
+    for (SBuildType buildType : buildTypes) {
+      rows.add(getRow(buildType));
+    }
+    return agent -> {
+      for (int i = 0; i < rows.size(); i++) {
+        if (rows.get(i).isCompatible(agent, buildTypes.get(i)) != all) return !all;
+      }
+      return all;
+    };
+  }
+
+  private boolean isTrusted(@NotNull final SBuildAgent agent, @NotNull final BitSet evaluated, final long rowsGeneration) {
+    final int id = agent.getId();
+    if (id < 0 || !evaluated.get(id)) return false;
+    final Long changed = myAgentChanges.get(id);
+    return changed == null || changed <= rowsGeneration;
+  }
+
+  @Nullable
+  private Row getExistingRow(@NotNull final SBuildType buildType) {
+    final Row existing = myRows.get(buildType.getInternalId());
+    if (existing != null && System.currentTimeMillis() - existing.myCreated < TeamCityProperties.getLong(MAX_AGE_SECONDS, 60) * 1000) {
+      return existing;
+    }
+    return null;
+  }
+
+  @NotNull
+  private Row getRow(@NotNull final SBuildType buildType) {
+    final Row existing = getExistingRow(buildType);
+    if (existing != null) {
+      return existing;
+    }
+
+    final long rowInvalidations = myRowInvalidations.get();
+    final long generation = myGeneration.get();
+    final List<SBuildAgent> agents = new ArrayList<>(myAgentManager.getRegisteredAgents(true));
+    agents.addAll(myAgentManager.getUnregisteredAgents(true));
+    final String projectId = buildType.getProjectId();
+    final BitSet compatible = new BitSet();
+    final BitSet evaluated = new BitSet();
+    final BitSet inPool = new BitSet();
+    for (SBuildAgent agent : agents) {
+      final int agentId = agent.getId();
+      if (agentId < 0) continue;
+      evaluated.set(agentId);
+      if (agent.getAgentPool().containsProjectId(projectId)) {
+        inPool.set(agentId);
+      }
+      if (AgentFinder.canActuallyRunIgnoringPolicy(agent, buildType)) {
+        compatible.set(agentId);
+      }
+    }
+
+    final Row result = new Row(compatible, evaluated, inPool, generation);
+    final String id = buildType.getInternalId();
+    myRows.put(id, result);
+    if (myRowInvalidations.get() != rowInvalidations) {
+      myRows.remove(id, result);
+    }
+    return result;
+  }
+
+  private class Row {
+    /**
+     * Compatibility without the agent run policy check
+     */
+    @NotNull private final BitSet myCompatible;
+    @NotNull private final BitSet myEvaluated;
+    /**
+     * Agents belonging to a pool associated with the build configuration project at the time of the calculation
+     */
+    @NotNull private final BitSet myInPool;
+    private final long myGeneration;
+    private final long myCreated = System.currentTimeMillis();
+
+    private Row(@NotNull final BitSet compatible, @NotNull final BitSet evaluated, @NotNull final BitSet inPool, final long generation) {
+      myCompatible = compatible;
+      myEvaluated = evaluated;
+      myInPool = inPool;
+      myGeneration = generation;
+    }
+
+    private boolean isCompatible(@NotNull final SBuildAgent agent, @NotNull final SBuildType buildType) {
+      if (!AgentFinder.isAllowedByPolicy(agent, buildType)) {
+        return false;
+      }
+      if (!isTrusted(agent, myEvaluated, myGeneration) || myInPool.get(agent.getId()) != agent.getAgentPool().containsProjectId(buildType.getProjectId())) {
+        return AgentFinder.canActuallyRunIgnoringPolicy(agent, buildType);
+      }
+      return myCompatible.get(agent.getId());
+    }
+  }
+}
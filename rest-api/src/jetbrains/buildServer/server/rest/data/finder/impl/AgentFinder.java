@@ -19,6 +19,7 @@ package jetbrains.buildServer.server.rest.data.finder.impl;
 import com.google.common.collect.ComparisonChain;
 import com.intellij.openapi.diagnostic.Logger;
 import java.util.*;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import jetbrains.buildServer.AgentRestrictor;
@@ -253,7 +254,7 @@ public class AgentFinder extends AbstractFinder<SBuildAgent> {
       if (compatible != null) {
         final CompatibleLocatorParseResult compatibleData = getBuildTypesFromCompatibleDimension(compatible);
         if (compatibleData.buildTypes != null) {
-          result.add(item -> isCompatibleWithAny(item, compatibleData.buildTypes));
+          result.add(getCompatibleWithAnyFilter(compatibleData.buildTypes)::test);
         } else {
           assert compatibleData.buildPromotions != null;
           result.add(item -> isCompatibleWithAnyBuild(item, compatibleData.buildPromotions));
@@ -265,7 +266,7 @@ public class AgentFinder extends AbstractFinder<SBuildAgent> {
     if (incompatible != null) {
       final CompatibleLocatorParseResult compatibleData = getBuildTypesFromCompatibleDimension(incompatible);
        if (compatibleData.buildTypes != null) {
-         result.add(item -> !isCompatibleWithAll(item, compatibleData.buildTypes));
+         result.add(getCompatibleWithAllFilter(compatibleData.buildTypes).negate()::test);
        } else {
          result.add(item -> {
            assert compatibleData.buildPromotions != null;
@@ -348,6 +349,23 @@ public class AgentFinder extends AbstractFinder<SBuildAgent> {
     }
   }
 
+  @NotNull
+  private Predicate<SBuildAgent> getCompatibleWithAnyFilter(@NotNull final List<SBuildType> buildTypes) {
+    AgentCompatibilityMatrix matrix = getCompatibilityMatrix(myServiceLocator);
+    return matrix != null ? matrix.getCompatibleWithAny(buildTypes) : item -> isCompatibleWithAny(item, buildTypes);
+  }
+
+  @NotNull
+  private Predicate<SBuildAgent> getCompatibleWithAllFilter(@NotNull final List<SBuildType> buildTypes) {
+    AgentCompatibilityMatrix matrix = getCompatibilityMatrix(myServiceLocator);
+    return matrix != null ? matrix.getCompatibleWithAll(buildTypes) : item -> isCompatibleWithAll(item, buildTypes);
+  }
+
+  @Nullable
+  private static AgentCompatibilityMatrix getCompatibilityMatrix(@NotNull final ServiceLocator serviceLocator) {
+    return AgentCompatibilityMatrix.isEnabled() ? serviceLocator.findSingletonService(AgentCompatibilityMatrix.class) : null;
+  }
+
   private boolean isCompatibleWithAny(@NotNull final SBuildAgent agent, @NotNull final List<SBuildType> buildTypes) {
     for (final SBuildType buildType : buildTypes) {
       if (canActuallyRun(agent, buildType)) return true;
@@ -386,7 +404,11 @@ public class AgentFinder extends AbstractFinder<SBuildAgent> {
                                                                            final @NotNull ServiceLocator serviceLocator) {
     ArrayList<Compatibility.AgentCompatibilityData> result = new ArrayList<>();
     List<SBuildType> buildTypesToProcess = buildTypes != null ? buildTypes : serviceLocator.getSingletonService(ProjectManager.class).getAllBuildTypes();
+    AgentCompatibilityMatrix matrix = getCompatibilityMatrix(serviceLocator);
     for (final SBuildType buildType : buildTypesToProcess) {
+      if (matrix != null && matrix.isCompatible(agent, buildType)) {
+        continue;
+      }
       Compatibility.AgentCompatibilityData compatibilityData = getCompatibilityData(agent, buildType);
       if (!compatibilityData.isCompatible()) {
         result.add(compatibilityData);
@@ -395,10 +417,25 @@ public class AgentFinder extends AbstractFinder<SBuildAgent> {
     return result;
   }
 
+  static boolean isAllowedByPolicy(final @NotNull SBuildAgent agent, final @NotNull SBuildType buildType) {
+    return getAgentType(agent).getPolicy().isBuildTypeAllowed(buildType.getBuildTypeId());
+  }
+
+  /**
+   * Same as {@link #canActuallyRun(SBuildAgent, SBuildType)} but without checking the agent run policy
+   */
+  static boolean canActuallyRunIgnoringPolicy(@NotNull final SBuildAgent agent, @NotNull final SBuildType buildType) {
+    return getCompatibilityDataIgnoringPolicy(agent, buildType).isCompatible();
+  }
+
   private static Compatibility.AgentCompatibilityData getCompatibilityData(final @NotNull SBuildAgent agent, final @NotNull SBuildType buildType) {
-    if (!getAgentType(agent).getPolicy().isBuildTypeAllowed(buildType.getBuildTypeId())) {
+    if (!isAllowedByPolicy(agent, buildType)) {
       return new Compatibility.BasicAgentCompatibilityData(agent, buildType, false, "Restricted by agent policy");
     }
+    return getCompatibilityDataIgnoringPolicy(agent, buildType);
+  }
+
+  private static Compatibility.AgentCompatibilityData getCompatibilityDataIgnoringPolicy(final @NotNull SBuildAgent agent, final @NotNull SBuildType buildType) {
     if (!agent.getAgentPool().containsProjectId(buildType.getProjectId())) {
       return new Compatibility.BasicAgentCompatibilityData(agent, buildType, false, "Agent belongs to the pool not associated with the project");
     }
@@ -578,6 +578,14 @@ public class BuildArtifactsFinder extends AbstractFinder<ArtifactTreeElement> {
       return null;
     }
 
+    /**
+     * @return local file backing the element if it is a plain file on the server file system, null otherwise
+     */
+    @Nullable
+    public File getFile() {
+      return myFile;
+    }
+
     @Override
     public String toString() {
       return myElement.toString() + " unified";
@@ -33,6 +33,7 @@ import jetbrains.buildServer.server.rest.jersey.provider.annotated.JerseyInjecta
 import jetbrains.buildServer.server.rest.model.Fields;
 import jetbrains.buildServer.server.rest.model.PagerData;
 import jetbrains.buildServer.server.rest.model.PagerDataImpl;
+import jetbrains.buildServer.server.rest.model.StreamableItems;
 import jetbrains.buildServer.server.rest.model.build.Builds;
 import jetbrains.buildServer.server.rest.util.BeanContext;
 import jetbrains.buildServer.serverSide.*;
@@ -159,6 +160,16 @@ public class BuildFinder {
                                     "Set \"" + SUPPORT_NON_LOCATOR_FILTERS + "=true\" server internal property to allow such legacy queries until next TeamCity upgrade.");
     }
 
+    if (isStreamingSupported(request)) {
+      final String finalLocatorText = resultingLocatorText;
+      return Builds.createStreaming(processor -> {
+        final PagedSearchResult<BuildPromotion> pagedResult = myBuildPromotionFinder.processBuildPromotions(buildType, finalLocatorText, processor);
+        return new PagerDataImpl(uriInfo.getRequestUriBuilder(), request.getContextPath(), pagedResult,
+                                 locatorText == null ? null : finalLocatorText,
+                                 locatorParameterName);
+      }, fields, beanContext);
+    }
+
     final PagedSearchResult<BuildPromotion> pagedResult = myBuildPromotionFinder.getBuildPromotionsWithLegacyFallback(buildType, resultingLocatorText);
     final PagerData pagerData = new PagerDataImpl(uriInfo.getRequestUriBuilder(), request.getContextPath(), pagedResult,
                                               locatorText == null ? null : resultingLocatorText,
@@ -166,6 +177,10 @@ public class BuildFinder {
     return Builds.createFromPrefilteredBuildPromotions(pagedResult.getEntries(), pagerData, fields, beanContext);
   }
 
+  private static boolean isStreamingSupported(@NotNull final HttpServletRequest request) {
+    return !TeamCityProperties.getBoolean(LEGACY_BUILDS_FILTERING_FORCED) && StreamableItems.isStreamingRequested(request);
+  }
+
   @NotNull
   public PagedSearchResult<BuildPromotion> getBuilds(@Nullable final SBuildType buildType, @Nullable final String locatorText) {
     if (!TeamCityProperties.getBoolean(LEGACY_BUILDS_FILTERING_FORCED)) {
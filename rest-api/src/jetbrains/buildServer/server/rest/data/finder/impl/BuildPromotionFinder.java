@@ -18,17 +18,20 @@ package jetbrains.buildServer.server.rest.data.finder.impl;
 
 import com.intellij.openapi.diagnostic.Logger;
 import java.util.*;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import jetbrains.buildServer.ServiceLocator;
 import jetbrains.buildServer.messages.ErrorData;
 import jetbrains.buildServer.parameters.ParametersProvider;
 import jetbrains.buildServer.parameters.impl.AbstractMapParametersProvider;
 import jetbrains.buildServer.server.rest.data.*;
 import jetbrains.buildServer.server.rest.data.build.BuildParametersUtil;
+import jetbrains.buildServer.server.rest.data.build.BuildPromotionsResultCache;
 import jetbrains.buildServer.server.rest.data.build.TagFinder;
 import jetbrains.buildServer.server.rest.data.finder.*;
 import jetbrains.buildServer.server.rest.data.locator.StubDimension;
@@ -61,6 +64,7 @@ import jetbrains.buildServer.serverSide.metadata.impl.MetadataStorageEx;
 import jetbrains.buildServer.users.SUser;
 import jetbrains.buildServer.users.StandardProperties;
 import jetbrains.buildServer.util.CollectionsUtil;
+import jetbrains.buildServer.util.ItemProcessor;
 import jetbrains.buildServer.util.StringUtil;
 import jetbrains.buildServer.util.filters.Filter;
 import jetbrains.buildServer.vcs.SVcsRoot;
@@ -83,7 +87,7 @@ import org.springframework.stereotype.Component;
 )
 @JerseyInjectable
 @Component("restBuildPromotionFinder") // Name copied from context xml file.
-public class BuildPromotionFinder extends AbstractFinder<BuildPromotion> {
+public class BuildPromotionFinder extends AbstractFinder<BuildPromotion> implements ContinuationTokenSupport<BuildPromotion> {
   private static final Logger LOG = Logger.getInstance(BuildPromotionFinder.class.getName());
 
   //DIMENSION_ID - id of a build or id of build promotion which will get associated build with the id
@@ -224,6 +228,7 @@ public class BuildPromotionFinder extends AbstractFinder<BuildPromotion> {
   private final TimeCondition myTimeCondition;
   private final PermissionChecker myPermissionChecker;
   @NotNull private final ServiceLocator myServiceLocator;
+  @NotNull private final ParallelFanOutExecutor myFanOutExecutor;
 
   @NotNull
   public static String getLocator(@NotNull final BuildPromotion buildPromotion) {
@@ -253,7 +258,8 @@ public class BuildPromotionFinder extends AbstractFinder<BuildPromotion> {
                               final TimeCondition timeCondition,
                               final PermissionChecker permissionChecker,
                               final MetadataStorageEx metadataStorage,
-                              @NotNull final ServiceLocator serviceLocator) {
+                              @NotNull final ServiceLocator serviceLocator,
+                              @NotNull final ParallelFanOutExecutor fanOutExecutor) {
     super(DIMENSION_ID, PROMOTION_ID, PROJECT, AFFECTED_PROJECT, BUILD_TYPE, BRANCH, AGENT, AGENT_NAME, AGENT_TYPE_ID, USER, PERSONAL, STATE, TAG, PROPERTY, COMPATIBLE_AGENT, NUMBER, STATUS, CANCELED,
           PINNED, QUEUED_TIME, STARTED_TIME, FINISHED_TIME, SINCE_BUILD, SINCE_DATE, UNTIL_BUILD, UNTIL_DATE, FAILED_TO_START, SNAPSHOT_DEP, ARTIFACT_DEP, HANGING, COMPOSITE, HISTORY,
           DEFAULT_FILTERING, SINCE_BUILD_ID_LOOK_AHEAD_COUNT,
@@ -284,6 +290,7 @@ public class BuildPromotionFinder extends AbstractFinder<BuildPromotion> {
     myMetadataStorage = metadataStorage;
     myTimeCondition = timeCondition;
     myServiceLocator = serviceLocator;
+    myFanOutExecutor = fanOutExecutor;
 
     myTriggerByFinder = getTriggeredByFinder(myTimeCondition, myServiceLocator);
     mySnapshotDepProblemsTraverser = new SnapshotDepProblemsTraverser(this);
@@ -324,6 +331,22 @@ public class BuildPromotionFinder extends AbstractFinder<BuildPromotion> {
     return new KeyDuplicateChecker<>(BuildPromotion::getId);
   }
 
+  @NotNull
+  @Override
+  public PagedSearchResult<BuildPromotion> getItems(@Nullable final String locatorText) {
+    final BuildPromotionsResultCache resultCache = myServiceLocator.findSingletonService(BuildPromotionsResultCache.class);
+    if (resultCache == null) {
+      return super.getItems(locatorText);
+    }
+    return resultCache.getItems(locatorText, () -> super.getItems(locatorText));
+  }
+
+  @NotNull
+  @Override
+  public String getContinuationKey(@NotNull final BuildPromotion buildPromotion) {
+    return String.valueOf(buildPromotion.getId());
+  }
+
   @Nullable
   @Override
   public BuildPromotion findSingleItem(@NotNull final Locator locator) {
@@ -1139,13 +1162,19 @@ public class BuildPromotionFinder extends AbstractFinder<BuildPromotion> {
 
       final String strobBuildLocator = strobLocator.getSingleDimensionValue(STROB_BUILD_LOCATOR);
 
-      final List<ItemHolder<BuildPromotion>> strobResult = new ArrayList<>();
+      final List<String> finalBuildLocators = new ArrayList<>(partialLocators.size());
       for (Locator partialLocator : partialLocators) {
         partialLocator.setDimensionIfNotPresent(PagerData.COUNT, "1");  //limit to single item per strob item by default
-        final String finalBuildLocator = Locator.createLocator(strobBuildLocator, partialLocator, new String[]{}).getStringRepresentation();
-        strobResult.add(ItemHolder.of(getItems(finalBuildLocator).getEntries()));
+        finalBuildLocators.add(Locator.createLocator(strobBuildLocator, partialLocator, new String[]{}).getStringRepresentation());
       }
       strobLocator.checkLocatorFullyProcessed();
+
+      // the items after the lookup limit are never processed, so there is no need to search for them
+      final Long lookupLimit = getLookupLimit(locator);
+      final List<ItemHolder<BuildPromotion>> strobResult = new ArrayList<>();
+      for (List<BuildPromotion> items : myFanOutExecutor.map(finalBuildLocators, buildLocator -> getItems(buildLocator).getEntries(), lookupLimit)) {
+        strobResult.add(ItemHolder.of(items));
+      }
       return ItemHolder.concat(strobResult);
     }
 
@@ -1174,7 +1203,7 @@ public class BuildPromotionFinder extends AbstractFinder<BuildPromotion> {
     if (graphLocator != null) {
       final GraphFinder<BuildPromotion> graphFinder = new BuildPromotionOrderedFinder(this);
       //consider performance optimization by converting id to build only on actual retrieve (use GraphFinder<Int/buildId>)
-      return ItemHolder.of(graphFinder.getItems(graphLocator).getEntries());
+      return processor -> graphFinder.processItems(graphLocator, processor);
     }
 
     final String snapshotDepDimension = locator.getSingleDimensionValue(SNAPSHOT_DEP);
@@ -1198,11 +1227,7 @@ public class BuildPromotionFinder extends AbstractFinder<BuildPromotion> {
         final String buildTypeLocator = locator.getSingleDimensionValue(BUILD_TYPE);
 
         final List<SBuildType> buildTypes = myBuildTypeFinder.getBuildTypes(null, buildTypeLocator);
-        Stream<BuildPromotion> promotions = buildTypes.stream()
-                                                      .flatMap(bt -> myBuildsManager.findBuildInstancesByBuildNumber(bt.getBuildTypeId(), buildNumber).stream())
-                                                      .map(SBuild::getBuildPromotion);
-
-        return ItemHolder.of(sortPromotions(promotions));
+        return getBuildsByBuildTypesAndBuildNumber(buildTypes, buildNumber);
       }
     }
 
@@ -1305,9 +1330,9 @@ public class BuildPromotionFinder extends AbstractFinder<BuildPromotion> {
 
         if (isStateIncluded(stateLocator, STATE_FINISHED)) {
           //todo: optimize for user and canceled
-          Stream<BuildPromotion> finishedBuilds = sortPromotions(
-            agents.stream()
-                  .flatMap(a -> a.getBuildHistory(null, true).stream().map(b -> b.getBuildPromotion()))
+          Stream<BuildPromotion> finishedBuilds = sortPromotionsInParallel(
+            agents,
+            a -> a.getBuildHistory(null, true).stream().map(b -> b.getBuildPromotion())
           );
 
 
@@ -1338,8 +1363,11 @@ public class BuildPromotionFinder extends AbstractFinder<BuildPromotion> {
     Locator stateLocator = getStateLocator(locator);
 
     IncludePersonalBuildsRuling personalBuildsRuling = computePersonalBuildsRuling(locator);
+    // queued and running builds go before finished ones, so they were all served on the previous pages
+    final Long resumeBeforePromotionId = getFinishedBuildToResumeAfter(locator);
+    final boolean resumingAfterFinishedBuild = resumeBeforePromotionId != null;
 
-    if (isStateIncluded(stateLocator, STATE_QUEUED)) {
+    if (isStateIncluded(stateLocator, STATE_QUEUED) && !resumingAfterFinishedBuild) {
       //todo: should sort backwards as currently the order does not seem right...
       Stream<SQueuedBuild> builds = myBuildQueue.getItems().stream();
       if(!personalBuildsRuling.isIncludePersonal()) {
@@ -1370,7 +1398,7 @@ public class BuildPromotionFinder extends AbstractFinder<BuildPromotion> {
       });
     }
 
-    if (isStateIncluded(stateLocator, STATE_RUNNING)) {
+    if (isStateIncluded(stateLocator, STATE_RUNNING) && !resumingAfterFinishedBuild) {
       Stream<SRunningBuild> builds;
       if(personalBuildsRuling.isIncludePersonal()) {
         builds = myBuildsManager.getRunningBuilds(personalBuildsRuling.myOwner, null).stream();
@@ -1487,8 +1515,11 @@ public class BuildPromotionFinder extends AbstractFinder<BuildPromotion> {
       }
 
       finishedBuilds = processor -> myBuildsManager.processBuilds(options, item -> {
-        if (includedPromotionIds.contains(item.getBuildPromotion().getId())) return true; // ignore already added builds
-        return processor.processItem(item.getBuildPromotion());
+        final BuildPromotion promotion = item.getBuildPromotion();
+        // finished builds go newest first, so the builds up to the one with the continuation token were served on the previous pages
+        if (resumeBeforePromotionId != null && promotion.getId() >= resumeBeforePromotionId) return true;
+        if (includedPromotionIds.contains(promotion.getId())) return true; // ignore already added builds
+        return processor.processItem(promotion);
       });
     }
 
@@ -1503,16 +1534,93 @@ public class BuildPromotionFinder extends AbstractFinder<BuildPromotion> {
     };
   }
 
+  /**
+   * Builds processed by the states go in the order of descending promotion ids within the finished builds, so paging can be resumed by the id of the finished
+   * build the continuation token was issued for, even if that build was deleted since then. The continuation token dimension is marked as used then,
+   * so that the prefiltered items are not positioned once again, see {@link ContinuationTokenSupport#resumeAfter(ItemHolder, String)}.
+   * @return promotion id of the finished build to resume paging after, or null if the continuation token is not present or is not for a finished build
+   */
+  @Nullable
+  private Long getFinishedBuildToResumeAfter(@NotNull final Locator locator) {
+    final String continuationKey = lookupContinuationKey(locator);
+    if (continuationKey == null) return null;
+    final long promotionId;
+    try {
+      promotionId = Long.parseLong(continuationKey);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+    try {
+      final SBuild build = getBuildPromotion(promotionId).getAssociatedBuild();
+      if (build == null || !build.isFinished()) return null;
+    } catch (NotFoundException e) {
+      // the build was deleted from the history since the token was issued
+    } catch (AccessDeniedException e) {
+      return null;
+    }
+    locator.markUsed(DIMENSION_CONTINUATION_TOKEN);
+    return promotionId;
+  }
+
   @NotNull
   private ItemHolder<BuildPromotion> getBuildsByBuildTypesAndBuildNumber(@NotNull List<SBuildType> buildTypes, @NotNull String buildNumber) {
-    return ItemHolder.of(sortPromotions(
-      buildTypes
-        .stream()
-        .flatMap(it -> myBuildsManager.findBuildInstancesByBuildNumber(it.getBuildTypeId(), buildNumber).stream())
-        .map(it -> it.getBuildPromotion())
+    return ItemHolder.of(sortPromotionsInParallel(
+      buildTypes,
+      it -> myBuildsManager.findBuildInstancesByBuildNumber(it.getBuildTypeId(), buildNumber).stream().map(build -> build.getBuildPromotion())
     ));
   }
 
+  /**
+   * Same as {@link #sortPromotions(Stream)} applied to the promotions of all the sources, but the promotions are retrieved and sorted per source in parallel
+   * and then merged.
+   */
+  @NotNull
+  private <S> Stream<BuildPromotion> sortPromotionsInParallel(@NotNull List<S> sources, @NotNull Function<S, Stream<? extends BuildPromotion>> promotionsRetriever) {
+    final List<List<ComparableBuildPromotionWrapper>> sortedParts = myFanOutExecutor.map(
+      sources,
+      source -> promotionsRetriever.apply(source).map(ComparableBuildPromotionWrapper::fromPromotion).sorted().collect(Collectors.toList()),
+      null
+    );
+    return mergeSorted(sortedParts).map(ComparableBuildPromotionWrapper::getPromotion);
+  }
+
+  /**
+   * Lazily merges sorted lists. Equal elements are ordered by the list index, so the result is the same as of a stable sort of the lists concatenation.
+   */
+  @NotNull
+  private static Stream<ComparableBuildPromotionWrapper> mergeSorted(@NotNull List<List<ComparableBuildPromotionWrapper>> sortedParts) {
+    if (sortedParts.size() == 1) {
+      return sortedParts.get(0).stream();
+    }
+
+    final Comparator<int[]> headsComparator = Comparator.<int[], ComparableBuildPromotionWrapper>comparing(head -> sortedParts.get(head[0]).get(head[1]))
+                                                        .thenComparingInt(head -> head[0]);
+    final PriorityQueue<int[]> heads = new PriorityQueue<>(Math.max(1, sortedParts.size()), headsComparator); // {part index, position in the part}
+    for (int i = 0; i < sortedParts.size(); i++) {
+      if (!sortedParts.get(i).isEmpty()) heads.add(new int[]{i, 0});
+    }
+
+    final Iterator<ComparableBuildPromotionWrapper> iterator = new Iterator<ComparableBuildPromotionWrapper>() {
+      @Override
+      public boolean hasNext() {
+        return !heads.isEmpty();
+      }
+
+      @Override
+      public ComparableBuildPromotionWrapper next() {
+        final int[] head = heads.poll();
+        if (head == null) throw new NoSuchElementException();
+        final List<ComparableBuildPromotionWrapper> part = sortedParts.get(head[0]);
+        final ComparableBuildPromotionWrapper result = part.get(head[1]);
+        if (head[1] + 1 < part.size()) {
+          heads.add(new int[]{head[0], head[1] + 1});
+        }
+        return result;
+      }
+    };
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false);
+  }
+
   @Nullable
   private String getBuildNumberIfEqualsCondition(@NotNull Locator locator) {
     final String number = locator.getSingleDimensionValue(NUMBER);
@@ -1773,6 +1881,26 @@ public class BuildPromotionFinder extends AbstractFinder<BuildPromotion> {
     return new PagedSearchResult<BuildPromotion>(Collections.singletonList(getBuildPromotion(buildType, locatorText)), null, null);
   }
 
+  /**
+   * Same as {@link #getBuildPromotions(SBuildType, String)}, but passes the found builds to the consumer as they are found, see {@link #processItems(String, ItemProcessor)}
+   */
+  @NotNull
+  public PagedSearchResult<BuildPromotion> processBuildPromotions(final @Nullable SBuildType buildType, final @Nullable String locatorText,
+                                                                  final @NotNull ItemProcessor<BuildPromotion> consumer) {
+    if (buildType == null) {
+      return processItems(locatorText, consumer);
+    }
+
+    final Locator locator = locatorText != null ? new Locator(locatorText) : Locator.createEmptyLocator();
+    if (locator.isEmpty() || !locator.isSingleValue()) {
+      return processItems(patchLocatorWithBuildType(buildType, locator), consumer);
+    }
+
+    //single value
+    consumer.processItem(getBuildPromotion(buildType, locatorText));
+    return new PagedSearchResult<>(Collections.emptyList(), 1, null, null, null, null, false, null, null);
+  }
+
   @NotNull
   public PagedSearchResult<BuildPromotion> getBuildPromotionsWithLegacyFallback(@Nullable final SBuildType buildType, @Nullable final String locatorText) {
     if (!TeamCityProperties.getBoolean(LEGACY_BUILDS_FILTERING_FORCED)) {
@@ -2035,30 +2163,37 @@ public class BuildPromotionFinder extends AbstractFinder<BuildPromotion> {
       super(finder, new BuildPromotionOrderSupportTraverser());
     }
 
+    @NotNull
     @Override
-    protected void collectLinked(@NotNull final Set<BuildPromotion> result,
-                                 @NotNull final Collection<BuildPromotion> toProcess,
-                                 @NotNull final Collection<BuildPromotion> stopItems,
-                                 final Long lookupLimit,
-                                 @NotNull final LinkRetriever<BuildPromotion> linkRetriever,
-                                 final boolean recursive) {
+    protected ItemHolder<BuildPromotion> getLinked(@NotNull final List<BuildPromotion> initialItems,
+                                                   final boolean includeInitial,
+                                                   @NotNull final Set<BuildPromotion> stopItems,
+                                                   @Nullable final Long lookupLimit,
+                                                   @NotNull final LinkRetriever<BuildPromotion> linkRetriever,
+                                                   final boolean recursive) {
       if (!recursive) {
         throw new BadRequestException("Builds traversal is only supported in 'recursive:true' mode");
       }
 
-      for (BuildPromotion item : toProcess) {
-        if (stopItems.contains(item)) {
-          result.add(item);
-        } else {
-          final List<BuildPromotion> linked = linkRetriever.getLinked(item);
-          for (BuildPromotion promotion : linked) {
-            result.add(promotion);
-            if (stopItems.contains(item)) {
-              break;
+      return processor -> {
+        final Set<BuildPromotion> result = new HashSet<>();
+        if (includeInitial) {
+          for (BuildPromotion item : initialItems) {
+            if (result.add(item) && !processor.processItem(item)) return;
+          }
+        }
+
+        for (BuildPromotion item : initialItems) {
+          if (stopItems.contains(item)) {
+            if (result.add(item) && !processor.processItem(item)) return;
+          } else {
+            final List<BuildPromotion> linked = linkRetriever.getLinked(item);
+            for (BuildPromotion promotion : linked) {
+              if (result.add(promotion) && !processor.processItem(promotion)) return;
             }
           }
         }
-      }
+      };
     }
   }
 
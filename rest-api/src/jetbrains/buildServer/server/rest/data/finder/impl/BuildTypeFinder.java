@@ -409,15 +409,15 @@ public class BuildTypeFinder extends AbstractFinder<BuildTypeOrTemplate> {
     final String snapshotDependencies = locator.getSingleDimensionValue(SNAPSHOT_DEPENDENCY);
     if (snapshotDependencies != null) {
       final GraphFinder<BuildTypeOrTemplate> graphFinder = new GraphFinder<>(this, new SnapshotDepsTraverser(myPermissionChecker));
-      final List<BuildTypeOrTemplate> boundingList = graphFinder.getItems(snapshotDependencies).getEntries();
-      result.add(item -> boundingList.contains(item));
+      final Set<BuildTypeOrTemplate> boundingSet = new HashSet<>(graphFinder.getItems(snapshotDependencies).getEntries());
+      result.add(item -> boundingSet.contains(item));
     }
 
     final String artifactDependencies = locator.getSingleDimensionValue(ARTIFACT_DEPENDENCY);
     if (artifactDependencies != null) {
       final GraphFinder<BuildTypeOrTemplate> graphFinder = new GraphFinder<>(this, new ArtifactDepsTraverser(myPermissionChecker));
-      final List<BuildTypeOrTemplate> boundingList = graphFinder.getItems(artifactDependencies).getEntries();
-      result.add(item -> boundingList.contains(item));
+      final Set<BuildTypeOrTemplate> boundingSet = new HashSet<>(graphFinder.getItems(artifactDependencies).getEntries());
+      result.add(item -> boundingSet.contains(item));
     }
 
     final String templateLocator = locator.getSingleDimensionValue(TEMPLATE_DIMENSION_NAME);
@@ -498,13 +498,13 @@ public class BuildTypeFinder extends AbstractFinder<BuildTypeOrTemplate> {
     final String snapshotDependencies = locator.getSingleDimensionValue(SNAPSHOT_DEPENDENCY);
     if (snapshotDependencies != null) {
       final GraphFinder<BuildTypeOrTemplate> graphFinder = new GraphFinder<BuildTypeOrTemplate>(this, new SnapshotDepsTraverser(myPermissionChecker));
-      return ItemHolder.of(graphFinder.getItems(snapshotDependencies).getEntries());
+      return processor -> graphFinder.processItems(snapshotDependencies, processor);
     }
 
     final String artifactDependencies = locator.getSingleDimensionValue(ARTIFACT_DEPENDENCY);
     if (artifactDependencies != null) {
       final GraphFinder<BuildTypeOrTemplate> graphFinder = new GraphFinder<BuildTypeOrTemplate>(this, new ArtifactDepsTraverser(myPermissionChecker));
-      return ItemHolder.of(graphFinder.getItems(artifactDependencies).getEntries());
+      return processor -> graphFinder.processItems(artifactDependencies, processor);
     }
 
     final String vcsRoot = locator.getSingleDimensionValue(VCS_ROOT_DIMENSION);
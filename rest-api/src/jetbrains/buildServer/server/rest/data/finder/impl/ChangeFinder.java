@@ -26,6 +26,7 @@ import jetbrains.buildServer.ServiceLocator;
 import jetbrains.buildServer.server.rest.data.*;
 import jetbrains.buildServer.server.rest.data.change.SVcsModificationOrChangeDescriptor;
 import jetbrains.buildServer.server.rest.data.finder.AbstractFinder;
+import jetbrains.buildServer.server.rest.data.finder.ContinuationTokenSupport;
 import jetbrains.buildServer.server.rest.data.finder.GraphFinder;
 import jetbrains.buildServer.server.rest.data.finder.TypedFinderBuilder;
 import jetbrains.buildServer.server.rest.data.util.*;
@@ -73,7 +74,7 @@ import org.springframework.stereotype.Component;
 )
 @JerseyInjectable
 @Component("restChangeFinder")
-public class ChangeFinder extends AbstractFinder<SVcsModificationOrChangeDescriptor> {
+public class ChangeFinder extends AbstractFinder<SVcsModificationOrChangeDescriptor> implements ContinuationTokenSupport<SVcsModificationOrChangeDescriptor> {
   public static final String IGNORE_CHANGES_FROM_DEPENDENCIES_OPTION = "rest.ignoreChangesFromDependenciesOption";
 
   @LocatorDimension(value = "personal", hidden = true)
@@ -115,6 +116,8 @@ public class ChangeFinder extends AbstractFinder<SVcsModificationOrChangeDescrip
   public static final String CHANGES_FROM_DEPS = "changesFromDependencies"; // Before making public see TW-73600
   public static final String SETTINGS_CHANGES = "versionedSettings"; //experimental
 
+  public static final String VCS_ROOT_CHANGES_INITIAL_RANGE = "rest.request.changes.vcsRootInstance.initialIdRange";
+
   @NotNull private final PermissionChecker myPermissionChecker;
   @NotNull private final ProjectFinder myProjectFinder;
   @NotNull private final BuildFinder myBuildFinder;
@@ -167,6 +170,15 @@ public class ChangeFinder extends AbstractFinder<SVcsModificationOrChangeDescrip
     return (long)Constants.getDefaultPageItemsCount();
   }
 
+  @NotNull
+  @Override
+  public String getContinuationKey(@NotNull final SVcsModificationOrChangeDescriptor modOrDesc) {
+    final SVcsModification modification = modOrDesc.getSVcsModification();
+    // personal and regular changes have independent id sequences
+    // the order of the changes depends on the locator, so paging is resumed only right after the change with the key, see ContinuationTokenSupport.resumeAfter
+    return (modification.isPersonal() ? "p" : "") + modification.getId();
+  }
+
   @NotNull
   @Override
   public String getItemLocator(@NotNull final SVcsModificationOrChangeDescriptor modOrDesc) {
@@ -555,7 +567,8 @@ public class ChangeFinder extends AbstractFinder<SVcsModificationOrChangeDescrip
       );
 
       graphFinder.setDefaultLookupLimit(1000L);
-      return wrapModifications(graphFinder.getItems(graphLocator).getEntries());
+      final ItemHolder<SVcsModification> changes = processor -> graphFinder.processItems(graphLocator, processor);
+      return wrapModifications(changes);
     }
 
     Long sinceChangeId = null;
@@ -621,17 +634,13 @@ public class ChangeFinder extends AbstractFinder<SVcsModificationOrChangeDescrip
     final String vcsRootInstanceLocator = locator.getSingleDimensionValue(VCS_ROOT_INSTANCE);
     if (vcsRootInstanceLocator != null) {
       final VcsRootInstance vcsRootInstance = myVcsRootInstanceFinder.getItem(vcsRootInstanceLocator);
-      if (sinceChangeId != null) {
-        //todo: use lookupLimit here or otherwise limit processing
-        return wrapModifications(myVcsModificationHistory.getModificationsInRange(vcsRootInstance, sinceChangeId, null));
-      } else {
-        //todo: highly inefficient!
-        return wrapModifications(myVcsModificationHistory.getAllModifications(vcsRootInstance));
-      }
+      return wrapModifications(getVcsRootInstanceChanges(vcsRootInstance, sinceChangeId));
     }
 
     if (sinceChangeId != null) {
-      return wrapModifications(myVcsModificationHistory.getModificationsInRange(null, sinceChangeId, null));  //todo: use lookupLimit here or otherwise limit processing
+      final long sinceId = sinceChangeId;
+      //the changes are processed newest first, so the processing stops at the first change which is not newer than sinceChange
+      return wrapModifications(processor -> ((VcsModificationHistoryEx)myVcsModificationHistory).processModifications(m -> m.getId() > sinceId && processor.processItem(m)));
     }
 
     return wrapModifications(((VcsModificationHistoryEx) myVcsModificationHistory)::processModifications);  // ItemHolder
@@ -851,10 +860,44 @@ public class ChangeFinder extends AbstractFinder<SVcsModificationOrChangeDescrip
     }
   }
 
+  /**
+   * Retrieves the changes of the VCS root instance newest first, by ranges of change ids starting from the newest change.
+   * The range is doubled on each step, so a page of the latest changes does not require loading the whole history of the root
+   * while the number of the lookups stays logarithmic for the roots with rare changes.
+   * @param sinceChangeId if not null, only the changes with greater ids are retrieved
+   */
   @NotNull
-  private List<SVcsModification> getProjectChanges(@NotNull final SProject project, @Nullable final Long sinceChangeId, boolean includeChangesFromChildren) {
-    final List<SVcsModification> result = new ArrayList<>();
+  private ItemHolder<SVcsModification> getVcsRootInstanceChanges(@NotNull final VcsRootInstance vcsRootInstance, @Nullable final Long sinceChangeId) {
+    return processor -> {
+      final long[] newestChangeId = {0};
+      ((VcsModificationHistoryEx)myVcsModificationHistory).processModifications(m -> {
+        newestChangeId[0] = m.getId();
+        return false;
+      });
 
+      final long lowerBound = sinceChangeId == null ? 0 : sinceChangeId; //exclusive
+      long rangeSize = Math.max(1, TeamCityProperties.getLong(VCS_ROOT_CHANGES_INITIAL_RANGE, 1000));
+      long upper = newestChangeId[0];
+      while (upper > lowerBound) {
+        final long lower = Math.max(lowerBound, upper - rangeSize);
+        final List<SVcsModification> changes = new ArrayList<>(myVcsModificationHistory.getModificationsInRange(vcsRootInstance, lower, upper));
+        changes.sort(Comparator.comparingLong(SVcsModification::getId).reversed());
+        for (SVcsModification change : changes) {
+          if (change.getId() > lower && change.getId() <= upper && !processor.processItem(change)) {
+            return;
+          }
+        }
+        upper = lower;
+        rangeSize = rangeSize > Long.MAX_VALUE / 2 ? Long.MAX_VALUE : rangeSize * 2;
+      }
+    };
+  }
+
+  /**
+   * The changes are processed newest first and the processing stops as soon as the processor does not need more items.
+   */
+  @NotNull
+  private ItemHolder<SVcsModification> getProjectChanges(@NotNull final SProject project, @Nullable final Long sinceChangeId, boolean includeChangesFromChildren) {
     Stream<VcsRootInstance> vcsRoots;
     if (includeChangesFromChildren) {
       vcsRoots = project.getVcsRootInstances().stream();
@@ -869,17 +912,15 @@ public class ChangeFinder extends AbstractFinder<SVcsModificationOrChangeDescrip
     SecurityContext securityContext = myServiceLocator.getSingletonService(SecurityContext.class);
     final AuthorityHolder authorityHolder = securityContext.getAuthorityHolder();
 
-    vcsModificationsStorage.processModifications(m -> {
+    return processor -> vcsModificationsStorage.processModifications(m -> {
       if (sinceChangeId != null && m.getId() < sinceChangeId) return false;
 
       if (interestingRootIds.contains(m.getVcsRoot().getId()) && AuthUtil.hasReadAccessTo(authorityHolder, m)) {
-        result.add(m);
+        return processor.processItem(m);
       }
 
       return true;
     });
-
-    return result;
   }
 
   private ItemHolder<SVcsModificationOrChangeDescriptor> wrapModifications(@NotNull ItemHolder<SVcsModification> toWrap) {
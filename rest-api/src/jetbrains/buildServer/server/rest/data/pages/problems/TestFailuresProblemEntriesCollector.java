@@ -16,11 +16,13 @@
 
 package jetbrains.buildServer.server.rest.data.pages.problems;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
 import java.util.function.LongFunction;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import jetbrains.buildServer.responsibility.TestNameResponsibilityFacade;
 import jetbrains.buildServer.server.rest.data.Locator;
 import jetbrains.buildServer.server.rest.data.PagedSearchResult;
@@ -59,6 +61,12 @@ public class TestFailuresProblemEntriesCollector {
 
   private static final long DEFAULT_PAGE_SIZE = 100;
   private static final String FEATURE_FLAG_OPTIMIZATION_USE_FAILING_TESTS_DIRECTLY = "teamcity.currentProblems.useFailingTestsDirectly.enabled";
+  /**
+   * Time to reuse the merged investigations, mutes and failing tests of a project while paging through them, 0 disables reusing.
+   * The first page is always computed from the current state, so the snapshot can only be stale for the following pages of the same listing.
+   */
+  static final String SNAPSHOT_TTL_SECONDS = "rest.pages.problems.tests.snapshotTtlSeconds";
+  private static final int SNAPSHOTS_MAX_SIZE = 50;
 
   /*
   TODO:
@@ -72,6 +80,7 @@ public class TestFailuresProblemEntriesCollector {
   private final TestNameResponsibilityFacade myTestNameResponsibilityFacade;
   private final UserFinder myUserFinder;
   private final CurrentProblemsManager myCurrentProblemsManager;
+  @Nullable private volatile SnapshotsHolder mySnapshotsHolder;
 
   public TestFailuresProblemEntriesCollector(@NotNull ProjectFinder projectFinder,
                                              @NotNull UserFinder userFinder,
@@ -119,67 +128,143 @@ public class TestFailuresProblemEntriesCollector {
     boolean returnOnlyNotInvestigated = Boolean.FALSE.equals(locator.getSingleDimensionValueAsBoolean(CURRENTLY_INVESTIGATED));
 
 
-    Map<Long, List<InvestigationWrapper>> investigations = new HashMap<>();
-    investigations.putAll(getInvestigations(project, investigator));
-
-    Map<Long, List<SingleTestMuteInfoView>> mutes = new HashMap<>();
-    mutes.putAll(getMutes(project));
-
-    Map<Long, List<STestRun>> failingTests = new HashMap<>();
-    failingTests.putAll(getFailingTests(project));
+    long start = locator.getSingleDimensionValueAsLong(PAGER_START, 0L);
+    if(start < 0) {
+      throw new BadRequestException(String.format("'%s' must have non-negative value.", PAGER_START.getName()));
+    }
 
-    Set<Long> allTestNames = new HashSet<>();
-    allTestNames.addAll(investigations.keySet());
-    allTestNames.addAll(mutes.keySet());
-    allTestNames.addAll(failingTests.keySet());
+    long count = locator.getSingleDimensionValueAsLong(PAGER_COUNT, DEFAULT_PAGE_SIZE);
+    if(count < 0) {
+      throw new BadRequestException(String.format("'%s' must have non-negative value.", PAGER_COUNT.getName()));
+    }
 
     LongFunction<STest> testResolver = getTestResolver(project);
-    Stream.Builder<TestFailuresProblemEntry> streamBuilder = Stream.builder();
-    for (Long testNameId : allTestNames) {
-      TestFailuresProblemEntry entry = new TestFailuresProblemEntry(testResolver);
-      if (returnOnlyMuted && !mutes.containsKey(testNameId) || returnOnlyNotMuted && mutes.containsKey(testNameId)) {
+    List<TestFailuresProblemEntry> entries = new ArrayList<>();
+    for (TestProblems problems : getSnapshot(project, investigator, start > 0).myProblems) {
+      boolean muted = problems.myMutes != null;
+      boolean investigated = problems.myInvestigations != null;
+      boolean failing = problems.myFailures != null;
+      if (returnOnlyMuted && !muted || returnOnlyNotMuted && muted) {
         continue;
       }
-      if (returnOnlyInvestigated && !investigations.containsKey(testNameId) || returnOnlyNotInvestigated && investigations.containsKey(testNameId)) {
+      if (returnOnlyInvestigated && !investigated || returnOnlyNotInvestigated && investigated) {
         continue;
       }
-      if (returnOnlyFailing && !failingTests.containsKey(testNameId) || returnOnlyNotFailing && failingTests.containsKey(testNameId)) {
+      if (returnOnlyFailing && !failing || returnOnlyNotFailing && failing) {
         continue;
       }
 
-      if (failingTests.containsKey(testNameId)) {
-        entry.setRecentFailures(failingTests.get(testNameId));
+      TestFailuresProblemEntry entry = new TestFailuresProblemEntry(testResolver);
+      if (failing) {
+        entry.setRecentFailures(problems.myFailures);
       }
-
-      if (investigations.containsKey(testNameId)) {
-        entry.setInvestigations(investigations.get(testNameId));
+      if (investigated) {
+        entry.setInvestigations(problems.myInvestigations);
       }
-
-      if (mutes.containsKey(testNameId)) {
-        entry.setMutes(mutes.get(testNameId));
+      if (muted) {
+        entry.setMutes(problems.myMutes);
       }
-      entry.setTestNameId(testNameId);
-      streamBuilder.add(entry);
+      entry.setTestNameId(problems.myTestNameId);
+      entries.add(entry);
     }
 
-    Stream<TestFailuresProblemEntry> result = streamBuilder.build();
+    Comparator<TestFailuresProblemEntry> comparator = null;
     if (locator.isAnyPresent(ORDER_BY)) {
-      result = result.sorted(SUPPORTED_ORDERS.getComparator(locator.getSingleDimensionValue(ORDER_BY)));
+      // order by test name id for the same values so that the pages do not overlap
+      comparator = SUPPORTED_ORDERS.getComparator(locator.getSingleDimensionValue(ORDER_BY)).thenComparingLong(TestFailuresProblemEntry::getTestNameId);
     }
 
-    long start = locator.getSingleDimensionValueAsLong(PAGER_START, 0L);
-    if(start < 0) {
-      throw new BadRequestException(String.format("'%s' must have non-negative value.", PAGER_START.getName()));
+    return new PagedSearchResult<>(getPage(entries, comparator, start, count), start, (int) count);
+  }
+
+  /**
+   * Selects the items from <tt>start</tt> to <tt>start + count</tt> in the <tt>comparator</tt> order without sorting all the items
+   * when the page is close to the beginning: only the first <tt>start + count</tt> items are kept in a bounded heap.
+   *
+   * @param items the items to select from, can be reordered
+   */
+  @NotNull
+  static <T> List<T> getPage(@NotNull List<T> items, @Nullable Comparator<T> comparator, long start, long count) {
+    int size = items.size();
+    if (start >= size || count == 0) {
+      return new ArrayList<>();
+    }
+    int from = (int)start;
+    int to = (int)Math.min(size, start + Math.min(count, size));
+    if (comparator == null) {
+      return new ArrayList<>(items.subList(from, to));
     }
-    result = result.skip(start);
 
-    long count = locator.getSingleDimensionValueAsLong(PAGER_COUNT, DEFAULT_PAGE_SIZE);
-    if(count < 0) {
-      throw new BadRequestException(String.format("'%s' must have non-negative value.", PAGER_COUNT.getName()));
+    if (to > size / 2) {
+      // most of the items are to be ordered anyway
+      items.sort(comparator);
+      return new ArrayList<>(items.subList(from, to));
     }
-    result = result.limit(count);
 
-    return new PagedSearchResult<>(result.collect(Collectors.toList()), start, (int) count);
+    // the head of the heap is the greatest of the first "to" items found so far
+    PriorityQueue<T> heap = new PriorityQueue<>(to + 1, comparator.reversed());
+    for (T item : items) {
+      if (heap.size() < to) {
+        heap.add(item);
+      } else if (comparator.compare(item, heap.peek()) < 0) {
+        heap.poll();
+        heap.add(item);
+      }
+    }
+    List<T> result = new ArrayList<>(heap);
+    result.sort(comparator);
+    return new ArrayList<>(result.subList(from, to));
+  }
+
+  /**
+   * @param reuse whether the snapshot computed for the previous page can be returned
+   */
+  @NotNull
+  private Snapshot getSnapshot(@NotNull SProject project, @Nullable SUser investigator, boolean reuse) {
+    Cache<String, Snapshot> snapshots = getSnapshots();
+    String key = project.getProjectId() + ":" + (investigator == null ? "" : investigator.getId());
+    if (snapshots != null && reuse) {
+      Snapshot existing = snapshots.getIfPresent(key);
+      if (existing != null) {
+        return existing;
+      }
+    }
+
+    Map<Long, TestProblems> merged = new HashMap<>();
+    getInvestigations(project, investigator).forEach((testNameId, investigations) -> merged.computeIfAbsent(testNameId, TestProblems::new).myInvestigations = investigations);
+    getMutes(project).forEach((testNameId, mutes) -> merged.computeIfAbsent(testNameId, TestProblems::new).myMutes = mutes);
+    getFailingTests(project).forEach((testNameId, failures) -> merged.computeIfAbsent(testNameId, TestProblems::new).myFailures = failures);
+
+    Snapshot result = new Snapshot(merged.values().toArray(new TestProblems[0]));
+    if (snapshots != null) {
+      snapshots.put(key, result);
+    }
+    return result;
+  }
+
+  /**
+   * @return cache of the snapshots or null if the snapshots should not be reused
+   */
+  @Nullable
+  private Cache<String, Snapshot> getSnapshots() {
+    long ttlSeconds = TeamCityProperties.getLong(SNAPSHOT_TTL_SECONDS, 30);
+    if (ttlSeconds <= 0) {
+      if (mySnapshotsHolder != null) {
+        mySnapshotsHolder = null;
+      }
+      return null;
+    }
+    SnapshotsHolder holder = mySnapshotsHolder;
+    if (holder == null || holder.myTtlSeconds != ttlSeconds) {
+      synchronized (this) {
+        holder = mySnapshotsHolder;
+        if (holder == null || holder.myTtlSeconds != ttlSeconds) {
+          holder = new SnapshotsHolder(ttlSeconds);
+          mySnapshotsHolder = holder;
+        }
+      }
+    }
+    return holder.mySnapshots;
   }
 
   @NotNull
@@ -243,4 +328,36 @@ public class TestFailuresProblemEntriesCollector {
                                          .map(InvestigationWrapper::new)
                                          .collect(Collectors.groupingBy(iw -> iw.getTestRE().getTestNameId()));
   }
+
+  private static class SnapshotsHolder {
+    private final long myTtlSeconds;
+    @NotNull private final Cache<String, Snapshot> mySnapshots;
+
+    private SnapshotsHolder(long ttlSeconds) {
+      myTtlSeconds = ttlSeconds;
+      mySnapshots = CacheBuilder.newBuilder().maximumSize(SNAPSHOTS_MAX_SIZE).expireAfterWrite(ttlSeconds, TimeUnit.SECONDS).build();
+    }
+  }
+
+  private static class Snapshot {
+    @NotNull private final TestProblems[] myProblems;
+
+    private Snapshot(@NotNull TestProblems[] problems) {
+      myProblems = problems;
+    }
+  }
+
+  /**
+   * All the known problems of a single test, <tt>null</tt> when there are none of the kind.
+   */
+  private static class TestProblems {
+    private final long myTestNameId;
+    @Nullable private List<InvestigationWrapper> myInvestigations;
+    @Nullable private List<SingleTestMuteInfoView> myMutes;
+    @Nullable private List<STestRun> myFailures;
+
+    private TestProblems(long testNameId) {
+      myTestNameId = testNameId;
+    }
+  }
 }
@@ -24,6 +24,7 @@ import jetbrains.buildServer.responsibility.ResponsibilityEntry;
 import jetbrains.buildServer.responsibility.TestNameResponsibilityEntry;
 import jetbrains.buildServer.server.rest.data.*;
 import jetbrains.buildServer.server.rest.data.finder.AbstractFinder;
+import jetbrains.buildServer.server.rest.data.finder.ContinuationTokenSupport;
 import jetbrains.buildServer.server.rest.data.finder.impl.*;
 import jetbrains.buildServer.server.rest.data.problem.scope.TestScopeFilter;
 import jetbrains.buildServer.server.rest.data.problem.scope.TestScopeFilterProducer;
@@ -75,7 +76,7 @@ import static jetbrains.buildServer.serverSide.BuildStatisticsOptions.ALL_TESTS_
 )
 @JerseyInjectable
 @Component("restTestOccurrenceFinder")
-public class TestOccurrenceFinder extends AbstractFinder<STestRun> {
+public class TestOccurrenceFinder extends AbstractFinder<STestRun> implements ContinuationTokenSupport<STestRun> {
   @LocatorDimension(value = "build", format = LocatorName.BUILD, notes = "Build locator.")
   public static final String BUILD = "build";
   @LocatorDimension(value = "test", format = LocatorName.TEST, notes = "Test locator.")
@@ -148,6 +149,8 @@ public class TestOccurrenceFinder extends AbstractFinder<STestRun> {
   private final TestScopeFilterProducer myTestScopeFilterProducer;
   @NotNull
   private final SecurityContext mySecurityContext;
+  @NotNull
+  private final TestRunsIndexCache myTestRunsIndexCache;
 
   public TestOccurrenceFinder(
     @NotNull final SecurityContext securityContext,
@@ -158,7 +161,8 @@ public class TestOccurrenceFinder extends AbstractFinder<STestRun> {
     @NotNull final TestHistory testHistory,
     @NotNull final CurrentProblemsManager currentProblemsManager,
     @NotNull final BranchFinder branchFinder,
-    @NotNull final TestScopeFilterProducer testScopeFilterProducer) {
+    @NotNull final TestScopeFilterProducer testScopeFilterProducer,
+    @NotNull final TestRunsIndexCache testRunsIndexCache) {
     super(DIMENSION_ID, TEST, NAME, BUILD_TYPE, BUILD, AFFECTED_PROJECT, CURRENT, STATUS, BRANCH, IGNORED, MUTED, CURRENTLY_MUTED, CURRENTLY_INVESTIGATED, NEW_FAILURE, INCLUDE_PERSONAL);
     setHiddenDimensions(
       EXPAND_INVOCATIONS,
@@ -177,6 +181,7 @@ public class TestOccurrenceFinder extends AbstractFinder<STestRun> {
     myBranchFinder = branchFinder;
     myTestScopeFilterProducer = testScopeFilterProducer;
     mySecurityContext = securityContext;
+    myTestRunsIndexCache = testRunsIndexCache;
   }
 
   @Override
@@ -190,6 +195,14 @@ public class TestOccurrenceFinder extends AbstractFinder<STestRun> {
     return TestOccurrenceFinder.getTestRunLocator(sTestRun);
   }
 
+  @NotNull
+  @Override
+  public String getContinuationKey(@NotNull final STestRun testRun) {
+    // test run ids are unique only within a build
+    // the order of the test runs depends on the locator, so paging is resumed only right after the test run with the key, see ContinuationTokenSupport.resumeAfter
+    return testRun.getBuildId() + "-" + testRun.getTestRunId();
+  }
+
   public static String getTestRunLocator(@NotNull final STestRun testRun) {
     return Locator.createEmptyLocator().setDimension(DIMENSION_ID, String.valueOf(testRun.getTestRunId())).
       setDimension(BUILD, BuildPromotionFinder.getLocator(testRun.getBuildId())).getStringRepresentation();
@@ -428,17 +441,12 @@ public class TestOccurrenceFinder extends AbstractFinder<STestRun> {
       }
 
       final PagedSearchResult<STest> tests = myTestFinder.getItems(testDimension);
+      final Set<Long> allTestNameIds = tests.getEntries().stream().map(STest::getTestNameId).collect(Collectors.toSet());
       final ArrayList<STestRun> result = new ArrayList<>();
       for (BuildPromotion build : builds) {
         SBuild associatedBuild = build.getAssociatedBuild();
         if (associatedBuild != null) {
-          Set<Long> allTestNameIds = tests.getEntries().stream().map(STest::getTestNameId).collect(Collectors.toSet());
-          final List<STestRun> allTests = getBuildStatistics(associatedBuild, locator).getAllTests();
-          for (STestRun item : allTests) {
-            if (allTestNameIds.contains(item.getTest().getTestNameId())) {
-              result.add(item);
-            }
-          }
+          result.addAll(getTestRuns(associatedBuild, allTestNameIds, locator));
         }
       }
       return getPossibleExpandedTestsHolder(result, expandInvocations);
@@ -805,8 +813,32 @@ public class TestOccurrenceFinder extends AbstractFinder<STestRun> {
     return new TestOccurrencesCachedInfo(build.getShortStatistics(), postFilteringRequired);
   }
 
+  @NotNull
+  private List<STestRun> getTestRuns(@NotNull final SBuild build, @NotNull final Set<Long> testNameIds, @NotNull final Locator locator) {
+    if (!build.isFinished()) {
+      return getBuildStatistics(build, locator).getAllTests().stream().filter(item -> testNameIds.contains(item.getTest().getTestNameId())).collect(Collectors.toList());
+    }
+
+    // The index is built for all the tests of the build, so that one index serves all the locators. The tests which would not be loaded for this locator are filtered out.
+    final int optionsMask = getBuildStatisticsOptionsMask(locator);
+    final BuildStatisticsOptions allTestsOptions = new BuildStatisticsOptions(getBuildStatisticsOptionsMask(null), getMaxNumberOfTestsStacktracesToLoad());
+    final List<STestRun> runs = myTestRunsIndexCache.getRuns(build.getBuildId(), testNameIds, () -> build.getBuildStatistics(allTestsOptions).getAllTests());
+    return runs.stream().filter(item -> isLoadedWithOptions(item, optionsMask)).collect(Collectors.toList());
+  }
+
+  private static boolean isLoadedWithOptions(@NotNull final STestRun testRun, final int optionsMask) {
+    if (testRun.isIgnored()) {
+      return (optionsMask & BuildStatisticsOptions.IGNORED_TESTS) != 0;
+    }
+    return (optionsMask & BuildStatisticsOptions.PASSED_TESTS) != 0 || testRun.getStatus().isFailed();
+  }
+
   @NotNull
   public static BuildStatistics getBuildStatistics(@NotNull final SBuild build, @Nullable final Locator locator) {
+    return build.getBuildStatistics(new BuildStatisticsOptions(getBuildStatisticsOptionsMask(locator), getMaxNumberOfTestsStacktracesToLoad()));
+  }
+
+  private static int getBuildStatisticsOptionsMask(@Nullable final Locator locator) {
     //  This is different from build.getFullStatistics() in the following ways:
     //  - stacktrace are not pre-loaded (loads all them into memory), but will be retrieved in a lazy fashion
     //  - compilation errors are not loaded (not necessary)
@@ -822,9 +854,11 @@ public class TestOccurrenceFinder extends AbstractFinder<STestRun> {
     if (locator == null || loadAllTests || Util.resolveNull(locator.lookupSingleDimensionValue(STATUS), TestOccurrence::getStatusFromPosted) != Status.FAILURE) {
       optionsMask |= BuildStatisticsOptions.PASSED_TESTS;
     }
+    return optionsMask;
+  }
 
-    return build.getBuildStatistics(
-        new BuildStatisticsOptions(optionsMask, TeamCityProperties.getInteger("rest.request.testOccurrences.buildStatOpts.maxNumberOfTestsStacktracesToLoad", 0)));
+  private static int getMaxNumberOfTestsStacktracesToLoad() {
+    return TeamCityProperties.getInteger("rest.request.testOccurrences.buildStatOpts.maxNumberOfTestsStacktracesToLoad", 0);
   }
 
   @Nullable
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.rest.data.problem;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import jetbrains.buildServer.serverSide.STestRun;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Index of the test runs of a single build by test name id: holds only the positions of the runs in the build's list of runs, not the runs themselves.
+ * Test name ids are kept in a sorted primitive array, so that lookups do not box and the index takes a few bytes per run.
+ */
+public class TestRunsIndex {
+  private final int mySize;
+  /**
+   * Distinct test name ids of the runs, sorted.
+   */
+  @NotNull private final long[] myTestNameIds;
+  /**
+   * Positions of the runs of the test name id with index i are in myPositions from myStarts[i] (inclusive) to myStarts[i + 1] (exclusive).
+   */
+  @NotNull private final int[] myStarts;
+  @NotNull private final int[] myPositions;
+
+  public TestRunsIndex(@NotNull final List<STestRun> runs) {
+    final int size = runs.size();
+    mySize = size;
+    final long[] runTestNameIds = new long[size];
+    int i = 0;
+    for (STestRun run : runs) {
+      runTestNameIds[i++] = run.getTest().getTestNameId();
+    }
+
+    final long[] sorted = runTestNameIds.clone();
+    Arrays.sort(sorted);
+    int distinctCount = 0;
+    for (i = 0; i < size; i++) {
+      if (i == 0 || sorted[i] != sorted[i - 1]) {
+        sorted[distinctCount++] = sorted[i];
+      }
+    }
+    myTestNameIds = Arrays.copyOf(sorted, distinctCount);
+
+    myStarts = new int[distinctCount + 1];
+    final int[] testIndexes = new int[size];
+    for (i = 0; i < size; i++) {
+      testIndexes[i] = Arrays.binarySearch(myTestNameIds, runTestNameIds[i]);
+      myStarts[testIndexes[i] + 1]++;
+    }
+    for (i = 0; i < distinctCount; i++) {
+      myStarts[i + 1] += myStarts[i];
+    }
+
+    // positions are filled in the run order, so they are ascending within each test name id
+    myPositions = new int[size];
+    final int[] filled = Arrays.copyOf(myStarts, distinctCount);
+    for (i = 0; i < size; i++) {
+      myPositions[filled[testIndexes[i]]++] = i;
+    }
+  }
+
+  /**
+   * @return number of the indexed runs
+   */
+  public int getSize() {
+    return mySize;
+  }
+
+  /**
+   * @param testNameIds distinct test name ids
+   * @return ascending positions of the runs of the tests with the given test name ids in the indexed list of runs
+   */
+  @NotNull
+  public int[] getPositions(@NotNull final Collection<Long> testNameIds) {
+    int[] found = new int[8];
+    int foundCount = 0;
+    for (Long testNameId : testNameIds) {
+      final int index = Arrays.binarySearch(myTestNameIds, testNameId);
+      if (index < 0) continue;
+      final int count = myStarts[index + 1] - myStarts[index];
+      if (foundCount + count > found.length) {
+        found = Arrays.copyOf(found, Math.max(found.length * 2, foundCount + count));
+      }
+      System.arraycopy(myPositions, myStarts[index], found, foundCount, count);
+      foundCount += count;
+    }
+
+    Arrays.sort(found, 0, foundCount);
+    return Arrays.copyOf(found, foundCount);
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package jetbrains.buildServer.server.rest.data.problem;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import jetbrains.buildServer.serverSide.STestRun;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Cache of {@link TestRunsIndex} of finished builds by build id.
+ * Only the indexes are cached, the runs are retrieved from the build statistics when the index has runs of the requested tests.
+ * Test runs of a finished build do not change, so the entries are dropped only on build removal reported to {@link jetbrains.buildServer.server.rest.data.ServerListener},
+ * when not accessed for a while or when the total number of the indexed runs exceeds the limit.
+ */
+@Component
+public class TestRunsIndexCache {
+  public static final String MAX_TEST_RUNS = "rest.request.testOccurrences.buildIndex.maxTestRuns";
+  public static final String EXPIRE_AFTER_ACCESS_SECONDS = "rest.request.testOccurrences.buildIndex.expireAfterAccessSeconds";
+
+  @Nullable private volatile CacheHolder myCacheHolder;
+
+  /**
+   * @param buildId     id of a finished build
+   * @param testNameIds distinct test name ids
+   * @param runsLoader  loads all the runs of the build, the same list should be returned on every invocation
+   * @return runs of the tests with the given test name ids in the order of the runs in the build
+   */
+  @NotNull
+  public List<STestRun> getRuns(final long buildId, @NotNull final Collection<Long> testNameIds, @NotNull final Supplier<List<STestRun>> runsLoader) {
+    final Cache<Long, TestRunsIndex> cache = getCache();
+    List<STestRun> runs = null;
+    TestRunsIndex index = cache.getIfPresent(buildId);
+    if (index == null) {
+      runs = runsLoader.get();
+      index = new TestRunsIndex(runs);
+      cache.put(buildId, index);
+    }
+
+    final int[] positions = index.getPositions(testNameIds);
+    if (positions.length == 0) {
+      return Collections.emptyList();
+    }
+    if (runs == null) {
+      runs = runsLoader.get();
+      if (runs.size() != index.getSize()) {
+        // should not happen for a finished build, but do not return wrong runs if it does
+        index = new TestRunsIndex(runs);
+        cache.put(buildId, index);
+        return getRuns(runs, index.getPositions(testNameIds));
+      }
+    }
+    return getRuns(runs, positions);
+  }
+
+  public void invalidate(final long buildId) {
+    final CacheHolder holder = myCacheHolder;
+    if (holder != null) {
+      holder.myCache.invalidate(buildId);
+    }
+  }
+
+  public long getSize() {
+    final CacheHolder holder = myCacheHolder;
+    return holder == null ? 0 : holder.myCache.size();
+  }
+
+  @NotNull
+  public CacheStats getStats() {
+    final CacheHolder holder = myCacheHolder;
+    return holder == null ? new CacheStats(0, 0, 0, 0, 0, 0) : holder.myCache.stats();
+  }
+
+  @NotNull
+  private static List<STestRun> getRuns(@NotNull final List<STestRun> runs, @NotNull final int[] positions) {
+    final List<STestRun> result = new ArrayList<>(positions.length);
+    for (int position : positions) {
+      result.add(runs.get(position));
+    }
+    return result;
+  }
+
+  @NotNull
+  private Cache<Long, TestRunsIndex> getCache() {
+    final long maxTestRuns = TeamCityProperties.getLong(MAX_TEST_RUNS, 2_000_000);
+    final long expireAfterAccessSeconds = TeamCityProperties.getLong(EXPIRE_AFTER_ACCESS_SECONDS, 600);
+    CacheHolder holder = myCacheHolder;
+    if (holder == null || holder.myMaxTestRuns != maxTestRuns || holder.myExpireAfterAccessSeconds != expireAfterAccessSeconds) {
+      synchronized (this) {
+        holder = myCacheHolder;
+        if (holder == null || holder.myMaxTestRuns != maxTestRuns || holder.myExpireAfterAccessSeconds != expireAfterAccessSeconds) {
+          holder = new CacheHolder(maxTestRuns, expireAfterAccessSeconds);
+          myCacheHolder = holder;
+        }
+      }
+    }
+    return holder.myCache;
+  }
+
+  private static class CacheHolder {
+    private final long myMaxTestRuns;
+    private final long myExpireAfterAccessSeconds;
+    @NotNull private final Cache<Long, TestRunsIndex> myCache;
+
+    private CacheHolder(final long maxTestRuns, final long expireAfterAccessSeconds) {
+      myMaxTestRuns = maxTestRuns;
+      myExpireAfterAccessSeconds = expireAfterAccessSeconds;
+      myCache = CacheBuilder.newBuilder()
+                            .maximumWeight(maxTestRuns)
+                            .weigher((Long buildId, TestRunsIndex index) -> index.getSize())
+                            .expireAfterAccess(expireAfterAccessSeconds, TimeUnit.SECONDS)
+                            .recordStats()
+                            .build();
+    }
+  }
+}
@@ -18,6 +18,7 @@ package jetbrains.buildServer.server.rest.data.util;
 
 import java.util.ArrayList;
 import jetbrains.buildServer.util.ItemProcessor;
+import org.jetbrains.annotations.Nullable;
 
 /**
 * @author Yegor.Yarko
@@ -28,9 +29,21 @@ public class FilterItemProcessor<T> implements ItemProcessor<T> {
   private long myTotalItemsProcessed = 0;
   private final PagingItemFilter<T> myFilter;
   private final ArrayList<T> myList = new ArrayList<T>();
+  @Nullable private final ItemProcessor<T> myMatchedItemsConsumer;
+  private int myMatchedItemsCount = 0;
+  private boolean myConsumerStopped = false;
 
   public FilterItemProcessor(final PagingItemFilter<T> filter) {
+    this(filter, null);
+  }
+
+  /**
+   * @param matchedItemsConsumer if not null, matched items are passed to it as they are found instead of being collected into the result,
+   *                             processing stops when it returns false
+   */
+  public FilterItemProcessor(final PagingItemFilter<T> filter, @Nullable final ItemProcessor<T> matchedItemsConsumer) {
     myFilter = filter;
+    myMatchedItemsConsumer = matchedItemsConsumer;
   }
 
   @Override
@@ -47,16 +60,33 @@ public class FilterItemProcessor<T> implements ItemProcessor<T> {
       return true;
     }
     if (myFilter.isIncludedByRange(myCurrentIndex++)) {
-      myList.add(item);
+      myMatchedItemsCount++;
+      if (myMatchedItemsConsumer == null) {
+        myList.add(item);
+      } else if (!myMatchedItemsConsumer.processItem(item)) {
+        myConsumerStopped = true;
+        return false;
+      }
     }
 
     return myFilter.isBelowUpperRangeLimit(myCurrentIndex, myTotalItemsProcessed);
   }
 
+  /**
+   * @return matched items, always empty if the items were passed to the consumer
+   */
   public ArrayList<T> getResult() {
     return myList;
   }
 
+  public int getMatchedItemsCount() {
+    return myMatchedItemsCount;
+  }
+
+  public boolean isConsumerStopped() {
+    return myConsumerStopped;
+  }
+
   public long getProcessedItemsCount() {
     return myCurrentIndex;
   }
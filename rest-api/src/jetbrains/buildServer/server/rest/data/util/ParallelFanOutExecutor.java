@@ -0,0 +1,176 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.rest.data.util;
+
+import com.intellij.openapi.diagnostic.Logger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import jetbrains.buildServer.ServiceLocator;
+import jetbrains.buildServer.server.rest.data.RestContext;
+import jetbrains.buildServer.server.rest.errors.OperationException;
+import jetbrains.buildServer.serverSide.SecurityContextEx;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import jetbrains.buildServer.serverSide.auth.AuthorityHolder;
+import jetbrains.buildServer.util.executors.ExecutorsFactory;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs independent parts of a single request (e.g. a search per build type) in a bounded thread pool.
+ * The results are returned in the order of the sources, as if they were computed sequentially.
+ * The workers run with the same user and {@link RestContext} as the requesting thread.
+ * Small fan-outs and the ones started from a worker thread are processed sequentially in the current thread.
+ * The pool is created on the first parallel fan-out and is shut down when the plugin context is destroyed.
+ */
+@Component
+public class ParallelFanOutExecutor implements DisposableBean {
+  private static final Logger LOG = Logger.getInstance(ParallelFanOutExecutor.class.getName());
+
+  public static final String ENABLED = "rest.request.parallelFanOut.enabled";
+  public static final String MIN_TASKS = "rest.request.parallelFanOut.minTasks";
+  public static final String POOL_SIZE = "rest.request.parallelFanOut.poolSize"; //applied on the first use only
+
+  private static final ThreadLocal<Boolean> ourInWorker = new ThreadLocal<>();
+
+  @NotNull private final ServiceLocator myServiceLocator;
+  @Nullable private volatile ExecutorService myExecutor;
+  private volatile boolean myDestroyed;
+
+  public ParallelFanOutExecutor(@NotNull final ServiceLocator serviceLocator) {
+    myServiceLocator = serviceLocator;
+  }
+
+  /**
+   * @param itemsLimit if not null, the sources which follow the ones which already produced more than this number of items are not processed
+   * @return results of the processed sources in the order of the sources
+   */
+  @NotNull
+  public <S, R> List<List<R>> map(@NotNull final List<S> sources, @NotNull final Function<S, List<R>> task, @Nullable final Long itemsLimit) {
+    if (!isParallel(sources.size())) {
+      final List<List<R>> result = new ArrayList<>(sources.size());
+      long itemsCount = 0;
+      for (S source : sources) {
+        if (itemsLimit != null && itemsCount > itemsLimit) break;
+        final List<R> items = task.apply(source);
+        itemsCount += items.size();
+        result.add(items);
+      }
+      return result;
+    }
+
+    final SecurityContextEx securityContext = myServiceLocator.getSingletonService(SecurityContextEx.class);
+    final AuthorityHolder authorityHolder = securityContext.getAuthorityHolder();
+    final RestContext restContext = RestContext.getThreadLocal();
+
+    final ExecutorService executor = getExecutor();
+    final List<Future<List<R>>> futures = new ArrayList<>(sources.size());
+    for (S source : sources) {
+      futures.add(executor.submit(() -> runInWorker(securityContext, authorityHolder, restContext, () -> task.apply(source))));
+    }
+
+    final List<List<R>> result = new ArrayList<>(sources.size());
+    long itemsCount = 0;
+    try {
+      for (Future<List<R>> future : futures) {
+        if (itemsLimit != null && itemsCount > itemsLimit) break;
+        final List<R> items = getResult(future);
+        itemsCount += items.size();
+        result.add(items);
+      }
+    } finally {
+      // not started tasks are not necessary when the limit is reached or on an error
+      for (Future<List<R>> future : futures) {
+        future.cancel(false);
+      }
+    }
+    return result;
+  }
+
+  private boolean isParallel(final int tasksCount) {
+    return TeamCityProperties.getBooleanOrTrue(ENABLED) &&
+           tasksCount > 1 &&
+           tasksCount >= TeamCityProperties.getInteger(MIN_TASKS, 8) &&
+           !myDestroyed &&
+           ourInWorker.get() == null; //nested fan-outs would wait for the workers occupied by the outer one
+  }
+
+  @NotNull
+  private static <R> R runInWorker(@NotNull final SecurityContextEx securityContext,
+                                   @NotNull final AuthorityHolder authorityHolder,
+                                   @Nullable final RestContext restContext,
+                                   @NotNull final Callable<R> action) {
+    ourInWorker.set(Boolean.TRUE);
+    try {
+      return securityContext.runAsUnchecked(authorityHolder, () -> restContext == null ? action.call() : restContext.createWorkerContext().run(action::call));
+    } finally {
+      ourInWorker.remove();
+    }
+  }
+
+  @NotNull
+  private static <R> R getResult(@NotNull final Future<R> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new OperationException("Interrupted while waiting for the request processing", e);
+    } catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+      if (cause instanceof Error) throw (Error)cause;
+      throw new OperationException("Error while processing the request: " + cause, e);
+    }
+  }
+
+  @NotNull
+  private ExecutorService getExecutor() {
+    ExecutorService result = myExecutor;
+    if (result == null) {
+      synchronized (this) {
+        result = myExecutor;
+        if (result == null) {
+          if (myDestroyed) {
+            throw new OperationException("REST API request fan-out pool is already shut down");
+          }
+          final int poolSize = TeamCityProperties.getInteger(POOL_SIZE, Math.min(Runtime.getRuntime().availableProcessors(), 8));
+          LOG.debug("Creating REST request fan-out pool with " + poolSize + " threads");
+          result = ExecutorsFactory.newFixedDaemonExecutor("REST API request fan-out", Math.max(1, poolSize));
+          myExecutor = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public void destroy() {
+    final ExecutorService executor;
+    synchronized (this) {
+      myDestroyed = true;
+      executor = myExecutor;
+      myExecutor = null;
+    }
+    if (executor != null) {
+      LOG.debug("Shutting down REST request fan-out pool");
+      executor.shutdownNow();
+    }
+  }
+}
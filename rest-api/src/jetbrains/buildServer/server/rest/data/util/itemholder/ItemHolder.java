@@ -87,6 +87,39 @@ public interface ItemHolder<T> {
     });
   }
 
+  /**
+   * Intermediate operation.
+   * Skips all the items up to and including the first one matching the predicate, passes all the subsequent items as is.
+   * If no item matches, nothing is passed to the processor.
+   */
+  default ItemHolder<T> skipThrough(Predicate<T> lastSkippedItem) {
+    return skipThrough(lastSkippedItem, item -> false);
+  }
+
+  /**
+   * Intermediate operation.
+   * Same as {@link #skipThrough(Predicate)}, but also stops skipping at the first item matching firstPassedItem predicate, which is passed to the processor.
+   * Allows to resume after an item which might no longer be present when the order of the items is known.
+   */
+  default ItemHolder<T> skipThrough(Predicate<T> lastSkippedItem, Predicate<T> firstPassedItem) {
+    return processor -> {
+      boolean[] found = new boolean[1];
+      process(item -> {
+        if (!found[0]) {
+          if (lastSkippedItem.test(item)) {
+            found[0] = true;
+            return true;
+          }
+          if (!firstPassedItem.test(item)) {
+            return true;
+          }
+          found[0] = true;
+        }
+        return processor.processItem(item);
+      });
+    };
+  }
+
   static <T> ItemHolder<T> empty() {
     return processor -> { };
   }
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.rest.errors;
+
+/**
+ * The request cannot be processed now because of a temporary overload, the client is asked to repeat it later
+ */
+public class ServiceUnavailableException extends RuntimeException {
+  private final int myRetryAfterSeconds;
+
+  public ServiceUnavailableException(String message, int retryAfterSeconds, Throwable cause) {
+    super(message, cause);
+    myRetryAfterSeconds = retryAfterSeconds;
+  }
+
+  public int getRetryAfterSeconds() {
+    return myRetryAfterSeconds;
+  }
+}
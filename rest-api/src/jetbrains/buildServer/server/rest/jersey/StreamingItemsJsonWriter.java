@@ -0,0 +1,160 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.rest.jersey;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.intellij.openapi.diagnostic.Logger;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.Iterator;
+import java.util.Map;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.ContextResolver;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.Providers;
+import jetbrains.buildServer.server.rest.model.StreamableItems;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Writes JSON of {@link StreamableItems} beans item by item as the items are found: the items array goes first
+ * and the rest of the bean properties (e.g. "count", "nextHref") are written after it.
+ * Beans which are not to be streamed are written at once with the same object mapper as all the other JSON responses.
+ * Only used when {@link StreamableItems#STREAMING_ENABLED} is set, the beans are written by the usual JSON provider otherwise.
+ * <p/>
+ * As the response status and some of the items can already be sent when finding the next item fails, such an error is reported by the
+ * {@link #ERROR_PROPERTY} property which terminates the response instead of the rest of the bean properties, so that the client does not get a truncated JSON.
+ */
+@Provider
+@Produces(MediaType.APPLICATION_JSON)
+public class StreamingItemsJsonWriter implements MessageBodyWriter<StreamableItems<?>> {
+  private static final Logger LOG = Logger.getInstance(StreamingItemsJsonWriter.class.getName());
+  public static final String ERROR_PROPERTY = "streamingError";
+
+  @Context private Providers myProviders;
+
+  public StreamingItemsJsonWriter() {
+  }
+
+  StreamingItemsJsonWriter(@NotNull final Providers providers) {
+    myProviders = providers;
+  }
+
+  @Override
+  public boolean isWriteable(final Class<?> type, final Type genericType, final Annotation[] annotations, final MediaType mediaType) {
+    return StreamableItems.class.isAssignableFrom(type) && mediaType.isCompatible(MediaType.APPLICATION_JSON_TYPE) &&
+           TeamCityProperties.getBoolean(StreamableItems.STREAMING_ENABLED);
+  }
+
+  @Override
+  public long getSize(final StreamableItems<?> items, final Class<?> type, final Type genericType, final Annotation[] annotations, final MediaType mediaType) {
+    return -1;
+  }
+
+  @Override
+  public void writeTo(final StreamableItems<?> items,
+                      final Class<?> type,
+                      final Type genericType,
+                      final Annotation[] annotations,
+                      final MediaType mediaType,
+                      final MultivaluedMap<String, Object> httpHeaders,
+                      final OutputStream entityStream) throws IOException {
+    final ObjectMapper mapper = getMapper(type);
+    try (JsonGenerator generator = mapper.getFactory().createGenerator(entityStream, JsonEncoding.UTF8)) {
+      generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      if (mapper.isEnabled(SerializationFeature.INDENT_OUTPUT)) {
+        generator.useDefaultPrettyPrinter();
+      }
+      final String itemsName = items.streamedItemsName();
+      if (itemsName == null) {
+        mapper.writeValue(generator, items);
+      } else {
+        writeStreamed(mapper, items, itemsName, generator);
+      }
+    }
+  }
+
+  /**
+   * @return the mapper registered for JSON responses, see {@link JacksonObjectMapperResolver}
+   */
+  @NotNull
+  private ObjectMapper getMapper(@NotNull final Class<?> type) {
+    final ContextResolver<ObjectMapper> resolver = myProviders.getContextResolver(ObjectMapper.class, MediaType.APPLICATION_JSON_TYPE);
+    final ObjectMapper mapper = resolver == null ? null : resolver.getContext(type);
+    if (mapper == null) {
+      throw new IllegalStateException("No object mapper is registered for JSON responses");
+    }
+    return mapper;
+  }
+
+  private <T> void writeStreamed(@NotNull final ObjectMapper mapper,
+                                 @NotNull final StreamableItems<T> items,
+                                 @NotNull final String itemsName,
+                                 @NotNull final JsonGenerator generator) throws IOException {
+    // do not flush after every item, the generator writes its buffer to the stream when it is full
+    final ObjectWriter itemWriter = mapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+    generator.writeStartObject();
+    generator.writeArrayFieldStart(itemsName);
+    try {
+      items.streamItems(item -> {
+        try {
+          itemWriter.writeValue(generator, item);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        return true;
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    } catch (RuntimeException e) {
+      LOG.warnAndDebugDetails("Error while streaming \"" + itemsName + "\" items, terminating the response with \"" + ERROR_PROPERTY + "\"", e);
+      generator.writeEndArray();
+      generator.writeObjectFieldStart(ERROR_PROPERTY);
+      generator.writeStringField("message", e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+      generator.writeEndObject();
+      generator.writeEndObject();
+      return;
+    }
+    generator.writeEndArray();
+
+    // the rest of the properties are known only now, when all the items are processed
+    final JsonNode rest = mapper.valueToTree(items);
+    if (rest != null && rest.isObject()) {
+      final Iterator<Map.Entry<String, JsonNode>> fields = rest.fields();
+      while (fields.hasNext()) {
+        final Map.Entry<String, JsonNode> field = fields.next();
+        if (itemsName.equals(field.getKey())) continue;
+        generator.writeFieldName(field.getKey());
+        generator.writeTree(field.getValue());
+      }
+    }
+    generator.writeEndObject();
+  }
+}
@@ -16,11 +16,11 @@
 
 package jetbrains.buildServer.server.rest.model;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.intellij.openapi.util.text.StringUtil;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 import jetbrains.buildServer.server.rest.data.Locator;
 import jetbrains.buildServer.server.rest.data.RestContext;
@@ -50,6 +50,9 @@ public class Fields {
 
   private static final String LOCATOR_CUSTOM_NAME = "$locator";
 
+  private static final String COMPILED_CACHE_MAX_SIZE = "rest.beans.fields.compiledCache.maxSize";
+  private static final int NESTED_FIELDS_MEMO_MAX_SIZE = 100;
+
   public static final Fields NONE = new Fields(NONE_FIELDS_PATTERN, null, null, true); // no fields at all
   public static final Fields SHORT = new Fields(DEFAULT_FIELDS_SHORT_PATTERN, null, null, true); // short (reference) form. Uses short or none form for the fields.
   public static final Fields ALL = new Fields(ALL_FIELDS_PATTERN, null, null, true); // all fields are present and are in the short form
@@ -59,14 +62,25 @@ public class Fields {
 
   @NotNull private final String myFieldsSpec;
   @NotNull private final Map<String, Fields> myRestrictedFields;
-  @NotNull private final Lazy<Locator> myFieldsSpecLocator;
+  @NotNull private final Lazy<CompiledSpec> myCompiledSpec;
   @Nullable private final Context myContext;
+  @Nullable private volatile Map<NestedFieldKey, Fields> myNestedFields;
 
+  /**
+   * @param restrictedFields the map is used as is and should not be modified after the call
+   */
   private Fields(@NotNull String actualFieldsSpec, @Nullable Map<String, Fields> restrictedFields, @Nullable Context context, boolean isInternal) {
     myFieldsSpec = RestContext.getThreadLocalStringPool().reuse(actualFieldsSpec);
-    myRestrictedFields = restrictedFields != null ? new HashMap<String, Fields>(restrictedFields) : Collections.emptyMap();
+    myRestrictedFields = restrictedFields != null ? restrictedFields : Collections.emptyMap();
     myContext = context;
-    myFieldsSpecLocator = lazy(() -> computeParsedCustomFields());
+    myCompiledSpec = lazy(() -> computeCompiledSpec());
+  }
+
+  private Fields(@NotNull Fields source, @Nullable Context context) {
+    myFieldsSpec = source.myFieldsSpec;
+    myRestrictedFields = source.myRestrictedFields;
+    myContext = context;
+    myCompiledSpec = source.myCompiledSpec;
   }
 
   public Fields (@Nullable String fieldsSpec){
@@ -205,7 +219,7 @@ public class Fields {
   private static String getNestedField(@NotNull final String fieldSpec, @NotNull final String dimensionName) {
     if (!fieldSpec.contains(dimensionName)) return null; //performance optimization: first check if the string appears inside
 
-    return new Fields(fieldSpec).getCustomDimension(dimensionName);
+    return new Fields(fieldSpec, null, null, true).getCustomDimension(dimensionName);
   }
 
   @NotNull
@@ -216,6 +230,7 @@ public class Fields {
   /**
    * Returnes fields for the nested field 'nestedFieldName' defaulting to 'defaultForShort' and 'defaultForLong' for corresponding presentations.
    * Excludes stored in 'default*Presentation' paramters are ignored.
+   * The result is remembered in this instance, so the same nested Fields are returned for every item of a collection.
    * @param nestedFieldName
    * @param defaultForShort - default to use if the current Fields is short presentation
    * @param defaultForLong - default to use if the current Fields is long presentation
@@ -223,6 +238,27 @@ public class Fields {
    */
   @NotNull
   public Fields getNestedField(@NotNull final String nestedFieldName, @NotNull final Fields defaultForShort, @NotNull final Fields defaultForLong) {
+    final NestedFieldKey key = new NestedFieldKey(nestedFieldName, defaultForShort.myFieldsSpec, defaultForLong.myFieldsSpec);
+    Map<NestedFieldKey, Fields> nestedFields = myNestedFields;
+    if (nestedFields != null) {
+      final Fields cached = nestedFields.get(key);
+      if (cached != null) return cached;
+    }
+
+    final Fields result = computeNestedField(nestedFieldName, defaultForShort, defaultForLong);
+    if (nestedFields == null) {
+      //concurrent initialization can only lose some memoized values, that is fine
+      nestedFields = new ConcurrentHashMap<>();
+      myNestedFields = nestedFields;
+    }
+    if (nestedFields.size() < NESTED_FIELDS_MEMO_MAX_SIZE) {
+      nestedFields.put(key, result);
+    }
+    return result;
+  }
+
+  @NotNull
+  private Fields computeNestedField(@NotNull final String nestedFieldName, @NotNull final Fields defaultForShort, @NotNull final Fields defaultForLong) {
     final Boolean included = isIncluded(nestedFieldName);
     if (included != null && !included) {
       return NONE;
@@ -263,14 +299,12 @@ public class Fields {
 
   @Nullable
   public String getCustomDimension(@NotNull final String fieldName) {
-    final Locator parsedCustomFields = getParsedCustomFields();
-    return parsedCustomFields == null ? null : parsedCustomFields.lookupSingleDimensionValue(fieldName); //should use getSingleDimensionValue here, but since locator check is not invoked so far, can improve performance a bit by using lookupSingleDimensionValue
+    return myCompiledSpec.get().getValue(fieldName);
   }
 
   @NotNull
   public Collection<String> getAllCustomDimensions() {
-    final Locator parsedCustomFields = getParsedCustomFields();
-    return parsedCustomFields == null ? Collections.emptyList() : parsedCustomFields.getDefinedDimensions();
+    return myCompiledSpec.get().myDimensions;
   }
 
   @Nullable
@@ -332,25 +366,52 @@ public class Fields {
     return new Fields(myFieldsSpec, newRestrictedFields, myContext, true);
   }
 
-  @Nullable
-  private Locator getParsedCustomFields() {
-    return myFieldsSpecLocator.get();
+  @NotNull
+  private CompiledSpec computeCompiledSpec() {
+    if (StringUtil.isEmpty(myFieldsSpec)) {
+      return CompiledSpec.EMPTY;
+    }
+    final Cache<String, CompiledSpec> cache = CompiledSpecCache.getCache();
+    if (cache == null) {
+      return compile(myFieldsSpec);
+    }
+    final CompiledSpec cached = cache.getIfPresent(myFieldsSpec);
+    if (cached != null) {
+      return cached;
+    }
+    final CompiledSpec result = compile(myFieldsSpec);
+    cache.put(myFieldsSpec, result);
+    return result;
   }
 
-  @Nullable
-  private Locator computeParsedCustomFields() {
-    if (!StringUtil.isEmpty(myFieldsSpec)) {
+  @NotNull
+  private static CompiledSpec compile(@NotNull final String fieldsSpec) {
+    final Locator locator;
+    try {
+      locator = new Locator(fieldsSpec, true,
+                            NONE_FIELDS_PATTERN, DEFAULT_FIELDS_SHORT_PATTERN_ALTERNATIVE, DEFAULT_FIELDS_LONG_PATTERN, ALL_FIELDS_PATTERN, ALL_NESTED_FIELDS_PATTERN,
+                            LOCATOR_CUSTOM_NAME, OPTIONAL_FIELDS_PATTERN);
+      //should add to hidden dimension, but since the locator is not currently checked, save performance by not doing it so far
+      //locator.addHiddenDimensions(OPTIONAL_FIELDS_PATTERN);
+    } catch (LocatorProcessException e) {
+      throw new LocatorProcessException("Error parsing fields specification: " + e.getMessage(), e);
+    }
+
+    final Collection<String> dimensions = locator.getDefinedDimensions();
+    final Map<String, String> values = new HashMap<>(dimensions.size());
+    Map<String, String> errors = Collections.emptyMap();
+    for (String name : dimensions) {
       try {
-        return new Locator(myFieldsSpec, true,
-            NONE_FIELDS_PATTERN, DEFAULT_FIELDS_SHORT_PATTERN_ALTERNATIVE, DEFAULT_FIELDS_LONG_PATTERN, ALL_FIELDS_PATTERN, ALL_NESTED_FIELDS_PATTERN,
-            LOCATOR_CUSTOM_NAME, OPTIONAL_FIELDS_PATTERN);
-        //should add to hidden dimension, but since the locator is not currently checked, save performance by not doing it so far
-        //myFieldsSpecLocator.addHiddenDimensions(OPTIONAL_FIELDS_PATTERN);
+        //should use getSingleDimensionValue here, but since locator check is not invoked so far, can improve performance a bit by using lookupSingleDimensionValue
+        final String value = locator.lookupSingleDimensionValue(name);
+        if (value != null) values.put(name, value);
       } catch (LocatorProcessException e) {
-        throw new LocatorProcessException("Error parsing fields specification: " + e.getMessage(), e);
+        //the error is reported only when the dimension is actually requested
+        if (errors.isEmpty()) errors = new HashMap<>();
+        errors.put(name, e.getMessage());
       }
     }
-    return null;
+    return new CompiledSpec(values, errors, Collections.unmodifiableList(new ArrayList<>(dimensions)));
   }
 
   @NotNull
@@ -367,7 +428,86 @@ public class Fields {
   public Fields withContext(@NotNull final BuildPromotion buildPromotion) {
     Context ctx = new Context();
     ctx.buildPromotion = buildPromotion;
-    return new Fields(myFieldsSpec, myRestrictedFields, ctx, true);
+    return new Fields(this, ctx);
+  }
+
+  /**
+   * Parsed fields specification. Immutable and shared between all the Fields instances with the same specification.
+   */
+  private static final class CompiledSpec {
+    private static final CompiledSpec EMPTY = new CompiledSpec(Collections.emptyMap(), Collections.emptyMap(), Collections.emptyList());
+
+    @NotNull private final Map<String, String> myValues;
+    @NotNull private final Map<String, String> myErrors;
+    @NotNull private final Collection<String> myDimensions;
+
+    private CompiledSpec(@NotNull final Map<String, String> values, @NotNull final Map<String, String> errors, @NotNull final Collection<String> dimensions) {
+      myValues = values;
+      myErrors = errors;
+      myDimensions = dimensions;
+    }
+
+    @Nullable
+    String getValue(@NotNull final String name) {
+      final String result = myValues.get(name);
+      if (result != null) return result;
+      if (!myErrors.isEmpty()) {
+        final String error = myErrors.get(name);
+        if (error != null) throw new LocatorProcessException(error);
+      }
+      return null;
+    }
+  }
+
+  private static final class CompiledSpecCache {
+    private static volatile CompiledSpecCache ourInstance;
+
+    private final long myMaxSize;
+    private final Cache<String, CompiledSpec> myCache;
+
+    private CompiledSpecCache(final long maxSize) {
+      myMaxSize = maxSize;
+      myCache = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+    }
+
+    @Nullable
+    static Cache<String, CompiledSpec> getCache() {
+      final long maxSize = TeamCityProperties.getLong(COMPILED_CACHE_MAX_SIZE, 1000);
+      if (maxSize <= 0) return null;
+      CompiledSpecCache result = ourInstance;
+      if (result == null || result.myMaxSize != maxSize) {
+        result = new CompiledSpecCache(maxSize);
+        ourInstance = result;
+      }
+      return result.myCache;
+    }
+  }
+
+  private static final class NestedFieldKey {
+    @NotNull private final String myName;
+    @NotNull private final String myDefaultForShort;
+    @NotNull private final String myDefaultForLong;
+    private final int myHashCode;
+
+    private NestedFieldKey(@NotNull final String name, @NotNull final String defaultForShort, @NotNull final String defaultForLong) {
+      myName = name;
+      myDefaultForShort = defaultForShort;
+      myDefaultForLong = defaultForLong;
+      myHashCode = 31 * (31 * name.hashCode() + defaultForShort.hashCode()) + defaultForLong.hashCode();
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) return true;
+      if (!(o instanceof NestedFieldKey)) return false;
+      final NestedFieldKey that = (NestedFieldKey)o;
+      return myHashCode == that.myHashCode && myName.equals(that.myName) && myDefaultForShort.equals(that.myDefaultForShort) && myDefaultForLong.equals(that.myDefaultForLong);
+    }
+
+    @Override
+    public int hashCode() {
+      return myHashCode;
+    }
   }
 
   private static class Context {
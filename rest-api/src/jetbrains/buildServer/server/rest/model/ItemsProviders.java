@@ -19,6 +19,7 @@ package jetbrains.buildServer.server.rest.model;
 import java.util.List;
 import java.util.function.Function;
 import java.util.function.Supplier;
+import jetbrains.buildServer.util.ItemProcessor;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -40,6 +41,15 @@ public interface ItemsProviders {
     PagerData getPagerData();
   }
 
+  interface ItemsStreamer<T> {
+    /**
+     * Passes the items to the processor one by one as they are found, stops when the processor returns false.
+     * @return paging details for the processed items
+     */
+    @Nullable
+    PagerData stream(@NotNull ItemProcessor<T> processor);
+  }
+
   abstract class ItemsProvider<T> {
     @NotNull
     public abstract List<T> getItems(@Nullable final String locator);
@@ -19,9 +19,11 @@ package jetbrains.buildServer.server.rest.model;
 import com.intellij.openapi.util.text.StringUtil;
 import java.net.URI;
 import javax.ws.rs.core.UriBuilder;
+import jetbrains.buildServer.server.rest.data.Locator;
 import jetbrains.buildServer.server.rest.data.PagedSearchResult;
 import jetbrains.buildServer.server.rest.data.finder.AbstractFinder;
 import jetbrains.buildServer.server.rest.data.util.LocatorUtil;
+import jetbrains.buildServer.server.rest.errors.LocatorProcessException;
 import jetbrains.buildServer.server.rest.errors.OperationException;
 import jetbrains.buildServer.serverSide.TeamCityProperties;
 import org.jetbrains.annotations.NotNull;
@@ -96,6 +98,13 @@ public class PagerDataImpl implements PagerData {
         locatorQueryParameterName
       );
     }
+    if (nextHref != null && pagedResult.getContinuationToken() != null && !StringUtil.isEmpty(locatorQueryParameterName)) {
+      // resume right after the last processed item: no need to skip "start" items or to expand lookupLimit
+      final UriModification continuationHref = getContinuationBuilder(uriBuilder, pagedResult.getContinuationToken(), locatorText, locatorQueryParameterName);
+      if (continuationHref != null) {
+        nextHref = continuationHref;
+      }
+    }
     myNextHref = nextHref == null ? null : getRelativePath(nextHref.getBuilder().build(), contextPath);
     myPrevHref = prevHref == null ? null : getRelativePath(prevHref.build(), contextPath);
   }
@@ -157,6 +166,22 @@ public class PagerDataImpl implements PagerData {
     return new UriModification(newBuilder.replaceQueryParam(locatorQueryParameterName, Util.encodeUrlParamValue(newLocator)), newLocator);
   }
 
+  @Nullable
+  private static UriModification getContinuationBuilder(@NotNull final UriBuilder baseUriBuilder, @NotNull final String continuationToken,
+                                                        @Nullable final String locatorText, @NotNull final String locatorQueryParameterName) {
+    final Locator locator;
+    try {
+      locator = Locator.createPotentiallyEmptyLocator(locatorText);
+    } catch (LocatorProcessException e) {
+      return null;
+    }
+    if (locator.isSingleValue()) return null;
+    locator.removeDimension(PagerData.START);
+    final UriBuilder newBuilder = baseUriBuilder.clone().replaceQueryParam(PagerData.START, null);
+    final String newLocator = locator.setDimension(AbstractFinder.DIMENSION_CONTINUATION_TOKEN, continuationToken).getStringRepresentation();
+    return new UriModification(newBuilder.replaceQueryParam(locatorQueryParameterName, Util.encodeUrlParamValue(newLocator)), newLocator);
+  }
+
   private static class UriModification {
     @NotNull private final UriBuilder myBuilder;
     @Nullable private final String myCurrentLocatorText;
@@ -174,6 +174,14 @@ public class RelatedEntity { //see also Related
 
     private Entity() {}
 
+    @NotNull
+    public static Entity createText(@NotNull final String text) {
+      Entity result = new Entity();
+      result.type = getType(ObjectType.STRING);
+      result.text = text;
+      return result;
+    }
+
     @NotNull
     public static Entity getFrom(@NotNull final ObjectWrapper objectWrapper, @NotNull final ServiceLocator serviceLocator) {
       Entity result = new Entity();
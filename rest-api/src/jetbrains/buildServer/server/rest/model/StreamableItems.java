@@ -0,0 +1,62 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.rest.model;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import jetbrains.buildServer.util.ItemProcessor;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Collection bean which can be serialized item by item as the items are found, without holding all of them in memory,
+ * see {@link jetbrains.buildServer.server.rest.jersey.StreamingItemsJsonWriter}.
+ * Method names intentionally do not follow the bean getters convention so that they are not serialized.
+ */
+public interface StreamableItems<ITEM_BEAN> {
+  /**
+   * Internal property to enable streaming of the collection responses. When enabled, the properties which depend on the items (e.g. "count", "nextHref")
+   * are written after the items and an error while finding the items is reported by the error property written instead of them,
+   * see {@link jetbrains.buildServer.server.rest.jersey.StreamingItemsJsonWriter#ERROR_PROPERTY}.
+   */
+  String STREAMING_ENABLED = "rest.response.streaming.enabled";
+
+  /**
+   * @return true if streaming is enabled and the response is to be JSON. Only JSON is streamed: in XML the collection attributes precede the items,
+   * so the beans created for streaming are not to be used when XML is acceptable as well.
+   */
+  static boolean isStreamingRequested(@NotNull final HttpServletRequest request) {
+    if (!TeamCityProperties.getBoolean(STREAMING_ENABLED)) {
+      return false;
+    }
+    final String accept = request.getHeader(HttpHeaders.ACCEPT);
+    return accept != null && accept.contains(MediaType.APPLICATION_JSON) && !accept.contains("xml");
+  }
+
+  /**
+   * @return name of the items property if the items should be streamed, null to serialize the bean as usual
+   */
+  @Nullable
+  String streamedItemsName();
+
+  /**
+   * Passes item beans to the processor as they are created. After that the bean can be serialized as usual to get the rest of the properties.
+   */
+  void streamItems(@NotNull ItemProcessor<ITEM_BEAN> processor);
+}
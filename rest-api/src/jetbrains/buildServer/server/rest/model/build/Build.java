@@ -82,7 +82,6 @@ import jetbrains.buildServer.serverSide.artifacts.SArtifactDependency;
 import jetbrains.buildServer.serverSide.audit.ActionType;
 import jetbrains.buildServer.serverSide.audit.AuditLogAction;
 import jetbrains.buildServer.serverSide.auth.AccessDeniedException;
-import jetbrains.buildServer.serverSide.auth.AuthorityHolder;
 import jetbrains.buildServer.serverSide.auth.Permission;
 import jetbrains.buildServer.serverSide.buildDistribution.WaitReason;
 import jetbrains.buildServer.serverSide.dependency.BuildDependency;
@@ -1548,11 +1547,10 @@ public class Build {
 
   public static boolean canViewRuntimeData(@NotNull PermissionChecker permissionChecker, @NotNull BuildPromotion buildPromotion) {
     final SBuildType buildType = buildPromotion.getBuildType();
-    final AuthorityHolder authorityHolder = permissionChecker.getCurrent();
     if (buildType == null) {
-      return authorityHolder.isPermissionGrantedGlobally(Permission.VIEW_BUILD_RUNTIME_DATA);
+      return permissionChecker.isPermissionGrantedGlobally(Permission.VIEW_BUILD_RUNTIME_DATA);
     }
-    return authorityHolder.isPermissionGrantedForProject(buildType.getProjectId(), Permission.VIEW_BUILD_RUNTIME_DATA);
+    return permissionChecker.isPermissionGrantedForProject(Permission.VIEW_BUILD_RUNTIME_DATA, buildType.getProjectId());
   }
 
   /**
@@ -1745,7 +1743,10 @@ public class Build {
     submittedTriggeredBy = triggeredBy;
   }
 
-  private BuildPromotion getBuildToTrigger(@Nullable final SUser user, @NotNull final ServiceLocator serviceLocator, @NotNull final Map<Long, Long> buildPromotionIdReplacements) {
+  private BuildPromotion getBuildToTrigger(@Nullable final SUser user,
+                                           @NotNull final ServiceLocator serviceLocator,
+                                           @NotNull final Map<Long, Long> buildPromotionIdReplacements,
+                                           @NotNull final Map<String, BuildTypeOrTemplate> foundBuildTypes) {
     List<BuildPromotion> customDependencies = Collections.emptyList();
     if (submittedBuildDependencies != null) {
       customDependencies = submittedBuildDependencies.getFromPosted(serviceLocator, buildPromotionIdReplacements);
@@ -1778,7 +1779,7 @@ public class Build {
       }
     }
 
-    final SBuildType submittedBuildType = getSubmittedBuildType(serviceLocator, personalChangeToUse, user);
+    final SBuildType submittedBuildType = getSubmittedBuildType(serviceLocator, personalChangeToUse, user, foundBuildTypes);
     final BuildCustomizerEx customizer = (BuildCustomizerEx)serviceLocator.getSingletonService(BuildCustomizerFactory.class).createBuildCustomizer(submittedBuildType, user);
     if (changeToUse != null) {
       customizer.setChangesUpTo(changeToUse); //might need to rework after comparison to code in jetbrains.buildServer.controllers.RunBuildBean.setupBuildCustomizer: customizer.setNodeRevisions, etc.
@@ -1914,7 +1915,7 @@ public class Build {
         "Cannot trigger build, if the changes are specified, they should be visible on the build configuration Change Log under the requested branch. Original error: " +
         e.getMessage());
     }
-    BuildTypeEx modifiedBuildType = getCustomizedSubmittedBuildType(serviceLocator);
+    BuildTypeEx modifiedBuildType = getCustomizedSubmittedBuildType(serviceLocator, foundBuildTypes);
     if (modifiedBuildType != null) {
       //it's core's responsibility to check permissions here
       try {
@@ -2137,13 +2138,13 @@ public class Build {
    * @return null if the submitted build type does not contain any custom settings
    */
   @Nullable
-  private BuildTypeEx getCustomizedSubmittedBuildType(@NotNull ServiceLocator serviceLocator) {
+  private BuildTypeEx getCustomizedSubmittedBuildType(@NotNull ServiceLocator serviceLocator, @NotNull final Map<String, BuildTypeOrTemplate> foundBuildTypes) {
     if (myBuildType == null) {
       return null;
     }
 
     final BuildTypeOrTemplate customizedBuildTypeFromPosted =
-      myBuildType.getCustomizedBuildTypeFromPosted(serviceLocator.findSingletonService(BuildTypeFinder.class), serviceLocator);
+      myBuildType.getCustomizedBuildTypeFromPosted(serviceLocator.findSingletonService(BuildTypeFinder.class), serviceLocator, foundBuildTypes);
     if (customizedBuildTypeFromPosted == null) {
       return null;
     }
@@ -2151,7 +2152,10 @@ public class Build {
     return (BuildTypeEx)customizedBuildTypeFromPosted.getBuildType();
   }
 
-  private SBuildType getSubmittedBuildType(@NotNull ServiceLocator serviceLocator, @Nullable final SVcsModification personalChange, @Nullable final SUser currentUser) {
+  private SBuildType getSubmittedBuildType(@NotNull ServiceLocator serviceLocator,
+                                           @Nullable final SVcsModification personalChange,
+                                           @Nullable final SUser currentUser,
+                                           @NotNull final Map<String, BuildTypeOrTemplate> foundBuildTypes) {
     if (myBuildType == null) {
       if (submittedBuildTypeId == null) {
         throw new BadRequestException("No 'buildType' element in the posted entry.");
@@ -2163,7 +2167,7 @@ public class Build {
       return buildType;
     }
 
-    final BuildTypeOrTemplate buildTypeFromPosted = myBuildType.getBuildTypeFromPosted(serviceLocator.findSingletonService(BuildTypeFinder.class));
+    final BuildTypeOrTemplate buildTypeFromPosted = myBuildType.getBuildTypeFromPosted(serviceLocator.findSingletonService(BuildTypeFinder.class), foundBuildTypes);
     final SBuildType regularBuildType = buildTypeFromPosted.getBuildType();
     if (regularBuildType == null) {
       throw new BadRequestException("Found template instead on build type. Only build types can run builds.");
@@ -2180,7 +2184,18 @@ public class Build {
 
   @NotNull
   public SQueuedBuild triggerBuild(@Nullable final SUser user, @NotNull final ServiceLocator serviceLocator, @NotNull final Map<Long, Long> buildPromotionIdReplacements) {
-    BuildPromotion buildToTrigger = getBuildToTrigger(user, serviceLocator, buildPromotionIdReplacements);
+    return triggerBuild(user, serviceLocator, buildPromotionIdReplacements, new HashMap<>());
+  }
+
+  /**
+   * @param foundBuildTypes submitted build types found by locator, to be shared between the builds triggered together
+   */
+  @NotNull
+  public SQueuedBuild triggerBuild(@Nullable final SUser user,
+                                   @NotNull final ServiceLocator serviceLocator,
+                                   @NotNull final Map<Long, Long> buildPromotionIdReplacements,
+                                   @NotNull final Map<String, BuildTypeOrTemplate> foundBuildTypes) {
+    BuildPromotion buildToTrigger = getBuildToTrigger(user, serviceLocator, buildPromotionIdReplacements, foundBuildTypes);
     SQueuedBuild queuedBuild = triggerBuild((BuildPromotionEx)buildToTrigger, user,
                                             submittedAgent == null ? null : submittedAgent.getAgentRestrictor(serviceLocator), serviceLocator); //TeamCity API issue: cast
     if (queuedBuild == null) {
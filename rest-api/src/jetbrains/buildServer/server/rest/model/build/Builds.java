@@ -29,11 +29,13 @@ import jetbrains.buildServer.server.rest.data.finder.impl.BuildPromotionFinder;
 import jetbrains.buildServer.server.rest.model.Fields;
 import jetbrains.buildServer.server.rest.model.ItemsProviders;
 import jetbrains.buildServer.server.rest.model.PagerData;
+import jetbrains.buildServer.server.rest.model.StreamableItems;
 import jetbrains.buildServer.server.rest.swagger.annotations.ModelBaseType;
 import jetbrains.buildServer.server.rest.swagger.constants.ObjectType;
 import jetbrains.buildServer.server.rest.util.*;
 import jetbrains.buildServer.serverSide.BuildPromotion;
 import jetbrains.buildServer.util.CollectionsUtil;
+import jetbrains.buildServer.util.ItemProcessor;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -44,7 +46,7 @@ import org.jetbrains.annotations.Nullable;
 @XmlRootElement(name = "builds")
 @XmlType(name = "builds")
 @ModelBaseType(ObjectType.PAGINATED)
-public class Builds implements DefaultValueAware {
+public class Builds implements DefaultValueAware, StreamableItems<Build> {
   private BeanContext myBeanContext;
   private Fields myFields = Fields.NONE;
   private ItemsProviders.ItemsRetriever<BuildPromotion> myBuildDataRetriever = new ListBasedItemsRetriever<>(Collections.emptyList());
@@ -129,6 +131,21 @@ public class Builds implements DefaultValueAware {
     );
   }
 
+  @Nullable
+  @Override
+  public String streamedItemsName() {
+    if (!(myBuildDataRetriever instanceof StreamingItemsRetriever) || ((StreamingItemsRetriever<BuildPromotion>)myBuildDataRetriever).isCountCheap()) {
+      return null;
+    }
+    return Boolean.TRUE.equals(myFields.isIncluded("build", false, true)) ? "build" : null;
+  }
+
+  @Override
+  public void streamItems(@NotNull final ItemProcessor<Build> processor) {
+    final Fields nestedFields = myFields.getNestedField("build");
+    ((StreamingItemsRetriever<BuildPromotion>)myBuildDataRetriever).stream(bp -> processor.processItem(new Build(bp, nestedFields, myBeanContext)));
+  }
+
   @Override
   public boolean isDefault() {
     if(myBuildDataRetriever == null) {
@@ -216,6 +233,17 @@ public class Builds implements DefaultValueAware {
     return new Builds(new ItemProviderBasedItemsRetriever<>(prefilteredPromotions, fields.getLocator()), fields, beanContext);
   }
 
+  /**
+   * The builds are retrieved from the streamer only while serializing the response and, if supported by the response format, are written one by one
+   * without collecting them in memory, see {@link StreamableItems}.
+   */
+  @NotNull
+  public static Builds createStreaming(@NotNull final ItemsProviders.ItemsStreamer<BuildPromotion> promotionsStreamer,
+                                       @NotNull final Fields fields,
+                                       @NotNull final BeanContext beanContext) {
+    return new Builds(new StreamingItemsRetriever<>(promotionsStreamer), fields, beanContext);
+  }
+
   @NotNull
   public static Builds createPagerOnly(@Nullable PagerData pagerData, @NotNull final Fields fields, @NotNull final BeanContext beanContext) {
     return new Builds(new PagerOnlyItemsRetriever(pagerData), fields, beanContext);
@@ -20,6 +20,7 @@ import com.intellij.openapi.diagnostic.Logger;
 import io.swagger.annotations.ApiModelProperty;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -706,7 +707,18 @@ public class BuildType {
    */
   @Nullable
   public BuildTypeOrTemplate getCustomizedBuildTypeFromPosted(@NotNull final BuildTypeFinder buildTypeFinder, @NotNull final ServiceLocator serviceLocator) {
-    final BuildTypeOrTemplate bt = getBuildTypeFromPosted(buildTypeFinder);
+    return getCustomizedBuildTypeFromPosted(buildTypeFinder, serviceLocator, null);
+  }
+
+  /**
+   * @param foundBuildTypes see {@link #getBuildTypeFromPosted(BuildTypeFinder, Map)}
+   * @return null if nothing is customized
+   */
+  @Nullable
+  public BuildTypeOrTemplate getCustomizedBuildTypeFromPosted(@NotNull final BuildTypeFinder buildTypeFinder,
+                                                              @NotNull final ServiceLocator serviceLocator,
+                                                              @Nullable final Map<String, BuildTypeOrTemplate> foundBuildTypes) {
+    final BuildTypeOrTemplate bt = getBuildTypeFromPosted(buildTypeFinder, foundBuildTypes);
 
     final BuildTypeEx buildType = (BuildTypeEx)bt.getBuildType();
     if (buildType == null) {
@@ -760,6 +772,14 @@ public class BuildType {
 
   @NotNull
   public BuildTypeOrTemplate getBuildTypeFromPosted(@NotNull final BuildTypeFinder buildTypeFinder) {
+    return getBuildTypeFromPosted(buildTypeFinder, null);
+  }
+
+  /**
+   * @param foundBuildTypes build types already found by locator, shared while processing several posted entities together. Newly found build types are added to it.
+   */
+  @NotNull
+  public BuildTypeOrTemplate getBuildTypeFromPosted(@NotNull final BuildTypeFinder buildTypeFinder, @Nullable final Map<String, BuildTypeOrTemplate> foundBuildTypes) {
     String locatorText = "";
     SubmitedParameters submittedParams = mySubmitted.get();
     if (submittedParams.internalId != null) {
@@ -777,6 +797,9 @@ public class BuildType {
     if (StringUtil.isEmpty(locatorText)) {
       throw new BadRequestException("No build type specified. Either 'id', 'internalId' or 'locator' attribute should be present.");
     }
+    if (foundBuildTypes != null && submittedParams.inherited == null) {
+      return foundBuildTypes.computeIfAbsent(locatorText, locator -> buildTypeFinder.getBuildTypeOrTemplate(null, locator, false));
+    }
     BuildTypeOrTemplate result = buildTypeFinder.getBuildTypeOrTemplate(null, locatorText, false);
     if (submittedParams.inherited != null) {
       result.markInherited(submittedParams.inherited);
@@ -28,13 +28,17 @@ import javax.xml.bind.annotation.XmlRootElement;
 import jetbrains.buildServer.server.rest.data.change.SVcsModificationOrChangeDescriptor;
 import jetbrains.buildServer.server.rest.data.finder.impl.ChangeFinder;
 import jetbrains.buildServer.server.rest.model.Fields;
+import jetbrains.buildServer.server.rest.model.ItemsProviders;
 import jetbrains.buildServer.server.rest.model.PagerData;
+import jetbrains.buildServer.server.rest.model.StreamableItems;
 import jetbrains.buildServer.server.rest.swagger.annotations.ModelBaseType;
 import jetbrains.buildServer.server.rest.swagger.constants.ObjectType;
 import jetbrains.buildServer.server.rest.util.BeanContext;
 import jetbrains.buildServer.server.rest.util.CachingValue;
 import jetbrains.buildServer.server.rest.util.DefaultValueAware;
+import jetbrains.buildServer.server.rest.util.StreamingItemsRetriever;
 import jetbrains.buildServer.server.rest.util.ValueWithDefault;
+import jetbrains.buildServer.util.ItemProcessor;
 import jetbrains.buildServer.vcs.SVcsModification;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -46,9 +50,10 @@ import org.jetbrains.annotations.Nullable;
 @XmlRootElement(name = "changes")
 @JsonTypeInfo(use = JsonTypeInfo.Id.CLASS, property = ObjectType.LIST)
 @ModelBaseType(ObjectType.PAGINATED)
-public class Changes implements DefaultValueAware {
+public class Changes implements DefaultValueAware, StreamableItems<Change> {
   @Nullable private CachingValue<List<SVcsModificationOrChangeDescriptor>> myModifications;
   @Nullable private PagerData myPagerData;
+  @Nullable private StreamingItemsRetriever<SVcsModificationOrChangeDescriptor> myStreamingRetriever;
   @NotNull private Fields myFields;
   @NotNull private BeanContext myBeanContext;
 
@@ -88,6 +93,25 @@ public class Changes implements DefaultValueAware {
     }
   }
 
+  private Changes(@NotNull final StreamingItemsRetriever<SVcsModificationOrChangeDescriptor> streamingRetriever,
+                  @NotNull Fields fields,
+                  @NotNull final BeanContext beanContext) {
+    myStreamingRetriever = streamingRetriever;
+    myFields = fields;
+    myBeanContext = beanContext;
+  }
+
+  /**
+   * Creates the bean which finds the changes only when serialized, see {@link StreamableItems}.
+   * The same fields are included by default as for the already found changes.
+   */
+  @NotNull
+  public static Changes createStreaming(@NotNull final ItemsProviders.ItemsStreamer<SVcsModificationOrChangeDescriptor> modificationsStreamer,
+                                        @NotNull Fields fields,
+                                        @NotNull final BeanContext beanContext) {
+    return new Changes(new StreamingItemsRetriever<>(modificationsStreamer), fields, beanContext);
+  }
+
   public static Changes fromSVcsModificationsSupplier(@NotNull final Supplier<List<SVcsModification>> modifications,
                                                       @Nullable final PagerData pagerData,
                                                       @NotNull Fields fields,
@@ -108,32 +132,67 @@ public class Changes implements DefaultValueAware {
 
   @XmlElement(name = CHANGE)
   public List<Change> getChanges() {
+    if (myStreamingRetriever != null) {
+      final StreamingItemsRetriever<SVcsModificationOrChangeDescriptor> retriever = myStreamingRetriever;
+      return retriever.isStreamed() ? null : ValueWithDefault.decideDefault(myFields.isIncluded(CHANGE, true, false, null), () -> {
+        final List<SVcsModificationOrChangeDescriptor> modifications = retriever.getItems();
+        return modifications == null ? null : modifications.stream().map(root -> new Change(root, myFields.getNestedField(CHANGE), myBeanContext)).collect(Collectors.toList());
+      });
+    }
     return myChanges;
   }
 
   @XmlAttribute
   public Integer getCount() {
+    if (myStreamingRetriever != null) {
+      final StreamingItemsRetriever<SVcsModificationOrChangeDescriptor> retriever = myStreamingRetriever;
+      return ValueWithDefault.decideIncludeByDefault(myFields.isIncluded(COUNT, true, true, true), () -> retriever.getCount());
+    }
     return myCount;
   }
 
+  @Nullable
+  @Override
+  public String streamedItemsName() {
+    if (myStreamingRetriever == null || myStreamingRetriever.isCountCheap()) {
+      return null;
+    }
+    return Boolean.TRUE.equals(myFields.isIncluded(CHANGE, true, false, null)) ? CHANGE : null;
+  }
+
+  @Override
+  public void streamItems(@NotNull final ItemProcessor<Change> processor) {
+    final Fields nestedFields = myFields.getNestedField(CHANGE);
+    //noinspection ConstantConditions
+    myStreamingRetriever.stream(root -> processor.processItem(new Change(root, nestedFields, myBeanContext)));
+  }
+
+  @Nullable
+  private PagerData getPagerData() {
+    return myStreamingRetriever != null ? myStreamingRetriever.getPagerData() : myPagerData;
+  }
+
   @XmlAttribute(required = false)
   public String getHref() {
-    return myPagerData == null ? null : ValueWithDefault.decideDefault(myFields.isIncluded("href"),
-                                                                       myBeanContext.getApiUrlBuilder().transformRelativePath(myPagerData.getHref()));
+    final PagerData pagerData = getPagerData();
+    return pagerData == null ? null : ValueWithDefault.decideDefault(myFields.isIncluded("href"),
+                                                                     myBeanContext.getApiUrlBuilder().transformRelativePath(pagerData.getHref()));
   }
 
   @XmlAttribute(required = false)
   @Nullable
   public String getNextHref() {
-    return myPagerData == null || myPagerData.getNextHref() == null ? null : ValueWithDefault.decideDefault(myFields.isIncluded("nextHref"), myBeanContext.getApiUrlBuilder()
-      .transformRelativePath(myPagerData.getNextHref()));
+    final PagerData pagerData = getPagerData();
+    return pagerData == null || pagerData.getNextHref() == null ? null : ValueWithDefault.decideDefault(myFields.isIncluded("nextHref"), myBeanContext.getApiUrlBuilder()
+      .transformRelativePath(pagerData.getNextHref()));
   }
 
   @XmlAttribute(required = false)
   @Nullable
   public String getPrevHref() {
-    return myPagerData == null || myPagerData.getPrevHref() == null ? null : ValueWithDefault.decideDefault(myFields.isIncluded("prevHref"), myBeanContext.getApiUrlBuilder()
-      .transformRelativePath(myPagerData.getPrevHref()));
+    final PagerData pagerData = getPagerData();
+    return pagerData == null || pagerData.getPrevHref() == null ? null : ValueWithDefault.decideDefault(myFields.isIncluded("prevHref"), myBeanContext.getApiUrlBuilder()
+      .transformRelativePath(pagerData.getPrevHref()));
   }
 
   private List<Change> sumbittedChanges;
@@ -153,6 +212,9 @@ public class Changes implements DefaultValueAware {
   }
 
   public boolean isDefault() {
+    if (myStreamingRetriever != null) {
+      return ValueWithDefault.isAllDefault(myStreamingRetriever.getCount(), myStreamingRetriever.getPagerData());
+    }
     return ValueWithDefault.isAllDefault(myModifications == null ? null : myModifications.get().size(), myPagerData);
   }
 }
\ No newline at end of file
@@ -40,8 +40,11 @@ import jetbrains.buildServer.server.rest.errors.*;
 import jetbrains.buildServer.server.rest.errors.BadRequestException;
 import jetbrains.buildServer.server.rest.errors.NotFoundException;
 import jetbrains.buildServer.server.rest.model.Fields;
+import jetbrains.buildServer.server.rest.model.MultipleOperationResult;
+import jetbrains.buildServer.server.rest.model.OperationResult;
 import jetbrains.buildServer.server.rest.model.PagerData;
 import jetbrains.buildServer.server.rest.model.PagerDataImpl;
+import jetbrains.buildServer.server.rest.model.RelatedEntity;
 import jetbrains.buildServer.server.rest.model.agent.Agents;
 import jetbrains.buildServer.server.rest.model.build.Build;
 import jetbrains.buildServer.server.rest.model.build.BuildCancelRequest;
@@ -52,6 +55,7 @@ import jetbrains.buildServer.server.rest.swagger.constants.LocatorName;
 import jetbrains.buildServer.server.rest.util.BeanContext;
 import jetbrains.buildServer.server.rest.util.BuildQueuePositionDescriptor;
 import jetbrains.buildServer.server.rest.util.BuildQueuePostitionModifier;
+import jetbrains.buildServer.server.rest.util.BuildTypeOrTemplate;
 import jetbrains.buildServer.serverSide.*;
 import jetbrains.buildServer.serverSide.auth.AccessDeniedException;
 import jetbrains.buildServer.serverSide.impl.approval.ApprovableBuildManager;
@@ -204,10 +208,11 @@ public class  BuildQueueRequest {
 
     final SUser user = myServiceLocator.getSingletonService(UserFinder.class).getCurrentUser();
     final Map<Long, Long> buildPromotionIdReplacements = new HashMap<Long, Long>();
+    final Map<String, BuildTypeOrTemplate> foundBuildTypes = new HashMap<>();
     List<Build> buildsToTrigger = builds.getSubmittedBuilds();
     Map<Build, Exception> buildsWithErrors;
     while (true) {
-      buildsWithErrors = triggerBuilds(buildsToTrigger, user, buildPromotionIdReplacements);
+      buildsWithErrors = triggerBuilds(buildsToTrigger, user, buildPromotionIdReplacements, foundBuildTypes, new HashMap<>());
       if (buildsWithErrors.isEmpty() || buildsToTrigger.size() <= buildsWithErrors.size()) {
         //no errors or no builds triggered
         break;
@@ -242,15 +247,25 @@ public class  BuildQueueRequest {
     }, ", ");
   }
 
+  /**
+   * @param foundBuildTypes   build types found by the submitted locators, shared between the calls for the same request
+   * @param triggeredBuilds   gets the queued build of each successfully triggered build
+   * @return errors of the builds which were not triggered, in the submitted order
+   */
   @NotNull
-  private Map<Build, Exception> triggerBuilds(@NotNull final List<Build> builds, @Nullable final SUser user, @NotNull final Map<Long, Long> buildPromotionIdReplacements) {
+  private Map<Build, Exception> triggerBuilds(@NotNull final List<Build> builds,
+                                              @Nullable final SUser user,
+                                              @NotNull final Map<Long, Long> buildPromotionIdReplacements,
+                                              @NotNull final Map<String, BuildTypeOrTemplate> foundBuildTypes,
+                                              @NotNull final Map<Build, SQueuedBuild> triggeredBuilds) {
     final Map<Build, Exception> buildsWithErrors = new LinkedHashMap<Build, Exception>();
     for (Build build : builds) {
       try {
-        final SQueuedBuild queuedBuild = build.triggerBuild(user, myServiceLocator, buildPromotionIdReplacements);
+        final SQueuedBuild queuedBuild = build.triggerBuild(user, myServiceLocator, buildPromotionIdReplacements, foundBuildTypes);
         if (build.getPromotionIdOfSubmittedBuild() != null) {
           buildPromotionIdReplacements.put(build.getPromotionIdOfSubmittedBuild(), queuedBuild.getBuildPromotion().getId());
         }
+        triggeredBuilds.put(build, queuedBuild);
       } catch (Exception e) {
         //noinspection ThrowableResultOfMethodCallIgnored
         buildsWithErrors.put(build, e);
@@ -452,6 +467,54 @@ public class  BuildQueueRequest {
     return new Build(queuedBuild.getBuildPromotion(), Fields.LONG, myBeanContext);
   }
 
+  /**
+   * Adds several builds to the queue in a single request.
+   * The builds are added in the submitted order and a build can reference a build submitted before it in the same request by its id
+   * (e.g. as a snapshot dependency), like in {@link #replaceBuilds}. An error adding one build does not prevent adding the others.
+   * With "moveToTop", all the added builds are moved to the top of the queue at once, keeping the submitted order.
+   */
+  @POST
+  @Path("/batch")
+  @Consumes({"application/xml", "application/json"})
+  @Produces({"application/xml", "application/json"})
+  @ApiOperation(value="Add several new builds to the queue.",nickname="addBuildsToQueue")
+  public MultipleOperationResult queueNewBuilds(Builds builds, @QueryParam("moveToTop") Boolean moveToTop,
+                                                @QueryParam("fields") String fields,
+                                                @Context HttpServletRequest request,
+                                                @Context HttpServletResponse response) {
+    final BuildQueue buildQueue = myServiceLocator.getSingletonService(BuildQueue.class);
+    if (QueueWebUtil.processLargeQueueCase(request, response, buildQueue)) {
+      return null;
+    }
+    if (builds == null || builds.getSubmittedBuilds() == null) {
+      throw new BadRequestException("No builds specified. Should post a collection of builds");
+    }
+
+    final SUser user = myServiceLocator.getSingletonService(UserFinder.class).getCurrentUser();
+    final List<Build> submittedBuilds = builds.getSubmittedBuilds();
+    final Map<Build, SQueuedBuild> triggeredBuilds = new HashMap<>();
+    final Map<Build, Exception> buildsWithErrors = triggerBuilds(submittedBuilds, user, new HashMap<>(), new HashMap<>(), triggeredBuilds);
+
+    final List<OperationResult.Data> results = new ArrayList<>(submittedBuilds.size());
+    final List<String> queuedItemIds = new ArrayList<>(triggeredBuilds.size());
+    for (Build build : submittedBuilds) {
+      final SQueuedBuild queuedBuild = triggeredBuilds.get(build);
+      if (queuedBuild != null) {
+        queuedItemIds.add(queuedBuild.getItemId());
+        results.add(OperationResult.Data.createSuccess(new RelatedEntity.Entity(queuedBuild.getBuildPromotion())));
+      } else {
+        final Exception e = buildsWithErrors.get(build);
+        final String buildDescription = "Build" + (build.getPromotionIdOfSubmittedBuild() != null ? " with id '" + build.getPromotionIdOfSubmittedBuild() + "'" : " #" + results.size());
+        results.add(OperationResult.Data.createError(e.getMessage() != null ? e.getMessage() : e.toString(), RelatedEntity.Entity.createText(buildDescription)));
+      }
+    }
+
+    if (moveToTop != null && moveToTop && !queuedItemIds.isEmpty()) {
+      buildQueue.applyOrder(CollectionsUtil.toArray(queuedItemIds, String.class));
+    }
+    return new MultipleOperationResult(new MultipleOperationResult.Data(results, buildsWithErrors.size()), new Fields(fields), myBeanContext);
+  }
+
   /**
    * Experimental ability to reorder the queue
    */
@@ -591,4 +654,12 @@ public class  BuildQueueRequest {
 
     return new ApprovalInfo(buildPromotionEx, new Fields(fields), myBeanContext);
   }
+
+  void initForTests(@NotNull final BeanContext beanContext) {
+    myBeanContext = beanContext;
+    myServiceLocator = beanContext.getServiceLocator();
+    myQueuedBuildFinder = beanContext.getSingletonService(QueuedBuildFinder.class);
+    myBuildPromotionFinder = beanContext.getSingletonService(BuildPromotionFinder.class);
+    myAgentFinder = beanContext.getSingletonService(AgentFinder.class);
+  }
 }
\ No newline at end of file
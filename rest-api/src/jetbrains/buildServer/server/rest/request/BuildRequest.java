@@ -16,13 +16,20 @@
 
 package jetbrains.buildServer.server.rest.request;
 
+import com.google.common.hash.Hashing;
 import com.intellij.openapi.diagnostic.Logger;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import javax.servlet.ServletContext;
@@ -39,12 +46,15 @@ import jetbrains.buildServer.controllers.FileSecurityUtil;
 import jetbrains.buildServer.controllers.HttpDownloadProcessor;
 import jetbrains.buildServer.controllers.actions.ChangeBuildStatusProcessor;
 import jetbrains.buildServer.log.Loggers;
+import jetbrains.buildServer.messages.BuildMessage1;
 import jetbrains.buildServer.messages.DefaultMessagesInfo;
 import jetbrains.buildServer.messages.Status;
 import jetbrains.buildServer.parameters.ProcessingResult;
 import jetbrains.buildServer.parameters.ReferencesResolverUtil;
 import jetbrains.buildServer.server.rest.data.*;
+import jetbrains.buildServer.server.rest.data.build.BuildLogLinesBatcher;
 import jetbrains.buildServer.server.rest.data.build.BuildParametersUtil;
+import jetbrains.buildServer.server.rest.data.build.BuildStatusCache;
 import jetbrains.buildServer.server.rest.data.build.TagFinder;
 import jetbrains.buildServer.server.rest.data.finder.impl.*;
 import jetbrains.buildServer.server.rest.data.parameters.ParametersPersistableEntity;
@@ -53,6 +63,7 @@ import jetbrains.buildServer.server.rest.data.problem.TestOccurrenceFinder;
 import jetbrains.buildServer.server.rest.errors.*;
 import jetbrains.buildServer.server.rest.errors.BadRequestException;
 import jetbrains.buildServer.server.rest.errors.NotFoundException;
+import jetbrains.buildServer.server.rest.errors.ServiceUnavailableException;
 import jetbrains.buildServer.server.rest.model.Properties;
 import jetbrains.buildServer.server.rest.model.*;
 import jetbrains.buildServer.server.rest.model.build.*;
@@ -69,11 +80,11 @@ import jetbrains.buildServer.serverSide.TriggeredBy;
 import jetbrains.buildServer.serverSide.*;
 import jetbrains.buildServer.serverSide.auth.SecurityContext;
 import jetbrains.buildServer.serverSide.auth.*;
-import jetbrains.buildServer.serverSide.crypt.EncryptUtil;
 import jetbrains.buildServer.serverSide.impl.BaseBuild;
 import jetbrains.buildServer.serverSide.impl.BuildAgentMessagesQueue;
 import jetbrains.buildServer.serverSide.impl.LogUtil;
 import jetbrains.buildServer.serverSide.impl.RunningBuildState;
+import jetbrains.buildServer.serverSide.impl.auth.SecurityContextImpl;
 import jetbrains.buildServer.serverSide.impl.auth.ServerAuthUtil;
 import jetbrains.buildServer.serverSide.problems.BuildProblem;
 import jetbrains.buildServer.serverSide.vcs.VcsLabelManager;
@@ -81,9 +92,7 @@ import jetbrains.buildServer.tags.TagsManager;
 import jetbrains.buildServer.users.SUser;
 import jetbrains.buildServer.users.User;
 import jetbrains.buildServer.users.UserModel;
-import jetbrains.buildServer.util.FileUtil;
 import jetbrains.buildServer.util.StringUtil;
-import jetbrains.buildServer.util.TCStreamUtil;
 import jetbrains.buildServer.util.TimeService;
 import jetbrains.buildServer.util.browser.Element;
 import jetbrains.buildServer.vcs.VcsException;
@@ -106,6 +115,7 @@ public class BuildRequest {
   private static final Logger LOG = Logger.getInstance(BuildRequest.class.getName());
   private static final String IMG_STATUS_WIDGET_ROOT_DIRECTORY = "/img/statusWidget";
   private static final String IMG_STATUS_WIDGET_DEFAULT_SUFFIX = ".svg";
+  private static final Map<String, StatusIcon> ourStatusIcons = new ConcurrentHashMap<>(); // real file name -> icon
   private static final Pattern NON_ALPHA_NUM_PATTERN = Pattern.compile("[^a-zA-Z0-9-#.]+");
   private static final String REST_BUILD_REQUEST_DELETE_LIMIT = "rest.buildRequest.delete.limit";
 
@@ -1322,12 +1332,12 @@ public class BuildRequest {
   @ApiOperation(value="Get the status icon (in specified format) of the matching build.",nickname="getBuildStatusIcon")
   public Response serveBuildStatusIcon(@ApiParam(format = LocatorName.BUILD) @PathParam("buildLocator") final String buildLocator,
                                        @PathParam("suffix") final String suffix,
-                                       @Context HttpServletRequest request) {
-    //todo: may also use HTTP 304 for different resources in order to make it browser-cached
+                                       @Context HttpServletRequest request,
+                                       @Context Request jaxRequest) {
     //todo: return something appropriate when in maintenance
 
-    final BuildIconStatus stateName = getStatus(buildLocator);
-    return processIconRequest(stateName.getIconName(), suffix, request);
+    final BuildIconStatus stateName = getCachedIconStatus("statusIcon", buildLocator, () -> getStatus(buildLocator));
+    return processIconRequest(stateName.getIconName(), suffix, request, jaxRequest);
   }
 
   // Note: authentication for this request is disabled in APIController configuration
@@ -1336,25 +1346,62 @@ public class BuildRequest {
   @ApiOperation(value="Get the status icon (in specified format) of aggregated matching builds.",nickname="getAggregatedBuildStatusIcon")
   public Response serveAggregatedBuildStatusIcon(@ApiParam(format = LocatorName.BUILD) @PathParam("buildLocator") String locator,
                                                  @PathParam("suffix") final String suffix,
-                                                 @Context HttpServletRequest request) {
-    final BuildIconStatus stateName = getAggregatedStatus(locator);
-    return processIconRequest(stateName.getIconName(), suffix, request);
+                                                 @Context HttpServletRequest request,
+                                                 @Context Request jaxRequest) {
+    final BuildIconStatus stateName = getCachedIconStatus("aggregatedStatusIcon", locator, () -> getAggregatedStatus(locator));
+    return processIconRequest(stateName.getIconName(), suffix, request, jaxRequest);
   }
 
   @GET
   @Path("/aggregated/{buildLocator}/status")
   @ApiOperation(value="Get the build status of aggregated matching builds.",nickname="getAggregatedBuildStatus")
-  public String serveAggregatedBuildStatus(@ApiParam(format = LocatorName.BUILD) @PathParam("buildLocator") String locator) {
-    final PagedSearchResult<BuildPromotion> builds = myBuildPromotionFinder.getItems(locator);
-    Status resultingStatus = Status.UNKNOWN;
-    for (BuildPromotion buildPromotion : builds.getEntries()) {
+  public String serveAggregatedBuildStatus(@ApiParam(format = LocatorName.BUILD) @PathParam("buildLocator") String locator,
+                                           @ApiParam(value = "Stop at the first failed build, the result is then the status of that build (FAILURE or ERROR)")
+                                           @QueryParam("stopOnFailure") Boolean stopOnFailure) {
+    final boolean stopOnFirstFailure = stopOnFailure != null && stopOnFailure;
+    return getCachedStatus(stopOnFirstFailure ? "aggregatedStatusStopOnFailure" : "aggregatedStatus", locator,
+                           () -> getAggregatedBuildStatus(myBuildPromotionFinder, locator, stopOnFirstFailure).getText(), status -> true);
+  }
+
+  /**
+   * Finds the worst status of the matched builds. The builds are processed one by one as they are found without collecting them,
+   * the processing stops as soon as the result cannot change anymore, so that the remaining builds are not even retrieved.
+   * @param stopOnFailure if true, the processing stops at the first failed build
+   */
+  @NotNull
+  static Status getAggregatedBuildStatus(@NotNull final BuildPromotionFinder buildPromotionFinder, @Nullable final String locator, final boolean stopOnFailure) {
+    final Status[] resultingStatus = new Status[]{Status.UNKNOWN};
+    buildPromotionFinder.processItems(locator, buildPromotion -> {
       final SBuild build = buildPromotion.getAssociatedBuild();
       if (build != null) {
-        final Status status = build.getStatusDescriptor().getStatus();
-        resultingStatus = Status.getWorstStatus(resultingStatus, status);
+        resultingStatus[0] = Status.getWorstStatus(resultingStatus[0], build.getStatusDescriptor().getStatus());
       }
+      return !(resultingStatus[0] == Status.ERROR || (stopOnFailure && resultingStatus[0].isFailed()));
+    });
+    return resultingStatus[0];
+  }
+
+  /**
+   * Not authorized icon requests are processed under system, they are switched to anonymous so that they share the cached statuses.
+   * The icon status does not depend on that as guest user permissions are used for both.
+   */
+  @NotNull
+  private BuildIconStatus getCachedIconStatus(@NotNull final String kind, @Nullable final String locator, @NotNull final Supplier<BuildIconStatus> computation) {
+    final SecurityContextEx securityContext = myBeanContext.getSingletonService(SecurityContextEx.class);
+    final Supplier<BuildIconStatus> cachedComputation = () -> getCachedStatus(kind, locator, computation, status -> status != BuildIconStatus.INTERNAL_ERROR);
+    if (securityContext.isSystemAccess()) {
+      return securityContext.runAsUnchecked(SecurityContextImpl.NO_PERMISSIONS, cachedComputation::get);
+    }
+    return cachedComputation.get();
+  }
+
+  @NotNull
+  private <T> T getCachedStatus(@NotNull final String kind, @Nullable final String locator, @NotNull final Supplier<T> computation, @NotNull final Predicate<T> cacheable) {
+    final BuildStatusCache statusCache = myBeanContext.getServiceLocator().findSingletonService(BuildStatusCache.class);
+    if (statusCache == null) {
+      return computation.get();
     }
-    return resultingStatus.getText();
+    return statusCache.get(kind, locator, computation, cacheable);
   }
 
   @ApiOperation(value="serveAggregatedBuildArtifacts",hidden = true)
@@ -1436,54 +1483,75 @@ public class BuildRequest {
   /**
    * Experimental support for streaming messages to a running build.
    * Use with caution: this API is not yet stable and is subject to change.
-   *   this is an experiment to try to support for reading streamed input
+   *   Each line of the request body is added as a separate message, the lines are passed to the build in batches as they are read.
    *   Can be used with a command like:
    *   curl -H "Transfer-Encoding: chunked" -H "Content-Type: text/plain" -X POST -T -  .../app/rest/runningBuilds/XXX/log/stream
    */
-  /*
   @POST
   @Path("/{buildLocator}/log/stream")
   @Consumes({MediaType.TEXT_PLAIN})
   @ApiOperation(hidden = true, value = "Experimental ability to stream build log as request body")
-  public void addLogMessage(@PathParam("buildLocator") String buildLocator, InputStream requestBody) {
-    //ideally, this should be async not to waste the thread on input waiting
+  public void addLogMessagesStream(@PathParam("buildLocator") String buildLocator, InputStream requestBody) {
+    //the request is processed in the request thread as it runs with the request's RestContext and security context,
+    //if the build messages queue stays full, the request fails with 503 status reporting the number of the added lines, the lines starting from the current batch are not added
     BuildPromotion buildPromotion = myBuildPromotionFinder.getBuildPromotion(null, buildLocator);
     checkBuildOperationPermission(buildPromotion);
-    // check for running?
     SBuild build = buildPromotion.getAssociatedBuild();
     if (build == null) {
       throw new NotFoundException("Build with id " + buildPromotion.getId() + " is not in the running or finished state");
     }
 
+    final BuildLogLinesBatcher batcher = new BuildLogLinesBatcher(lines -> logMessages(build, lines));
     try {
-      BufferedReader reader = new BufferedReader(new InputStreamReader(requestBody));
-      String line = reader.readLine();
-      while (line != null) {
-        logMessage(build, line);
-        line = reader.readLine();
-      }
+      BufferedReader reader = new BufferedReader(new InputStreamReader(requestBody, StandardCharsets.UTF_8));
+      batcher.process(reader);
+    } catch (ServiceUnavailableException e) {
+      throw new ServiceUnavailableException(e.getMessage() + ", " + batcher.getAcceptedLines() + " lines were added before, repeat the request with the rest of the lines",
+                                            e.getRetryAfterSeconds(), e.getCause());
     } catch (IOException e) {
-      //todo: log
+      LOG.debug("Error reading build log stream for build with id " + build.getBuildId() + ": " + e.toString());
       throw new OperationException("Error reading request body: " + e.toString(), e);
     }
   }
-  */
 
   //todo: ideally, should put all the data from the same client into the same flow in the build
   //can also try to put it into a dedicated block...
   private void logMessage(@NotNull final SBuild build, final String lines) {
 //    build.getBuildLog().message(lines, Status.NORMAL, MessageAttrs.attrs());
+    logMessages(build, Collections.singletonList(lines));
+  }
+
+  /**
+   * While the build messages queue is full, retries with exponential backoff (starting from "rest.buildRequest.log.queueFullBackoffMs")
+   * for not longer than "rest.buildRequest.log.queueFullMaxWaitMs" in total and then fails with "503 Service Unavailable",
+   * so that request threads do not wait for the queue for long
+   */
+  private void logMessages(@NotNull final SBuild build, @NotNull final List<String> lines) {
     if (build.isFinished() || !(build instanceof RunningBuildEx)) {
       throw new NotFoundException("Build with id " + build.getBuildId() + " is already finished");
     }
     RunningBuildEx runningBuild = (RunningBuildEx)build;
+    final List<BuildMessage1> messages = lines.stream().map(line -> DefaultMessagesInfo.createTextMessage(line).updateTags(DefaultMessagesInfo.TAG_REST)).collect(Collectors.toList());
+    final BuildAgentMessagesQueue messagesQueue = myBeanContext.getSingletonService(BuildAgentMessagesQueue.class);
+    final long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TeamCityProperties.getLong("rest.buildRequest.log.queueFullMaxWaitMs", 2000));
+    long backoffMs = Math.max(1, TeamCityProperties.getLong("rest.buildRequest.log.queueFullBackoffMs", 20));
     try {
-      myBeanContext.getSingletonService(BuildAgentMessagesQueue.class)
-                   .processMessages(runningBuild, Collections.singletonList(DefaultMessagesInfo.createTextMessage(lines).updateTags(DefaultMessagesInfo.TAG_REST)));
+      while (true) {
+        try {
+          messagesQueue.processMessages(runningBuild, messages);
+          return;
+        } catch (BuildAgentMessagesQueue.BuildMessagesQueueFullException e) {
+          final long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+          if (remainingMs <= 0) {
+            throw new ServiceUnavailableException("Failed to add messages as the queue is full", TeamCityProperties.getInteger("rest.buildRequest.log.queueFullRetryAfterSeconds", 1), e);
+          }
+          Thread.sleep(Math.min(backoffMs, remainingMs));
+          backoffMs *= 2;
+        }
+      }
     } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
       throw new OperationException("Got interrupted", e); //todo
-    } catch (BuildAgentMessagesQueue.BuildMessagesQueueFullException e) {
-      throw new OperationException("Failed to add messages as the queue is full", e); //todo
     }
   }
 
@@ -1570,34 +1638,37 @@ public class BuildRequest {
 
   @NotNull
   private BuildIconStatus getAggregatedStatus(@Nullable final String multipleBuildsLocator) {
-    BuildIconStatus resultState = BuildIconStatus.NOT_FOUND;
-    boolean[] hasNext = new boolean[1];
-    hasNext[0] = true;
-    final BuildIconStatus.Value<BuildPromotion> buildPromotionRetriever = new BuildIconStatus.Value<BuildPromotion>() {
-      private List<BuildPromotion> myBuilds;
-      private int currentIndex = 0;
-
-      @NotNull
-      @Override
-      public BuildPromotion get() {
-        if (myBuilds == null) {
-          hasNext[0] = false;
-          myBuilds = myBuildPromotionFinder.getItems(multipleBuildsLocator).getEntries();
-          if (myBuilds.isEmpty()) {
-            throw new NotFoundException("No builds found");
+    final SecurityContextEx securityContext = myBeanContext.getSingletonService(SecurityContextEx.class);
+    final AuthorityHolder authorityHolder = securityContext.getAuthorityHolder();
+    final BuildIconStatus[] resultState = new BuildIconStatus[]{BuildIconStatus.NOT_FOUND};
+    final boolean[] found = new boolean[1];
+    try {
+      //builds are retrieved one by one and not collected, the permissions are checked for each build as for a single build icon
+      securityContext.runAsSystem(() -> {
+        myBuildPromotionFinder.processItems(multipleBuildsLocator, buildPromotion -> {
+          found[0] = true;
+          final BuildIconStatus stateName = BuildIconStatus.create(myBeanContext, authorityHolder, () -> buildPromotion);
+          if (resultState[0].compareTo(stateName) < 0) {
+            resultState[0] = stateName;
           }
-        }
-        hasNext[0] = currentIndex < myBuilds.size() - 1;
-        return myBuilds.get(currentIndex++);
-      }
-    };
-    while (hasNext[0]) {
-      final BuildIconStatus stateName = BuildIconStatus.create(myBeanContext, buildPromotionRetriever);
-      if (resultState.compareTo(stateName) < 0) {
-        resultState = stateName;
-      }
+          return resultState[0] != BuildIconStatus.FAILED; //the worst status, no need to check the rest of the builds
+        });
+      });
+    } catch (RuntimeException e) {
+      //the same processing of the errors as for a single build icon
+      return BuildIconStatus.create(myBeanContext, authorityHolder, () -> {
+        throw e;
+      });
+    } catch (Throwable throwable) {
+      LOG.info("Error while retrieving builds under system, returning 'internal_error'': " + throwable.toString(), throwable);
+      return BuildIconStatus.INTERNAL_ERROR;
+    }
+    if (!found[0]) {
+      return BuildIconStatus.create(myBeanContext, authorityHolder, () -> {
+        throw new NotFoundException("No builds found");
+      });
     }
-    return resultState;
+    return resultState[0];
   }
 
   @NotNull
@@ -1605,7 +1676,7 @@ public class BuildRequest {
     return BuildIconStatus.create(myBeanContext, () -> myBuildFinder.getBuildPromotion(null, buildLocator));
   }
 
-  private Response processIconRequest(final String stateName, final String suffix, final @Context HttpServletRequest request) {
+  private Response processIconRequest(final String stateName, final String suffix, final @Context HttpServletRequest request, @NotNull final Request jaxRequest) {
     final String iconFileName = IMG_STATUS_WIDGET_ROOT_DIRECTORY + "/" + stateName + (StringUtil.isEmpty(suffix) ? IMG_STATUS_WIDGET_DEFAULT_SUFFIX : suffix);
     final String resultIconFileName;
     try {
@@ -1625,24 +1696,16 @@ public class BuildRequest {
       //todo: list extensions in file under IMG_STATUS_WIDGET_ROOT_DIRECTORY, see also above
     }
 
-    final File resultIconFile = new File(resultIconFileName);
-    final StreamingOutput streamingOutput = output -> {
-      InputStream inputStream = null;
-      try {
-        inputStream = new BufferedInputStream(new FileInputStream(resultIconFile));
-        TCStreamUtil.writeBinary(inputStream, output);
-      } catch (IOException e) {
-        //todo add better processing
-        throw new OperationException("Error while retrieving file '" + resultIconFile.getName() + "': " + e.getMessage(), e);
-      } finally {
-        FileUtil.close(inputStream);
-      }
-    };
-
-    @SuppressWarnings("deprecation") final String mediaType = WebUtil.getMimeType(request, resultIconFileName);
-    final Response.ResponseBuilder response = Response.ok(streamingOutput, mediaType).header("Cache-Control", "no-cache, private");
+    final StatusIcon icon = getStatusIcon(new File(resultIconFileName));
+    final EntityTag eTag = new EntityTag(icon.myETag);  //strong ETag as it is calculated from the icon content
+    Response.ResponseBuilder response = jaxRequest.evaluatePreconditions(eTag);
+    if (response == null) {
+      @SuppressWarnings("deprecation") final String mediaType = WebUtil.getMimeType(request, resultIconFileName);
+      response = Response.ok(icon.myContent, mediaType).tag(eTag);
+    }
+    //"no-cache" makes browsers revalidate the icon on each use which is answered with 304 while the status is the same
     //see also setting no caching headers in jetbrains.buildServer.server.rest.request.FilesSubResource.getContentByStream()
-    response.header("ETag", "W/\"" + EncryptUtil.md5(String.valueOf(stateName)) + "\"");  //mark ETag as "weak"
+    response.header("Cache-Control", "no-cache, private");
     // see jetbrains.buildServer.web.util.WebUtil.addCacheHeadersForIE and http://youtrack.jetbrains.com/issue/TW-9821 for details)
     if (WebUtil.isIE10OrLower(request)) {
       response.header("Cache-Control", "private,must-revalidate");
@@ -1651,6 +1714,41 @@ public class BuildRequest {
     return response.build();
   }
 
+  /**
+   * Status icons are requested by external pages all the time, so their content is kept in memory.
+   * The file is re-read only if it is changed on disk (e.g. on server upgrade).
+   */
+  @NotNull
+  private static StatusIcon getStatusIcon(@NotNull final File iconFile) {
+    final StatusIcon cached = ourStatusIcons.get(iconFile.getPath());
+    final long lastModified = iconFile.lastModified();
+    final long length = iconFile.length();
+    if (cached != null && cached.myLastModified == lastModified && cached.myContent.length == length) {
+      return cached;
+    }
+    final byte[] content;
+    try {
+      content = Files.readAllBytes(iconFile.toPath());
+    } catch (IOException e) {
+      throw new OperationException("Error while retrieving file '" + iconFile.getName() + "': " + e.getMessage(), e);
+    }
+    final StatusIcon result = new StatusIcon(content, lastModified);
+    ourStatusIcons.put(iconFile.getPath(), result);
+    return result;
+  }
+
+  private static class StatusIcon {
+    @NotNull private final byte[] myContent;
+    @NotNull private final String myETag;
+    private final long myLastModified;
+
+    private StatusIcon(@NotNull final byte[] content, final long lastModified) {
+      myContent = content;
+      myETag = Hashing.sha1().hashBytes(content).toString();
+      myLastModified = lastModified;
+    }
+  }
+
 
   enum BuildIconStatus {
     NOT_FOUND("not_found"),
@@ -1673,10 +1771,17 @@ public class BuildRequest {
     }
     @NotNull
     private static BuildIconStatus create(final BeanContext beanContext, final Value<BuildPromotion> buildPromotionRetriever) {
+      return create(beanContext, beanContext.getSingletonService(SecurityContextEx.class).getAuthorityHolder(), buildPromotionRetriever);
+    }
+
+    /**
+     * @param currentUserAuthorityHolder the holder to check the permissions for, the build is retrieved under system
+     */
+    @NotNull
+    private static BuildIconStatus create(final BeanContext beanContext, @NotNull final AuthorityHolder currentUserAuthorityHolder, final Value<BuildPromotion> buildPromotionRetriever) {
       BuildIconStatus[] result = new BuildIconStatus[1];
       try {
         final SecurityContextEx securityContext = beanContext.getSingletonService(SecurityContextEx.class);
-        final AuthorityHolder currentUserAuthorityHolder = securityContext.getAuthorityHolder();
         try {
           securityContext.runAsSystem(() -> {
             BuildPromotion buildPromotion = buildPromotionRetriever.get();
@@ -1713,7 +1818,7 @@ public class BuildRequest {
           return result[0];
         } catch (NotFoundException e) {
           if (TeamCityProperties.getBoolean("rest.buildRequest.statusIcon.enableNotFoundResponsesWithoutPermissions") ||
-              hasPermissionsToViewStatusGlobally(securityContext, beanContext)) {
+              hasPermissionsToViewStatusGlobally(currentUserAuthorityHolder, beanContext)) {
             LOG.debug("Cannot find build for status icon under system, returning 'not_found': " + e.getMessage());
             return NOT_FOUND;
           } else {
@@ -1756,8 +1861,7 @@ public class BuildRequest {
              guestUser.isPermissionGrantedForProject(buildType.getProjectId(), Permission.VIEW_PROJECT);
     }
 
-    private static boolean hasPermissionsToViewStatusGlobally(@NotNull final SecurityContextEx securityContext, final BeanContext beanContext) {
-      final AuthorityHolder authorityHolder = securityContext.getAuthorityHolder();
+    private static boolean hasPermissionsToViewStatusGlobally(@NotNull final AuthorityHolder authorityHolder, final BeanContext beanContext) {
       //todo: how to distinguish no user from system? Might check for system to support authToken requests...
       if (authorityHolder.getAssociatedUser() != null &&
           authorityHolder.isPermissionGrantedGlobally(Permission.VIEW_PROJECT)) {
@@ -1819,6 +1923,12 @@ public class BuildRequest {
       return getBuildFileName(myBuildPromotion, path) + "_artifacts";
     }
 
+    @Nullable
+    @Override
+    public String getArchiveLayoutCacheScope() {
+      return "build:" + myBuildPromotion.getId();
+    }
+
     @Override
     public boolean fileContentServed(@Nullable final String path, @NotNull final HttpServletRequest request) {
       if (myLogBuildUsage == null || myLogBuildUsage) {
@@ -45,7 +45,11 @@ import jetbrains.buildServer.diagnostic.ThreadDumpDataProvider;
 import jetbrains.buildServer.diagnostic.web.ThreadDumpsController;
 import jetbrains.buildServer.log.Loggers;
 import jetbrains.buildServer.responsibility.ResponsibilityManager;
+import jetbrains.buildServer.server.graphql.util.GraphQLResolverExecutor;
+import jetbrains.buildServer.server.rest.AuthTokenAttemptsThrottler;
 import jetbrains.buildServer.server.rest.data.*;
+import jetbrains.buildServer.server.rest.data.build.BuildPromotionsResultCache;
+import jetbrains.buildServer.server.rest.data.build.BuildStatusCache;
 import jetbrains.buildServer.server.rest.data.finder.impl.BuildPromotionFinder;
 import jetbrains.buildServer.server.rest.data.finder.impl.BuildTypeFinder;
 import jetbrains.buildServer.server.rest.data.finder.impl.ProjectFinder;
@@ -489,6 +493,61 @@ public class DebugRequest {
     }
   }
 
+  /**
+   * Experimental use only!
+   */
+  @GET
+  @Path("/caches/builds/statistics")
+  @Produces({"text/plain"})
+  public String getBuildsResultCacheStatistics() {
+    myDataProvider.checkGlobalPermission(Permission.MANAGE_SERVER_INSTALLATION);
+    return myServiceLocator.getSingletonService(BuildPromotionsResultCache.class).getStatistics();
+  }
+
+  /**
+   * Experimental use only!
+   */
+  @GET
+  @Path("/caches/buildStatuses/statistics")
+  @Produces({"text/plain"})
+  public String getBuildStatusCacheStatistics() {
+    myDataProvider.checkGlobalPermission(Permission.MANAGE_SERVER_INSTALLATION);
+    return myServiceLocator.getSingletonService(BuildStatusCache.class).getStatistics();
+  }
+
+  /**
+   * Experimental use only!
+   */
+  @GET
+  @Path("/graphql/resolvers/statistics")
+  @Produces({"text/plain"})
+  public String getGraphQLResolversStatistics() {
+    myDataProvider.checkGlobalPermission(Permission.MANAGE_SERVER_INSTALLATION);
+    return myServiceLocator.getSingletonService(GraphQLResolverExecutor.class).getStatistics();
+  }
+
+  /**
+   * Experimental use only!
+   */
+  @GET
+  @Path("/authToken/attempts/statistics")
+  @Produces({"text/plain"})
+  public String getAuthTokenAttemptsStatistics() {
+    myDataProvider.checkGlobalPermission(Permission.MANAGE_SERVER_INSTALLATION);
+    return myServiceLocator.getSingletonService(AuthTokenAttemptsThrottler.class).getStatistics();
+  }
+
+  /**
+   * Experimental use only!
+   */
+  @GET
+  @Path("/permissions/memo/statistics")
+  @Produces({"text/plain"})
+  public String getPermissionsMemoStatistics() {
+    myDataProvider.checkGlobalPermission(Permission.MANAGE_SERVER_INSTALLATION);
+    return PermissionsMemo.getStatistics();
+  }
+
   /**
    * Experimental use only!
    */
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.rest.request;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import jetbrains.buildServer.server.rest.data.finder.impl.BuildArtifactsFinder;
+import jetbrains.buildServer.util.FileUtil;
+import jetbrains.buildServer.util.TCStreamUtil;
+import jetbrains.buildServer.util.browser.Element;
+import jetbrains.buildServer.util.browser.FileSystemBrowser;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Reads several byte ranges of the same element within one response.
+ * Local files are read via positioned {@link FileChannel} reads, other elements reuse a single input stream
+ * while the ranges go forward and reopen it only when a range starts before the current position.
+ */
+class ElementContentReader implements FilesSubResource.ContentRangesReader {
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  @NotNull private final Element myElement;
+  @Nullable private final File myFile;
+  @Nullable private FileChannel myChannel;
+  @Nullable private InputStream myStream;
+  private long myStreamPosition;
+  @Nullable private byte[] myBuffer;
+
+  ElementContentReader(@NotNull final Element element) {
+    myElement = element;
+    myFile = getLocalFile(element);
+  }
+
+  @Override
+  public void write(@NotNull final OutputStream out, final long startOffset, final long length) throws IOException {
+    if (myFile != null) {
+      writeFromChannel(out, startOffset, length);
+    } else {
+      writeFromStream(out, startOffset, length);
+    }
+  }
+
+  private void writeFromChannel(@NotNull final OutputStream out, final long startOffset, final long length) throws IOException {
+    if (myChannel == null) {
+      //noinspection ConstantConditions
+      myChannel = FileChannel.open(myFile.toPath(), StandardOpenOption.READ);
+    }
+    final ByteBuffer buffer = ByteBuffer.wrap(getBuffer());
+    long position = startOffset;
+    long remaining = length;
+    while (remaining > 0) {
+      buffer.clear();
+      buffer.limit((int)Math.min(buffer.capacity(), remaining));
+      final int read = myChannel.read(buffer, position);
+      if (read < 0) {
+        throw new IOException("Unexpected end of file '" + myElement.getFullName() + "' at position " + position);
+      }
+      out.write(buffer.array(), 0, read);
+      position += read;
+      remaining -= read;
+    }
+  }
+
+  private void writeFromStream(@NotNull final OutputStream out, final long startOffset, final long length) throws IOException {
+    if (myStream == null || startOffset < myStreamPosition) {
+      FileUtil.close(myStream);
+      myStream = myElement.getInputStream();
+      myStreamPosition = 0;
+    }
+    TCStreamUtil.skip(myStream, startOffset - myStreamPosition);
+    TCStreamUtil.writeBinary(myStream, length, out);
+    myStreamPosition = startOffset + length;
+  }
+
+  @NotNull
+  private byte[] getBuffer() {
+    if (myBuffer == null) {
+      myBuffer = new byte[BUFFER_SIZE];
+    }
+    return myBuffer;
+  }
+
+  @Override
+  public void close() {
+    FileUtil.close(myChannel);
+    FileUtil.close(myStream);
+    myChannel = null;
+    myStream = null;
+  }
+
+  @Nullable
+  static File getLocalFile(@NotNull final Element element) {
+    if (element instanceof FileSystemBrowser.FileElement) {
+      return ((FileSystemBrowser.FileElement)element).getFile();
+    }
+    if (element instanceof BuildArtifactsFinder.ArtifactTreeElementWrapper) {
+      return ((BuildArtifactsFinder.ArtifactTreeElementWrapper)element).getFile();
+    }
+    return null;
+  }
+}
@@ -20,13 +20,18 @@ import com.google.common.base.Stopwatch;
 import com.intellij.openapi.diagnostic.Logger;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -34,6 +39,8 @@ import javax.ws.rs.*;
 import javax.ws.rs.core.*;
 import jetbrains.buildServer.controllers.HttpDownloadProcessor;
 import jetbrains.buildServer.server.rest.data.ArchiveElement;
+import jetbrains.buildServer.server.rest.data.archive.ArchiveWorkers;
+import jetbrains.buildServer.server.rest.data.archive.StoredZipLayoutCache;
 import jetbrains.buildServer.server.rest.data.finder.impl.BuildArtifactsFinder;
 import jetbrains.buildServer.server.rest.data.Locator;
 import jetbrains.buildServer.server.rest.errors.BadRequestException;
@@ -65,6 +72,9 @@ public class FilesSubResource {
   public static final String CONTENT = "/content";
   public static final String CHILDREN = "/children";
 
+  public static final String MULTIPART_RANGES_MAX_COUNT = "rest.files.multipartRanges.maxCount";
+  private static final String MULTIPART_BYTERANGES = "multipart/byteranges";
+
   private final Provider myProvider;
   private final String myUrlPrefix;
   @NotNull
@@ -330,7 +340,9 @@ public class FilesSubResource {
                             @QueryParam("basePath") final String basePath,
                             @QueryParam("locator") final String locator,
                             @QueryParam("name") final String name,
+                            @QueryParam("compression") final String compression,
                             @Context HttpServletRequest request) {
+    final boolean storedOnly = isStoredOnlyArchive(compression);
     final String processedPath = myProvider.preprocess(StringUtil.removeLeadingSlash(path));
     String actualBasePath = basePath != null ? myProvider.preprocess(basePath) : processedPath;
     String finalName = myProvider.preprocess(name);
@@ -345,11 +357,12 @@ public class FilesSubResource {
     final List<ArtifactTreeElement> elements = BuildArtifactsFinder.getItems(myProvider.getElement(processedPath), actualBasePath, actualLocator, urlBuilder,
                                                                              myBeanContext.getServiceLocator());
 
-    final ArchiveElement archiveElement = new ArchiveElement(elements, finalName);
+    final ArchiveElement archiveElement = new ArchiveElement(elements, finalName, storedOnly, myBeanContext.getSingletonService(ArchiveWorkers.class),
+                                                             myBeanContext.getSingletonService(StoredZipLayoutCache.class), myProvider.getArchiveLayoutCacheScope());
     final Response.ResponseBuilder builder = getContentByStream(archiveElement, request, new StreamingOutputProvider() {
       @Override
       public boolean isRangeSupported() {
-        return false;
+        return archiveElement.isRangeSupported();
       }
 
       @Override
@@ -370,6 +383,15 @@ public class FilesSubResource {
     return builder.build();
   }
 
+  /**
+   * "none" produces an archive with stored entries which has known size and can be downloaded in parts (e.g. to resume an interrupted download)
+   */
+  private static boolean isStoredOnlyArchive(@Nullable final String compression) {
+    if (compression == null || "auto".equals(compression)) return false;
+    if ("none".equals(compression)) return true;
+    throw new BadRequestException("Wrong value of \"compression\" parameter: \"" + compression + "\". Supported are: [auto, none]");
+  }
+
   public static FileApiUrlBuilder fileApiUrlBuilder(@Nullable final String locator, @NotNull final String urlPathPrefix) {
     return new FileApiUrlBuilder() {
       @Override
@@ -415,6 +437,12 @@ public class FilesSubResource {
       public StreamingOutput getStreamingOutput(@Nullable final Long startOffset, @Nullable final Long length) {
         return FilesSubResource.getStreamingOutput(element, startOffset, length);
       }
+
+      @NotNull
+      @Override
+      public ContentRangesReader getRangesReader() {
+        return new ElementContentReader(element);
+      }
     });
   }
 
@@ -438,7 +466,16 @@ public class FilesSubResource {
       //just do not set size in the case
     }
 
+    String contentType = null;
+    if (TeamCityProperties.getBooleanOrTrue("rest.build.artifacts.setMimeType")) {
+      contentType = WebUtil.getMimeType(request, element.getName());
+    }
+    if (contentType == null) {
+      contentType = MediaType.APPLICATION_OCTET_STREAM;
+    }
+
     Response.ResponseBuilder builder;
+    String multipartBoundary = null;
     if (StringUtil.isEmpty(rangeHeader)) {
       builder = Response.ok().entity(streamingOutputProvider.getStreamingOutput(null, null));
       if (fullFileSize != null) {
@@ -450,9 +487,21 @@ public class FilesSubResource {
       }
       try {
         HttpByteRange range = new HttpByteRange(rangeHeader, fullFileSize);
-        //todo: support requests with "Range: bytes=XX-" header and unknown content-length via multipart/byteranges Content-Type including Content-Range fields for each part
         if (range.getRangesCount() > 1) {
-          builder = Response.status(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE).entity("Multiple Range header ranges are not (yet) supported");
+          final int maxRanges = TeamCityProperties.getInteger(MULTIPART_RANGES_MAX_COUNT, 50);
+          if (fullFileSize == null) {
+            //todo: support requests with "Range: bytes=XX-" header and unknown content-length
+            builder = Response.status(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE).entity("Multiple Range header ranges are not supported for content of unknown size");
+          } else if (range.getRangesCount() > maxRanges) {
+            builder = Response.status(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE).entity("Too many ranges in Range header: " + range.getRangesCount() + ", at most " + maxRanges + " are supported");
+            builder.header("Content-Range", HttpByteRange.getContentRangeHeaderValueFor416Response(fullFileSize));
+          } else {
+            multipartBoundary = UUID.randomUUID().toString().replace("-", "");
+            final MultipartRanges multipartRanges = new MultipartRanges(range, multipartBoundary, contentType);
+            builder = Response.status(HttpServletResponse.SC_PARTIAL_CONTENT);
+            builder.entity(getMultipartStreamingOutput(element, multipartRanges, streamingOutputProvider));
+            builder.header(HttpHeaders.CONTENT_LENGTH, multipartRanges.getContentLength());
+          }
         } else {
           final HttpByteRange.SimpleRange firstRange = range.getSimpleRangesIterator().next();
 
@@ -474,10 +523,10 @@ public class FilesSubResource {
 
     builder.header("Accept-Ranges", HttpByteRange.RANGE_UNIT_BYTES);
 
-    if (TeamCityProperties.getBooleanOrTrue("rest.build.artifacts.setMimeType")) {
-      builder = builder.type(WebUtil.getMimeType(request, element.getName()));
+    if (multipartBoundary != null) {
+      builder = builder.type(MULTIPART_BYTERANGES + "; boundary=" + multipartBoundary);
     } else {
-      builder = builder.type(MediaType.APPLICATION_OCTET_STREAM_TYPE);
+      builder = builder.type(contentType);
     }
     if (TeamCityProperties.getBooleanOrTrue("rest.build.artifacts.forceContentDisposition.Attachment")) {
       // make sure the file is not displayed in the browser (TW-27206)
@@ -531,10 +580,95 @@ public class FilesSubResource {
     };
   }
 
+  @NotNull
+  private static StreamingOutput getMultipartStreamingOutput(@NotNull final Element element,
+                                                             @NotNull final MultipartRanges multipartRanges,
+                                                             @NotNull final StreamingOutputProvider streamingOutputProvider) {
+    return new StreamingOutput() {
+      @Override
+      public void write(final OutputStream output) throws WebApplicationException {
+        Stopwatch action = Stopwatch.createStarted();
+        final ContentRangesReader reader = streamingOutputProvider.getRangesReader();
+        try {
+          multipartRanges.write(output, reader);
+        } catch (IOException e) {
+          throw new OperationException("Error while processing file '" + element.getFullName() + "': " + e.toString(), e);
+        } finally {
+          FileUtil.close(reader);
+          if (LOG.isDebugEnabled()) {
+            LOG.debug("Finished processing " + multipartRanges.getRangesCount() + " ranges of file \"" + element.getFullName() + "\"" +
+                      " in " + TimePrinter.createMillisecondsFormatter().formatTime(action.elapsed(TimeUnit.MILLISECONDS)) + " for a REST request");
+          }
+        }
+      }
+    };
+  }
+
+  /**
+   * Body of a "multipart/byteranges" response: each range is preceded by the boundary and own Content-Type and Content-Range headers.
+   */
+  static class MultipartRanges {
+    @NotNull private final List<HttpByteRange.SimpleRange> myRanges = new ArrayList<>();
+    @NotNull private final List<byte[]> myPartHeaders = new ArrayList<>();
+    @NotNull private final byte[] myPartSeparator = "\r\n".getBytes(StandardCharsets.ISO_8859_1);
+    @NotNull private final byte[] myClosingBoundary;
+
+    MultipartRanges(@NotNull final HttpByteRange range, @NotNull final String boundary, @NotNull final String contentType) {
+      final Iterator<HttpByteRange.SimpleRange> it = range.getSimpleRangesIterator();
+      while (it.hasNext()) {
+        final HttpByteRange.SimpleRange simpleRange = it.next();
+        myRanges.add(simpleRange);
+        myPartHeaders.add(("--" + boundary + "\r\n" +
+                           "Content-Type: " + contentType + "\r\n" +
+                           "Content-Range: " + range.getContentRangeHeaderValue(simpleRange) + "\r\n" +
+                           "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+      }
+      myClosingBoundary = ("--" + boundary + "--\r\n").getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    int getRangesCount() {
+      return myRanges.size();
+    }
+
+    long getContentLength() {
+      long result = myClosingBoundary.length;
+      for (int i = 0; i < myRanges.size(); i++) {
+        result += myPartHeaders.get(i).length + myRanges.get(i).getLength() + myPartSeparator.length;
+      }
+      return result;
+    }
+
+    void write(@NotNull final OutputStream output, @NotNull final ContentRangesReader reader) throws IOException {
+      for (int i = 0; i < myRanges.size(); i++) {
+        final HttpByteRange.SimpleRange simpleRange = myRanges.get(i);
+        output.write(myPartHeaders.get(i));
+        reader.write(output, simpleRange.getBeginIndex(), simpleRange.getLength());
+        output.write(myPartSeparator);
+      }
+      output.write(myClosingBoundary);
+    }
+  }
+
   public interface StreamingOutputProvider {
     boolean isRangeSupported();
 
     StreamingOutput getStreamingOutput(@Nullable final Long startOffset, @Nullable final Long length);
+
+    /**
+     * @return reader used to serve several ranges of the content within one response, it is closed once the response is written
+     */
+    @NotNull
+    default ContentRangesReader getRangesReader() {
+      return (output, startOffset, length) -> getStreamingOutput(startOffset, length).write(output);
+    }
+  }
+
+  public interface ContentRangesReader extends Closeable {
+    void write(@NotNull OutputStream output, long startOffset, long length) throws IOException;
+
+    @Override
+    default void close() {
+    }
   }
 
   abstract static class Provider {
@@ -568,6 +702,14 @@ public class FilesSubResource {
       return path == null ? "" : path;
     }
 
+    /**
+     * @return identifier of the files source (e.g. the build) to share layouts of the archives without compression between requests, null if they should not be shared
+     */
+    @Nullable
+    public String getArchiveLayoutCacheScope() {
+      return null;
+    }
+
     /**
      * @return false if no further processing is necessary for the request
      */
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.rest.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import jetbrains.buildServer.server.rest.errors.OperationException;
+import jetbrains.buildServer.server.rest.model.ItemsProviders;
+import jetbrains.buildServer.server.rest.model.PagerData;
+import jetbrains.buildServer.util.ItemProcessor;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Retrieves the items either all at once as any other retriever or, via {@link #stream(ItemProcessor)}, one by one without keeping them in memory.
+ * The items can be retrieved only once, count and pager data are available after that.
+ */
+public class StreamingItemsRetriever<T> implements ItemsProviders.ItemsRetriever<T> {
+  @NotNull private final ItemsProviders.ItemsStreamer<T> myStreamer;
+  private boolean myProcessed = false;
+  @Nullable private List<T> myItems;
+  private int myCount;
+  @Nullable private PagerData myPagerData;
+
+  public StreamingItemsRetriever(@NotNull final ItemsProviders.ItemsStreamer<T> streamer) {
+    myStreamer = streamer;
+  }
+
+  public void stream(@NotNull final ItemProcessor<T> processor) {
+    if (myProcessed) {
+      throw new OperationException("Items are already retrieved");
+    }
+    myProcessed = true;
+    myPagerData = myStreamer.stream(item -> {
+      myCount++;
+      return processor.processItem(item);
+    });
+  }
+
+  public boolean isStreamed() {
+    return myProcessed && myItems == null;
+  }
+
+  /**
+   * @return all the items or null if they were already streamed
+   */
+  @Nullable
+  @Override
+  public List<T> getItems() {
+    if (!myProcessed) {
+      final List<T> items = new ArrayList<>();
+      stream(item -> items.add(item));
+      myItems = items;
+    }
+    return myItems;
+  }
+
+  @Override
+  public Integer getCount() {
+    getItems();
+    return myCount;
+  }
+
+  @Override
+  public boolean isCountCheap() {
+    return myProcessed;
+  }
+
+  @Nullable
+  @Override
+  public PagerData getPagerData() {
+    getItems();
+    return myPagerData;
+  }
+}
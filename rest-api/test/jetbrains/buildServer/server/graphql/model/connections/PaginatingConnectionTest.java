@@ -16,14 +16,16 @@
 
 package jetbrains.buildServer.server.graphql.model.connections;
 
-import java.util.Arrays;
-import java.util.List;
+import graphql.relay.PageInfo;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.testng.annotations.Test;
 
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 public class PaginatingConnectionTest {
   private final PaginationArguments EVERYTHING = new PaginationArguments() {
@@ -95,6 +97,75 @@ public class PaginatingConnectionTest {
     }
   }
 
+  @Test
+  public void testOffsetCursor() {
+    List<String> data = Arrays.asList("A", "B", "C", "D", "E");
+    PaginationArgumentsProvider provider = new PaginationArgumentsProviderImpl();
+    AtomicInteger edgesCreated = new AtomicInteger();
+
+    PaginatingConnection<String, Model, StringEdge> firstPage = new PaginatingConnection<>(data, s -> {
+      edgesCreated.incrementAndGet();
+      return new StringEdge(s);
+    }, provider.get(2, null, PaginationArgumentsProvider.FallbackBehaviour.RETURN_EVERYTHING));
+
+    assertEquals(Arrays.asList("A", "B"), values(firstPage.getEdges().getData()));
+    PageInfo pageInfo = firstPage.getPageInfo();
+    assertTrue(pageInfo.isHasNextPage());
+    assertFalse(pageInfo.isHasPreviousPage());
+    assertEquals("Edges must be created only for the returned page", 2, edgesCreated.get());
+
+    edgesCreated.set(0);
+    PaginatingConnection<String, Model, StringEdge> lastPage = new PaginatingConnection<>(data, s -> {
+      edgesCreated.incrementAndGet();
+      return new StringEdge(s);
+    }, provider.get(5, "B", PaginationArgumentsProvider.FallbackBehaviour.RETURN_EVERYTHING));
+    PaginatingConnection<String, Model, StringEdge> secondPage = new PaginatingConnection<>(data, StringEdge::new, provider.get(2, pageInfo.getEndCursor().getValue(), PaginationArgumentsProvider.FallbackBehaviour.RETURN_EVERYTHING));
+
+    assertEquals(Arrays.asList("C", "D"), values(secondPage.getEdges().getData()));
+    assertTrue(secondPage.getPageInfo().isHasNextPage());
+    assertTrue(secondPage.getPageInfo().isHasPreviousPage());
+
+    assertEquals(Arrays.asList("C", "D", "E"), values(lastPage.getEdges().getData()));
+    assertFalse(lastPage.getPageInfo().isHasNextPage());
+    assertEquals("Key cursor lookup without cursor function creates edges while scanning", 5, edgesCreated.get());
+  }
+
+  @Test
+  public void testCursorFunction() {
+    Set<String> data = new LinkedHashSet<>(Arrays.asList("A", "B", "C", "D"));
+    PaginationArgumentsProvider provider = new PaginationArgumentsProviderImpl();
+    AtomicInteger edgesCreated = new AtomicInteger();
+
+    PaginatingConnection<String, Model, StringEdge> connection = new PaginatingConnection<>(data, s -> {
+      edgesCreated.incrementAndGet();
+      return new StringEdge(s);
+    }, s -> s, provider.get(1, "B", PaginationArgumentsProvider.FallbackBehaviour.RETURN_EVERYTHING));
+
+    assertEquals(Collections.singletonList("C"), values(connection.getEdges().getData()));
+    assertEquals(1, edgesCreated.get());
+    assertTrue(connection.getPageInfo().isHasNextPage());
+  }
+
+  @Test
+  public void testBackward() {
+    List<String> data = Arrays.asList("A", "B", "C", "D");
+    PaginationArgumentsProvider provider = new PaginationArgumentsProviderImpl();
+
+    PaginatingConnection<String, Model, StringEdge> lastPage = new PaginatingConnection<>(data, StringEdge::new, provider.get(null, null, 2, null, PaginationArgumentsProvider.FallbackBehaviour.RETURN_EVERYTHING));
+    assertEquals(Arrays.asList("D", "C"), values(lastPage.getEdges().getData()));
+    assertTrue(lastPage.getPageInfo().isHasNextPage());
+
+    String cursor = lastPage.getPageInfo().getEndCursor().getValue();
+    PaginatingConnection<String, Model, StringEdge> previousPage = new PaginatingConnection<>(data, StringEdge::new, provider.get(null, null, 2, cursor, PaginationArgumentsProvider.FallbackBehaviour.RETURN_EVERYTHING));
+    assertEquals(Arrays.asList("B", "A"), values(previousPage.getEdges().getData()));
+    assertFalse(previousPage.getPageInfo().isHasNextPage());
+  }
+
+  @NotNull
+  private static List<String> values(@NotNull List<StringEdge> edges) {
+    return edges.stream().map(e -> e.getNode().getData().myValue).collect(Collectors.toList());
+  }
+
   class Model {
     public String myValue;
 
@@ -16,12 +16,27 @@
 
 package jetbrains.buildServer.server.graphql.resolver;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import jetbrains.buildServer.server.graphql.model.Project;
+import jetbrains.buildServer.server.graphql.model.buildType.BuildTypeType;
 import jetbrains.buildServer.server.graphql.model.connections.ProjectsConnection;
+import jetbrains.buildServer.server.graphql.util.DataLoaders;
+import jetbrains.buildServer.server.rest.data.PagedSearchResult;
+import jetbrains.buildServer.server.rest.data.finder.DelegatingFinder;
+import jetbrains.buildServer.server.rest.data.finder.Finder;
 import jetbrains.buildServer.server.rest.data.finder.impl.AgentFinder;
 import jetbrains.buildServer.server.rest.data.finder.impl.BuildTypeFinder;
+import jetbrains.buildServer.server.rest.errors.NotFoundException;
+import jetbrains.buildServer.server.rest.util.BuildTypeOrTemplate;
+import jetbrains.buildServer.serverSide.BuildTypeTemplate;
 import jetbrains.buildServer.serverSide.impl.BuildTypeImpl;
 import jetbrains.buildServer.serverSide.impl.ProjectEx;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -29,6 +44,9 @@ import org.testng.annotations.Test;
 public class BuildTypeResolverTest extends BaseResolverTest {
   private BuildTypeResolver myResolver;
 
+  private final AtomicInteger myFinderInvocations = new AtomicInteger();
+  private Finder<BuildTypeOrTemplate> myCountingBuildTypeFinder;
+
   @Override
   @BeforeMethod(alwaysRun = true)
   public void setUp() throws Exception {
@@ -36,15 +54,30 @@ public class BuildTypeResolverTest extends BaseResolverTest {
 
     myResolver = new BuildTypeResolver();
 
-    myResolver.setBuildTypeFinder(
-      new BuildTypeFinder(
-        myFixture.getProjectManager(),
-        myProjectFinder,
-        new AgentFinder(myAgentManager, myFixture),
-        myPermissionChecker,
-        myServer
-      )
+    BuildTypeFinder buildTypeFinder = new BuildTypeFinder(
+      myFixture.getProjectManager(),
+      myProjectFinder,
+      new AgentFinder(myAgentManager, myFixture),
+      myPermissionChecker,
+      myServer
     );
+    myResolver.setBuildTypeFinder(buildTypeFinder);
+
+    myCountingBuildTypeFinder = new DelegatingFinder<BuildTypeOrTemplate>(buildTypeFinder) {
+      @NotNull
+      @Override
+      public PagedSearchResult<BuildTypeOrTemplate> getItems(@Nullable String locatorText) {
+        myFinderInvocations.incrementAndGet();
+        return super.getItems(locatorText);
+      }
+
+      @NotNull
+      @Override
+      public BuildTypeOrTemplate getItem(@Nullable String locatorText) {
+        myFinderInvocations.incrementAndGet();
+        return super.getItem(locatorText);
+      }
+    };
   }
 
   public void basicAncestorProjects() throws Exception {
@@ -57,7 +90,7 @@ public class BuildTypeResolverTest extends BaseResolverTest {
     ProjectsConnection ancestors = myResolver.ancestorProjects(
       new jetbrains.buildServer.server.graphql.model.buildType.BuildType(realBuildType),
       myDataFetchingEnvironment
-    );
+    ).get();
 
     assertEquals(5, ancestors.getCount()); //_Root, p0 .. p3
 
@@ -72,4 +105,93 @@ public class BuildTypeResolverTest extends BaseResolverTest {
     );
 
   }
-}
\ No newline at end of file
+
+  public void ancestorProjectsAreBatched() throws Exception {
+    ProjectEx p0 = myFixture.createProject("p0");
+    ProjectEx p1 = myFixture.createProject("p1", p0);
+
+    // finder invocations should not depend on the number of the requested build types
+    assertEquals(1, loadAncestorsOfBuildTypes(p0, p1, 3));
+    assertEquals(1, loadAncestorsOfBuildTypes(p0, p1, 30));
+    assertEquals(1, loadAncestorsOfBuildTypes(p0, p1, 300));
+
+    // unknown build type is found by splitting the batch
+    int invocations = loadAncestorsOfBuildTypes(p0, p1, 30, "unknown");
+    assertTrue("Unexpected finder invocations: " + invocations, invocations < 15);
+  }
+
+  public void ancestorProjectsOfMissingBuildType() throws Exception {
+    jetbrains.buildServer.server.graphql.model.buildType.BuildType missing =
+      new jetbrains.buildServer.server.graphql.model.buildType.BuildType("unknown", "unknown", BuildTypeType.REGULAR);
+
+    try {
+      myResolver.ancestorProjects(missing, myDataFetchingEnvironment);
+      fail("Missing build type should not be found");
+    } catch (NotFoundException e) {
+      // expected
+    }
+
+    myDataFetchingEnvironment.setDataLoaderRegistry(new DataLoaders(myCountingBuildTypeFinder, myProjectFinder, myAgentManager).createRegistry());
+    CompletableFuture<ProjectsConnection> result = myResolver.ancestorProjects(missing, myDataFetchingEnvironment);
+    myDataFetchingEnvironment.getDataLoaderRegistry().dispatchAll();
+    assertNotFound(result);
+    myDataFetchingEnvironment.setDataLoaderRegistry(null);
+  }
+
+  public void ancestorProjectsOfTemplate() throws Exception {
+    BuildTypeTemplate template = myFixture.createProject("p0").createBuildTypeTemplate("t0", "t0");
+    jetbrains.buildServer.server.graphql.model.buildType.BuildType source =
+      new jetbrains.buildServer.server.graphql.model.buildType.BuildType(template.getExternalId(), template.getName(), BuildTypeType.REGULAR);
+
+    assertEquals(0, myResolver.ancestorProjects(source, myDataFetchingEnvironment).get().getCount());
+
+    myDataFetchingEnvironment.setDataLoaderRegistry(new DataLoaders(myCountingBuildTypeFinder, myProjectFinder, myAgentManager).createRegistry());
+    CompletableFuture<ProjectsConnection> result = myResolver.ancestorProjects(source, myDataFetchingEnvironment);
+    myDataFetchingEnvironment.getDataLoaderRegistry().dispatchAll();
+    assertEquals(0, result.get().getCount());
+    myDataFetchingEnvironment.setDataLoaderRegistry(null);
+  }
+
+  private static void assertNotFound(@NotNull CompletableFuture<?> result) throws InterruptedException {
+    try {
+      result.get();
+      fail("Missing build type should not be found");
+    } catch (ExecutionException e) {
+      assertTrue("Unexpected error: " + e.getCause(), e.getCause() instanceof NotFoundException);
+    }
+  }
+
+  private int loadAncestorsOfBuildTypes(@NotNull ProjectEx p0, @NotNull ProjectEx p1, int count, String... unknownIds) throws Exception {
+    List<BuildTypeImpl> buildTypes = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      buildTypes.add(myFixture.createBuildType(i % 2 == 0 ? p0 : p1, "bt" + count + "_" + i, "test"));
+    }
+
+    myDataFetchingEnvironment.setDataLoaderRegistry(new DataLoaders(myCountingBuildTypeFinder, myProjectFinder, myAgentManager).createRegistry());
+    myFinderInvocations.set(0);
+
+    List<CompletableFuture<ProjectsConnection>> results = new ArrayList<>();
+    for (BuildTypeImpl buildType : buildTypes) {
+      // the same build type requested twice within a request is loaded only once
+      results.add(myResolver.ancestorProjects(new jetbrains.buildServer.server.graphql.model.buildType.BuildType(buildType), myDataFetchingEnvironment));
+      results.add(myResolver.ancestorProjects(new jetbrains.buildServer.server.graphql.model.buildType.BuildType(buildType), myDataFetchingEnvironment));
+    }
+    List<CompletableFuture<ProjectsConnection>> missing = new ArrayList<>();
+    for (String id : unknownIds) {
+      missing.add(myResolver.ancestorProjects(new jetbrains.buildServer.server.graphql.model.buildType.BuildType(id, id, BuildTypeType.REGULAR), myDataFetchingEnvironment));
+    }
+    assertEquals(0, myFinderInvocations.get());
+
+    myDataFetchingEnvironment.getDataLoaderRegistry().dispatchAll();
+
+    for (int i = 0; i < results.size(); i++) {
+      assertEquals(i / 2 % 2 == 0 ? 2 : 3, results.get(i).get().getCount()); // _Root, p0 or _Root, p0, p1
+    }
+    for (CompletableFuture<ProjectsConnection> result : missing) {
+      assertNotFound(result);
+    }
+
+    myDataFetchingEnvironment.setDataLoaderRegistry(null);
+    return myFinderInvocations.get();
+  }
+}
@@ -47,6 +47,8 @@ public class MockDataFetchingEnvironment implements DataFetchingEnvironment {
   private Object myLocalContext;
   @Nullable
   private DataFetchingFieldSelectionSet mySelectionSet;
+  @Nullable
+  private DataLoaderRegistry myDataLoaderRegistry;
 
   @Override
   public <T> T getSource() {
@@ -170,12 +172,16 @@ public class MockDataFetchingEnvironment implements DataFetchingEnvironment {
 
   @Override
   public <K, V> DataLoader<K, V> getDataLoader(String dataLoaderName) {
-    return null;
+    return myDataLoaderRegistry == null ? null : myDataLoaderRegistry.getDataLoader(dataLoaderName);
   }
 
   @Override
   public DataLoaderRegistry getDataLoaderRegistry() {
-    return null;
+    return myDataLoaderRegistry;
+  }
+
+  public void setDataLoaderRegistry(@Nullable DataLoaderRegistry dataLoaderRegistry) {
+    myDataLoaderRegistry = dataLoaderRegistry;
   }
 
   @Override
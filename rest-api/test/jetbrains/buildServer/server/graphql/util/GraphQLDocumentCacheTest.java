@@ -0,0 +1,73 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.graphql.util;
+
+import graphql.ExecutionInput;
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+import graphql.parser.Parser;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import jetbrains.buildServer.BaseTestCase;
+import org.testng.annotations.Test;
+
+@Test
+public class GraphQLDocumentCacheTest extends BaseTestCase {
+  private final AtomicInteger myParseCount = new AtomicInteger();
+  private final Function<ExecutionInput, PreparsedDocumentEntry> myParser = input -> {
+    myParseCount.incrementAndGet();
+    return new PreparsedDocumentEntry(new Parser().parseDocument(input.getQuery()));
+  };
+
+  public void testDocumentIsParsedOnce() {
+    GraphQLDocumentCache cache = new GraphQLDocumentCache(10);
+    String query = "{ agentPools { edges { node { id name } } } }";
+
+    PreparsedDocumentEntry first = cache.getDocument(input(query), myParser);
+    PreparsedDocumentEntry second = cache.getDocument(input(query), myParser);
+
+    assertSame(first, second);
+    assertEquals(1, myParseCount.get());
+
+    cache.getDocument(input("{ agentTypes { count } }"), myParser);
+    assertEquals(2, myParseCount.get());
+  }
+
+  public void testPersistedQuery() {
+    GraphQLDocumentCache cache = new GraphQLDocumentCache(10);
+    String query = "{ agentPools { edges { node { id } } } }";
+    String hash = GraphQLDocumentCache.getHash(query);
+
+    assertEquals(64, hash.length());
+    assertNull(cache.getQuery(hash));
+
+    cache.getDocument(input(query), myParser);
+    assertEquals(query, cache.getQuery(hash));
+  }
+
+  public void testCacheIsBounded() {
+    GraphQLDocumentCache cache = new GraphQLDocumentCache(2);
+    for (int i = 0; i < 10; i++) {
+      cache.getDocument(input("{ agentPool(id: " + i + ") { id } }"), myParser);
+    }
+    assertEquals(10, myParseCount.get());
+    assertNull(cache.getQuery(GraphQLDocumentCache.getHash("{ agentPool(id: 0) { id } }")));
+  }
+
+  private static ExecutionInput input(String query) {
+    return ExecutionInput.newExecutionInput().query(query).build();
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.graphql.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import jetbrains.buildServer.BaseTestCase;
+import org.testng.annotations.Test;
+
+@Test
+public class GraphQLResolverExecutorTest extends BaseTestCase {
+  private static final int TASK_DURATION_MS = 20;
+
+  public void testPerQueryLimit() throws Exception {
+    setInternalProperty("teamcity.graphql.resolvers.perQueryLimit", "2");
+    GraphQLResolverExecutor executor = new GraphQLResolverExecutor(1, 8, false);
+
+    try {
+      AtomicInteger running = new AtomicInteger();
+      AtomicInteger maxRunning = new AtomicInteger();
+      runQuery(executor, 20, running, maxRunning);
+
+      assertEquals(2, maxRunning.get());
+      assertTrue(executor.getStatistics(), executor.getStatistics().contains("deferred by per-query limit 18"));
+    } finally {
+      executor.destroy();
+    }
+  }
+
+  public void testConcurrentQueriesScale() throws Exception {
+    setInternalProperty("teamcity.graphql.resolvers.perQueryLimit", "4");
+    GraphQLResolverExecutor executor = new GraphQLResolverExecutor(1, 16, false);
+
+    int queries = 8;
+    int tasksPerQuery = 8;
+    ExecutorService clients = Executors.newFixedThreadPool(queries);
+    try {
+      long start = System.nanoTime();
+      List<Future<?>> results = new ArrayList<>();
+      for (int i = 0; i < queries; i++) {
+        results.add(clients.submit(() -> {
+          runQuery(executor, tasksPerQuery, new AtomicInteger(), new AtomicInteger());
+          return null;
+        }));
+      }
+      for (Future<?> result : results) {
+        result.get(1, TimeUnit.MINUTES);
+      }
+      long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+      // a single thread would need queries * tasksPerQuery * TASK_DURATION_MS = 1280 ms
+      long sequentialMs = (long)queries * tasksPerQuery * TASK_DURATION_MS;
+      assertTrue("Elapsed " + elapsedMs + " ms, " + executor.getStatistics(), elapsedMs < sequentialMs / 2);
+    } finally {
+      clients.shutdownNow();
+      executor.destroy();
+    }
+  }
+
+  public void testDestroyShutsDownPool() throws Exception {
+    GraphQLResolverExecutor executor = new GraphQLResolverExecutor(1, 4, false);
+    runQuery(executor, 4, new AtomicInteger(), new AtomicInteger());
+
+    executor.destroy();
+
+    try {
+      executor.execute(() -> {});
+      fail("Tasks should not be accepted after the executor is destroyed");
+    } catch (RejectedExecutionException e) {
+      // expected
+    }
+  }
+
+  private static void runQuery(GraphQLResolverExecutor executor, int tasks, AtomicInteger running, AtomicInteger maxRunning) throws Exception {
+    CountDownLatch finished = new CountDownLatch(tasks);
+    executor.runQuery(() -> {
+      for (int i = 0; i < tasks; i++) {
+        executor.execute(() -> {
+          maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+          try {
+            Thread.sleep(TASK_DURATION_MS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          } finally {
+            running.decrementAndGet();
+            finished.countDown();
+          }
+        });
+      }
+      return null;
+    });
+    assertTrue(finished.await(1, TimeUnit.MINUTES));
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.rest;
+
+import java.util.concurrent.atomic.AtomicLong;
+import jetbrains.buildServer.BaseTestCase;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class AuthTokenAttemptsThrottlerTest extends BaseTestCase {
+  private AtomicLong myTime;
+  private AuthTokenAttemptsThrottler myThrottler;
+
+  @Override
+  @BeforeMethod
+  public void setUp() throws Exception {
+    super.setUp();
+    setInternalProperty(AuthTokenAttemptsThrottler.INTERVAL_SECONDS, "10");
+    setInternalProperty(AuthTokenAttemptsThrottler.BURST, "3");
+    myTime = new AtomicLong(1_000_000);
+    myThrottler = new AuthTokenAttemptsThrottler(myTime::get);
+  }
+
+  @Test
+  public void testBurstThenInterval() {
+    for (int i = 0; i < 3; i++) {
+      assertEquals(0, myThrottler.getRetryAfterSeconds("1.1.1.1"));
+      myThrottler.registerFailedAttempt("1.1.1.1");
+    }
+    assertEquals(10, myThrottler.getRetryAfterSeconds("1.1.1.1"));
+    assertEquals("other addresses are not affected", 0, myThrottler.getRetryAfterSeconds("2.2.2.2"));
+
+    myTime.addAndGet(4_500);
+    assertEquals(6, myThrottler.getRetryAfterSeconds("1.1.1.1"));
+
+    myTime.addAndGet(5_500);
+    assertEquals(0, myThrottler.getRetryAfterSeconds("1.1.1.1"));
+    myThrottler.registerFailedAttempt("1.1.1.1");
+    assertEquals(10, myThrottler.getRetryAfterSeconds("1.1.1.1"));
+
+    assertTrue(myThrottler.getStatistics(), myThrottler.getStatistics().contains("Wrong authToken attempts: 4, blocked attempts: 3"));
+  }
+
+  @Test
+  public void testIdleAddressIsForgotten() {
+    for (int i = 0; i < 3; i++) {
+      myThrottler.registerFailedAttempt("1.1.1.1");
+    }
+    myTime.addAndGet(30_000);
+    assertEquals(0, myThrottler.getRetryAfterSeconds("1.1.1.1"));
+    myThrottler.registerFailedAttempt("1.1.1.1");
+    assertEquals("bucket starts full again", 0, myThrottler.getRetryAfterSeconds("1.1.1.1"));
+  }
+
+  @Test
+  public void testBoundedAddresses() {
+    setInternalProperty(AuthTokenAttemptsThrottler.MAX_TRACKED_ADDRESSES, "10");
+    for (int i = 0; i < 100; i++) {
+      myThrottler.registerFailedAttempt("10.0.0." + i);
+    }
+    assertTrue(myThrottler.getStatistics(), myThrottler.getStatistics().contains("(max 10)"));
+    assertFalse(myThrottler.getStatistics(), myThrottler.getStatistics().contains("tracked addresses: 100"));
+  }
+
+  @Test
+  public void testDisabled() {
+    setInternalProperty(AuthTokenAttemptsThrottler.INTERVAL_SECONDS, "0");
+    for (int i = 0; i < 10; i++) {
+      myThrottler.registerFailedAttempt("1.1.1.1");
+    }
+    assertEquals(0, myThrottler.getRetryAfterSeconds("1.1.1.1"));
+  }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.rest.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import jetbrains.buildServer.BaseTestCase;
+import jetbrains.buildServer.TempFiles;
+import jetbrains.buildServer.server.rest.data.archive.ArchiveWorkers;
+import jetbrains.buildServer.server.rest.data.archive.StoredZipLayoutCache;
+import jetbrains.buildServer.server.rest.data.finder.impl.BuildArtifactsFinder;
+import jetbrains.buildServer.util.browser.Browser;
+import jetbrains.buildServer.util.browser.BrowserException;
+import jetbrains.buildServer.util.browser.FileSystemBrowser;
+import jetbrains.buildServer.web.artifacts.browser.ArtifactTreeElement;
+import org.jetbrains.annotations.NotNull;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test
+public class ArchiveElementTest extends BaseTestCase {
+  private final TempFiles myTempFiles = new TempFiles();
+  private List<ArtifactTreeElement> myArtifacts;
+  private Map<String, byte[]> myContent;
+  private ArchiveWorkers myWorkers;
+  private StoredZipLayoutCache myLayoutCache;
+
+  @BeforeMethod
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    myWorkers = new ArchiveWorkers();
+    myLayoutCache = new StoredZipLayoutCache(myWorkers);
+    final File root = myTempFiles.createTempDir();
+    myContent = new LinkedHashMap<>();
+    final StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 5000; i++) {
+      text.append("line ").append(i).append('\n');
+    }
+    myContent.put("a.txt", text.toString().getBytes(StandardCharsets.UTF_8));
+    final byte[] random = new byte[20000];
+    new Random(42).nextBytes(random);
+    myContent.put("b.zip", random);
+    myContent.put("dir/c.txt", "content".getBytes(StandardCharsets.UTF_8));
+    myContent.put("dir/empty.txt", new byte[0]);
+    for (Map.Entry<String, byte[]> entry : myContent.entrySet()) {
+      final File file = new File(root, entry.getKey());
+      file.getParentFile().mkdirs();
+      Files.write(file.toPath(), entry.getValue());
+    }
+
+    final Browser browser = new FileSystemBrowser(root);
+    myArtifacts = new ArrayList<>();
+    for (String path : Arrays.asList("a.txt", "b.zip", "dir", "dir/c.txt", "dir/empty.txt")) {
+      myArtifacts.add(new BuildArtifactsFinder.ArtifactTreeElementWrapper(browser.getElement(path)));
+    }
+  }
+
+  @AfterMethod
+  @Override
+  public void tearDown() throws Exception {
+    myLayoutCache.destroy();
+    myWorkers.destroy();
+    myTempFiles.cleanup();
+    super.tearDown();
+  }
+
+  public void testCompressed() throws Exception {
+    final ArchiveElement archive = new ArchiveElement(myArtifacts, "test.zip", false, myWorkers);
+    assertFalse(archive.isRangeSupported());
+    assertEquals(-1, archive.getSize());
+
+    final Map<String, ZipEntry> entries = checkArchive(write(archive, null, null));
+    assertEquals(ZipEntry.DEFLATED, entries.get("a.txt").getMethod());
+    assertEquals(ZipEntry.STORED, entries.get("b.zip").getMethod());
+  }
+
+  public void testCompressedSequential() throws Exception {
+    setInternalProperty("rest.build.artifacts.archive.parallel.enabled", "false");
+    setInternalProperty("rest.build.artifacts.archive.maxBufferedEntrySize", "10");
+    checkArchive(write(new ArchiveElement(myArtifacts, "test.zip", false, myWorkers), null, null));
+  }
+
+  public void testStoredWithRanges() throws Exception {
+    final ArchiveElement archive = new ArchiveElement(myArtifacts, "test.zip", true, myWorkers);
+    assertTrue(archive.isRangeSupported());
+
+    final byte[] full = write(archive, null, null);
+    assertEquals(full.length, archive.getSize());
+    final Map<String, ZipEntry> entries = checkArchive(full);
+    for (ZipEntry entry : entries.values()) {
+      assertEquals(ZipEntry.STORED, entry.getMethod());
+    }
+
+    for (long start : new long[]{0, 1, 100, full.length / 2, full.length - 30, full.length - 1}) {
+      for (long length : new long[]{0, 1, 57, 5000, full.length}) {
+        final long actualLength = Math.min(length, full.length - start);
+        assertTrue(Arrays.equals(Arrays.copyOfRange(full, (int)start, (int)(start + actualLength)), write(archive, start, actualLength)));
+      }
+    }
+    assertTrue(Arrays.equals(Arrays.copyOfRange(full, 1000, full.length), write(archive, 1000L, null)));
+
+    // the archive should be the same for every request
+    assertTrue(Arrays.equals(full, write(new ArchiveElement(myArtifacts, "test.zip", true, myWorkers), null, null)));
+  }
+
+  public void testLargeEntriesAreReadOnce() throws Exception {
+    setInternalProperty("rest.build.artifacts.archive.maxBufferedEntrySize", "10");
+    final AtomicInteger reads = new AtomicInteger();
+    final Map<String, ZipEntry> entries = checkArchive(write(new ArchiveElement(countingReads(reads), "test.zip", false, myWorkers), null, null));
+    assertEquals(myContent.size(), reads.get());
+
+    // incompressible content is written with deflate level 0
+    assertEquals(ZipEntry.DEFLATED, entries.get("b.zip").getMethod());
+    assertTrue(entries.get("b.zip").getCompressedSize() >= myContent.get("b.zip").length);
+    assertTrue(entries.get("a.txt").getCompressedSize() < myContent.get("a.txt").length / 2);
+  }
+
+  public void testStoredLayoutIsShared() throws Exception {
+    final AtomicInteger reads = new AtomicInteger();
+    final List<ArtifactTreeElement> artifacts = countingReads(reads);
+    final byte[] full = write(new ArchiveElement(artifacts, "test.zip", true, myWorkers, myLayoutCache, "build:1"), null, null);
+
+    reads.set(0);
+    final ArchiveElement ranged = new ArchiveElement(artifacts, "test.zip", true, myWorkers, myLayoutCache, "build:1");
+    assertEquals(full.length, ranged.getSize());
+    assertEquals("the checksums are not computed again", 0, reads.get());
+    assertTrue(Arrays.equals(Arrays.copyOfRange(full, 0, 100), write(ranged, 0L, 100L)));
+    assertEquals("only the artifact in the range is read", 1, reads.get());
+
+    reads.set(0);
+    new ArchiveElement(artifacts, "test.zip", true, myWorkers, myLayoutCache, "build:2").getSize();
+    assertEquals("the layout is not shared for another build", myContent.size(), reads.get());
+
+    reads.set(0);
+    myLayoutCache.destroy();
+    new ArchiveElement(artifacts, "test.zip", true, myWorkers, myLayoutCache, "build:1").getSize();
+    assertEquals("the layouts are dropped on destroy", myContent.size(), reads.get());
+  }
+
+  @NotNull
+  private List<ArtifactTreeElement> countingReads(@NotNull final AtomicInteger reads) {
+    final List<ArtifactTreeElement> artifacts = new ArrayList<>();
+    for (ArtifactTreeElement artifact : myArtifacts) {
+      artifacts.add(new BuildArtifactsFinder.ArtifactTreeElementWrapper(artifact) {
+        @NotNull
+        @Override
+        public InputStream getInputStream() throws IllegalStateException, IOException, BrowserException {
+          reads.incrementAndGet();
+          return super.getInputStream();
+        }
+      });
+    }
+    return artifacts;
+  }
+
+  @NotNull
+  private static byte[] write(@NotNull final ArchiveElement archive, final Long startOffset, final Long length) throws IOException {
+    final ByteArrayOutputStream result = new ByteArrayOutputStream();
+    archive.getStreamingOutput(startOffset, length, () -> "test").write(result);
+    return result.toByteArray();
+  }
+
+  @NotNull
+  private Map<String, ZipEntry> checkArchive(@NotNull final byte[] archive) throws IOException {
+    final Map<String, ZipEntry> entries = new LinkedHashMap<>();
+    final Map<String, byte[]> content = new LinkedHashMap<>();
+    try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(archive))) {
+      ZipEntry entry;
+      while ((entry = zip.getNextEntry()) != null) {
+        entries.put(entry.getName(), entry);
+        if (!entry.isDirectory()) {
+          final ByteArrayOutputStream entryContent = new ByteArrayOutputStream();
+          final byte[] buffer = new byte[1024];
+          int read;
+          while ((read = zip.read(buffer)) >= 0) {
+            entryContent.write(buffer, 0, read);
+          }
+          content.put(entry.getName(), entryContent.toByteArray());
+        }
+      }
+    }
+    assertEquals(Arrays.asList("a.txt", "b.zip", "dir/", "dir/c.txt", "dir/empty.txt"), new ArrayList<>(entries.keySet()));
+    assertEquals(myContent.keySet(), content.keySet());
+    for (Map.Entry<String, byte[]> expected : myContent.entrySet()) {
+      assertTrue(expected.getKey(), Arrays.equals(expected.getValue(), content.get(expected.getKey())));
+    }
+    return entries;
+  }
+}
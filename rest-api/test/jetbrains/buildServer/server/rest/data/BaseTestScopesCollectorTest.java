@@ -19,8 +19,10 @@ package jetbrains.buildServer.server.rest.data;
 import jetbrains.buildServer.server.rest.data.finder.impl.*;
 import jetbrains.buildServer.server.rest.data.problem.TestFinder;
 import jetbrains.buildServer.server.rest.data.problem.TestOccurrenceFinder;
+import jetbrains.buildServer.server.rest.data.problem.TestRunsIndexCache;
 import jetbrains.buildServer.server.rest.data.problem.scope.TestScopeFilterProducer;
 import jetbrains.buildServer.server.rest.data.problem.scope.TestScopesCollector;
+import jetbrains.buildServer.server.rest.data.util.ParallelFanOutExecutor;
 import jetbrains.buildServer.serverSide.*;
 import jetbrains.buildServer.serverSide.identifiers.VcsRootIdentifiersManagerImpl;
 import jetbrains.buildServer.serverSide.impl.BaseServerTestCase;
@@ -78,7 +80,8 @@ public class BaseTestScopesCollectorTest extends BaseServerTestCase {
     myFixture.addService(myVcsRootFinder);
 
     myBuildPromotionFinder = new BuildPromotionFinder(myFixture.getBuildPromotionManager(), myFixture.getBuildQueue(), myServer, myVcsRootFinder, myProjectFinder,
-                                                      myBuildTypeFinder, myUserFinder, myAgentFinder, myBranchFinder, myTimeCondition, myPermissionChecker, null, myFixture);
+                                                      myBuildTypeFinder, myUserFinder, myAgentFinder, myBranchFinder, myTimeCondition, myPermissionChecker, null, myFixture,
+                                                      new ParallelFanOutExecutor(myFixture));
     myFixture.addService(myBuildPromotionFinder);
 
 
@@ -99,7 +102,8 @@ public class BaseTestScopesCollectorTest extends BaseServerTestCase {
       myFixture.getTestsHistory(),
       currentProblemsManager,
       myBranchFinder,
-      testScopesFilterProducer
+      testScopesFilterProducer,
+      new TestRunsIndexCache()
     );
     myFixture.addService(myTestOccurrenceFinder);
 
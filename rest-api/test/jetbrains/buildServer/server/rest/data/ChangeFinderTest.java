@@ -907,6 +907,37 @@ public class ChangeFinderTest extends BaseFinderTest<SVcsModificationOrChangeDes
     checkCounts("version:50", 1, 6);
   }
 
+  @Test
+  public void testVcsRootInstanceChangesByIdRanges() {
+    setInternalProperty(ChangeFinder.VCS_ROOT_CHANGES_INITIAL_RANGE, "1");
+    final BuildTypeImpl buildConf1 = registerBuildType("buildConf1", "project");
+    final BuildTypeImpl buildConf2 = registerBuildType("buildConf2", "project");
+
+    MockVcsSupport vcs = new MockVcsSupport("vcs");
+    myFixture.getVcsManager().registerVcsSupport(vcs);
+    VcsRootInstance root1 = buildConf1.getVcsRootInstanceForParent(myFixture.addVcsRoot(vcs.getName(), "", buildConf1));
+    VcsRootInstance root2 = buildConf2.getVcsRootInstanceForParent(myFixture.addVcsRoot(vcs.getName(), "", buildConf2));
+    assert root1 != null && root2 != null;
+
+    SVcsModification m10 = myFixture.addModification(modification().in(root1).version("10"));
+    SVcsModification m20 = myFixture.addModification(modification().in(root2).version("20"));
+    SVcsModification m30 = myFixture.addModification(modification().in(root1).version("30").parentVersions("10"));
+    SVcsModification m40 = myFixture.addModification(modification().in(root2).version("40").parentVersions("20"));
+    SVcsModification m50 = myFixture.addModification(modification().in(root2).version("50").parentVersions("40"));
+    SVcsModification m60 = myFixture.addModification(modification().in(root2).version("60").parentVersions("50"));
+    SVcsModification m70 = myFixture.addModification(modification().in(root1).version("70").parentVersions("30"));
+
+    final String root1Locator = "vcsRootInstance:(id:" + root1.getId() + ")";
+    check(root1Locator, m70, m30, m10);
+    check(root1Locator + ",count:2", m70, m30);
+    check(root1Locator + ",sinceChange:" + m10.getId(), m70, m30);
+    check(root1Locator + ",sinceChange:" + m30.getId(), m70);
+    check("vcsRootInstance:(id:" + root2.getId() + ")", m60, m50, m40, m20);
+
+    check("sinceChange:" + m40.getId(), m70, m60, m50);
+    checkCounts("sinceChange:" + m40.getId(), 3, 3);
+  }
+
   @Test
   public void testVersionedSettings() {
     ProjectEx project = getRootProject().createProject("project", "project");
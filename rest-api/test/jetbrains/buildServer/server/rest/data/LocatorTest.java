@@ -178,6 +178,25 @@ public class LocatorTest {
     assertEquals("a:($any),b:c", locator.getStringRepresentation());
   }
 
+  @Test
+  public void testAnySpecialValueWithStringPool() {
+    new RestContext(name -> null).run(() -> {
+      final Locator escapedFirst = new Locator("a:($any),b:$any");
+      assertEquals("$any", escapedFirst.getSingleDimensionValue("a"));
+      assertEquals(null, escapedFirst.getSingleDimensionValue("b"));
+
+      final Locator plainFirst = new Locator("c:$any,d:($any)");
+      assertEquals(null, plainFirst.getSingleDimensionValue("c"));
+      assertEquals("$any", plainFirst.getSingleDimensionValue("d"));
+
+      final Locator multiple = new Locator("a:$any,a:($any)");
+      assertEquals(Arrays.asList("$any", "$any"), multiple.getDimensionValue("a"));
+      assertEquals(null, new Locator("a:$any").lookupSingleDimensionValue("a"));
+      assertEquals("$any", new Locator("a:($any)").lookupSingleDimensionValue("a"));
+      return null;
+    });
+  }
+
   @Test
   public void testSetDimension() {
     assertEquals("a:b,aa:z,x:y", Locator.setDimensionIfNotPresent("a:b,x:y", "aa","z"));
@@ -187,6 +206,38 @@ public class LocatorTest {
     assertEquals("a:(b:10),b:20", LocatorUtil.setDimension("a:(b:10)", "b", "20"));
   }
 
+  @Test
+  public void testParsedLocatorsAreNotShared() {
+    final String text = "a:b,c:(d:e),f:g,f:h";
+    final Locator first = new Locator(text, "a", "c", "f");
+    first.getSingleDimensionValue("a");
+    first.setDimension("c", "x");
+    first.removeDimension("f");
+
+    final Locator second = new Locator(text, "a", "c", "f");
+    assertEquals(3, second.getDimensionsCount());
+    assertEquals("d:e", second.getSingleDimensionValue("c"));
+    assertEquals(Arrays.asList("g", "h"), second.getDimensionValue("f"));
+    assertTrue(second.getUnusedDimensions().contains("a"));
+
+    final Locator copy = new Locator(second);
+    copy.setDimension("a", "z");
+    assertEquals("b", second.getSingleDimensionValue("a"));
+    assertEquals("z", copy.getSingleDimensionValue("a"));
+
+    check(text, false, null, "a", "b", "c", "d:e", "f", "g", "f", "h");
+  }
+
+  @Test
+  public void testParsedLocatorsCacheReportsErrors() {
+    check(new Locator("a:b,$x:e", "a", "$x"), false, null, "a", "b", "$x", "e");
+    // same text is already parsed, but the dimension name is not valid without being supported
+    BaseFinderTest.checkException(LocatorProcessException.class, () -> new Locator("a:b,$x:e", "a"), null);
+
+    check(new Locator("a:b,c-d:e", true), false, null, "a", "b", "c-d", "e");
+    checkException("a:b,c-d:e", LocatorProcessException.class); // not extended mode
+  }
+
   @Test
   public void testEscaped() { //see also testEscapedNoSpecialBraces
     check("abc", true, "abc");
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.rest.data;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import jetbrains.buildServer.BaseTestCase;
+import jetbrains.buildServer.serverSide.auth.AuthorityHolder;
+import jetbrains.buildServer.serverSide.auth.Permission;
+import jetbrains.buildServer.serverSide.impl.auth.SecurityContextImpl;
+import org.testng.annotations.Test;
+
+@Test
+public class PermissionsMemoTest extends BaseTestCase {
+  public void testRemembersResults() {
+    final AuthorityHolder holder = SecurityContextImpl.NO_PERMISSIONS;
+    final PermissionsMemo memo = new PermissionsMemo();
+    final AtomicInteger checks = new AtomicInteger();
+
+    assertTrue(memo.isGranted(holder, "project1", Permission.VIEW_PROJECT, () -> checks.incrementAndGet() > 0));
+    assertTrue(memo.isGranted(holder, "project1", Permission.VIEW_PROJECT, () -> checks.incrementAndGet() < 0));
+    assertEquals("The second check is not performed", 1, checks.get());
+
+    assertFalse(memo.isGranted(holder, "project2", Permission.VIEW_PROJECT, () -> checks.incrementAndGet() < 0));
+    assertFalse(memo.isGranted(holder, "project1", Permission.EDIT_PROJECT, () -> checks.incrementAndGet() < 0));
+    assertEquals("Other project and permission are checked", 3, checks.get());
+  }
+
+  public void testBoundToRequest() throws Throwable {
+    assertNull(RestContext.getThreadLocalPermissionsMemo());
+
+    final PermissionsMemo memo = new RestContext(name -> null).run(RestContext::getThreadLocalPermissionsMemo);
+    assertNotNull(memo);
+    assertNull("The memo does not outlive the request", RestContext.getThreadLocalPermissionsMemo());
+
+    final PermissionsMemo otherMemo = new RestContext(name -> null).run(RestContext::getThreadLocalPermissionsMemo);
+    assertNotSame("Every request has its own memo", memo, otherMemo);
+  }
+}
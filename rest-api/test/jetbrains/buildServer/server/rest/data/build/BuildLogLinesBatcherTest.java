@@ -0,0 +1,110 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.rest.data.build;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import jetbrains.buildServer.BaseTestCase;
+import org.testng.annotations.Test;
+
+public class BuildLogLinesBatcherTest extends BaseTestCase {
+  @Test
+  public void testBatchedByLines() throws IOException {
+    setInternalProperty(BuildLogLinesBatcher.MAX_LINES, "2");
+    final List<List<String>> batches = new ArrayList<>();
+    assertEquals(5, new BuildLogLinesBatcher(batches::add).process(new BufferedReader(new StringReader("1\n2\n3\n4\n5\n"))));
+    assertEquals(Arrays.asList(Arrays.asList("1", "2"), Arrays.asList("3", "4"), Arrays.asList("5")), batches);
+  }
+
+  @Test
+  public void testBatchedByChars() throws IOException {
+    setInternalProperty(BuildLogLinesBatcher.MAX_CHARS, "4");
+    final List<List<String>> batches = new ArrayList<>();
+    new BuildLogLinesBatcher(batches::add).process(new BufferedReader(new StringReader("aa\nbb\ncccc\nd")));
+    assertEquals(Arrays.asList(Arrays.asList("aa", "bb"), Arrays.asList("cccc"), Arrays.asList("d")), batches);
+  }
+
+  @Test
+  public void testFlushedAfterDelayWhileWaitingForInput() throws IOException {
+    setInternalProperty(BuildLogLinesBatcher.MAX_DELAY_MS, "20");
+    final List<List<String>> batches = new ArrayList<>();
+    final Reader reader = new StringReader("1\n2\n3\n") {
+      @Override
+      public boolean ready() {
+        return false; //each next line comes after waiting
+      }
+
+      @Override
+      public int read(final char[] cbuf, final int off, final int len) throws IOException {
+        return super.read(cbuf, off, Math.min(len, 2));
+      }
+    };
+    new BuildLogLinesBatcher(batches::add).process(new BufferedReader(reader, 2));
+    assertEquals(Arrays.asList(Arrays.asList("1"), Arrays.asList("2"), Arrays.asList("3")), batches);
+  }
+
+  @Test
+  public void testNotFlushedPerLineWhileInputKeepsComing() throws IOException {
+    setInternalProperty(BuildLogLinesBatcher.MAX_DELAY_MS, "60000");
+    final List<List<String>> batches = new ArrayList<>();
+    final Reader reader = new StringReader("1\n2\n3\n") {
+      private long myLastReadNanos = System.nanoTime();
+
+      @Override
+      public boolean ready() {
+        return System.nanoTime() - myLastReadNanos > TimeUnit.MILLISECONDS.toNanos(20); //each next line comes shortly after the previous one
+      }
+
+      @Override
+      public int read(final char[] cbuf, final int off, final int len) throws IOException {
+        myLastReadNanos = System.nanoTime();
+        return super.read(cbuf, off, Math.min(len, 2));
+      }
+    };
+    new BuildLogLinesBatcher(batches::add).process(new BufferedReader(reader, 2));
+    assertEquals(Arrays.asList(Arrays.asList("1", "2", "3")), batches);
+  }
+
+  @Test
+  public void testAcceptedLines() throws IOException {
+    setInternalProperty(BuildLogLinesBatcher.MAX_LINES, "2");
+    final List<List<String>> batches = new ArrayList<>();
+    final BuildLogLinesBatcher batcher = new BuildLogLinesBatcher(batch -> {
+      if (batches.size() == 2) throw new IllegalStateException("full");
+      batches.add(batch);
+    });
+    try {
+      batcher.process(new BufferedReader(new StringReader("1\n2\n3\n4\n5\n")));
+      fail("Exception expected");
+    } catch (IllegalStateException e) {
+      assertEquals(4, batcher.getAcceptedLines());
+    }
+  }
+
+  @Test
+  public void testEmpty() throws IOException {
+    final List<List<String>> batches = new ArrayList<>();
+    assertEquals(0, new BuildLogLinesBatcher(batches::add).process(new BufferedReader(new StringReader(""))));
+    assertEmpty(batches);
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.rest.data.build;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import jetbrains.buildServer.server.rest.data.PagedSearchResult;
+import jetbrains.buildServer.server.rest.data.ServerListener;
+import jetbrains.buildServer.server.rest.data.finder.impl.AgentCompatibilityMatrix;
+import jetbrains.buildServer.server.rest.data.problem.TestRunsIndexCache;
+import jetbrains.buildServer.serverSide.BuildHistory;
+import jetbrains.buildServer.serverSide.BuildPromotion;
+import jetbrains.buildServer.serverSide.SBuildType;
+import jetbrains.buildServer.serverSide.SFinishedBuild;
+import jetbrains.buildServer.serverSide.impl.BaseServerTestCase;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class BuildPromotionsResultCacheTest extends BaseServerTestCase {
+  private BuildPromotionsResultCache myCache;
+  private AtomicInteger myComputations;
+
+  @Override
+  @BeforeMethod
+  public void setUp() throws Exception {
+    super.setUp();
+    myCache = new BuildPromotionsResultCache(myFixture.getSecurityContext(), myProjectManager);
+    myComputations = new AtomicInteger();
+    setInternalProperty(BuildPromotionsResultCache.ENABLED, "true");
+  }
+
+  @Test
+  public void testDisabled() {
+    setInternalProperty(BuildPromotionsResultCache.ENABLED, "false");
+    get("buildType:a,count:1");
+    get("buildType:a,count:1");
+    assertEquals(2, myComputations.get());
+  }
+
+  @Test
+  public void testNormalizedLocatorIsReused() {
+    PagedSearchResult<BuildPromotion> first = get("buildType:a,count:1");
+    assertSame(first, get("count:1,buildType:a"));
+    assertEquals(1, myComputations.get());
+
+    get("buildType:b,count:1");
+    assertEquals(2, myComputations.get());
+    assertTrue(myCache.getStatistics(), myCache.getStatistics().contains("hits 1, misses 2"));
+  }
+
+  @Test
+  public void testInvalidation() {
+    get("buildType:a,count:1");
+    myCache.invalidate();
+    get("buildType:a,count:1");
+    assertEquals(2, myComputations.get());
+    assertTrue(myCache.getStatistics(), myCache.getStatistics().contains("invalidations 1"));
+  }
+
+  @Test
+  public void testInvalidationByBuildType() {
+    final SBuildType buildType1 = myProject.createBuildType("bt1");
+    final SBuildType buildType2 = myProject.createBuildType("bt2");
+    final String locator1 = "buildType:(id:" + buildType1.getExternalId() + "),count:1";
+    final String locator2 = "buildType:" + buildType2.getExternalId() + ",count:1";
+    get(locator1);
+    get(locator2);
+    get("count:1");
+    assertEquals(3, myComputations.get());
+
+    myCache.invalidate(buildType2);
+    get(locator1);
+    assertEquals(3, myComputations.get());
+    get(locator2);
+    get("count:1");
+    assertEquals(5, myComputations.get());
+    assertTrue(myCache.getStatistics(), myCache.getStatistics().contains("outdated 2"));
+  }
+
+  @Test
+  public void testInvalidationOnBuildRemoval() {
+    new ServerListener(myServer, myCache, new BuildStatusCache(myFixture.getSecurityContext(), myProjectManager), new AgentCompatibilityMatrix(myAgentManager),
+                       new TestRunsIndexCache());
+    final SFinishedBuild build = build().in(myBuildType).finish();
+    final String locator = "buildType:(id:" + myBuildType.getExternalId() + ")";
+    get(locator);
+    get(locator);
+    assertEquals(1, myComputations.get());
+
+    myFixture.getSingletonService(BuildHistory.class).removeEntry(build);
+    get(locator);
+    assertEquals(2, myComputations.get());
+  }
+
+  @Test
+  public void testNotCachedWhenInvalidatedDuringComputation() {
+    myCache.getItems("buildType:a", () -> {
+      myCache.invalidate();
+      return compute();
+    });
+    get("buildType:a");
+    assertEquals(2, myComputations.get());
+    get("buildType:a");
+    assertEquals(2, myComputations.get());
+  }
+
+  @Test
+  public void testScopedByUser() {
+    get("buildType:a");
+    myFixture.getSecurityContext().runAs(createUser("user1"), () -> get("buildType:a"));
+    assertEquals(2, myComputations.get());
+  }
+
+  @Test
+  public void testHelpIsNotCached() {
+    get("$help");
+    get("$help");
+    assertEquals(2, myComputations.get());
+  }
+
+  private PagedSearchResult<BuildPromotion> get(final String locator) {
+    return myCache.getItems(locator, this::compute);
+  }
+
+  private PagedSearchResult<BuildPromotion> compute() {
+    myComputations.incrementAndGet();
+    return new PagedSearchResult<>(Collections.emptyList(), null, null);
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.rest.data.build;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import jetbrains.buildServer.serverSide.SBuildType;
+import jetbrains.buildServer.serverSide.auth.AuthorityHolder;
+import jetbrains.buildServer.serverSide.impl.BaseServerTestCase;
+import jetbrains.buildServer.serverSide.impl.auth.SecurityContextImpl;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class BuildStatusCacheTest extends BaseServerTestCase {
+  private BuildStatusCache myCache;
+  private AtomicInteger myComputations;
+  private AuthorityHolder myUser;
+
+  @Override
+  @BeforeMethod
+  public void setUp() throws Exception {
+    super.setUp();
+    myCache = new BuildStatusCache(myFixture.getSecurityContext(), myProjectManager);
+    myComputations = new AtomicInteger();
+    myUser = createUser("user");
+  }
+
+  @Test
+  public void testEnabledByDefault() throws Throwable {
+    assertEquals("status1", get("kind", "count:1,buildType:a"));
+    assertEquals("status1", get("kind", "buildType:a,count:1"));
+    assertEquals(1, myComputations.get());
+
+    assertEquals("status2", get("anotherKind", "buildType:a,count:1"));
+    assertEquals(2, myComputations.get());
+
+    setInternalProperty(BuildStatusCache.ENABLED, "false");
+    get("kind", "buildType:a,count:1");
+    assertEquals(3, myComputations.get());
+  }
+
+  @Test
+  public void testInvalidation() throws Throwable {
+    get("kind", "buildType:a");
+    myCache.invalidate();
+    assertEquals("status2", get("kind", "buildType:a"));
+    assertTrue(myCache.getStatistics(), myCache.getStatistics().contains("invalidations 1"));
+  }
+
+  @Test
+  public void testInvalidationByBuildType() throws Throwable {
+    final SBuildType buildType1 = myProject.createBuildType("bt1");
+    final SBuildType buildType2 = myProject.createBuildType("bt2");
+    final String locator1 = "buildType:(id:" + buildType1.getExternalId() + "),count:1";
+    final String locator2 = "count:1,buildType:" + buildType2.getExternalId();
+    get("kind", locator1);
+    get("kind", locator2);
+    get("kind", "count:1");
+    assertEquals(3, myComputations.get());
+
+    myCache.invalidate(buildType2);
+    assertEquals("status1", get("kind", locator1));
+    assertEquals("status4", get("kind", locator2));
+    assertEquals("status5", get("kind", "count:1"));
+
+    myCache.invalidate(buildType1);
+    assertEquals("status6", get("kind", locator1));
+    assertEquals("status4", get("kind", locator2));
+    assertTrue(myCache.getStatistics(), myCache.getStatistics().contains("outdated 3"));
+  }
+
+  @Test
+  public void testNotCacheable() throws Throwable {
+    myFixture.getSecurityContext().runAs(myUser, () -> myCache.get("kind", "buildType:a", this::compute, status -> false));
+    assertEquals("status2", get("kind", "buildType:a"));
+    assertEquals("status2", get("kind", "buildType:a"));
+  }
+
+  @Test
+  public void testScopedByUser() throws Throwable {
+    get("kind", "buildType:a");
+    assertEquals("status1", get("kind", "buildType:a"));
+    assertEquals("status2", get(createUser("user1"), "kind", "buildType:a"));
+    assertEquals(2, myComputations.get());
+  }
+
+  @Test
+  public void testAnonymousScope() throws Throwable {
+    get("kind", "buildType:a");
+    assertEquals("status2", get(SecurityContextImpl.NO_PERMISSIONS, "kind", "buildType:a"));
+    assertEquals("status2", get(SecurityContextImpl.NO_PERMISSIONS, "kind", "buildType:a"));
+    assertEquals(2, myComputations.get());
+  }
+
+  @Test
+  public void testNotCachedForOtherHolders() throws Throwable {
+    get(SecurityContextImpl.NO_PERMISSIONS, "kind", "buildType:a");
+    assertEquals("status2", myFixture.getSecurityContext().runAsSystem(() -> myCache.get("kind", "buildType:a", this::compute, status -> true)));
+    assertEquals("status3", myFixture.getSecurityContext().runAsSystem(() -> myCache.get("kind", "buildType:a", this::compute, status -> true)));
+    assertEquals("status1", get(SecurityContextImpl.NO_PERMISSIONS, "kind", "buildType:a"));
+  }
+
+  private String get(final String kind, final String locator) throws Throwable {
+    return get(myUser, kind, locator);
+  }
+
+  private String get(final AuthorityHolder authorityHolder, final String kind, final String locator) throws Throwable {
+    return myFixture.getSecurityContext().runAs(authorityHolder, () -> myCache.get(kind, locator, this::compute, status -> true));
+  }
+
+  private String compute() {
+    return "status" + myComputations.incrementAndGet();
+  }
+}
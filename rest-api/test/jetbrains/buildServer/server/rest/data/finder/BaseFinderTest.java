@@ -39,7 +39,9 @@ import jetbrains.buildServer.server.rest.data.problem.ProblemFinder;
 import jetbrains.buildServer.server.rest.data.problem.ProblemOccurrenceFinder;
 import jetbrains.buildServer.server.rest.data.problem.TestFinder;
 import jetbrains.buildServer.server.rest.data.problem.TestOccurrenceFinder;
+import jetbrains.buildServer.server.rest.data.problem.TestRunsIndexCache;
 import jetbrains.buildServer.server.rest.data.problem.scope.TestScopeFilterProducer;
+import jetbrains.buildServer.server.rest.data.util.ParallelFanOutExecutor;
 import jetbrains.buildServer.server.rest.errors.NotFoundException;
 import jetbrains.buildServer.server.rest.util.BeanContext;
 import jetbrains.buildServer.server.rest.util.BeanFactory;
@@ -62,6 +64,7 @@ import jetbrains.buildServer.util.ExceptionUtil;
 import jetbrains.buildServer.vcs.impl.VcsManagerImpl;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 
 /**
@@ -89,6 +92,7 @@ public abstract class BaseFinderTest<T> extends BaseServerTestCase{
   protected ProblemFinder myProblemFinder;
   protected ProblemOccurrenceFinder myProblemOccurrenceFinder;
   protected TestOccurrenceFinder myTestOccurrenceFinder;
+  protected TestRunsIndexCache myTestRunsIndexCache;
   protected InvestigationFinder myInvestigationFinder;
   protected MuteFinder myMuteFinder;
   protected AgentPoolFinder myAgentPoolFinder;
@@ -97,6 +101,7 @@ public abstract class BaseFinderTest<T> extends BaseServerTestCase{
   protected ChangeFinder myChangeFinder;
   protected UserGroupFinder myGroupFinder;
   protected TimeCondition myTimeCondition;
+  private ParallelFanOutExecutor myFanOutExecutor;
 
   static public BeanContext getBeanContext(final ServiceLocator serviceLocator) {
     final ApiUrlBuilder apiUrlBuilder = new ApiUrlBuilder(path -> path);
@@ -112,6 +117,13 @@ public abstract class BaseFinderTest<T> extends BaseServerTestCase{
     initFinders();
   }
 
+  @Override
+  @AfterMethod(alwaysRun = true)
+  protected void tearDown() throws Exception {
+    if (myFanOutExecutor != null) myFanOutExecutor.destroy();
+    super.tearDown();
+  }
+
   protected void initFinders() {
     myVcsManager = myFixture.getVcsManager();
     myFixture.addService(myVcsManager);
@@ -165,8 +177,10 @@ public abstract class BaseFinderTest<T> extends BaseServerTestCase{
     myFixture.addService(new BranchGroupsService(myServer));
     myBranchFinder = new BranchFinder(myBuildTypeFinder, myFixture);
 
+    myFanOutExecutor = new ParallelFanOutExecutor(myFixture);
     myBuildPromotionFinder = new BuildPromotionFinder(myFixture.getBuildPromotionManager(), myFixture.getBuildQueue(), myServer, myVcsRootFinder, myProjectFinder,
-                                                      myBuildTypeFinder, myUserFinder, myAgentFinder, myBranchFinder, myTimeCondition, myPermissionChecker, null, myFixture);
+                                                      myBuildTypeFinder, myUserFinder, myAgentFinder, myBranchFinder, myTimeCondition, myPermissionChecker, null, myFixture,
+                                                      myFanOutExecutor);
     myFixture.addService(myBuildPromotionFinder);
 
     myBuildFinder = new BuildFinder(myServer, myBuildTypeFinder, myProjectFinder, myUserFinder, myBuildPromotionFinder, myAgentFinder);
@@ -180,6 +194,7 @@ public abstract class BaseFinderTest<T> extends BaseServerTestCase{
 
     TestScopeFilterProducer filterProducer = new TestScopeFilterProducer(myBuildTypeFinder);
     final CurrentProblemsManager currentProblemsManager = myServer.getSingletonService(CurrentProblemsManager.class);
+    myTestRunsIndexCache = new TestRunsIndexCache();
     myTestOccurrenceFinder = new TestOccurrenceFinder(
       myServer.getSecurityContext(),
       myTestFinder,
@@ -189,7 +204,8 @@ public abstract class BaseFinderTest<T> extends BaseServerTestCase{
       myFixture.getTestsHistory(),
       currentProblemsManager,
       myBranchFinder,
-      filterProducer
+      filterProducer,
+      myTestRunsIndexCache
     );
     myFixture.addService(myTestOccurrenceFinder);
 
@@ -17,12 +17,16 @@
 package jetbrains.buildServer.server.rest.data.finder;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import jetbrains.buildServer.server.rest.data.Locator;
+import jetbrains.buildServer.server.rest.data.PagedSearchResult;
 import jetbrains.buildServer.server.rest.data.util.*;
 import jetbrains.buildServer.server.rest.data.util.itemholder.ItemHolder;
+import jetbrains.buildServer.server.rest.errors.BadRequestException;
+import jetbrains.buildServer.server.rest.errors.NotFoundException;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.testng.annotations.BeforeMethod;
@@ -123,6 +127,83 @@ public class FinderImplTest extends BaseFinderTest<String> {
     check("count:30,unique:false", items);
   }
 
+  @Test
+  public void testContinuationToken() {
+    setFinder(new ResumableTestItemFinder(2, "a1", "a2", "a3", "b1", "b2", "b3", "c1", "c2", "c3"));
+
+    PagedSearchResult<String> firstPage = getFinder().getItems("count:3");
+    assertEquals(Arrays.asList("a1", "a2", "a3"), firstPage.getEntries());
+    assertNull("Token should not be issued unless requested", firstPage.getContinuationToken());
+
+    setInternalProperty("rest.finder.continuationToken.enabled", "true");
+    firstPage = getFinder().getItems("count:3");
+    assertNotNull(firstPage.getContinuationToken());
+
+    PagedSearchResult<String> secondPage = getFinder().getItems("count:3,continuationToken:" + firstPage.getContinuationToken());
+    assertEquals(Arrays.asList("b1", "b2", "b3"), secondPage.getEntries());
+    assertEquals("Items before the token should not be processed", Long.valueOf(3), secondPage.getActuallyProcessedCount());
+
+    PagedSearchResult<String> filteredPage = getFinder().getItems("secondChar:3,count:1,continuationToken:" + secondPage.getContinuationToken());
+    assertEquals(Collections.singletonList("c3"), filteredPage.getEntries());
+
+    PagedSearchResult<String> lastPage = getFinder().getItems("count:3,continuationToken:" + getFinder().getItems("count:8").getContinuationToken());
+    assertEquals(Collections.singletonList("c3"), lastPage.getEntries());
+    assertNull(lastPage.getContinuationToken());
+
+    checkExceptionOnItemsSearch(BadRequestException.class, "count:3,continuationToken:" + ContinuationTokenSupport.encode("anotherFinder", "a1"));
+  }
+
+  @Test
+  public void testContinuationTokenItemDeletedBetweenPages() {
+    setInternalProperty("rest.finder.continuationToken.enabled", "true");
+    setFinder(new ResumableTestItemFinder(2, "a1", "a2", "a3", "b1", "b2", "b3"));
+    final String token = getFinder().getItems("count:3").getContinuationToken();
+    assertNotNull(token);
+
+    setFinder(new ResumableTestItemFinder(2, "a1", "a2", "b1", "b2", "b3"));
+    PagedSearchResult<String> nextPage = getFinder().getItems("count:3,continuationToken:" + token);
+    assertEquals(Arrays.asList("b1", "b2", "b3"), nextPage.getEntries());
+    assertEquals(Long.valueOf(3), nextPage.getActuallyProcessedCount());
+  }
+
+  @Test
+  public void testContinuationTokenItemDeletedBetweenPagesOrderUnknown() {
+    setInternalProperty("rest.finder.continuationToken.enabled", "true");
+    setFinder(new ExactKeyTestItemFinder(2, "a1", "a2", "a3", "b1", "b2", "b3"));
+    final String token = getFinder().getItems("count:3").getContinuationToken();
+    assertNotNull(token);
+
+    setFinder(new ExactKeyTestItemFinder(2, "a1", "a2", "b1", "b2", "b3"));
+    // the items after the deleted one are unknown, an empty result would look like the last page
+    checkExceptionOnItemsSearch(NotFoundException.class, "count:3,continuationToken:" + token);
+  }
+
+  /**
+   * Resumes only right after the item with the key, as the finders which cannot compare the items with the key do.
+   */
+  private static class ExactKeyTestItemFinder extends TestItemFinder implements ContinuationTokenSupport<String> {
+    ExactKeyTestItemFinder(int defaultCount, String... items) {
+      super(defaultCount, items);
+    }
+
+    @NotNull
+    @Override
+    public String getContinuationKey(@NotNull final String item) {
+      return item;
+    }
+  }
+
+  private static class ResumableTestItemFinder extends ExactKeyTestItemFinder {
+    ResumableTestItemFinder(int defaultCount, String... items) {
+      super(defaultCount, items);
+    }
+
+    @Override
+    public boolean isAfter(@NotNull final String item, @NotNull final String continuationKey) {
+      return item.compareTo(continuationKey) > 0;
+    }
+  }
+
   private static class TestItemFinder extends AbstractFinder<String> {
     private final List<String> testItems;
     private final int myDefaultCount;
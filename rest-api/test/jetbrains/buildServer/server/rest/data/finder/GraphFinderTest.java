@@ -0,0 +1,97 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.rest.data.finder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import jetbrains.buildServer.BaseTestCase;
+import org.jetbrains.annotations.NotNull;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Node N depends on N-1 and N-2, so there are exponentially many paths to the first nodes.
+ */
+public class GraphFinderTest extends BaseTestCase {
+  private AtomicInteger myLinksRetrieved;
+  private GraphFinder<Integer> myFinder;
+
+  @Override
+  @BeforeMethod
+  public void setUp() throws Exception {
+    super.setUp();
+    myLinksRetrieved = new AtomicInteger();
+    myFinder = new GraphFinder<Integer>(locatorText -> Collections.singletonList(Integer.valueOf(locatorText)), new GraphFinder.Traverser<Integer>() {
+      @NotNull
+      @Override
+      public GraphFinder.LinkRetriever<Integer> getChildren() {
+        return item -> {
+          myLinksRetrieved.incrementAndGet();
+          final List<Integer> result = new ArrayList<>();
+          if (item >= 1) result.add(item - 1);
+          if (item >= 2) result.add(item - 2);
+          return result;
+        };
+      }
+
+      @NotNull
+      @Override
+      public GraphFinder.LinkRetriever<Integer> getParents() {
+        return item -> {
+          myLinksRetrieved.incrementAndGet();
+          return item < 100 ? Arrays.asList(item + 1, item + 2) : Collections.emptyList();
+        };
+      }
+    });
+  }
+
+  @Test
+  public void testEachItemIsExpandedOnce() {
+    assertEquals(Arrays.asList(39, 38, 37, 36), myFinder.getItems("to:40,count:4").getEntries().subList(0, 4));
+    final List<Integer> all = myFinder.getItems("to:40").getEntries();
+    assertEquals(40, all.size());
+    assertEquals(Integer.valueOf(0), all.get(39));
+    assertTrue("links retrieved " + myLinksRetrieved.get(), myLinksRetrieved.get() < 100);
+  }
+
+  @Test
+  public void testTraversalStopsWithCount() {
+    assertEquals(Collections.singletonList(999), myFinder.getItems("to:1000,count:1").getEntries());
+    assertEquals(1, myLinksRetrieved.get());
+  }
+
+  @Test
+  public void testLookupLimit() {
+    assertEquals(Arrays.asList(999, 998, 997, 996, 995), myFinder.getItems("to:1000,lookupLimit:5").getEntries());
+    assertTrue("links retrieved " + myLinksRetrieved.get(), myLinksRetrieved.get() <= 4);
+  }
+
+  @Test
+  public void testStopAndIncludeInitial() {
+    assertEquals(Arrays.asList(3, 2, 1, 0), myFinder.getItems("to:3,includeInitial:true").getEntries());
+    assertEquals("stop item is returned, but not traversed", Collections.singletonList(10), myFinder.getItems("to:10,stop:10").getEntries());
+    assertEquals(Arrays.asList(9, 8), myFinder.getItems("to:10,recursive:false").getEntries());
+  }
+
+  @Test
+  public void testFromAndTo() {
+    assertEquals(Arrays.asList(9, 8, 7, 6, 5), myFinder.getItems("to:10,from:4").getEntries());
+  }
+}
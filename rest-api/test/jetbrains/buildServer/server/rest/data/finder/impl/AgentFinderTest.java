@@ -16,6 +16,8 @@
 
 package jetbrains.buildServer.server.rest.data.finder.impl;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import jetbrains.buildServer.requirements.RequirementType;
 import jetbrains.buildServer.server.rest.data.finder.BaseFinderTest;
@@ -345,6 +347,68 @@ public class AgentFinderTest extends BaseFinderTest<SBuildAgent> {
   }
 
 
+  @Test
+  public void testCompatibilityMatrix() throws Exception {
+    ProjectEx project10 = createProject("project10", "project 10");
+    BuildTypeEx bt10 = project10.createBuildType("bt10", "bt 10");
+    bt10.addRequirement(myFixture.findSingletonService(RequirementFactory.class).createRequirement("a", null, RequirementType.EXISTS));
+    BuildTypeEx bt20 = project10.createBuildType("bt20", "bt 20");
+
+    MockBuildAgent agent10 = myFixture.createEnabledAgent("agent10", "Ant");
+    agent10.addConfigParameter("a", "b");
+    agent10.pushAgentTypeData();
+
+    AgentCompatibilityMatrix matrix = new AgentCompatibilityMatrix(myAgentManager);
+    assertTrue(matrix.isCompatible(agent10, bt10));
+    assertFalse(matrix.isCompatible(myAgent1, bt10));
+    assertTrue(matrix.getCompatibleWithAny(Arrays.asList(bt10, bt20)).test(myAgent1));
+    assertFalse(matrix.getCompatibleWithAll(Arrays.asList(bt10, bt20)).test(myAgent1));
+    assertTrue(matrix.getCompatibleWithAll(Arrays.asList(bt10, bt20)).test(agent10));
+    assertFalse(matrix.getCompatibleWithAny(Collections.emptyList()).test(agent10));
+    assertTrue(matrix.getCompatibleWithAll(Collections.emptyList()).test(agent10));
+
+    myAgent1.addConfigParameter("a", "b");
+    myAgent1.pushAgentTypeData();
+    matrix.invalidate(myAgent1);
+    assertTrue(matrix.isCompatible(myAgent1, bt10));
+    assertTrue(matrix.getCompatibleWithAll(Arrays.asList(bt10, bt20)).test(myAgent1));
+
+    bt10.addRequirement(myFixture.findSingletonService(RequirementFactory.class).createRequirement("c", null, RequirementType.EXISTS));
+    matrix.invalidate(bt10);
+    assertFalse(matrix.isCompatible(agent10, bt10));
+    assertFalse(matrix.getCompatibleWithAny(Arrays.asList(bt10)).test(myAgent1));
+
+    MockBuildAgent agent20 = myFixture.createEnabledAgent("agent20", "Ant");
+    assertTrue("Agents unknown to the matrix are calculated directly", matrix.isCompatible(agent20, bt20));
+  }
+
+  @Test
+  public void testCompatibilityMatrixPoolsAndPolicies() throws Exception {
+    ProjectEx project10 = createProject("project10", "project 10");
+    BuildTypeEx bt10 = project10.createBuildType("bt10", "bt 10");
+    BuildTypeEx bt20 = project10.createBuildType("bt20", "bt 20");
+    MockBuildAgent agent10 = myFixture.createEnabledAgent("agent10", "Ant");
+
+    AgentCompatibilityMatrix matrix = new AgentCompatibilityMatrix(myAgentManager);
+    assertTrue(matrix.getCompatibleWithAll(Arrays.asList(bt10, bt20)).test(agent10));
+
+    final int poolId = myFixture.getAgentPoolManager().createNewAgentPool("pool10").getAgentPoolId();
+    myFixture.getAgentPoolManager().moveAgentTypesToPool(poolId, createSet(agent10.getAgentTypeId()));
+    assertFalse("Agent moved to a pool not associated with the project", matrix.isCompatible(agent10, bt10));
+    assertFalse(matrix.getCompatibleWithAny(Arrays.asList(bt10, bt20)).test(agent10));
+
+    myFixture.getAgentPoolManager().associateProjectsWithPool(poolId, createSet(project10.getProjectId()));
+    assertTrue("Project associated with the agent pool", matrix.isCompatible(agent10, bt10));
+    assertTrue(matrix.getCompatibleWithAll(Arrays.asList(bt10, bt20)).test(agent10));
+
+    myFixture.getAgentTypeManager().setRunConfigurationPolicy(agent10.getAgentTypeId(), BuildAgentManager.RunConfigurationPolicy.SELECTED_COMPATIBLE_CONFIGURATIONS);
+    myFixture.getAgentTypeManager().includeRunConfigurationsToAllowed(agent10.getAgentTypeId(), new String[]{bt10.getInternalId()});
+    assertTrue(matrix.isCompatible(agent10, bt10));
+    assertFalse("Build configuration not allowed by the agent run policy", matrix.isCompatible(agent10, bt20));
+    assertTrue(matrix.getCompatibleWithAny(Arrays.asList(bt10, bt20)).test(agent10));
+    assertFalse(matrix.getCompatibleWithAll(Arrays.asList(bt10, bt20)).test(agent10));
+  }
+
   private void checkAgents(final String locatorText, final SBuildAgent... agents) {
     check(locatorText, (agent1, agent2) -> agent1.getId() == agent2.getId(), agents);
   }
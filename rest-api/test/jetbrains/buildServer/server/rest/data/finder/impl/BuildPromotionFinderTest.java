@@ -32,7 +32,9 @@ import jetbrains.buildServer.log.LogInitializer;
 import jetbrains.buildServer.server.rest.data.Locator;
 import jetbrains.buildServer.server.rest.data.PagedSearchResult;
 import jetbrains.buildServer.server.rest.data.finder.BaseFinderTest;
+import jetbrains.buildServer.server.rest.data.finder.FinderImpl;
 import jetbrains.buildServer.server.rest.data.util.ItemFilterUtil;
+import jetbrains.buildServer.server.rest.data.util.ParallelFanOutExecutor;
 import jetbrains.buildServer.server.rest.errors.BadRequestException;
 import jetbrains.buildServer.server.rest.errors.LocatorProcessException;
 import jetbrains.buildServer.server.rest.errors.NotFoundException;
@@ -1016,6 +1018,33 @@ public class BuildPromotionFinderTest extends BaseFinderTest<BuildPromotion> {
     checkNoBuildFound("property:(name:a)");
   }
 
+  @Test
+  public void testProcessBuildPromotions() {
+    final BuildTypeImpl buildConf = registerBuildType("buildConf1", "project");
+    final SFinishedBuild build1 = build().in(buildConf).finish();
+    final SFinishedBuild build2 = build().in(buildConf).failed().finish();
+    final SFinishedBuild build3 = build().in(buildConf).finish();
+
+    final List<BuildPromotion> processed = new ArrayList<>();
+    PagedSearchResult<BuildPromotion> result = myBuildPromotionFinder.processBuildPromotions(null, "buildType:(id:" + buildConf.getExternalId() + "),count:2", processed::add);
+    assertEquals(Arrays.asList(build3.getBuildPromotion(), build2.getBuildPromotion()), processed);
+    assertTrue(result.getEntries().isEmpty());
+    assertEquals(2, result.getActualCount());
+    assertEquals(Integer.valueOf(2), result.getCount());
+
+    processed.clear();
+    result = myBuildPromotionFinder.processBuildPromotions(buildConf, String.valueOf(build1.getBuildId()), processed::add);
+    assertEquals(Collections.singletonList(build1.getBuildPromotion()), processed);
+    assertEquals(1, result.getActualCount());
+
+    processed.clear();
+    myBuildPromotionFinder.processBuildPromotions(null, "buildType:(id:" + buildConf.getExternalId() + ")", item -> {
+      processed.add(item);
+      return false;
+    });
+    assertEquals(Collections.singletonList(build3.getBuildPromotion()), processed);
+  }
+
   @Test
   public void testSinceWithQueuedBuilds() {
     final BuildTypeImpl buildConf = registerBuildType("buildConf1", "project");
@@ -1031,6 +1060,48 @@ public class BuildPromotionFinderTest extends BaseFinderTest<BuildPromotion> {
     checkBuilds("state:any,sinceBuild:(id:" + queuedBuild30.getId() +")");
   }
 
+  @Test
+  public void testContinuationTokenBuildDeletedBetweenPages() {
+    setInternalProperty("rest.finder.continuationToken.enabled", "true");
+    final BuildTypeImpl buildConf = registerBuildType("buildConf1", "project");
+    final BuildPromotion build10 = build().in(buildConf).finish().getBuildPromotion();
+    final BuildPromotion build20 = build().in(buildConf).finish().getBuildPromotion();
+    final SFinishedBuild build30 = build().in(buildConf).finish();
+    final BuildPromotion build40 = build().in(buildConf).finish().getBuildPromotion();
+    final BuildPromotion running50 = build().in(buildConf).run().getBuildPromotion();
+
+    final PagedSearchResult<BuildPromotion> firstPage = myBuildPromotionFinder.getItems("state:any,count:3");
+    assertEquals(Arrays.asList(running50, build40, build30.getBuildPromotion()), firstPage.getEntries());
+    assertNotNull(firstPage.getContinuationToken());
+
+    myFixture.getSingletonService(BuildHistory.class).removeEntry(build30);
+
+    final PagedSearchResult<BuildPromotion> nextPage = myBuildPromotionFinder.getItems("state:any,count:3,continuationToken:" + firstPage.getContinuationToken());
+    assertEquals(Arrays.asList(build20, build10), nextPage.getEntries());
+  }
+
+  @Test
+  public void testContinuationTokenBuildDeletedBetweenPagesNotOrderedById() {
+    setInternalProperty("rest.finder.continuationToken.enabled", "true");
+    final BuildTypeImpl buildConf1 = registerBuildType("buildConf1", "project");
+    final BuildTypeImpl buildConf2 = registerBuildType("buildConf2", "project");
+    final BuildPromotion build10 = build().in(buildConf1).number("N1").finish().getBuildPromotion();
+    final SFinishedBuild build20 = build().in(buildConf2).number("N1").finish();
+    final BuildPromotion build30 = build().in(buildConf1).number("N1").finish().getBuildPromotion();
+
+    // builds found by number are sorted by start time, so the promotion id of the token build does not tell which builds go after it
+    final PagedSearchResult<BuildPromotion> firstPage = myBuildPromotionFinder.getItems("number:N1,count:1");
+    assertEquals(Collections.singletonList(build30), firstPage.getEntries());
+    final PagedSearchResult<BuildPromotion> secondPage = myBuildPromotionFinder.getItems("number:N1,count:1,continuationToken:" + firstPage.getContinuationToken());
+    assertEquals(Collections.singletonList(build20.getBuildPromotion()), secondPage.getEntries());
+    assertNotNull(secondPage.getContinuationToken());
+
+    myFixture.getSingletonService(BuildHistory.class).removeEntry(build20);
+
+    checkExceptionOnItemsSearch(NotFoundException.class, "number:N1,count:1,continuationToken:" + secondPage.getContinuationToken());
+    assertEquals(Collections.singletonList(build10), myBuildPromotionFinder.getItems("number:N1,count:1,start:1").getEntries());
+  }
+
   @Test
   public void testRevision() {
     final BuildTypeImpl buildConf = registerBuildType("buildConf1", "project");
@@ -1740,6 +1811,30 @@ public class BuildPromotionFinderTest extends BaseFinderTest<BuildPromotion> {
     checkBuilds("strob:(buildType:(project:(id:" + project.getExternalId() + ")))", build40, build30);
   }
 
+  @Test
+  public void testParallelFanOut() {
+    setInternalProperty(ParallelFanOutExecutor.MIN_TASKS, "1");
+    final SProject project = createProject("prj", "project");
+    final BuildTypeEx buildConf1 = (BuildTypeEx)project.createBuildType("buildConf1", "buildConf1");
+    final BuildTypeEx buildConf2 = (BuildTypeEx)project.createBuildType("buildConf2", "buildConf2");
+    final BuildTypeEx buildConf3 = (BuildTypeEx)project.createBuildType("buildConf3", "buildConf3");
+
+    final BuildPromotion build10 = build().in(buildConf1).number("1").finish().getBuildPromotion();
+    final BuildPromotion build20 = build().in(buildConf2).number("1").finish().getBuildPromotion();
+    final BuildPromotion build30 = build().in(buildConf1).number("2").failed().finish().getBuildPromotion();
+    final BuildPromotion build40 = build().in(buildConf3).number("1").finish().getBuildPromotion();
+    final BuildPromotion build50 = build().in(buildConf2).number("2").finish().getBuildPromotion();
+
+    checkBuilds("strob:(buildType:(project:(id:" + project.getExternalId() + ")))", build30, build50, build40);
+    checkBuilds("strob:(buildType:(project:(id:" + project.getExternalId() + ")),locator:(count:10))", build30, build10, build50, build20, build40);
+    checkBuilds("strob:(buildType:(project:(id:" + project.getExternalId() + ")),locator:(status:SUCCESS))", build10, build50, build40);
+    checkBuilds("strob:(buildType:(project:(id:" + project.getExternalId() + ")))," + FinderImpl.DIMENSION_LOOKUP_LIMIT + ":1", 2, new BuildPromotion[]{build30});
+
+    checkBuilds("number:1,buildType:(project:(id:" + project.getExternalId() + "))", build40, build20, build10);
+    checkBuilds("number:1,project:(id:" + project.getExternalId() + ")", build40, build20, build10);
+    checkBuilds("number:1,project:(id:" + project.getExternalId() + "),count:2", build40, build20);
+  }
+
   @Test
   public void testStrobBranchedDimension() throws ExecutionException, InterruptedException {
     final SProject project = createProject("prj", "project");
@@ -29,6 +29,9 @@ import jetbrains.buildServer.responsibility.ResponsibilityEntry;
 import jetbrains.buildServer.responsibility.TestNameResponsibilityFacade;
 import jetbrains.buildServer.responsibility.impl.TestNameResponsibilityEntryImpl;
 import jetbrains.buildServer.server.rest.data.PagedSearchResult;
+import jetbrains.buildServer.server.rest.data.ServerListener;
+import jetbrains.buildServer.server.rest.data.build.BuildPromotionsResultCache;
+import jetbrains.buildServer.server.rest.data.build.BuildStatusCache;
 import jetbrains.buildServer.server.rest.data.finder.BaseFinderTest;
 import jetbrains.buildServer.server.rest.errors.BadRequestException;
 import jetbrains.buildServer.server.rest.errors.LocatorProcessException;
@@ -352,6 +355,49 @@ public class TestOccurrenceFinderTest extends BaseFinderTest<STestRun> {
     check("buildType:(id:" + buildType.getExternalId() + "),build:(buildType:(id:" + buildType.getExternalId() + "),branch:missing)", matcher);
   }
 
+  @Test
+  public void testByTestInSeveralBuilds() throws Exception {
+    final BuildTypeImpl buildType = registerBuildType("buildConf1", "project");
+    final SFinishedBuild build10 = build().in(buildType)
+                                          .withTest("aaa", false)
+                                          .withTest("bbb", true)
+                                          .finish();
+    final SFinishedBuild build20 = build().in(buildType)
+                                          .withTest("bbb", false)
+                                          .withTest("aaa", true)
+                                          .finish();
+
+    check("build:(buildType:(id:" + buildType.getExternalId() + ")),test:(name:aaa)", TEST_MATCHER, t("aaa", Status.NORMAL, 2), t("aaa", Status.FAILURE, 1));
+    assertEquals(2, myTestRunsIndexCache.getStats().missCount());
+
+    // the indexes of the finished builds are reused for subsequent requests, including the ones loading only some of the tests
+    check("build:(id:" + build10.getBuildId() + "),test:(name:bbb)", TEST_MATCHER, t("bbb", Status.NORMAL, 2));
+    check("build:(id:" + build20.getBuildId() + "),test:(name:bbb)", TEST_MATCHER, t("bbb", Status.FAILURE, 1));
+    check("build:(id:" + build20.getBuildId() + "),test:(name:bbb)", TEST_MATCHER, t("bbb", Status.FAILURE, 1));
+    check("build:(buildType:(id:" + buildType.getExternalId() + ")),test:(name:aaa),status:FAILURE", TEST_MATCHER, t("aaa", Status.FAILURE, 1));
+    assertEquals(2, myTestRunsIndexCache.getStats().missCount());
+    assertTrue(myTestRunsIndexCache.getStats().hitCount() >= 5);
+  }
+
+  @Test
+  public void testByTestIndexIsDroppedOnBuildRemoval() throws Exception {
+    final SecurityContextEx securityContext = myFixture.getSecurityContext();
+    new ServerListener(myServer, new BuildPromotionsResultCache(securityContext, myProjectManager), new BuildStatusCache(securityContext, myProjectManager), new AgentCompatibilityMatrix(myAgentManager), myTestRunsIndexCache);
+
+    final BuildTypeImpl buildType = registerBuildType("buildConf1", "project");
+    final SFinishedBuild build10 = build().in(buildType).withTest("aaa", false).finish();
+    final SFinishedBuild build20 = build().in(buildType).withTest("aaa", true).finish();
+
+    check("build:(buildType:(id:" + buildType.getExternalId() + ")),test:(name:aaa)", TEST_MATCHER, t("aaa", Status.NORMAL, 2), t("aaa", Status.FAILURE, 1));
+    assertEquals(2, myTestRunsIndexCache.getSize());
+
+    myFixture.getSingletonService(BuildHistory.class).removeEntry(build10);
+    assertEquals(1, myTestRunsIndexCache.getSize());
+
+    check("build:(id:" + build20.getBuildId() + "),test:(name:aaa)", TEST_MATCHER, t("aaa", Status.NORMAL, 2));
+    assertEquals(1, myTestRunsIndexCache.getSize());
+  }
+
   @Test
   public void testSameTestInDifferentBuilds() throws Exception {
     final BuildTypeImpl buildType1 = registerBuildType("buildConf1", "project1");
@@ -16,8 +16,7 @@
 
 package jetbrains.buildServer.server.rest.data.pages.problems;
 
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
 import java.util.stream.Collectors;
 import jetbrains.buildServer.responsibility.ResponsibilityEntry;
 import jetbrains.buildServer.server.rest.data.Locator;
@@ -32,6 +31,7 @@ import jetbrains.buildServer.users.SUser;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import static jetbrains.buildServer.server.rest.data.locator.definition.PageableLocatorDefinition.*;
 import static jetbrains.buildServer.server.rest.data.pages.problems.TestFailuresProblemEntriesLocatorDefinition.*;
 
 @Test
@@ -378,6 +378,68 @@ public class TestFailuresProblemEntriesCollectorTest extends BaseFinderTest {
     assertEquals(mutedTest.getTestNameId(), mutes.get(0).getTestNameId());
   }
 
+  public void pagesDoNotOverlap() {
+    startBuild(myBuildType);
+    testFailed("failed.e");
+    testFailed("failed.c");
+    testFailed("failed.a");
+    testFailed("failed.d");
+    testFailed("failed.b");
+    finishBuild(true);
+
+    List<String> names = new ArrayList<>();
+    for (int start = 0; start < 6; start += 2) {
+      Locator locator = Locator.createEmptyLocator();
+      locator.setDimension(AFFECTED_PROJECT, myProject.getExternalId());
+      locator.setDimension(ORDER_BY, "name");
+      locator.setDimension(PAGER_START, String.valueOf(start));
+      locator.setDimension(PAGER_COUNT, "2");
+      myCollector.getItems(locator).getEntries().forEach(e -> names.add(e.getTest().getName().getAsString()));
+    }
+
+    assertEquals(Arrays.asList("failed.a", "failed.b", "failed.c", "failed.d", "failed.e"), names);
+  }
+
+  public void snapshotIsReusedForNextPages() {
+    startBuild(myBuildType);
+    testFailed("failed.a");
+    finishBuild(true);
+
+    Locator locator = Locator.createEmptyLocator();
+    locator.setDimension(AFFECTED_PROJECT, myProject.getExternalId());
+    locator.setDimension(CURRENTLY_FAILING, "any");
+    Locator nextPage = new Locator(locator);
+    nextPage.setDimension(PAGER_START, "1");
+    assertEquals(1, myCollector.getItems(new Locator(locator)).getEntries().size());
+
+    investigate("failed.investigated_not_failing", myProject, ResponsibilityEntry.State.TAKEN);
+    assertEquals("First page must always be up to date", 2, myCollector.getItems(new Locator(locator)).getEntries().size());
+
+    investigate("failed.investigated_not_failing_2", myProject, ResponsibilityEntry.State.TAKEN);
+    assertEquals("Next page must be taken from the snapshot of the first one", 1, myCollector.getItems(new Locator(nextPage)).getEntries().size());
+    assertEquals(3, myCollector.getItems(new Locator(locator)).getEntries().size());
+
+    setInternalProperty(TestFailuresProblemEntriesCollector.SNAPSHOT_TTL_SECONDS, "0");
+    investigate("failed.investigated_not_failing_3", myProject, ResponsibilityEntry.State.TAKEN);
+    assertEquals("Snapshot must not be reused when disabled", 3, myCollector.getItems(new Locator(nextPage)).getEntries().size());
+  }
+
+  public void pageSelectionIsTheSameAsFullSorting() {
+    Random random = new Random(42);
+    List<Integer> items = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      items.add(random.nextInt(100));
+    }
+    List<Integer> sorted = new ArrayList<>(items);
+    sorted.sort(Comparator.naturalOrder());
+
+    for (int[] page : new int[][]{{0, 10}, {5, 20}, {0, 1000}, {400, 100}, {990, 100}, {1000, 10}, {0, 0}}) {
+      List<Integer> expected = sorted.subList(Math.min(page[0], sorted.size()), Math.min(page[0] + page[1], sorted.size()));
+      assertEquals("Page " + Arrays.toString(page), expected,
+                   TestFailuresProblemEntriesCollector.getPage(new ArrayList<>(items), Comparator.naturalOrder(), page[0], page[1]));
+    }
+  }
+
   private void investigate(String investigatedTest, ProjectEx project, ResponsibilityEntry.State state) {
     TestName investigatedTestName = new TestName(investigatedTest);
     myFixture.getResponsibilityFacadeEx().setTestNameResponsibility(investigatedTestName, project.getProjectId(), createRespEntry(state, myUser));
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.rest.jersey;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.List;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.ext.ContextResolver;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Providers;
+import jetbrains.buildServer.server.rest.data.finder.BaseFinderTest;
+import jetbrains.buildServer.server.rest.model.Fields;
+import jetbrains.buildServer.server.rest.model.StreamableItems;
+import jetbrains.buildServer.server.rest.model.build.Builds;
+import jetbrains.buildServer.server.rest.model.change.Changes;
+import jetbrains.buildServer.server.rest.model.problem.TestOccurrences;
+import jetbrains.buildServer.serverSide.BuildPromotion;
+import jetbrains.buildServer.serverSide.SFinishedBuild;
+import jetbrains.buildServer.serverSide.impl.MockVcsSupport;
+import jetbrains.buildServer.vcs.VcsRootInstance;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static jetbrains.buildServer.buildTriggers.vcs.ModificationDataBuilder.modification;
+
+public class StreamingItemsJsonWriterTest extends BaseFinderTest<BuildPromotion> {
+  private ObjectMapper myMapper;
+  private StreamingItemsJsonWriter myWriter;
+
+  @Override
+  @BeforeMethod
+  public void setUp() throws Exception {
+    super.setUp();
+    final JacksonObjectMapperResolver resolver = new JacksonObjectMapperResolver();
+    myMapper = resolver.getContext(Builds.class);
+    myWriter = new StreamingItemsJsonWriter(new Providers() {
+      @Override
+      public <T> MessageBodyReader<T> getMessageBodyReader(final Class<T> type, final Type genericType, final Annotation[] annotations, final MediaType mediaType) {
+        return null;
+      }
+
+      @Override
+      public <T> MessageBodyWriter<T> getMessageBodyWriter(final Class<T> type, final Type genericType, final Annotation[] annotations, final MediaType mediaType) {
+        return null;
+      }
+
+      @Override
+      public <T extends Throwable> ExceptionMapper<T> getExceptionMapper(final Class<T> type) {
+        return null;
+      }
+
+      @Override
+      @SuppressWarnings("unchecked")
+      public <T> ContextResolver<T> getContextResolver(final Class<T> contextType, final MediaType mediaType) {
+        return ObjectMapper.class.equals(contextType) ? (ContextResolver<T>)resolver : null;
+      }
+    });
+  }
+
+  @Test
+  public void testNotWriteableWhenStreamingDisabled() {
+    assertFalse(myWriter.isWriteable(Builds.class, Builds.class, new Annotation[0], MediaType.APPLICATION_JSON_TYPE));
+
+    setInternalProperty(StreamableItems.STREAMING_ENABLED, "true");
+    assertTrue(myWriter.isWriteable(Builds.class, Builds.class, new Annotation[0], MediaType.APPLICATION_JSON_TYPE));
+    assertFalse(myWriter.isWriteable(Builds.class, Builds.class, new Annotation[0], MediaType.APPLICATION_XML_TYPE));
+  }
+
+  @Test
+  public void testStreamedOutputIsSameAsRegular() throws IOException {
+    setInternalProperty(StreamableItems.STREAMING_ENABLED, "true");
+    final List<BuildPromotion> promotions = Arrays.asList(build().in(myBuildType).finish().getBuildPromotion(),
+                                                          build().in(myBuildType).failed().finish().getBuildPromotion(),
+                                                          build().in(myBuildType).run().getBuildPromotion());
+
+    for (String fields : Arrays.asList("build(id,number,status,state)", "count,build(id,buildTypeId,statusText)", "build(id),count", "count", "$long")) {
+      final Builds regular = Builds.createFromPrefilteredBuildPromotions(promotions, null, new Fields(fields), getBeanContext(myFixture));
+      final Builds streamed = Builds.createStreaming(processor -> {
+        for (BuildPromotion promotion : promotions) {
+          if (!processor.processItem(promotion)) break;
+        }
+        return null;
+      }, new Fields(fields), getBeanContext(myFixture));
+
+      assertEquals("Fields: " + fields, myMapper.writeValueAsString(regular), write(streamed));
+    }
+  }
+
+  @Test
+  public void testStreamedChangesAreSameAsRegular() throws IOException {
+    setInternalProperty(StreamableItems.STREAMING_ENABLED, "true");
+    final MockVcsSupport vcs = new MockVcsSupport("vcs");
+    myFixture.getVcsManager().registerVcsSupport(vcs);
+    final VcsRootInstance root = myBuildType.getVcsRootInstanceForParent(myFixture.addVcsRoot(vcs.getName(), "", myBuildType));
+    assert root != null;
+    myFixture.addModification(modification().in(root).version("10"));
+    myFixture.addModification(modification().in(root).version("20").parentVersions("10"));
+    myFixture.addModification(modification().in(root).version("30").parentVersions("20"));
+    final String locator = "vcsRootInstance:(id:" + root.getId() + ")";
+
+    for (String fields : Arrays.asList("change(id,version)", "count,change(id)", "count", "$long")) {
+      final Changes regular = new Changes(myChangeFinder.getItems(locator).getEntries(), null, new Fields(fields), getBeanContext(myFixture));
+      final Changes streamed = Changes.createStreaming(processor -> {
+        myChangeFinder.processItems(locator, processor);
+        return null;
+      }, new Fields(fields), getBeanContext(myFixture));
+
+      assertEquals("Fields: " + fields, myMapper.readTree(myMapper.writeValueAsString(regular)), myMapper.readTree(write(streamed, Changes.class)));
+    }
+  }
+
+  @Test
+  public void testStreamedTestOccurrencesAreSameAsRegular() throws IOException {
+    setInternalProperty(StreamableItems.STREAMING_ENABLED, "true");
+    final SFinishedBuild build = build().in(myBuildType).withTest("aaa", true).withTest("bbb", false).withTest("ccc", true).finish();
+    final String locator = "build:(id:" + build.getBuildId() + ")";
+
+    for (String fields : Arrays.asList("testOccurrence(id,name,status)", "count,testOccurrence(id)", "testOccurrence")) {
+      assertTrue("Fields: " + fields, TestOccurrences.isStreamingSupported(new Fields(fields)));
+      final TestOccurrences regular = new TestOccurrences(myTestOccurrenceFinder.getItems(locator).getEntries(), null, null, null, new Fields(fields), getBeanContext(myFixture));
+      final TestOccurrences streamed = TestOccurrences.createStreaming(processor -> {
+        myTestOccurrenceFinder.processItems(locator, processor);
+        return null;
+      }, null, new Fields(fields), getBeanContext(myFixture));
+
+      assertEquals("Fields: " + fields, myMapper.readTree(myMapper.writeValueAsString(regular)), myMapper.readTree(write(streamed, TestOccurrences.class)));
+    }
+
+    // the counters cannot be calculated from the streamed test occurrences
+    assertFalse(TestOccurrences.isStreamingSupported(new Fields("count,failed,testOccurrence")));
+    assertFalse(TestOccurrences.isStreamingSupported(new Fields("testCounters,testOccurrence")));
+    assertFalse(TestOccurrences.isStreamingSupported(new Fields("$long")));
+    assertFalse(TestOccurrences.isStreamingSupported(new Fields("count")));
+  }
+
+  @Test
+  public void testErrorWhileStreamingTerminatesResponse() throws IOException {
+    setInternalProperty(StreamableItems.STREAMING_ENABLED, "true");
+    final BuildPromotion promotion = build().in(myBuildType).finish().getBuildPromotion();
+
+    final Builds streamed = Builds.createStreaming(processor -> {
+      processor.processItem(promotion);
+      throw new IllegalStateException("Failure while finding builds");
+    }, new Fields("count,build(id)"), getBeanContext(myFixture));
+
+    final JsonNode result = myMapper.readTree(write(streamed));
+    assertEquals(1, result.get("build").size());
+    assertEquals(promotion.getId(), result.get("build").get(0).get("id").asLong());
+    assertEquals("Failure while finding builds", result.get(StreamingItemsJsonWriter.ERROR_PROPERTY).get("message").asText());
+    assertNull("Properties depending on the items should not be written", result.get("count"));
+  }
+
+  private String write(final Builds builds) throws IOException {
+    return write(builds, Builds.class);
+  }
+
+  private String write(final StreamableItems<?> items, final Class<?> type) throws IOException {
+    final ByteArrayOutputStream result = new ByteArrayOutputStream();
+    myWriter.writeTo(items, type, type, new Annotation[0], MediaType.APPLICATION_JSON_TYPE, new MultivaluedHashMap<>(), result);
+    return result.toString("UTF-8");
+  }
+}
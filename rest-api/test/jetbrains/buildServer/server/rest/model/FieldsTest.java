@@ -0,0 +1,82 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.rest.model;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import jetbrains.buildServer.server.rest.errors.LocatorProcessException;
+import jetbrains.buildServer.serverSide.BuildPromotion;
+import jetbrains.buildServer.serverSide.impl.BaseServerTestCase;
+import org.testng.annotations.Test;
+
+public class FieldsTest extends BaseServerTestCase {
+
+  @Test
+  public void testNestedFieldsAreReused() {
+    final Fields fields = new Fields("id,buildType(id,name),changes($locator(count:1),change(id))");
+
+    final Fields buildType = fields.getNestedField("buildType", Fields.SHORT, Fields.LONG);
+    assertSame(buildType, fields.getNestedField("buildType", Fields.SHORT, Fields.LONG));
+    assertEquals("id,name", buildType.getFieldsSpec());
+    assertTrue(buildType.isIncluded("name", false, false));
+    assertFalse(buildType.isIncluded("href", false, false));
+
+    final Fields changes = fields.getNestedField("changes");
+    assertEquals("count:1", changes.getLocator());
+    assertEquals("id", changes.getNestedField("change").getFieldsSpec());
+
+    assertSame(Fields.NONE, fields.getNestedField("agent"));
+  }
+
+  @Test
+  public void testDefaultsOfNestedFields() {
+    assertEquals("$long", Fields.LONG.getNestedField("buildType", Fields.SHORT, Fields.LONG).getFieldsSpec());
+    assertEquals("", Fields.LONG.getNestedField("buildType", Fields.SHORT, Fields.SHORT).getFieldsSpec());
+    assertEquals("-", Fields.SHORT.getNestedField("buildType", Fields.NONE, Fields.LONG).getFieldsSpec());
+  }
+
+  @Test
+  public void testSameSpecInDifferentInstances() {
+    final Fields fields1 = new Fields("id,name");
+    final Fields fields2 = new Fields("id,name");
+    assertEquals(new HashSet<>(Arrays.asList("id", "name")), new HashSet<>(fields1.getAllCustomDimensions()));
+    assertEquals(fields1.getAllCustomDimensions(), fields2.getAllCustomDimensions());
+    assertTrue(fields2.isIncluded("id", false, false));
+    assertFalse(fields2.isIncluded("number", false, false));
+  }
+
+  @Test
+  public void testContext() {
+    final Fields fields = new Fields("related($locator(build:(id:$context.build.id)))").getNestedField("related");
+    assertEquals("build:(id:$context.build.id)", fields.getLocator());
+    final BuildPromotion promotion = build().in(myBuildType).finish().getBuildPromotion();
+    assertEquals("build:(id:" + promotion.getId() + ")", fields.withContext(promotion).getLocator());
+    assertEquals("build:(id:$context.build.id)", fields.getLocator());
+  }
+
+  @Test
+  public void testErrorOnlyForRequestedMultipleDimension() {
+    final Fields fields = new Fields("id,name,name");
+    assertTrue(fields.isIncluded("id", false, false));
+    try {
+      fields.isIncluded("name", false, false);
+      fail("Exception expected");
+    } catch (LocatorProcessException e) {
+      //expected
+    }
+  }
+}
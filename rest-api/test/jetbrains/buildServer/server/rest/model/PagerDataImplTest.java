@@ -128,6 +128,15 @@ public class PagerDataImplTest extends BaseServerTestCase {
     );
   }
 
+  @Test
+  public void testContinuationToken() throws URISyntaxException {
+    final List<String> items = Arrays.asList("a", "b");
+    check("/smth", "count:2,a:b", new PagedSearchResult<>(items, null, 2, 2L, null, false, "b", "tkn"), "/smth?locator=count:2,a:b", "/smth?locator=a:b,continuationToken:tkn,count:2", null);
+    check("/smth", "start:4,count:2,a:b", new PagedSearchResult<>(items, 4L, 2, 2L, null, false, "b", "tkn"), "/smth?locator=start:4,count:2,a:b", "/smth?locator=a:b,continuationToken:tkn,count:2", "/smth?locator=a:b,count:2,start:2");
+    check("/smth", "count:2,a:b,continuationToken:old", new PagedSearchResult<>(items, null, 2, 2L, 10L, true, "b", "tkn"), "/smth?locator=count:2,a:b,continuationToken:old", "/smth?locator=a:b,continuationToken:tkn,count:2", null);
+    check("/smth", "count:3,a:b,continuationToken:old", new PagedSearchResult<>(items, null, 3, 2L, null, false, "b", null), "/smth?locator=count:3,a:b,continuationToken:old", null, null);
+  }
+
   private void check(@NotNull final String currentHrefPath, @Nullable final String currentLocator, @NotNull final PagedSearchResult<String> pagedResult,
                      @Nullable final String href, @Nullable final Object nextHref, @Nullable final Object prevHref) throws URISyntaxException {
     final PagerData pagerData =
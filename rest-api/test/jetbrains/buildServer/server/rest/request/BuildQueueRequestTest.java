@@ -0,0 +1,97 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.rest.request;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import jetbrains.buildServer.controllers.fakes.FakeHttpServletRequest;
+import jetbrains.buildServer.controllers.fakes.FakeHttpServletResponse;
+import jetbrains.buildServer.server.rest.data.finder.BaseFinderTest;
+import jetbrains.buildServer.server.rest.model.MultipleOperationResult;
+import jetbrains.buildServer.server.rest.model.build.Build;
+import jetbrains.buildServer.server.rest.model.build.Builds;
+import jetbrains.buildServer.server.rest.model.buildType.BuildType;
+import jetbrains.buildServer.serverSide.BuildPromotion;
+import jetbrains.buildServer.serverSide.impl.BuildTypeImpl;
+import org.jetbrains.annotations.NotNull;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class BuildQueueRequestTest extends BaseFinderTest<BuildPromotion> {
+  private BuildQueueRequest myRequest;
+
+  @Override
+  @BeforeMethod
+  public void setUp() throws Exception {
+    super.setUp();
+    myRequest = new BuildQueueRequest();
+    myRequest.initForTests(getBeanContext(myFixture));
+    makeLoggedIn(createAdmin("admin"));
+  }
+
+  @Test
+  public void testQueueNewBuildsPartialFailure() {
+    final BuildTypeImpl buildConf2 = registerBuildType("buildConf2", "project");
+
+    final MultipleOperationResult result = queueNewBuilds(false, myBuildType.getExternalId(), "missing", buildConf2.getExternalId());
+
+    assertEquals(Integer.valueOf(3), result.count);
+    assertEquals(Integer.valueOf(1), result.errorCount);
+    assertNull(result.operationResults.get(0).message);
+    assertEquals(myBuildType.getExternalId(), result.operationResults.get(0).related.build.getBuildTypeId());
+    assertNotNull(result.operationResults.get(1).message);
+    assertEquals("Build #1", result.operationResults.get(1).related.text);
+    assertNull(result.operationResults.get(2).message);
+    assertEquals(buildConf2.getExternalId(), result.operationResults.get(2).related.build.getBuildTypeId());
+
+    assertEquals(Arrays.asList(myBuildType.getExternalId(), buildConf2.getExternalId()), getQueuedBuildTypeIds());
+  }
+
+  @Test
+  public void testQueueNewBuildsMoveToTop() {
+    final BuildTypeImpl buildConf2 = registerBuildType("buildConf2", "project");
+    final BuildTypeImpl buildConf3 = registerBuildType("buildConf3", "project");
+    build().in(buildConf3).addToQueue();
+
+    queueNewBuilds(false, buildConf2.getExternalId());
+    assertEquals(Arrays.asList(buildConf3.getExternalId(), buildConf2.getExternalId()), getQueuedBuildTypeIds());
+
+    final MultipleOperationResult result = queueNewBuilds(true, buildConf2.getExternalId(), myBuildType.getExternalId());
+    assertEquals(Integer.valueOf(0), result.errorCount);
+    assertEquals("Added builds should go to the top in the submitted order",
+                 Arrays.asList(buildConf2.getExternalId(), myBuildType.getExternalId(), buildConf3.getExternalId()), getQueuedBuildTypeIds());
+  }
+
+  @NotNull
+  private MultipleOperationResult queueNewBuilds(final boolean moveToTop, @NotNull final String... buildTypeIds) {
+    final Builds builds = new Builds();
+    builds.setBuilds(Arrays.stream(buildTypeIds).map(id -> {
+      final BuildType buildType = new BuildType();
+      buildType.setId(id);
+      final Build build = new Build();
+      build.setBuildType(buildType);
+      return build;
+    }).collect(Collectors.toList()));
+    return myRequest.queueNewBuilds(builds, moveToTop, null, new FakeHttpServletRequest(), new FakeHttpServletResponse());
+  }
+
+  @NotNull
+  private List<String> getQueuedBuildTypeIds() {
+    return myFixture.getBuildQueue().getItems().stream().map(queuedBuild -> queuedBuild.getBuildType().getExternalId()).collect(Collectors.toList());
+  }
+}
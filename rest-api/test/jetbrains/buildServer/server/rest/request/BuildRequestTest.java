@@ -0,0 +1,88 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.rest.request;
+
+import jetbrains.buildServer.messages.Status;
+import jetbrains.buildServer.server.rest.data.ServerListener;
+import jetbrains.buildServer.server.rest.data.build.BuildPromotionsResultCache;
+import jetbrains.buildServer.server.rest.data.build.BuildStatusCache;
+import jetbrains.buildServer.server.rest.data.finder.BaseFinderTest;
+import jetbrains.buildServer.server.rest.data.finder.impl.AgentCompatibilityMatrix;
+import jetbrains.buildServer.serverSide.BuildPromotion;
+import jetbrains.buildServer.serverSide.SecurityContextEx;
+import jetbrains.buildServer.serverSide.impl.BuildTypeImpl;
+import jetbrains.buildServer.users.SUser;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class BuildRequestTest extends BaseFinderTest<BuildPromotion> {
+  private BuildRequest myRequest;
+
+  @Override
+  @BeforeMethod
+  public void setUp() throws Exception {
+    super.setUp();
+    myRequest = new BuildRequest();
+    myRequest.initForTests(BaseFinderTest.getBeanContext(myFixture));
+  }
+
+  @Test
+  public void testAggregatedStatus() {
+    final BuildTypeImpl buildConf = registerBuildType("buildConf", "project");
+    final String locator = "buildType:(id:" + buildConf.getExternalId() + ")";
+    assertEquals(Status.UNKNOWN.getText(), myRequest.serveAggregatedBuildStatus(locator, null));
+
+    build().in(buildConf).finish();
+    assertEquals(Status.NORMAL.getText(), myRequest.serveAggregatedBuildStatus(locator, null));
+
+    build().in(buildConf).failed().finish();
+    build().in(buildConf).finish();
+    assertEquals(Status.FAILURE.getText(), myRequest.serveAggregatedBuildStatus(locator, null));
+    assertEquals(Status.FAILURE.getText(), myRequest.serveAggregatedBuildStatus(locator, true));
+    assertEquals(Status.NORMAL.getText(), myRequest.serveAggregatedBuildStatus(locator + ",count:1", null));
+
+    assertEquals(Status.FAILURE, BuildRequest.getAggregatedBuildStatus(myBuildPromotionFinder, locator, true));
+    assertEquals(Status.FAILURE, BuildRequest.getAggregatedBuildStatus(myBuildPromotionFinder, locator, false));
+  }
+
+  @Test
+  public void testAggregatedStatusIsNotEvictedByBuildsOfOtherProjects() throws Throwable {
+    final SecurityContextEx securityContext = myFixture.getSecurityContext();
+    final BuildStatusCache statusCache = new BuildStatusCache(securityContext, myProjectManager);
+    myFixture.addService(statusCache);
+    new ServerListener(myServer, new BuildPromotionsResultCache(securityContext, myProjectManager), statusCache, new AgentCompatibilityMatrix(myAgentManager), myTestRunsIndexCache);
+
+    final BuildTypeImpl buildConf1 = registerBuildType("buildConf1", "project1");
+    final BuildTypeImpl buildConf2 = registerBuildType("buildConf2", "project2");
+    final String locator = "affectedProject:(id:" + buildConf1.getProject().getExternalId() + ")";
+    final String buildTypesLocator = "buildType:(affectedProject:(id:" + buildConf1.getProject().getExternalId() + "))";
+    final SUser user = createAdmin("user");
+    build().in(buildConf1).finish();
+    assertEquals(Status.NORMAL.getText(), securityContext.runAs(user, () -> myRequest.serveAggregatedBuildStatus(locator, null)));
+    assertEquals(Status.NORMAL.getText(), securityContext.runAs(user, () -> myRequest.serveAggregatedBuildStatus(buildTypesLocator, null)));
+
+    build().in(buildConf2).failed().finish();
+    assertEquals(Status.NORMAL.getText(), securityContext.runAs(user, () -> myRequest.serveAggregatedBuildStatus(locator, null)));
+    assertEquals(Status.NORMAL.getText(), securityContext.runAs(user, () -> myRequest.serveAggregatedBuildStatus(buildTypesLocator, null)));
+    assertTrue(statusCache.getStatistics(), statusCache.getStatistics().contains("hits 2, misses 2, outdated 0"));
+
+    build().in(buildConf1).failed().finish();
+    assertEquals(Status.FAILURE.getText(), securityContext.runAs(user, () -> myRequest.serveAggregatedBuildStatus(locator, null)));
+    assertEquals(Status.FAILURE.getText(), securityContext.runAs(user, () -> myRequest.serveAggregatedBuildStatus(buildTypesLocator, null)));
+    assertTrue(statusCache.getStatistics(), statusCache.getStatistics().contains("outdated 2"));
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.server.rest.request;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import jetbrains.buildServer.BaseTestCase;
+import jetbrains.buildServer.TempFiles;
+import jetbrains.buildServer.server.rest.data.finder.impl.BuildArtifactsFinder;
+import jetbrains.buildServer.util.browser.Element;
+import jetbrains.buildServer.util.browser.FileSystemBrowser;
+import jetbrains.buildServer.web.util.HttpByteRange;
+import org.jetbrains.annotations.NotNull;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+@Test
+public class FilesSubResourceRangesTest extends BaseTestCase {
+  private final TempFiles myTempFiles = new TempFiles();
+  private byte[] myContent;
+  private Element myElement;
+
+  @BeforeMethod
+  @Override
+  public void setUp() throws Exception {
+    super.setUp();
+    final File root = myTempFiles.createTempDir();
+    myContent = new byte[200000];
+    new Random(42).nextBytes(myContent);
+    Files.write(new File(root, "file.bin").toPath(), myContent);
+    myElement = new FileSystemBrowser(root).getElement("file.bin");
+  }
+
+  @AfterMethod
+  @Override
+  public void tearDown() throws Exception {
+    myTempFiles.cleanup();
+    super.tearDown();
+  }
+
+  public void testLocalFileReader() throws Exception {
+    assertNotNull(ElementContentReader.getLocalFile(myElement));
+    assertNotNull(ElementContentReader.getLocalFile(new BuildArtifactsFinder.ArtifactTreeElementWrapper(myElement)));
+    checkReader(new ElementContentReader(myElement));
+  }
+
+  public void testStreamReader() throws Exception {
+    final int[] opened = new int[1];
+    // the outer wrapper does not expose the local file, so the content can only be read as a stream
+    final Element element = new BuildArtifactsFinder.ArtifactTreeElementWrapper(new BuildArtifactsFinder.ArtifactTreeElementWrapper(myElement)) {
+      @NotNull
+      @Override
+      public InputStream getInputStream() {
+        opened[0]++;
+        return new ByteArrayInputStream(myContent);
+      }
+    };
+    assertNull(ElementContentReader.getLocalFile(element));
+    checkReader(new ElementContentReader(element));
+    assertEquals("stream is reopened only for the backward range", 2, opened[0]);
+  }
+
+  public void testMultipartBody() throws Exception {
+    final HttpByteRange range = new HttpByteRange("bytes=0-9,100-199,-5", (long)myContent.length);
+    final FilesSubResource.MultipartRanges multipartRanges = new FilesSubResource.MultipartRanges(range, "BOUNDARY", "application/octet-stream");
+    assertEquals(3, multipartRanges.getRangesCount());
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (ElementContentReader reader = new ElementContentReader(myElement)) {
+      multipartRanges.write(out, reader);
+    }
+    final byte[] body = out.toByteArray();
+    assertEquals(multipartRanges.getContentLength(), body.length);
+
+    final String text = new String(body, StandardCharsets.ISO_8859_1);
+    assertTrue(text, text.startsWith("--BOUNDARY\r\nContent-Type: application/octet-stream\r\nContent-Range: bytes 0-9/200000\r\n\r\n"));
+    assertTrue(text, text.contains("\r\n--BOUNDARY\r\nContent-Type: application/octet-stream\r\nContent-Range: bytes 100-199/200000\r\n\r\n"));
+    assertTrue(text, text.contains("Content-Range: bytes 199995-199999/200000\r\n\r\n"));
+    assertTrue(text, text.endsWith("\r\n--BOUNDARY--\r\n"));
+
+    final int secondPartStart = text.indexOf("bytes 100-199/200000\r\n\r\n") + "bytes 100-199/200000\r\n\r\n".length();
+    assertTrue(Arrays.equals(Arrays.copyOfRange(myContent, 100, 200), Arrays.copyOfRange(body, secondPartStart, secondPartStart + 100)));
+  }
+
+  private void checkReader(@NotNull final FilesSubResource.ContentRangesReader reader) throws IOException {
+    try {
+      checkRange(reader, 0, 10);
+      checkRange(reader, 100000, 70000);
+      checkRange(reader, 199990, 10);
+      checkRange(reader, 50, 1);
+      checkRange(reader, 60, 0);
+    } finally {
+      reader.close();
+    }
+  }
+
+  private void checkRange(@NotNull final FilesSubResource.ContentRangesReader reader, final int start, final int length) throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    reader.write(out, start, length);
+    assertTrue("range " + start + "+" + length, Arrays.equals(Arrays.copyOfRange(myContent, start, start + length), out.toByteArray()));
+  }
+}